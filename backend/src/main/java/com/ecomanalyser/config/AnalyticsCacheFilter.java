@@ -0,0 +1,100 @@
+package com.ecomanalyser.config;
+
+import com.ecomanalyser.service.DataEpoch;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Caches GET responses of the analytics endpoints per data epoch and answers conditional
+ * requests with 304 while the data has not changed.
+ *
+ * Analytics results only change when an import, merge or price change commits, so a response
+ * is keyed by path, sorted query parameters and {@link DataEpoch}; the ETag is derived from the
+ * epoch alone, which lets a matching If-None-Match skip the computation entirely.
+ */
+@Component
+@RequiredArgsConstructor
+public class AnalyticsCacheFilter extends OncePerRequestFilter {
+
+    private final DataEpoch dataEpoch;
+    private final AnalyticsResponseCache cache;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        boolean analytics = path.startsWith("/api/analytics/") || path.startsWith("/api/sku-groups/analytics/");
+        return !"GET".equals(request.getMethod()) || !analytics || path.contains("/debug/");
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain
+    ) throws ServletException, IOException {
+        long epoch = dataEpoch.current();
+        String etag = dataEpoch.etag(epoch);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+
+        if (etagMatches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setHeader(HttpHeaders.ETAG, etag);
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        String key = cacheKey(request);
+        AnalyticsResponseCache.Entry cached = cache.get(key, epoch);
+        if (cached != null) {
+            response.setHeader(HttpHeaders.ETAG, etag);
+            response.setContentType(cached.contentType());
+            response.setContentLength(cached.body().length);
+            response.getOutputStream().write(cached.body());
+            return;
+        }
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        try {
+            filterChain.doFilter(request, wrapper);
+            if (wrapper.getStatus() == HttpServletResponse.SC_OK) {
+                wrapper.setHeader(HttpHeaders.ETAG, etag);
+                cache.put(key, epoch, new AnalyticsResponseCache.Entry(
+                        wrapper.getContentAsByteArray(), wrapper.getContentType()));
+            }
+        } finally {
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    static String cacheKey(HttpServletRequest request) {
+        // Parameter order does not change the result, so it must not change the key either
+        StringBuilder key = new StringBuilder(request.getRequestURI());
+        char separator = '?';
+        for (Map.Entry<String, String[]> param : new TreeMap<>(request.getParameterMap()).entrySet()) {
+            for (String value : param.getValue()) {
+                key.append(separator).append(param.getKey()).append('=').append(value);
+                separator = '&';
+            }
+        }
+        return key.toString();
+    }
+
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        return Arrays.stream(ifNoneMatch.split(","))
+                .map(String::trim)
+                .map(tag -> tag.startsWith("W/") ? tag.substring(2) : tag)
+                .anyMatch(tag -> tag.equals(etag) || tag.equals("*"));
+    }
+}
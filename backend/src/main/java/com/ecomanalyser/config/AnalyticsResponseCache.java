@@ -0,0 +1,62 @@
+package com.ecomanalyser.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Serialized analytics responses keyed by request and data epoch.
+ *
+ * Bounded both by entry count and by total body bytes, evicting the least recently used entry
+ * first. Entries only live for the newest epoch seen: storing a response for a newer epoch drops
+ * everything computed against older data, and responses computed against an older epoch are not
+ * stored at all.
+ */
+@Component
+public class AnalyticsResponseCache {
+
+    /**
+     * Cached response body and its content type
+     */
+    public record Entry(byte[] body, String contentType) {
+    }
+
+    private final int maxEntries;
+    private final long maxWeightBytes;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long epoch = -1;
+    private long weightBytes;
+
+    public AnalyticsResponseCache(
+            @Value("${analytics.cache.max-entries:500}") int maxEntries,
+            @Value("${analytics.cache.max-weight-bytes:33554432}") long maxWeightBytes) {
+        this.maxEntries = maxEntries;
+        this.maxWeightBytes = maxWeightBytes;
+    }
+
+    public synchronized Entry get(String key, long epoch) {
+        return epoch == this.epoch ? entries.get(key) : null;
+    }
+
+    public synchronized void put(String key, long epoch, Entry entry) {
+        if (epoch < this.epoch || entry.body().length > maxWeightBytes) return;
+        if (epoch > this.epoch) {
+            entries.clear();
+            weightBytes = 0;
+            this.epoch = epoch;
+        }
+        Entry previous = entries.put(key, entry);
+        if (previous != null) weightBytes -= previous.body().length;
+        weightBytes += entry.body().length;
+
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || weightBytes > maxWeightBytes) && eldest.hasNext()) {
+            weightBytes -= eldest.next().getValue().body().length;
+            eldest.remove();
+        }
+    }
+}
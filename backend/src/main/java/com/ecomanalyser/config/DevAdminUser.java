@@ -0,0 +1,36 @@
+package com.ecomanalyser.config;
+
+import com.ecomanalyser.domain.UserEntity;
+import com.ecomanalyser.repository.UserRepository;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Default admin login for local development (admin@ecomanalyser.com / admin123). Only created
+ * with the dev profile, so no other database gets an account with a known password; the
+ * versioned migrations only create the users table.
+ */
+@Configuration
+@Profile("dev")
+public class DevAdminUser {
+
+    static final String EMAIL = "admin@ecomanalyser.com";
+
+    @Bean
+    CommandLineRunner createDevAdminIfMissing(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+        return args -> {
+            if (userRepository.existsByEmail(EMAIL)) return;
+            UserEntity admin = new UserEntity();
+            admin.setEmail(EMAIL);
+            admin.setPassword(passwordEncoder.encode("admin123"));
+            admin.setFirstName("Admin");
+            admin.setLastName("User");
+            admin.setRole(UserEntity.Role.ADMIN);
+            admin.setEnabled(true);
+            userRepository.save(admin);
+        };
+    }
+}
@@ -0,0 +1,60 @@
+package com.ecomanalyser.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Flags units of work that run too many SQL statements: HTTP requests ({@link QueryCountFilter})
+ * and analytics/import service calls ({@code OperationMetrics}). A unit is flagged when it
+ * exceeds its statement budget, or when one statement repeats {@code max-repeats} times or more,
+ * which is how an N+1 lookup shows up. Each flag logs a warning naming the repeated statement
+ * and increments {@code sql.query.budget.exceeded}, tagged with the scope, the endpoint or method
+ * and the reason.
+ */
+@Component
+@Slf4j
+public class QueryBudget {
+
+    public static final String REQUEST = "request";
+    public static final String CALL = "call";
+
+    private final MeterRegistry meterRegistry;
+    private final long perRequest;
+    private final long perCall;
+    private final int maxRepeats;
+
+    public QueryBudget(MeterRegistry meterRegistry,
+                       @Value("${sql.query-budget.per-request:50}") long perRequest,
+                       @Value("${sql.query-budget.per-call:25}") long perCall,
+                       @Value("${sql.query-budget.max-repeats:10}") int maxRepeats) {
+        this.meterRegistry = meterRegistry;
+        this.perRequest = perRequest;
+        this.perCall = perCall;
+        this.maxRepeats = maxRepeats;
+    }
+
+    /**
+     * Check a closed or still open scope against the budget of its kind
+     *
+     * @param scope {@link #REQUEST} or {@link #CALL}
+     * @param name  low-cardinality name of the unit: endpoint pattern or Service.method
+     * @return whether the unit was flagged
+     */
+    public boolean check(String scope, String name, SqlStatementCounter.Scope sql) {
+        long budget = REQUEST.equals(scope) ? perRequest : perCall;
+        Map.Entry<String, Integer> repeated = sql.mostRepeated();
+        String reason;
+        if (sql.statements() > budget) reason = "budget";
+        else if (repeated != null && repeated.getValue() >= maxRepeats) reason = "repeated";
+        else return false;
+
+        log.warn("{} {} ran {} SQL statements (budget {}); most repeated {}x: {}", scope, name, sql.statements(), budget,
+                repeated != null ? repeated.getValue() : 0, repeated != null ? repeated.getKey() : "-");
+        meterRegistry.counter("sql.query.budget.exceeded", "scope", scope, "name", name, "reason", reason).increment();
+        return true;
+    }
+}
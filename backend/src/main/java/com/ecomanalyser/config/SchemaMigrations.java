@@ -0,0 +1,306 @@
+package com.ecomanalyser.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Applies the versioned scripts in db/migration before JPA starts, so the schema of a production
+ * database is owned by reviewed SQL rather than ddl-auto (the prod profile only validates it).
+ *
+ * Scripts follow the Flyway layout, {@code V<version>__<description>.sql}, and run in version
+ * order. Each applied version is recorded in {@code schema_version} with a checksum; an applied
+ * script that has since been edited is logged, not re-run, so fixes go into a new version.
+ * Statements run with autocommit so CREATE INDEX CONCURRENTLY works, and on a partitioned table,
+ * which cannot be indexed concurrently, they are retried as a plain CREATE INDEX. A concurrent
+ * build that failed part way leaves an INVALID index that IF NOT EXISTS would keep forever, so
+ * before a CREATE INDEX IF NOT EXISTS runs, an invalid index of that name is dropped. A session
+ * advisory lock, polled rather than waited on, keeps nodes starting together from applying the
+ * same version twice. A failed
+ * statement aborts startup, since the entities may not match the schema without it.
+ */
+@Component
+@Slf4j
+public class SchemaMigrations implements InitializingBean {
+
+    static final String LOCATION = "classpath:db/migration/V*__*.sql";
+    static final String HISTORY_TABLE = "schema_version";
+    private static final long ADVISORY_LOCK_KEY = 0x5c4e_3a11L;
+    private static final long LOCK_POLL_MILLIS = 500;
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+(?:[._]\\d+)*)__(.+)\\.sql");
+    private static final Pattern CREATE_INDEX_IF_NOT_EXISTS = Pattern.compile(
+            "(?is)^CREATE\\s+(?:UNIQUE\\s+)?INDEX\\s+(?:CONCURRENTLY\\s+)?IF\\s+NOT\\s+EXISTS\\s+(\\w+)\\s+ON\\b.*");
+    private static final Pattern DOLLAR_TAG = Pattern.compile("\\$(?:[A-Za-z_][A-Za-z_0-9]*)?\\$");
+    /** One versioned script split into its statements */
+    record Migration(String version, String description, String script, List<String> statements, long checksum) {
+        int[] versionParts() {
+            return Arrays.stream(version.split("[._]")).mapToInt(Integer::parseInt).toArray();
+        }
+    }
+
+    /**
+     * Makes the entity manager factory, and with it ddl-auto and its validation, wait for the
+     * migrations
+     */
+    @Component
+    static class JpaAfterMigrations extends EntityManagerFactoryDependsOnPostProcessor {
+        JpaAfterMigrations() {
+            super(SchemaMigrations.class);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final List<Migration> migrations;
+
+    public SchemaMigrations(JdbcTemplate jdbcTemplate,
+                            @Value("${schema.migrations.enabled:true}") boolean enabled) throws IOException {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.migrations = load(new PathMatchingResourcePatternResolver().getResources(LOCATION));
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (enabled) migrate();
+    }
+
+    public void migrate() {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            lock(connection);
+            try {
+                migrate(connection);
+            } finally {
+                try (Statement unlock = connection.createStatement()) {
+                    unlock.execute("SELECT pg_advisory_unlock(" + ADVISORY_LOCK_KEY + ")");
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Take the migration lock, polling between attempts: a session blocked in pg_advisory_lock
+     * would keep a snapshot open, and CREATE INDEX CONCURRENTLY on the node holding the lock
+     * waits for every such snapshot to end
+     */
+    private static void lock(Connection connection) throws SQLException {
+        boolean waiting = false;
+        try (Statement lock = connection.createStatement()) {
+            while (true) {
+                try (ResultSet rs = lock.executeQuery("SELECT pg_try_advisory_lock(" + ADVISORY_LOCK_KEY + ")")) {
+                    if (rs.next() && rs.getBoolean(1)) return;
+                }
+                if (!waiting) {
+                    log.info("Waiting for another node to finish applying migrations");
+                    waiting = true;
+                }
+                try {
+                    Thread.sleep(LOCK_POLL_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the migration lock", e);
+                }
+            }
+        }
+    }
+
+    private void migrate(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS " + HISTORY_TABLE + " (version varchar(50) PRIMARY KEY, "
+                    + "description varchar(200) NOT NULL, script varchar(1000) NOT NULL, checksum bigint NOT NULL, "
+                    + "applied_at timestamp NOT NULL DEFAULT now(), execution_ms bigint NOT NULL)");
+        }
+        Map<String, Long> applied = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT version, checksum FROM " + HISTORY_TABLE)) {
+            while (rs.next()) applied.put(rs.getString(1), rs.getLong(2));
+        }
+        int count = 0;
+        for (Migration migration : migrations) {
+            Long checksum = applied.get(migration.version());
+            if (checksum == null) {
+                apply(connection, migration);
+                count++;
+            } else if (checksum != migration.checksum()) {
+                log.warn("Migration {} was changed after it was applied; add a new version instead", migration.script());
+            }
+        }
+        log.info("Schema at version {} ({} migrations applied now)",
+                migrations.isEmpty() ? "none" : migrations.get(migrations.size() - 1).version(), count);
+    }
+
+    private void apply(Connection connection, Migration migration) throws SQLException {
+        long started = System.currentTimeMillis();
+        for (String sql : migration.statements()) {
+            try {
+                dropIfInvalid(connection, sql);
+                execute(connection, sql);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Migration " + migration.script() + " failed at '" + sql + "': " + e.getMessage(), e);
+            }
+        }
+        long elapsed = System.currentTimeMillis() - started;
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + HISTORY_TABLE
+                + " (version, description, script, checksum, execution_ms) VALUES (?, ?, ?, ?, ?)")) {
+            insert.setString(1, migration.version());
+            insert.setString(2, migration.description());
+            insert.setString(3, migration.script());
+            insert.setLong(4, migration.checksum());
+            insert.setLong(5, elapsed);
+            insert.executeUpdate();
+        }
+        log.info("Applied migration {} in {} ms", migration.script(), elapsed);
+    }
+
+    /**
+     * Drop the index a CREATE INDEX IF NOT EXISTS statement names when a failed build left it
+     * INVALID, concurrently if the statement builds concurrently
+     */
+    private static void dropIfInvalid(Connection connection, String sql) throws SQLException {
+        String index = createdIndex(sql);
+        if (index == null) return;
+        boolean invalid;
+        try (PreparedStatement query = connection.prepareStatement("SELECT NOT i.indisvalid FROM pg_index i "
+                + "JOIN pg_class c ON c.oid = i.indexrelid WHERE c.relname = ? AND c.relnamespace = to_regnamespace(current_schema())")) {
+            query.setString(1, index.toLowerCase());
+            try (ResultSet rs = query.executeQuery()) {
+                invalid = rs.next() && rs.getBoolean(1);
+            }
+        }
+        if (invalid) {
+            log.warn("Dropping invalid index {} left by a failed build", index);
+            boolean concurrently = !sql.equals(withoutConcurrently(sql));
+            execute(connection, "DROP INDEX " + (concurrently ? "CONCURRENTLY " : "") + "IF EXISTS " + index);
+        }
+    }
+
+    /**
+     * Name of the index a CREATE INDEX IF NOT EXISTS statement builds, null for other statements
+     */
+    static String createdIndex(String sql) {
+        Matcher m = CREATE_INDEX_IF_NOT_EXISTS.matcher(sql);
+        return m.matches() ? m.group(1) : null;
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        } catch (SQLException e) {
+            String message = String.valueOf(e.getMessage());
+            if (!sql.equals(withoutConcurrently(sql)) && message.contains("partitioned")) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(withoutConcurrently(sql));
+                }
+            } else {
+                throw e;
+            }
+        }
+    }
+
+    static String withoutConcurrently(String sql) {
+        return sql.replaceFirst("(?i)\\s+CONCURRENTLY\\b", "");
+    }
+
+    static List<Migration> load(Resource[] resources) throws IOException {
+        List<Migration> migrations = new ArrayList<>();
+        for (Resource resource : resources) {
+            String name = resource.getFilename();
+            Matcher m = name != null ? FILE_NAME.matcher(name) : null;
+            if (m == null || !m.matches()) {
+                log.warn("Ignoring migration with an unexpected name: {}", name);
+                continue;
+            }
+            byte[] bytes;
+            try (InputStream in = resource.getInputStream()) {
+                bytes = in.readAllBytes();
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            migrations.add(new Migration(m.group(1), m.group(2).replace('_', ' '), name,
+                    split(new String(bytes, StandardCharsets.UTF_8)), crc.getValue()));
+        }
+        migrations.sort(Comparator.comparing(Migration::versionParts, Arrays::compare));
+        for (int i = 1; i < migrations.size(); i++) {
+            if (Arrays.equals(migrations.get(i - 1).versionParts(), migrations.get(i).versionParts())) {
+                throw new IllegalStateException("Duplicate migration version " + migrations.get(i).version());
+            }
+        }
+        return migrations;
+    }
+
+    /**
+     * Split a script on semicolons, dropping {@code --} comments; quoted literals and
+     * dollar-quoted bodies such as {@code DO $$ ... $$} are kept intact
+     */
+    static List<String> split(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        String dollarTag = null;
+        for (int i = 0; i < script.length(); i++) {
+            char c = script.charAt(i);
+            if (dollarTag != null) {
+                if (script.startsWith(dollarTag, i)) {
+                    current.append(dollarTag);
+                    i += dollarTag.length() - 1;
+                    dollarTag = null;
+                } else {
+                    current.append(c);
+                }
+                continue;
+            }
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (!quoted && c == '$') {
+                Matcher tag = DOLLAR_TAG.matcher(script).region(i, script.length());
+                if (tag.lookingAt()) {
+                    dollarTag = tag.group();
+                    current.append(dollarTag);
+                    i += dollarTag.length() - 1;
+                    continue;
+                }
+            } else if (!quoted && c == '-' && i + 1 < script.length() && script.charAt(i + 1) == '-') {
+                while (i < script.length() && script.charAt(i) != '\n') i++;
+                current.append('\n');
+                continue;
+            } else if (!quoted && c == ';') {
+                add(statements, current);
+                continue;
+            }
+            current.append(c);
+        }
+        add(statements, current);
+        return statements;
+    }
+
+    private static void add(List<String> statements, StringBuilder current) {
+        String statement = current.toString().strip();
+        if (!statement.isEmpty()) statements.add(statement);
+        current.setLength(0);
+    }
+}
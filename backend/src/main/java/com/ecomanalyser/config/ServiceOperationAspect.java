@@ -0,0 +1,31 @@
+package com.ecomanalyser.config;
+
+import com.ecomanalyser.service.OperationMetrics;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records {@link OperationMetrics} around every public method of the analytics and import
+ * services. Only calls through the Spring proxy are seen, so a service calling its own methods
+ * is measured once, as the outer call.
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class ServiceOperationAspect {
+
+    private final OperationMetrics operationMetrics;
+
+    @Around("execution(public * com.ecomanalyser.service.AnalyticsService.*(..))"
+            + " || execution(public * com.ecomanalyser.service.SkuGroupService.*(..))"
+            + " || execution(public * com.ecomanalyser.service.DataMergeService.*(..))"
+            + " || execution(public * com.ecomanalyser.service.ExcelImportService.*(..))"
+            + " || execution(public * com.ecomanalyser.service.FileIngestionService.*(..))")
+    public Object record(ProceedingJoinPoint call) throws Throwable {
+        return operationMetrics.record(call.getSignature().getDeclaringType().getSimpleName(),
+                call.getSignature().getName(), call::proceed);
+    }
+}
@@ -0,0 +1,77 @@
+package com.ecomanalyser.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts the SQL statements Hibernate prepares on each thread, registered as the session
+ * factory's statement inspector in application.yml. Statements issued through JdbcTemplate are
+ * not seen. Callers {@link #open()} a scope around a unit of work, which counts its statements
+ * and how often each one repeats.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<Scope> SCOPE = new ThreadLocal<>();
+
+    /**
+     * Statements prepared on this thread while a scope is open. Scopes nest; a statement counts
+     * towards every open scope of its thread.
+     */
+    public static final class Scope implements AutoCloseable {
+        private final Scope parent;
+        private final Map<String, Integer> bySql = new HashMap<>();
+        private long statements;
+        private boolean closed;
+
+        private Scope(Scope parent) {
+            this.parent = parent;
+        }
+
+        public long statements() {
+            return statements;
+        }
+
+        /**
+         * The statement prepared most often in this scope and how often, null if none was.
+         * The same statement run again and again with other parameters is the signature of an
+         * N+1 access pattern.
+         */
+        public Map.Entry<String, Integer> mostRepeated() {
+            Map.Entry<String, Integer> most = null;
+            for (Map.Entry<String, Integer> e : bySql.entrySet()) {
+                if (most == null || e.getValue() > most.getValue()) most = e;
+            }
+            return most == null ? null : Map.entry(most.getKey(), most.getValue());
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            if (SCOPE.get() == this) {
+                if (parent != null) SCOPE.set(parent);
+                else SCOPE.remove();
+            }
+        }
+    }
+
+    /**
+     * Start counting the statements of a unit of work on this thread; close it when done
+     */
+    public static Scope open() {
+        Scope scope = new Scope(SCOPE.get());
+        SCOPE.set(scope);
+        return scope;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        for (Scope scope = SCOPE.get(); scope != null; scope = scope.parent) {
+            scope.statements++;
+            scope.bySql.merge(sql, 1, Integer::sum);
+        }
+        return sql;
+    }
+}
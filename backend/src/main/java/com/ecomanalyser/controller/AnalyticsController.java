@@ -1,8 +1,13 @@
 package com.ecomanalyser.controller;
 
+import com.ecomanalyser.dto.AnalyticsBatchRequest;
 import com.ecomanalyser.dto.ChartResponse;
+import com.ecomanalyser.dto.PivotRequest;
 import com.ecomanalyser.dto.TimeSeriesPoint;
+import com.ecomanalyser.service.AnalyticsBatchService;
 import com.ecomanalyser.service.AnalyticsService;
+import com.ecomanalyser.service.MergedOrderPivotService;
+import com.ecomanalyser.service.SkuLeaderboard;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
@@ -26,6 +31,8 @@ public class AnalyticsController {
     private static final Logger log = LoggerFactory.getLogger(AnalyticsController.class);
     private final AnalyticsService analyticsService;
     private final OrderRepository orderRepository;
+    private final AnalyticsBatchService analyticsBatchService;
+    private final MergedOrderPivotService pivotService;
 
     @GetMapping("/orders-by-time")
     public ChartResponse<TimeSeriesPoint> ordersByTime(
@@ -44,6 +51,11 @@ public class AnalyticsController {
         return analyticsService.getMonthlySummary(year, month);
     }
 
+    @GetMapping("/monthly-summaries")
+    public List<Map<String, Object>> yearSummaries(@RequestParam("year") int year) {
+        return analyticsService.getYearSummaries(year);
+    }
+
     @GetMapping("/monthly-diagnostics")
     public Map<String, Object> monthlyDiagnostics(
             @RequestParam("year") int year,
@@ -65,17 +77,23 @@ public class AnalyticsController {
     public List<Map<String, Object>> topOrdered(
             @RequestParam("start") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate start,
             @RequestParam("end") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate end,
-            @RequestParam(value = "limit", defaultValue = "10") int limit
+            @RequestParam(value = "limit", defaultValue = "10") int limit,
+            @RequestParam(value = "approximate", defaultValue = "false") boolean approximate
     ) {
-        return analyticsService.topOrderedSkus(start, end, limit);
+        return approximate
+                ? analyticsService.approximateTopSkus(SkuLeaderboard.Metric.QUANTITY, start, end, limit)
+                : analyticsService.topOrderedSkus(start, end, limit);
     }
 
     @GetMapping("/top-profitable")
     public List<Map<String, Object>> topProfitableSkus(
             @RequestParam("start") LocalDate start,
             @RequestParam("end") LocalDate end,
-            @RequestParam(value = "limit", defaultValue = "10") int limit) {
-        return analyticsService.topProfitableSkus(start, end, limit);
+            @RequestParam(value = "limit", defaultValue = "10") int limit,
+            @RequestParam(value = "approximate", defaultValue = "false") boolean approximate) {
+        return approximate
+                ? analyticsService.approximateTopSkus(SkuLeaderboard.Metric.REVENUE, start, end, limit)
+                : analyticsService.topProfitableSkus(start, end, limit);
     }
 
     @GetMapping("/orders-by-status")
@@ -171,6 +189,54 @@ public class AnalyticsController {
         }
     }
 
+    /**
+     * Ad-hoc breakdown of merged orders by whitelisted dimensions and measures
+     */
+    @PostMapping("/pivot")
+    public ResponseEntity<Map<String, Object>> pivot(@RequestBody PivotRequest request) {
+        try {
+            return ResponseEntity.ok(pivotService.pivot(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error executing pivot query: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Several analytics queries in one call; queries over the same range share one scan
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Object>> batch(@RequestBody AnalyticsBatchRequest request) {
+        try {
+            return ResponseEntity.ok(analyticsBatchService.execute(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error executing analytics batch: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * All dashboard metrics for a range in one call: summary, loss orders, return analysis,
+     * loss metrics and profit/loss trends, computed in a single pass
+     */
+    @GetMapping("/dashboard")
+    public ResponseEntity<Map<String, Object>> getDashboard(
+            @RequestParam("start") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate start,
+            @RequestParam("end") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate end,
+            @RequestParam(value = "agg", defaultValue = "DAY") AnalyticsService.Aggregation agg) {
+        try {
+            var result = analyticsService.getDashboard(start, end, agg);
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            log.error("Error getting dashboard metrics: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     @GetMapping("/debug/orders")
     public Map<String, Object> debugOrders() {
         Map<String, Object> debug = new HashMap<>();
@@ -1,16 +1,31 @@
 package com.ecomanalyser.controller;
 
 import com.ecomanalyser.service.DataMergeService;
+import com.ecomanalyser.service.MergedOrderExportService;
+import com.ecomanalyser.service.MergedOrderPageService;
+import com.ecomanalyser.service.MergeRebuildCoordinator;
+import com.ecomanalyser.service.MergeRebuildJob;
 import com.ecomanalyser.domain.MergedOrderPaymentEntity;
 import com.ecomanalyser.repository.MergedOrderPaymentRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/data-merge")
@@ -19,7 +34,10 @@ import java.util.HashMap;
 public class DataMergeController {
 
     private final DataMergeService dataMergeService;
+    private final MergeRebuildCoordinator mergeRebuildCoordinator;
     private final MergedOrderPaymentRepository mergedOrderPaymentRepository;
+    private final MergedOrderPageService mergedOrderPageService;
+    private final MergedOrderExportService mergedOrderExportService;
 
     /**
      * Get merged orders and payments data from merged_orders table
@@ -72,22 +90,67 @@ public class DataMergeController {
     }
 
     /**
-     * Rebuild merged table from orders and payments
+     * Start a background rebuild of the merged table (or attach to the one already running)
+     * and return its job handle
      */
     @PostMapping("/rebuild")
     public ResponseEntity<Map<String, Object>> rebuildMergedTable() {
         try {
-            int count = dataMergeService.rebuildMergedTable();
-            return ResponseEntity.ok(java.util.Map.of(
-                    "message", "Merged table rebuilt",
-                    "records", count
-            ));
+            MergeRebuildJob job = mergeRebuildCoordinator.submit();
+            return ResponseEntity.accepted().body(toJobResponse(job));
+        } catch (RejectedExecutionException e) {
+            log.warn("Rebuild executor is saturated: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         } catch (Exception e) {
-            log.error("Error rebuilding merged table: {}", e.getMessage(), e);
+            log.error("Error starting merged table rebuild: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError().build();
         }
     }
 
+    /**
+     * Progress of a rebuild job
+     */
+    @GetMapping("/rebuild/{jobId}")
+    public ResponseEntity<Map<String, Object>> getRebuildStatus(@PathVariable String jobId) {
+        return mergeRebuildCoordinator.getJob(jobId)
+                .map(job -> ResponseEntity.ok(toJobResponse(job)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Cancel a running rebuild job; merged_orders is left as it was before the rebuild
+     */
+    @PostMapping("/rebuild/{jobId}/cancel")
+    public ResponseEntity<Map<String, Object>> cancelRebuild(@PathVariable String jobId) {
+        Optional<MergeRebuildJob> job = mergeRebuildCoordinator.getJob(jobId);
+        if (job.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        boolean cancelled = mergeRebuildCoordinator.cancel(jobId);
+        Map<String, Object> response = toJobResponse(job.get());
+        response.put("cancelRequested", cancelled || job.get().isCancelRequested());
+        return ResponseEntity.ok(response);
+    }
+
+    private Map<String, Object> toJobResponse(MergeRebuildJob job) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("jobId", job.getId());
+        response.put("phase", job.getPhase().name());
+        response.put("rowsLoaded", job.getRowsLoaded());
+        response.put("rowsMerged", job.getRowsMerged());
+        response.put("rowsWritten", job.getRowsWritten());
+        response.put("totalOrders", job.getTotalOrders());
+        response.put("elapsedMs", job.getElapsed().toMillis());
+        Duration eta = job.getEta();
+        response.put("etaMs", eta != null ? eta.toMillis() : null);
+        response.put("submittedAt", job.getSubmittedAt().toString());
+        response.put("finishedAt", job.getFinishedAt() != null ? job.getFinishedAt().toString() : null);
+        response.put("records", job.getResult());
+        response.put("error", job.getError());
+        response.put("node", mergeRebuildCoordinator.getNodeId());
+        return response;
+    }
+
     /**
      * Simple test endpoint to check if data can be retrieved
      */
@@ -108,57 +171,57 @@ public class DataMergeController {
     }
 
     /**
-     * Get merged data with pagination
+     * Stream merged orders as NDJSON (default) or CSV, optionally filtered by order date range,
+     * status and SKU. Rows are written from a database cursor as they are read.
+     */
+    @GetMapping("/merged-data/export")
+    public ResponseEntity<StreamingResponseBody> exportMergedData(
+            @RequestParam(value = "format", defaultValue = "ndjson") String format,
+            @RequestParam(value = "startDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(value = "endDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(value = "status", required = false) String status,
+            @RequestParam(value = "sku", required = false) String sku) {
+        MergedOrderExportService.Format exportFormat;
+        try {
+            exportFormat = MergedOrderExportService.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        log.info("Exporting merged data as {} - startDate: {}, endDate: {}, status: {}, sku: {}", exportFormat, startDate, endDate, status, sku);
+
+        StreamingResponseBody body = out -> mergedOrderExportService.export(exportFormat, startDate, endDate, status, sku, out);
+        if (exportFormat == MergedOrderExportService.Format.CSV) {
+            return ResponseEntity.ok()
+                    .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"merged-orders.csv\"")
+                    .body(body);
+        }
+        return ResponseEntity.ok()
+                .contentType(new MediaType("application", "x-ndjson", StandardCharsets.UTF_8))
+                .body(body);
+    }
+
+    /**
+     * Get merged data with pagination and optional search, paged in the database.
+     * Pass the returned nextCursor to fetch the following page through the keyset index.
+     * totalRecords is estimated by default (count=approx); count=exact counts every row and
+     * count=none skips counting.
      */
     @GetMapping("/merged-data/paginated")
     public ResponseEntity<Map<String, Object>> getMergedDataPaginated(
-            @RequestParam("page") int page,
+            @RequestParam(value = "page", defaultValue = "0") int page,
             @RequestParam("size") int size,
-            @RequestParam(value = "q", required = false) String query) {
+            @RequestParam(value = "q", required = false) String query,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "count", defaultValue = "approx") String count) {
         try {
-            log.info("Requesting merged data with pagination - page: {}, size: {}, query: {}", page, size, query);
+            log.info("Requesting merged data with pagination - page: {}, size: {}, query: {}, cursor: {}", page, size, query, cursor);
 
-            // Read from merged_orders for consistency
-            List<MergedOrderPaymentEntity> allEntities = mergedOrderPaymentRepository.findAllFromMergedOrders();
-
-            // Optional search across orderId, skuId and orderStatus
-            List<MergedOrderPaymentEntity> filteredEntities = allEntities;
-            if (query != null && !query.trim().isEmpty()) {
-                String qLower = query.trim().toLowerCase();
-                filteredEntities = allEntities.stream()
-                        .filter(e ->
-                                (e.getOrderId() != null && e.getOrderId().toLowerCase().contains(qLower)) ||
-                                (e.getSkuId() != null && e.getSkuId().toLowerCase().contains(qLower)) ||
-                                (e.getOrderStatus() != null && e.getOrderStatus().toLowerCase().contains(qLower))
-                        )
-                        .toList();
-            }
-
-            int totalRecords = filteredEntities.size();
-            int totalPages = (int) Math.ceil((double) totalRecords / size);
-            
-            // Validate page number
-            if (page < 0) {
-                page = 0;
-            }
-            if (page >= totalPages && totalPages > 0) {
-                page = totalPages - 1;
-            }
-            
-            // Apply pagination
-            int startIndex = page * size;
-            int endIndex = Math.min(startIndex + size, totalRecords);
-            
-            // Ensure indices are valid
-            if (startIndex >= totalRecords) {
-                startIndex = 0;
-                endIndex = Math.min(size, totalRecords);
-            }
-            
-            List<MergedOrderPaymentEntity> pageSlice = filteredEntities.subList(startIndex, endIndex);
+            MergedOrderPageService.CountMode countMode = MergedOrderPageService.CountMode.valueOf(count.toUpperCase());
+            MergedOrderPageService.Page result = mergedOrderPageService.page(page, size, query, cursor, countMode);
 
             // Map to UI-expected structure
-            List<Map<String, Object>> paginatedData = pageSlice.stream()
+            List<Map<String, Object>> paginatedData = result.rows().stream()
                     .map(entity -> {
                         Map<String, Object> mapped = new HashMap<>();
                         mapped.put("orderId", entity.getOrderId());
@@ -172,19 +235,28 @@ public class DataMergeController {
                         return mapped;
                     })
                     .toList();
-            
+
             // Build response with full data structure
             Map<String, Object> response = new HashMap<>();
             response.put("data", paginatedData);
-            response.put("totalRecords", totalRecords);
-            response.put("pageSize", size);
-            response.put("currentPage", page);
-            response.put("totalPages", totalPages);
-            response.put("hasNext", page < totalPages - 1);
-            response.put("hasPrevious", page > 0);
-            
-            log.info("Successfully retrieved paginated merged data - page {} of {} (filteredRecords={})", page + 1, totalPages, totalRecords);
+            response.put("pageSize", result.size());
+            response.put("currentPage", result.page());
+            response.put("hasNext", result.hasNext());
+            response.put("hasPrevious", result.page() > 0 || cursor != null);
+            response.put("nextCursor", result.nextCursor());
+            if (result.totalRecords() != null) {
+                long totalRecords = result.totalRecords();
+                response.put("totalRecords", totalRecords);
+                response.put("totalPages", (totalRecords + result.size() - 1) / result.size());
+                response.put("totalRecordsApproximate", result.approximate());
+            }
+
+            log.info("Successfully retrieved paginated merged data - page {} ({} rows, totalRecords={})",
+                    result.page() + 1, paginatedData.size(), result.totalRecords());
             return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            log.warn("Rejected merged data page request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             log.error("Error retrieving paginated merged data: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError().build();
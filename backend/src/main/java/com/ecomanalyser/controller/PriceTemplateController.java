@@ -1,7 +1,7 @@
 package com.ecomanalyser.controller;
 
 import com.ecomanalyser.repository.OrderRepository;
-import com.ecomanalyser.repository.SkuPriceRepository;
+import com.ecomanalyser.service.SkuPriceCatalog;
 import lombok.RequiredArgsConstructor;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
@@ -24,13 +24,15 @@ import java.util.stream.Collectors;
 public class PriceTemplateController {
 
     private final OrderRepository orderRepository;
-    private final SkuPriceRepository skuPriceRepository;
+    private final SkuPriceCatalog priceCatalog;
 
     @GetMapping("/template")
     public ResponseEntity<byte[]> downloadTemplate() throws Exception {
         var orders = orderRepository.findAll();
         var uniqueSkus = orders.stream().map(o -> o.getSku()).collect(Collectors.toCollection(LinkedHashSet::new));
 
+        var prices = priceCatalog.current();
+
         try (var wb = new XSSFWorkbook()) {
             Sheet sh = wb.createSheet("SkuPrices");
             Row h = sh.createRow(0);
@@ -41,10 +43,8 @@ public class PriceTemplateController {
                 Row row = sh.createRow(r++);
                 row.createCell(0).setCellValue(sku);
                 
-                // Get existing purchase price from database, or 0.0 if not found
-                BigDecimal existingPrice = skuPriceRepository.findBySku(sku)
-                        .map(sp -> sp.getPurchasePrice())
-                        .orElse(BigDecimal.ZERO);
+                // Get existing purchase price from the catalog, or 0.0 if not found
+                BigDecimal existingPrice = prices.skuPrice(sku);
                 
                 row.createCell(1).setCellValue(existingPrice.doubleValue());
             }
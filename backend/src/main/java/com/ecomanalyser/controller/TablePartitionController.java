@@ -0,0 +1,63 @@
+package com.ecomanalyser.controller;
+
+import com.ecomanalyser.service.TablePartitionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/partitions")
+@RequiredArgsConstructor
+@Slf4j
+public class TablePartitionController {
+
+    private final TablePartitionService tablePartitionService;
+
+    /**
+     * Monthly partitions of merged_orders
+     */
+    @GetMapping("/{table}")
+    public ResponseEntity<?> partitions(@PathVariable("table") String table) {
+        try {
+            List<Map<String, Object>> partitions = tablePartitionService.partitions(table);
+            return ResponseEntity.ok(Map.of("table", table, "partitioned", tablePartitionService.isPartitioned(table),
+                    "partitions", partitions));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error listing partitions of {}: {}", table, e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Detach a past month (yyyy-MM) for archiving; the partition remains as a standalone table
+     */
+    @PostMapping("/{table}/{month}/detach")
+    public ResponseEntity<Map<String, Object>> detach(@PathVariable("table") String table, @PathVariable("month") String month) {
+        try {
+            String detached = tablePartitionService.detach(table, YearMonth.parse(month));
+            return ResponseEntity.ok(Map.of("table", table, "detached", detached));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error detaching {} of {}: {}", month, table, e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Create the partitions of the coming months now instead of waiting for the daily run
+     */
+    @PostMapping("/create-ahead")
+    public ResponseEntity<Map<String, Object>> createAhead() {
+        tablePartitionService.createMonthsAhead();
+        return ResponseEntity.ok(Map.of("success", true));
+    }
+}
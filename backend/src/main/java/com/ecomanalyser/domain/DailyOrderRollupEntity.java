@@ -0,0 +1,70 @@
+package com.ecomanalyser.domain;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * One row per (order date, SKU, status, state) summarising merged_orders.
+ * Maintained by {@link com.ecomanalyser.service.DailyOrderRollupService}; never written row by row.
+ */
+@Entity
+@Table(name = "daily_order_rollup", indexes = {
+        @Index(name = "idx_daily_rollup_date", columnList = "order_date"),
+        @Index(name = "idx_daily_rollup_sku", columnList = "sku_id")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyOrderRollupEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "order_date", nullable = false)
+    private LocalDate orderDate;
+
+    @Column(name = "sku_id")
+    private String skuId;
+
+    @Column(name = "order_status")
+    private String orderStatus;
+
+    @Column(name = "state")
+    private String state;
+
+    @Column(name = "order_count", nullable = false)
+    private long orderCount;
+
+    @Column(name = "quantity", nullable = false)
+    private long quantity;
+
+    @Column(name = "settlement_sum", nullable = false)
+    private BigDecimal settlementSum;
+
+    // Sum of positive settlements (revenue)
+    @Column(name = "positive_settlement_sum", nullable = false)
+    private BigDecimal positiveSettlementSum;
+
+    // Sum of negative settlements (refunds / return charges), negative
+    @Column(name = "negative_settlement_sum", nullable = false)
+    private BigDecimal negativeSettlementSum;
+
+    @Column(name = "cogs_sum", nullable = false)
+    private BigDecimal cogsSum;
+
+    // Net profit of positive settlements that made a profit
+    @Column(name = "profit_sum", nullable = false)
+    private BigDecimal profitSum;
+
+    // Net profit of positive settlements that did not cover COGS, negative
+    @Column(name = "loss_sum", nullable = false)
+    private BigDecimal lossSum;
+}
@@ -0,0 +1,48 @@
+package com.ecomanalyser.domain;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lease row guarding merged_orders rebuilds across application nodes.
+ * holder/leaseUntil are set while a node rebuilds; generation is bumped on every release
+ * so waiting nodes can tell that the rebuild they joined has finished.
+ */
+@Entity
+@Table(name = "merge_rebuild_lock")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MergeRebuildLockEntity {
+
+    @Id
+    @Column(name = "lock_name", length = 64)
+    private String lockName;
+
+    @Column(name = "holder")
+    private String holder;
+
+    @Column(name = "acquired_at")
+    private LocalDateTime acquiredAt;
+
+    @Column(name = "lease_until")
+    private LocalDateTime leaseUntil;
+
+    @Column(name = "generation", nullable = false)
+    private long generation;
+
+    @Column(name = "last_result")
+    private Integer lastResult;
+
+    @Column(name = "last_status", length = 16)
+    private String lastStatus;
+
+    @Column(name = "last_completed_at")
+    private LocalDateTime lastCompletedAt;
+}
@@ -63,6 +63,22 @@ public class MergedOrderPaymentEntity {
     // 12. Price Type
     @Column(name = "price_type")
     private String priceType;
+
+    // 13. Purchase price per unit (SKU group price first, then SKU price); null when unpriced
+    @Column(name = "purchase_price")
+    private BigDecimal purchasePrice;
+
+    // 14. COGS: purchasePrice * quantity
+    @Column(name = "cogs")
+    private BigDecimal cogs;
+
+    // 15. Net profit: settlementAmount - cogs
+    @Column(name = "net_profit")
+    private BigDecimal netProfit;
+
+    // 16. Loss classification, see MergedOrderCostService; null until the row has been stamped
+    @Column(name = "loss_category", length = 32)
+    private String lossCategory;
 }
 
 
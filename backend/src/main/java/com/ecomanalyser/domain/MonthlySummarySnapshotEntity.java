@@ -0,0 +1,45 @@
+package com.ecomanalyser.domain;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Stored monthly summary totals of a closed month, in paise. Deleted by any merge that changes
+ * the month's rows; maintained by {@link com.ecomanalyser.service.MonthlySummarySnapshots}.
+ */
+@Entity
+@Table(name = "monthly_summary_snapshot")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MonthlySummarySnapshotEntity {
+
+    // yyyyMM
+    @Id
+    @Column(name = "period")
+    private Integer period;
+
+    @Column(name = "order_count", nullable = false)
+    private long orderCount;
+
+    @Column(name = "revenue_paise", nullable = false)
+    private long revenuePaise;
+
+    @Column(name = "delivered_profit_paise", nullable = false)
+    private long deliveredProfitPaise;
+
+    @Column(name = "delivered_loss_paise", nullable = false)
+    private long deliveredLossPaise;
+
+    @Column(name = "return_loss_paise", nullable = false)
+    private long returnLossPaise;
+
+    @Column(name = "computed_at", nullable = false)
+    private LocalDateTime computedAt;
+}
@@ -0,0 +1,44 @@
+package com.ecomanalyser.dto;
+
+import com.ecomanalyser.service.AnalyticsService;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Body of POST /api/analytics/batch: several metrics, by default over one shared range.
+ * A query may override the range and aggregation; queries over the same range are answered
+ * from one scan.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalyticsBatchRequest {
+
+    private LocalDate start;
+    private LocalDate end;
+    private AnalyticsService.Aggregation agg;
+    private List<Query> queries;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Query {
+        /** Key of this result in the response; defaults to the metric name */
+        private String id;
+        private String metric;
+        private LocalDate start;
+        private LocalDate end;
+        private AnalyticsService.Aggregation agg;
+        private Integer limit;
+        // monthlySummary only
+        private Integer year;
+        private Integer month;
+    }
+}
@@ -0,0 +1,12 @@
+package com.ecomanalyser.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * The merged_orders columns listed by the loss and return analyses
+ */
+public record MergedOrderLossRow(String orderId, String skuId, Integer quantity, BigDecimal settlementAmount,
+                                 BigDecimal purchasePrice, BigDecimal cogs, BigDecimal netProfit,
+                                 String orderStatus, LocalDate orderDate, String lossCategory) {
+}
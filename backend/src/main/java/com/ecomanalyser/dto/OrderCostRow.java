@@ -0,0 +1,10 @@
+package com.ecomanalyser.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * The order columns needed to cost an order, instead of the full OrderEntity
+ */
+public record OrderCostRow(String orderId, String sku, Integer quantity,
+                           BigDecimal supplierDiscountedPrice, BigDecimal supplierListedPrice) {
+}
@@ -0,0 +1,10 @@
+package com.ecomanalyser.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * The payment columns read by payment analytics, instead of the full PaymentEntity
+ */
+public record PaymentAmountRow(String orderId, String sku, LocalDateTime paymentDateTime, BigDecimal amount) {
+}
@@ -0,0 +1,36 @@
+package com.ecomanalyser.dto;
+
+import com.ecomanalyser.service.AnalyticsService;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Body of POST /api/analytics/pivot. Dimension and measure names are those of
+ * {@code MergedOrderPivotService.Dimension} and {@code Measure}, in camelCase or upper case.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PivotRequest {
+
+    private LocalDate start;
+    private LocalDate end;
+    /** Bucket size of the orderDate dimension; defaults to DAY */
+    private AnalyticsService.Aggregation agg;
+    private List<String> dimensions;
+    private List<String> measures;
+    /** Dimension -> accepted values; a null value in the list matches rows without one */
+    private Map<String, List<String>> filters;
+    /** Subsets of dimensions to total separately, as SQL GROUPING SETS; defaults to all dimensions */
+    private List<List<String>> groupingSets;
+    /** Measure to sort by, largest first; rows are sorted by dimension values otherwise */
+    private String orderBy;
+    private Integer limit;
+}
@@ -0,0 +1,18 @@
+package com.ecomanalyser.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Published by {@code DataEpoch} when it sees that another node committed a change to a data
+ * set. {@code dataSet} is one of the {@code DataEpoch} data set names.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DataVersionChangedEvent {
+
+    private String dataSet;
+    private long version;
+}
@@ -0,0 +1,27 @@
+package com.ecomanalyser.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Set;
+
+/**
+ * Published inside the transaction that rewrites merged_orders rows. {@code skus} lists the
+ * SKUs whose rows changed, or is null when the whole table was rebuilt.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MergedOrdersChangedEvent {
+
+    private Set<String> skus;
+
+    public static MergedOrdersChangedEvent rebuilt() {
+        return new MergedOrdersChangedEvent(null);
+    }
+
+    public boolean isFullRebuild() {
+        return skus == null;
+    }
+}
@@ -0,0 +1,17 @@
+package com.ecomanalyser.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Published inside the transaction of a payments upload, which inserts and updates payments
+ * rows directly
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentsImportedEvent {
+
+    private String fileName;
+}
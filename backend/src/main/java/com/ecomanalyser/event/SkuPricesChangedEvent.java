@@ -0,0 +1,19 @@
+package com.ecomanalyser.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Set;
+
+/**
+ * Published when SKU prices, groups or group assignments change. {@code skus} holds the SKUs
+ * whose resolved purchase price changed; it may be empty when only group names moved.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SkuPricesChangedEvent {
+
+    private Set<String> skus;
+}
@@ -0,0 +1,72 @@
+package com.ecomanalyser.repository;
+
+import com.ecomanalyser.domain.DailyOrderRollupEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+public interface DailyOrderRollupRepository extends JpaRepository<DailyOrderRollupEntity, Long> {
+
+    String ROLLUP_INSERT =
+            "INSERT INTO daily_order_rollup (order_date, sku_id, order_status, state, order_count, quantity, " +
+            "settlement_sum, positive_settlement_sum, negative_settlement_sum, cogs_sum, profit_sum, loss_sum) " +
+            "SELECT order_date, sku_id, order_status, state, COUNT(*), COALESCE(SUM(quantity), 0), " +
+            "COALESCE(SUM(settlement_amount), 0), " +
+            "COALESCE(SUM(CASE WHEN settlement_amount > 0 THEN settlement_amount END), 0), " +
+            "COALESCE(SUM(CASE WHEN settlement_amount < 0 THEN settlement_amount END), 0), " +
+            "COALESCE(SUM(cogs), 0), " +
+            "COALESCE(SUM(CASE WHEN settlement_amount > 0 AND net_profit > 0 THEN net_profit END), 0), " +
+            "COALESCE(SUM(CASE WHEN settlement_amount > 0 AND net_profit < 0 THEN net_profit END), 0) " +
+            "FROM merged_orders WHERE order_date IS NOT NULL ";
+    String ROLLUP_SKU_FILTER = "AND sku_id IN (:skus) ";
+    String ROLLUP_GROUP_BY = "GROUP BY order_date, sku_id, order_status, state";
+
+    // Maintenance: full rebuild and per-SKU refresh from merged_orders
+    @Modifying
+    @Query(value = "DELETE FROM daily_order_rollup", nativeQuery = true)
+    int deleteAllRows();
+
+    @Modifying
+    @Query(value = ROLLUP_INSERT + ROLLUP_GROUP_BY, nativeQuery = true)
+    int insertAllFromMergedOrders();
+
+    @Modifying
+    @Query(value = "DELETE FROM daily_order_rollup WHERE sku_id IN (:skus)", nativeQuery = true)
+    int deleteBySkuIds(@Param("skus") Collection<String> skus);
+
+    @Modifying
+    @Query(value = ROLLUP_INSERT + ROLLUP_SKU_FILTER + ROLLUP_GROUP_BY, nativeQuery = true)
+    int insertFromMergedOrdersForSkus(@Param("skus") Collection<String> skus);
+
+    @Query("SELECT COALESCE(SUM(r.orderCount), 0) FROM DailyOrderRollupEntity r")
+    long sumOrderCount();
+
+    // Reads
+    @Query("SELECT r.orderDate, SUM(r.orderCount) FROM DailyOrderRollupEntity r " +
+           "WHERE r.orderDate BETWEEN :start AND :end GROUP BY r.orderDate")
+    List<Object[]> sumOrderCountByOrderDate(@Param("start") LocalDate start, @Param("end") LocalDate end);
+
+    @Query("SELECT r.orderDate, SUM(r.profitSum) FROM DailyOrderRollupEntity r " +
+           "WHERE r.orderDate BETWEEN :start AND :end GROUP BY r.orderDate HAVING SUM(r.profitSum) <> 0")
+    List<Object[]> sumProfitByOrderDate(@Param("start") LocalDate start, @Param("end") LocalDate end);
+
+    // Loss sums are negative
+    @Query("SELECT r.orderDate, SUM(r.lossSum) FROM DailyOrderRollupEntity r " +
+           "WHERE r.orderDate BETWEEN :start AND :end GROUP BY r.orderDate HAVING SUM(r.lossSum) <> 0")
+    List<Object[]> sumLossByOrderDate(@Param("start") LocalDate start, @Param("end") LocalDate end);
+
+    @Query("SELECT r.orderStatus, SUM(r.orderCount) FROM DailyOrderRollupEntity r " +
+           "WHERE r.orderDate BETWEEN :start AND :end GROUP BY r.orderStatus")
+    List<Object[]> sumOrderCountByStatus(@Param("start") LocalDate start, @Param("end") LocalDate end);
+
+    @Query("SELECT r.skuId, SUM(r.quantity) as totalQuantity FROM DailyOrderRollupEntity r " +
+           "WHERE r.orderDate BETWEEN :start AND :end AND r.skuId IS NOT NULL " +
+           "GROUP BY r.skuId ORDER BY totalQuantity DESC")
+    List<Object[]> findTopOrderedSkus(@Param("start") LocalDate start, @Param("end") LocalDate end, Pageable page);
+}
@@ -0,0 +1,54 @@
+package com.ecomanalyser.repository;
+
+import com.ecomanalyser.domain.MergeRebuildLockEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * Lease lock statements. All time checks use the database clock so nodes with skewed
+ * clocks still agree on when a lease has expired.
+ */
+public interface MergeRebuildLockRepository extends JpaRepository<MergeRebuildLockEntity, String> {
+
+    @Modifying
+    @Query(value = "INSERT INTO merge_rebuild_lock (lock_name, generation) VALUES (:name, 0) " +
+                   "ON CONFLICT (lock_name) DO NOTHING", nativeQuery = true)
+    int ensureLock(@Param("name") String name);
+
+    @Modifying
+    @Query(value = "UPDATE merge_rebuild_lock SET holder = :holder, acquired_at = now(), " +
+                   "lease_until = now() + make_interval(secs => :leaseSeconds) " +
+                   "WHERE lock_name = :name AND (holder IS NULL OR lease_until < now())", nativeQuery = true)
+    int tryAcquire(@Param("name") String name, @Param("holder") String holder, @Param("leaseSeconds") long leaseSeconds);
+
+    @Modifying
+    @Query(value = "UPDATE merge_rebuild_lock SET lease_until = now() + make_interval(secs => :leaseSeconds) " +
+                   "WHERE lock_name = :name AND holder = :holder", nativeQuery = true)
+    int renew(@Param("name") String name, @Param("holder") String holder, @Param("leaseSeconds") long leaseSeconds);
+
+    /**
+     * Renew the lease only if it has not run out yet. Run inside the rebuild transaction right
+     * before its commit; clock_timestamp() because now() is frozen at the start of that long
+     * transaction.
+     */
+    @Modifying
+    @Query(value = "UPDATE merge_rebuild_lock SET lease_until = clock_timestamp() + make_interval(secs => :leaseSeconds) " +
+                   "WHERE lock_name = :name AND holder = :holder AND lease_until >= clock_timestamp()", nativeQuery = true)
+    int fence(@Param("name") String name, @Param("holder") String holder, @Param("leaseSeconds") long leaseSeconds);
+
+    @Modifying
+    @Query(value = "UPDATE merge_rebuild_lock SET holder = NULL, lease_until = NULL, generation = generation + 1, " +
+                   "last_result = :result, last_status = :status, last_completed_at = now() " +
+                   "WHERE lock_name = :name AND holder = :holder", nativeQuery = true)
+    int release(@Param("name") String name, @Param("holder") String holder,
+                @Param("result") Integer result, @Param("status") String status);
+
+    /**
+     * Whether the current holder's lease has run out (a crashed node), evaluated on the database clock
+     */
+    @Query(value = "SELECT COUNT(*) > 0 FROM merge_rebuild_lock " +
+                   "WHERE lock_name = :name AND holder IS NOT NULL AND lease_until < now()", nativeQuery = true)
+    boolean isLeaseExpired(@Param("name") String name);
+}
@@ -1,12 +1,20 @@
 package com.ecomanalyser.repository;
 
 import com.ecomanalyser.domain.MergedOrderPaymentEntity;
+import com.ecomanalyser.dto.MergedOrderLossRow;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface MergedOrderPaymentRepository extends JpaRepository<MergedOrderPaymentEntity, String> {
     
@@ -25,7 +33,9 @@ public interface MergedOrderPaymentRepository extends JpaRepository<MergedOrderP
     @Query("SELECT m.skuId, SUM(m.settlementAmount) as totalProfit FROM MergedOrderPaymentEntity m WHERE m.orderDate BETWEEN :start AND :end AND m.settlementAmount > 0 GROUP BY m.skuId ORDER BY totalProfit DESC")
     List<Object[]> findTopProfitableSkus(@Param("start") LocalDate start, @Param("end") LocalDate end);
     
-    @Query("SELECT m.orderStatus, COUNT(m) as count, EXTRACT(MONTH FROM m.orderDate) as month, EXTRACT(YEAR FROM m.orderDate) as year FROM MergedOrderPaymentEntity m GROUP BY m.orderStatus, EXTRACT(MONTH FROM m.orderDate), EXTRACT(YEAR FROM m.orderDate) ORDER BY year, month, count DESC")
+    // Read from the merged_order_status_month materialized view (see V5__analytics_materialized_views.sql)
+    @Query(value = "SELECT order_status, order_count, month, year FROM merged_order_status_month " +
+            "ORDER BY year, month, order_count DESC", nativeQuery = true)
     List<Object[]> findOrderStatusCountsWithMonth();
     
     // Use a working method that we know works
@@ -35,6 +45,34 @@ public interface MergedOrderPaymentRepository extends JpaRepository<MergedOrderP
     // Get all data from merged_orders table
     @Query("SELECT m FROM MergedOrderPaymentEntity m ORDER BY m.orderDate DESC")
     List<MergedOrderPaymentEntity> findAllFromMergedOrders();
+
+    // Keyset paging, newest order date first; undated rows sort as 0001-01-01, after every dated row.
+    // The first page passes the sentinel 9999-12-31 as cursor. Backed by idx_merged_orders_keyset.
+    String PAGE_KEY = "COALESCE(order_date, DATE '0001-01-01')";
+    String PAGE_AFTER = "(" + PAGE_KEY + ", order_id) < (:afterDate, :afterId) ";
+    String PAGE_ORDER = "ORDER BY " + PAGE_KEY + " DESC, order_id DESC OFFSET :offset LIMIT :limit";
+    // Substring search, served by the pg_trgm indexes on the three columns
+    String PAGE_SEARCH = "(order_id ILIKE :pattern OR sku_id ILIKE :pattern OR order_status ILIKE :pattern) ";
+
+    @Query(value = "SELECT * FROM merged_orders WHERE " + PAGE_AFTER + PAGE_ORDER, nativeQuery = true)
+    List<MergedOrderPaymentEntity> findPage(@Param("afterDate") LocalDate afterDate, @Param("afterId") String afterId,
+                                            @Param("offset") long offset, @Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM merged_orders WHERE " + PAGE_SEARCH + "AND " + PAGE_AFTER + PAGE_ORDER, nativeQuery = true)
+    List<MergedOrderPaymentEntity> searchPage(@Param("pattern") String pattern,
+                                              @Param("afterDate") LocalDate afterDate, @Param("afterId") String afterId,
+                                              @Param("offset") long offset, @Param("limit") int limit);
+
+    @Query(value = "SELECT COUNT(*) FROM merged_orders WHERE " + PAGE_SEARCH, nativeQuery = true)
+    long countSearch(@Param("pattern") String pattern);
+
+    // Search count that stops at :cap matches
+    @Query(value = "SELECT COUNT(*) FROM (SELECT 1 FROM merged_orders WHERE " + PAGE_SEARCH + "LIMIT :cap) capped", nativeQuery = true)
+    long countSearchUpTo(@Param("pattern") String pattern, @Param("cap") int cap);
+
+    // Planner row estimate, kept current by autovacuum / ANALYZE
+    @Query(value = "SELECT CAST(GREATEST(reltuples, 0) AS BIGINT) FROM pg_class WHERE oid = CAST('merged_orders' AS regclass)", nativeQuery = true)
+    long estimateRowCount();
     
     // Find return orders for tracking (RETURN and RTO statuses)
     @Query("SELECT m.orderId, m.skuId, m.quantity, ABS(m.settlementAmount) as returnAmount, m.orderStatus, m.orderDate " +
@@ -43,6 +81,110 @@ public interface MergedOrderPaymentRepository extends JpaRepository<MergedOrderP
            "AND m.settlementAmount < 0 " +
            "ORDER BY m.orderDate DESC")
     List<Object[]> findReturnOrdersForTracking();
-}
 
+    long countByOrderDateIsNotNull();
+
+    // Columns of the in-memory analytics cube, streamed from a cursor.
+    // Column order: orderDate, skuId, orderStatus, state, quantity, settlementAmount, cogs, netProfit, lossCategory, priceType
+    @Query("SELECT m.orderDate, m.skuId, m.orderStatus, m.state, m.quantity, m.settlementAmount, " +
+           "m.cogs, m.netProfit, m.lossCategory, m.priceType FROM MergedOrderPaymentEntity m")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<Object[]> streamCubeColumns();
+
+    // Export rows, streamed from a cursor in table order; null filters match everything.
+    // Column order: orderId, skuId, orderStatus, orderDate, paymentDate, quantity, orderAmount, settlementAmount, state, transactionId
+    @Query("SELECT m.orderId, m.skuId, m.orderStatus, m.orderDate, m.paymentDate, m.quantity, " +
+           "m.orderAmount, m.settlementAmount, m.state, m.transactionId FROM MergedOrderPaymentEntity m WHERE " +
+           "(:startDate IS NULL OR m.orderDate >= :startDate) AND " +
+           "(:endDate IS NULL OR m.orderDate <= :endDate) AND " +
+           "(:status IS NULL OR m.orderStatus = :status) AND " +
+           "(:skuId IS NULL OR m.skuId = :skuId)")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<Object[]> streamForExport(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate,
+                                     @Param("status") String status, @Param("skuId") String skuId);
+
+    // Cost stamping (purchase_price, cogs, net_profit, loss_category)
 
+    // Purchase price per SKU as SkuPriceCatalog resolves it: group price when positive, otherwise
+    // the SKU's own price when positive, otherwise null (unpriced)
+    String SKU_PRICE = "(SELECT k.sku_id, CASE WHEN g.purchase_price > 0 THEN g.purchase_price " +
+            "WHEN sp.purchase_price > 0 THEN sp.purchase_price END AS price " +
+            "FROM (SELECT DISTINCT sku_id FROM merged_orders WHERE sku_id IN (:skuIds)) k " +
+            "LEFT JOIN sku_prices sp ON sp.sku = k.sku_id " +
+            "LEFT JOIN sku_group_mappings gm ON gm.sku = k.sku_id " +
+            "LEFT JOIN sku_groups g ON g.id = gm.group_id) p ";
+    String COGS = "p.price * m.quantity";
+    // Same rules as MergedOrderCostService.stamp and classify
+    String LOSS_CATEGORY = "CASE WHEN p.price IS NULL OR m.quantity IS NULL THEN 'UNPRICED' " +
+            "WHEN COALESCE(m.settlement_amount, 0) = 0 THEN 'NO_SETTLEMENT' " +
+            "WHEN m.settlement_amount < 0 THEN CASE WHEN UPPER(m.order_status) LIKE '%RETURN%' " +
+            "OR UPPER(m.order_status) LIKE '%RTO%' OR UPPER(m.order_status) LIKE '%EXCHANGE%' " +
+            "OR UPPER(m.order_status) LIKE '%SHIPPED%' OR UPPER(m.order_status) LIKE '%REFUND%' " +
+            "THEN 'RETURN_RECEIVED' ELSE 'RETURN_NOT_RECEIVED' END " +
+            "WHEN m.settlement_amount > " + COGS + " THEN 'PROFIT' " +
+            "WHEN m.settlement_amount < " + COGS + " THEN 'LOSS' ELSE 'BREAK_EVEN' END";
+
+    // Re-stamp every row of the given SKUs from the prices visible to the current transaction
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE merged_orders m SET " +
+            "purchase_price = CASE WHEN m.quantity IS NOT NULL THEN p.price END, " +
+            "cogs = " + COGS + ", " +
+            "net_profit = COALESCE(m.settlement_amount, 0) - " + COGS + ", " +
+            "loss_category = " + LOSS_CATEGORY + " " +
+            "FROM " + SKU_PRICE + "WHERE m.sku_id = p.sku_id", nativeQuery = true)
+    int restampSkus(@Param("skuIds") Collection<String> skuIds);
+
+    // Months (yyyyMM) holding rows of the given SKUs
+    @Query("SELECT DISTINCT YEAR(m.orderDate) * 100 + MONTH(m.orderDate) FROM MergedOrderPaymentEntity m " +
+           "WHERE m.skuId IN :skuIds AND m.orderDate IS NOT NULL")
+    List<Integer> findPeriodsBySkuIdIn(@Param("skuIds") Collection<String> skuIds);
+
+    // Per month (yyyyMM), an order-independent hash of the columns the cube reads: a month's rows
+    // differ between two states of the table when its hash does.
+    // Column order: period, fingerprint
+    @Query(value = "SELECT CAST(to_char(order_date, 'YYYYMM') AS integer), SUM(hashtextextended(CAST(ROW(order_date, " +
+            "sku_id, order_status, state, quantity, settlement_amount, cogs, net_profit, loss_category, price_type) " +
+            "AS text), 0)) FROM merged_orders WHERE order_date IS NOT NULL GROUP BY 1", nativeQuery = true)
+    List<Object[]> monthFingerprints();
+
+    @Query("SELECT DISTINCT m.skuId FROM MergedOrderPaymentEntity m WHERE m.lossCategory IS NULL AND m.skuId IS NOT NULL")
+    List<String> findUnstampedSkus();
+
+    @Modifying
+    @Query("UPDATE MergedOrderPaymentEntity m SET m.lossCategory = 'UNPRICED', m.purchasePrice = NULL, m.cogs = NULL, m.netProfit = NULL " +
+           "WHERE m.lossCategory IS NULL AND m.skuId IS NULL")
+    int markUnstampedWithoutSkuUnpriced();
+
+    // Columns of MergedOrderLossRow, read instead of managed entities by the loss and return analyses
+    String LOSS_ROW_COLUMNS = "m.orderId, m.skuId, m.quantity, m.settlementAmount, m.purchasePrice, " +
+            "m.cogs, m.netProfit, m.orderStatus, m.orderDate, m.lossCategory";
+
+    // Delivered orders with a settlement that ended in a loss, largest loss first
+    @Query("SELECT new com.ecomanalyser.dto.MergedOrderLossRow(" + LOSS_ROW_COLUMNS + ") FROM MergedOrderPaymentEntity m " +
+           "WHERE m.orderDate BETWEEN :start AND :end AND m.orderStatus = 'DELIVERED' " +
+           "AND m.settlementAmount <> 0 AND m.netProfit < 0 " +
+           "ORDER BY m.netProfit ASC")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Transactional(readOnly = true)
+    List<MergedOrderLossRow> findDeliveredLossOrders(@Param("start") LocalDate start, @Param("end") LocalDate end);
+
+    // Priced, non-delivered orders with a negative settlement
+    @Query("SELECT new com.ecomanalyser.dto.MergedOrderLossRow(" + LOSS_ROW_COLUMNS + ") FROM MergedOrderPaymentEntity m " +
+           "WHERE m.orderDate BETWEEN :start AND :end AND m.settlementAmount < 0 " +
+           "AND (m.orderStatus IS NULL OR m.orderStatus <> 'DELIVERED') AND m.purchasePrice IS NOT NULL")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Transactional(readOnly = true)
+    List<MergedOrderLossRow> findReturnLossOrders(@Param("start") LocalDate start, @Param("end") LocalDate end);
+}
@@ -0,0 +1,7 @@
+package com.ecomanalyser.repository;
+
+import com.ecomanalyser.domain.MonthlySummarySnapshotEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface MonthlySummarySnapshotRepository extends JpaRepository<MonthlySummarySnapshotEntity, Integer> {
+}
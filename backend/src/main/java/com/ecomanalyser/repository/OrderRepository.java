@@ -1,11 +1,17 @@
 package com.ecomanalyser.repository;
 
 import com.ecomanalyser.domain.OrderEntity;
+import com.ecomanalyser.dto.OrderCostRow;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,6 +21,15 @@ public interface OrderRepository extends JpaRepository<OrderEntity, Long> {
     Optional<OrderEntity> findByOrderId(String orderId);
     
     List<OrderEntity> findByOrderIdIn(List<String> orderIds);
+
+    @Query("select new com.ecomanalyser.dto.OrderCostRow(o.orderId, o.sku, o.quantity, o.supplierDiscountedPrice, o.supplierListedPrice) " +
+           "from OrderEntity o where o.orderId in :orderIds")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Transactional(readOnly = true)
+    List<OrderCostRow> findCostRowsByOrderIdIn(@Param("orderIds") Collection<String> orderIds);
     
     Optional<OrderEntity> findBySupplierSku(String supplierSku);
 
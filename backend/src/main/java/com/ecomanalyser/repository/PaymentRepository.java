@@ -1,16 +1,32 @@
 package com.ecomanalyser.repository;
 
 import com.ecomanalyser.domain.PaymentEntity;
+import com.ecomanalyser.dto.PaymentAmountRow;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface PaymentRepository extends JpaRepository<PaymentEntity, Long> {
     List<PaymentEntity> findByPaymentDateTimeBetween(LocalDateTime start, LocalDateTime end);
+
+    // Payment analytics read only these four of the ~40 payment columns
+    @Query("select new com.ecomanalyser.dto.PaymentAmountRow(p.orderId, p.sku, p.paymentDateTime, p.amount) " +
+           "from PaymentEntity p where p.paymentDateTime between :start and :end")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Transactional(readOnly = true)
+    List<PaymentAmountRow> findAmountRowsBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
     
     Optional<PaymentEntity> findByPaymentId(String paymentId);
     
@@ -20,14 +36,22 @@ public interface PaymentRepository extends JpaRepository<PaymentEntity, Long> {
 
     Optional<PaymentEntity> findByOrderIdAndTransactionId(String orderId, String transactionId);
 
-    // Fixed query: Use order date instead of payment date, and add month information
-    @Query("select p.orderStatus, count(distinct p.orderId) as orderCount, " +
-           "EXTRACT(MONTH FROM p.paymentDateTime) as month, " +
-           "EXTRACT(YEAR FROM p.paymentDateTime) as year " +
-           "from PaymentEntity p " +
-           "where p.orderStatus is not null " +
-           "group by p.orderStatus, EXTRACT(MONTH FROM p.paymentDateTime), EXTRACT(YEAR FROM p.paymentDateTime) " +
-           "order by year desc, month desc, orderCount desc")
+    // Only the columns the merge needs, streamed from a cursor instead of hydrating every PaymentEntity.
+    // Column order: orderId, sku, quantity, finalSettlementAmount, amount, paymentDateTime,
+    // orderDateTime, orderStatus, transactionId, priceType, dispatchDate
+    @Query("select p.orderId, p.sku, p.quantity, p.finalSettlementAmount, p.amount, p.paymentDateTime, " +
+           "p.orderDateTime, p.orderStatus, p.transactionId, p.priceType, p.dispatchDate " +
+           "from PaymentEntity p")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<Object[]> streamMergeColumns();
+
+    // Distinct orders per status and payment month, read from the payment_status_month
+    // materialized view (see V5__analytics_materialized_views.sql)
+    @Query(value = "SELECT order_status, order_count, month, year FROM payment_status_month " +
+            "ORDER BY year DESC, month DESC, order_count DESC", nativeQuery = true)
     List<Object[]> getOrderCountsByStatusWithMonth();
     
     // Filtered by date range
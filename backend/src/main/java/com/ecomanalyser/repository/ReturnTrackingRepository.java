@@ -7,6 +7,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,6 +17,9 @@ public interface ReturnTrackingRepository extends JpaRepository<ReturnTrackingEn
     // Find by order ID
     Optional<ReturnTrackingEntity> findByOrderId(String orderId);
     
+    // Find by order IDs, for bulk syncs
+    List<ReturnTrackingEntity> findByOrderIdIn(Collection<String> orderIds);
+    
     // Find by return status
     List<ReturnTrackingEntity> findByReturnStatus(ReturnTrackingEntity.ReturnStatus returnStatus);
     
@@ -68,4 +72,22 @@ public interface ReturnTrackingRepository extends JpaRepository<ReturnTrackingEn
     
     // Check if order exists in return tracking
     boolean existsByOrderId(String orderId);
+    
+    // Upsert the RETURN/RTO orders of merged_orders in one statement, the latest row per order
+    // winning; receipt fields of existing rows are kept. Returns one row: [inserted, updated]
+    @Query(value = "WITH upserted AS (" +
+           "INSERT INTO return_tracking (order_id, sku_id, quantity, return_amount, order_status, order_date, " +
+           "return_status, created_at, updated_at) " +
+           "SELECT DISTINCT ON (m.order_id) m.order_id, m.sku_id, m.quantity, ABS(m.settlement_amount), " +
+           "m.order_status, m.order_date, 'PENDING_RECEIPT', now(), now() " +
+           "FROM merged_orders m " +
+           "WHERE m.order_status IN ('RETURN', 'RTO') AND m.settlement_amount < 0 " +
+           "ORDER BY m.order_id, m.order_date DESC " +
+           "ON CONFLICT (order_id) DO UPDATE SET sku_id = EXCLUDED.sku_id, quantity = EXCLUDED.quantity, " +
+           "return_amount = EXCLUDED.return_amount, order_status = EXCLUDED.order_status, " +
+           "order_date = EXCLUDED.order_date, updated_at = now() " +
+           "RETURNING (xmax = 0) AS inserted) " +
+           "SELECT COUNT(*) FILTER (WHERE inserted), COUNT(*) FILTER (WHERE NOT inserted) FROM upserted",
+           nativeQuery = true)
+    List<Object[]> upsertFromMergedOrders();
 }
@@ -2,11 +2,22 @@ package com.ecomanalyser.repository;
 
 import com.ecomanalyser.domain.SkuPriceEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface SkuPriceRepository extends JpaRepository<SkuPriceEntity, Long> {
     Optional<SkuPriceEntity> findBySku(String sku);
-}
-
 
+    /**
+     * Every priced or grouped SKU as [sku, sku price, group name, group price]; price and group
+     * columns are null when the SKU has no individual price or no group
+     */
+    @Query(value = "SELECT s.sku, sp.purchase_price, g.group_name, g.purchase_price " +
+                   "FROM (SELECT sku FROM sku_prices UNION SELECT sku FROM sku_group_mappings) s " +
+                   "LEFT JOIN sku_prices sp ON sp.sku = s.sku " +
+                   "LEFT JOIN sku_group_mappings m ON m.sku = s.sku " +
+                   "LEFT JOIN sku_groups g ON g.id = m.group_id", nativeQuery = true)
+    List<Object[]> findPriceCatalogRows();
+}
@@ -0,0 +1,183 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.dto.AnalyticsBatchRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Answers several analytics queries in one request.
+ *
+ * Queries that the merged order cube can answer are grouped by (range, aggregation) and each
+ * group is served by a single {@link DashboardAccumulator} scan, however many metrics it asks
+ * for. The remaining queries run one after another on the calling thread through the regular
+ * service methods, so a batch holds at most one database connection at a time.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AnalyticsBatchService {
+
+    public static final int MAX_QUERIES = 50;
+
+    public enum Metric {
+        // From the shared cube scan
+        SUMMARY(true),
+        LOSS_ORDERS_SUMMARY(true),
+        RETURN_ANALYSIS_SUMMARY(true),
+        LOSS_METRICS(true),
+        PROFIT_TREND(true),
+        LOSS_TREND(true),
+        ORDERS_BY_TIME(true),
+        TOP_PROFITABLE(true),
+        // Through their own queries
+        TOP_ORDERED(false),
+        ORDERS_BY_STATUS(false),
+        PAYMENTS_BY_TIME(false),
+        MONTHLY_SUMMARY(false);
+
+        private final boolean fromScan;
+
+        Metric(boolean fromScan) {
+            this.fromScan = fromScan;
+        }
+
+        /**
+         * Parse "lossMetrics", "loss-metrics" or "LOSS_METRICS"
+         */
+        public static Metric parse(String name) {
+            if (name == null || name.isBlank()) throw new IllegalArgumentException("Query without metric");
+            String constant = name.trim().replaceAll("([a-z0-9])([A-Z])", "$1_$2").replace('-', '_').toUpperCase(Locale.ROOT);
+            try {
+                return valueOf(constant);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown metric: " + name);
+            }
+        }
+    }
+
+    private record ScanKey(LocalDate start, LocalDate end, AnalyticsService.Aggregation agg) {
+    }
+
+    private record Planned(String id, Metric metric, ScanKey range, AnalyticsBatchRequest.Query query) {
+    }
+
+    private final AnalyticsService analyticsService;
+    private final QueryCoalescer coalescer;
+
+    /**
+     * Results keyed by query id, in request order, plus the number of cube scans used. A query
+     * that fails gets {"error": message} without failing the others.
+     *
+     * @throws IllegalArgumentException when a query is malformed; nothing is executed then
+     */
+    public Map<String, Object> execute(AnalyticsBatchRequest request) {
+        List<Planned> plan = plan(request);
+
+        // One scan per distinct range among the cube queries
+        Map<ScanKey, Boolean> scanNeedsSkus = new LinkedHashMap<>();
+        for (Planned p : plan) {
+            if (p.metric().fromScan) scanNeedsSkus.merge(p.range(), p.metric() == Metric.TOP_PROFITABLE, Boolean::logicalOr);
+        }
+        Map<ScanKey, DashboardAccumulator> scans = new HashMap<>();
+        scanNeedsSkus.forEach((range, skus) -> scans.put(range, coalescer.coalesce("batchScan",
+                () -> scan(range, skus), range.start(), range.end(), range.agg(), skus)));
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        for (Planned p : plan) {
+            try {
+                results.put(p.id(), p.metric().fromScan ? fromScan(p, scans.get(p.range())) : run(p));
+            } catch (Exception e) {
+                log.warn("Batch query {} ({}) failed: {}", p.id(), p.metric(), e.getMessage());
+                results.put(p.id(), Map.of("error", String.valueOf(e.getMessage())));
+            }
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("results", results);
+        response.put("scans", scans.size());
+        return response;
+    }
+
+    private List<Planned> plan(AnalyticsBatchRequest request) {
+        List<AnalyticsBatchRequest.Query> queries = request.getQueries();
+        if (queries == null || queries.isEmpty()) throw new IllegalArgumentException("No queries");
+        if (queries.size() > MAX_QUERIES) throw new IllegalArgumentException("At most " + MAX_QUERIES + " queries per batch");
+
+        List<Planned> plan = new ArrayList<>(queries.size());
+        for (AnalyticsBatchRequest.Query q : queries) {
+            Metric metric = Metric.parse(q.getMetric());
+            String id = q.getId() != null && !q.getId().isBlank() ? q.getId() : q.getMetric();
+            if (plan.stream().anyMatch(p -> p.id().equals(id))) throw new IllegalArgumentException("Duplicate query id: " + id);
+
+            ScanKey range = null;
+            if (metric == Metric.MONTHLY_SUMMARY) {
+                if (q.getYear() == null || q.getMonth() == null) throw new IllegalArgumentException(id + ": year and month are required");
+            } else {
+                LocalDate start = q.getStart() != null ? q.getStart() : request.getStart();
+                LocalDate end = q.getEnd() != null ? q.getEnd() : request.getEnd();
+                if (start == null || end == null) throw new IllegalArgumentException(id + ": start and end are required");
+                AnalyticsService.Aggregation agg = q.getAgg() != null ? q.getAgg()
+                        : request.getAgg() != null ? request.getAgg() : AnalyticsService.Aggregation.DAY;
+                range = new ScanKey(start, end, agg);
+            }
+            plan.add(new Planned(id, metric, range, q));
+        }
+        return plan;
+    }
+
+    private DashboardAccumulator scan(ScanKey range, boolean skus) {
+        DashboardAccumulator accumulator = analyticsService.newDashboardAccumulator(range.agg());
+        if (skus) accumulator.trackSkuRevenue();
+        return accumulator.scan(range.start(), range.end());
+    }
+
+    private Object fromScan(Planned p, DashboardAccumulator totals) {
+        return switch (p.metric()) {
+            case SUMMARY -> {
+                Map<String, Object> summary = new LinkedHashMap<>();
+                summary.put("start", p.range().start());
+                summary.put("end", p.range().end());
+                summary.putAll(totals.summary());
+                yield summary;
+            }
+            case LOSS_ORDERS_SUMMARY -> totals.lossOrdersSummary();
+            case RETURN_ANALYSIS_SUMMARY -> totals.returnAnalysisSummary();
+            case LOSS_METRICS -> {
+                Map<String, Object> metrics = new LinkedHashMap<>();
+                metrics.put("startDate", p.range().start());
+                metrics.put("endDate", p.range().end());
+                metrics.putAll(totals.lossMetrics());
+                yield metrics;
+            }
+            case PROFIT_TREND -> totals.profitTrend();
+            case LOSS_TREND -> totals.lossTrend();
+            case ORDERS_BY_TIME -> totals.ordersTrend();
+            case TOP_PROFITABLE -> totals.topSkusByRevenue(limit(p));
+            default -> throw new IllegalStateException(p.metric() + " is not answered from the scan");
+        };
+    }
+
+    private Object run(Planned p) {
+        ScanKey range = p.range();
+        return switch (p.metric()) {
+            case TOP_ORDERED -> analyticsService.topOrderedSkus(range.start(), range.end(), limit(p));
+            case ORDERS_BY_STATUS -> analyticsService.getOrderCountsByStatus(range.start(), range.end());
+            case PAYMENTS_BY_TIME -> analyticsService.paymentsByTime(range.start(), range.end(), range.agg());
+            case MONTHLY_SUMMARY -> analyticsService.getMonthlySummary(p.query().getYear(), p.query().getMonth());
+            default -> throw new IllegalStateException(p.metric() + " is answered from the scan");
+        };
+    }
+
+    private static int limit(Planned p) {
+        return p.query().getLimit() != null ? p.query().getLimit() : 10;
+    }
+}
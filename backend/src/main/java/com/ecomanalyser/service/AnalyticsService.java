@@ -1,26 +1,25 @@
 package com.ecomanalyser.service;
 
-import com.ecomanalyser.domain.OrderEntity;
-import com.ecomanalyser.domain.PaymentEntity;
-import com.ecomanalyser.domain.SkuPriceEntity;
-import com.ecomanalyser.domain.MergedOrderPaymentEntity;
 import com.ecomanalyser.dto.ChartResponse;
+import com.ecomanalyser.dto.MergedOrderLossRow;
+import com.ecomanalyser.dto.OrderCostRow;
+import com.ecomanalyser.dto.PaymentAmountRow;
 import com.ecomanalyser.dto.TimeSeriesPoint;
+import com.ecomanalyser.repository.DailyOrderRollupRepository;
 import com.ecomanalyser.repository.OrderRepository;
 import com.ecomanalyser.repository.PaymentRepository;
-import com.ecomanalyser.repository.SkuPriceRepository;
 import com.ecomanalyser.repository.MergedOrderPaymentRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
-import org.springframework.context.ApplicationContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.time.temporal.TemporalAdjusters;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -32,69 +31,83 @@ public class AnalyticsService {
     
     private final OrderRepository orderRepository;
     private final PaymentRepository paymentRepository;
-    private final SkuPriceRepository skuPriceRepository;
     private final MergedOrderPaymentRepository mergedOrderRepository;
-    private final ApplicationContext applicationContext;
+    private final DailyOrderRollupRepository rollupRepository;
+    private final SkuPriceCatalog priceCatalog;
+    private final MergedOrderCubeService cubeService;
+    private final QueryCoalescer coalescer;
+    private final MonthPartitions monthPartitions;
+    private final SkuLeaderboard skuLeaderboard;
+    private final MonthlySummarySnapshots summarySnapshots;
 
     public enum Aggregation { DAY, MONTH, YEAR, QUARTER }
 
     public ChartResponse<TimeSeriesPoint> ordersByTime(LocalDate start, LocalDate end, Aggregation agg) {
-        List<MergedOrderPaymentEntity> orders = mergedOrderRepository.findByOrderDateBetween(start, end);
-        Map<LocalDate, BigDecimal> counts = new TreeMap<>();
-        for (MergedOrderPaymentEntity o : orders) {
-            LocalDate key = aggregateDate(o.getOrderDate(), agg);
-            counts.merge(key, BigDecimal.ONE, BigDecimal::add);
-        }
-        List<TimeSeriesPoint> points = counts.entrySet().stream()
-                .map(en -> new TimeSeriesPoint(en.getKey(), en.getValue()))
-                .toList();
-        return new ChartResponse<>(points);
+        // Daily order counts from the rollup, one row per day
+        return toCountTrend(rollupRepository.sumOrderCountByOrderDate(start, end), start, end, agg);
     }
 
     public ChartResponse<TimeSeriesPoint> paymentsByTime(LocalDate start, LocalDate end, Aggregation agg) {
+        return coalescer.coalesce("paymentsByTime", () -> loadPaymentsByTime(start, end, agg), start, end, agg);
+    }
+
+    private ChartResponse<TimeSeriesPoint> loadPaymentsByTime(LocalDate start, LocalDate end, Aggregation agg) {
         // Use original payments table for accurate payment amounts (not merged orders)
         LocalDateTime startDateTime = start.atStartOfDay();
         LocalDateTime endDateTime = end.plusDays(1).atStartOfDay().minusNanos(1);
-        List<PaymentEntity> payments = paymentRepository.findByPaymentDateTimeBetween(startDateTime, endDateTime);
+        List<PaymentAmountRow> payments = paymentRepository.findAmountRowsBetween(startDateTime, endDateTime);
+        OperationMetrics.scanned(payments.size());
         
         log.debug("paymentsByTime: Found {} payments between {} and {} from payments table", payments.size(), start, end);
         
-        Map<LocalDate, BigDecimal> totals = new TreeMap<>();
-        Map<LocalDate, Integer> counts = new TreeMap<>();
+        LocalDate firstDay = null;
+        LocalDate lastDay = null;
+        for (PaymentAmountRow p : payments) {
+            if (p.paymentDateTime() == null) continue;
+            LocalDate day = p.paymentDateTime().toLocalDate();
+            if (firstDay == null || day.isBefore(firstDay)) firstDay = day;
+            if (lastDay == null || day.isAfter(lastDay)) lastDay = day;
+        }
+        CalendarIndex calendar = CalendarIndex.clamped(start, end, firstDay, lastDay, agg);
+        MoneySum[] totals = new MoneySum[calendar.size()];
+        int[] counts = new int[calendar.size()];
         
         payments.forEach(p -> {
-            LocalDate key = aggregateDate(p.getPaymentDateTime().toLocalDate(), agg);
-            BigDecimal amount = p.getAmount() != null ? p.getAmount() : BigDecimal.ZERO;
-            totals.merge(key, amount, BigDecimal::add);
-            counts.merge(key, 1, Integer::sum);
+            int bucket = calendar.bucket(p.paymentDateTime().toLocalDate());
+            if (bucket == CalendarIndex.NO_BUCKET) return;
+            BigDecimal amount = p.amount() != null ? p.amount() : BigDecimal.ZERO;
+            if (totals[bucket] == null) totals[bucket] = new MoneySum();
+            totals[bucket].add(amount);
+            counts[bucket]++;
             
             // Debug logging for specific date if requested
-            if (start.equals(end) && p.getPaymentDateTime() != null && p.getPaymentDateTime().toLocalDate().equals(start)) {
+            if (start.equals(end) && p.paymentDateTime() != null && p.paymentDateTime().toLocalDate().equals(start)) {
                 log.debug("Payment for {}: OrderId={}, SKU={}, Amount={}", 
-                    p.getPaymentDateTime().toLocalDate(), p.getOrderId(), p.getSku(), amount);
+                    p.paymentDateTime().toLocalDate(), p.orderId(), p.sku(), amount);
             }
         });
         
         // Log totals for debugging
-        totals.forEach((date, total) -> {
-            log.debug("Date {}: {} payments, total amount: {}", date, counts.get(date), total);
-        });
+        if (log.isDebugEnabled()) {
+            for (int bucket = 0; bucket < totals.length; bucket++) {
+                if (totals[bucket] == null) continue;
+                log.debug("Date {}: {} payments, total amount: {}", calendar.bucketDate(bucket), counts[bucket], totals[bucket]);
+            }
+        }
         
-        List<TimeSeriesPoint> points = totals.entrySet().stream()
-                .map(en -> new TimeSeriesPoint(en.getKey(), en.getValue()))
-                .toList();
-        return new ChartResponse<>(points);
+        return toChart(calendar, totals);
     }
 
     public List<Map<String, Object>> topOrderedSkus(LocalDate start, LocalDate end, int limit) {
         try {
-            var rows = mergedOrderRepository.findTopOrderedSkus(start, end);
+            // Sorted and cut to the limit by the database
+            var rows = rollupRepository.findTopOrderedSkus(start, end, PageRequest.of(0, Math.max(1, limit)));
             
             if (rows.isEmpty()) {
                 return new ArrayList<>();
             }
             
-            List<Map<String, Object>> result = rows.stream().limit(limit).map(r -> {
+            List<Map<String, Object>> result = rows.stream().map(r -> {
                 Map<String, Object> m = new LinkedHashMap<>();
                 m.put("sku", (String) r[0]);
                 
@@ -129,89 +142,86 @@ public class AnalyticsService {
 
     public List<Map<String, Object>> topProfitableSkus(LocalDate start, LocalDate end, int limit) {
         try {
-            var rows = mergedOrderRepository.findTopProfitableSkus(start, end);
-            
-            if (rows.isEmpty()) {
-                return new ArrayList<>();
-            }
-            
-            List<Map<String, Object>> result = rows.stream().limit(limit).map(r -> {
-                Map<String, Object> m = new LinkedHashMap<>();
-                m.put("sku", (String) r[0]);
-                
-                // Handle different numeric types that sum() can return
-                Number profit;
-                if (r[1] instanceof BigInteger) {
-                    profit = ((BigInteger) r[1]).longValue();
-                } else if (r[1] instanceof BigDecimal) {
-                    profit = ((BigDecimal) r[1]).longValue();
-                } else if (r[1] instanceof Long) {
-                    profit = (Long) r[1];
-                } else if (r[1] instanceof Integer) {
-                    profit = ((Integer) r[1]).longValue();
-                } else {
-                    // Fallback: try to parse as string
-                    try {
-                        profit = Long.parseLong(r[1].toString());
-                    } catch (NumberFormatException e) {
-                        profit = 0L;
-                    }
-                }
-                
-                m.put("profit", profit);
-                return m;
-            }).toList();
-            
-            return result;
+            // Positive settlements per SKU, scanned from the in-memory cube
+            MergedOrderCube cube = cubeService.current();
+            var bySku = cube.groupBy(start, end, row -> cube.settlementPaise(row) > 0, MergedOrderCube.Dimension.SKU);
+            
+            return bySku.entrySet().stream()
+                    .sorted(Comparator.comparingLong(
+                            (Map.Entry<String, MergedOrderCube.Aggregate> en) -> en.getValue().getSettlementPaise()).reversed())
+                    .limit(limit)
+                    .map(en -> {
+                        Map<String, Object> m = new LinkedHashMap<>();
+                        m.put("sku", en.getKey());
+                        m.put("profit", en.getValue().getSettlement().longValue());
+                        return m;
+                    })
+                    .toList();
         } catch (Exception e) {
             return new ArrayList<>();
         }
     }
     
     /**
-     * Get purchase price for a SKU (from group or individual price)
-     * This method integrates with SKU groups while maintaining backward compatibility
+     * Top SKUs by ordered quantity ({@code QUANTITY}) or positive settlements ({@code REVENUE})
+     * from the leaderboard summaries, with the same keys as the exact endpoints plus each
+     * SKU's maximum overcount ("error") and whether it certainly belongs to the top
+     * ("guaranteed"). Limits above the leaderboard capacity fall back to the exact path.
      */
-    private BigDecimal getPurchasePriceForSku(String sku) {
+    public List<Map<String, Object>> approximateTopSkus(SkuLeaderboard.Metric metric, LocalDate start, LocalDate end, int limit) {
+        boolean quantity = metric == SkuLeaderboard.Metric.QUANTITY;
+        if (limit > skuLeaderboard.capacity()) {
+            return quantity ? topOrderedSkus(start, end, limit) : topProfitableSkus(start, end, limit);
+        }
         try {
-            // First try to get price from SKU group mapping
-            var skuGroupService = applicationContext.getBean(SkuGroupService.class);
-            BigDecimal price = skuGroupService.getPurchasePriceForSku(sku);
-            if (price != null && price.compareTo(BigDecimal.ZERO) > 0) {
-                return price;
+            List<Map<String, Object>> result = new ArrayList<>();
+            for (SkuLeaderboard.Entry entry : skuLeaderboard.top(metric, start, end, Math.max(1, limit))) {
+                Map<String, Object> m = new LinkedHashMap<>();
+                m.put("sku", entry.sku());
+                if (quantity) {
+                    m.put("quantity", entry.estimate());
+                    m.put("error", entry.error());
+                } else {
+                    // Whole rupees, like topProfitableSkus; the error is rounded up
+                    m.put("profit", entry.estimate() / 100);
+                    m.put("error", (entry.error() + 99) / 100);
+                }
+                m.put("guaranteed", entry.guaranteed());
+                result.add(m);
             }
-            // If zero/absent, fallback to individual SKU price
-            return skuPriceRepository.findBySku(sku)
-                    .map(SkuPriceEntity::getPurchasePrice)
-                    .filter(p -> p != null && p.compareTo(BigDecimal.ZERO) > 0)
-                    .orElse(BigDecimal.ZERO);
+            return result;
         } catch (Exception e) {
-            // Fallback to individual SKU price (existing behavior)
-            return skuPriceRepository.findBySku(sku)
-                    .map(SkuPriceEntity::getPurchasePrice)
-                    .orElseGet(() -> BigDecimal.valueOf(java.util.concurrent.ThreadLocalRandom.current().nextDouble(10.0, 80.0)).setScale(2, RoundingMode.HALF_UP));
+            log.error("Error getting approximate top SKUs: {}", e.getMessage(), e);
+            return new ArrayList<>();
         }
     }
 
+    /**
+     * Get purchase price for a SKU (from group or individual price) from the in-memory catalog
+     */
+    private BigDecimal getPurchasePriceForSku(String sku) {
+        return priceCatalog.current().purchasePrice(sku);
+    }
+
     /**
      * Compute purchase price for a specific order using multiple fallbacks.
      */
-    private BigDecimal computePurchasePrice(OrderEntity order) {
+    private BigDecimal computePurchasePrice(OrderCostRow order) {
         if (order == null) return BigDecimal.ZERO;
-        BigDecimal fromCatalog = getPurchasePriceForSku(order.getSku());
+        BigDecimal fromCatalog = getPurchasePriceForSku(order.sku());
         if (fromCatalog != null && fromCatalog.compareTo(BigDecimal.ZERO) > 0) return fromCatalog;
-        if (order.getSupplierDiscountedPrice() != null && order.getSupplierDiscountedPrice().compareTo(BigDecimal.ZERO) > 0) {
-            return order.getSupplierDiscountedPrice();
+        if (order.supplierDiscountedPrice() != null && order.supplierDiscountedPrice().compareTo(BigDecimal.ZERO) > 0) {
+            return order.supplierDiscountedPrice();
         }
-        if (order.getSupplierListedPrice() != null && order.getSupplierListedPrice().compareTo(BigDecimal.ZERO) > 0) {
-            return order.getSupplierListedPrice();
+        if (order.supplierListedPrice() != null && order.supplierListedPrice().compareTo(BigDecimal.ZERO) > 0) {
+            return order.supplierListedPrice();
         }
         return BigDecimal.ZERO;
     }
 
     public List<Map<String, Object>> getOrderCountsByStatus(LocalDate start, LocalDate end) {
         try {
-            var rows = mergedOrderRepository.findOrderStatusCounts(start, end);
+            var rows = rollupRepository.sumOrderCountByStatus(start, end);
             
             if (rows.isEmpty()) {
                 return new ArrayList<>();
@@ -278,142 +288,108 @@ public class AnalyticsService {
     }
 
     public ChartResponse<TimeSeriesPoint> profitTrend(LocalDate start, LocalDate end, Aggregation agg) {
-        var mergedOrders = mergedOrderRepository.findByOrderDateBetween(start, end);
-        Map<LocalDate, BigDecimal> totals = new TreeMap<>();
-        
-        mergedOrders.forEach(merged -> {
-            BigDecimal settlementAmount = merged.getSettlementAmount() != null ? merged.getSettlementAmount() : BigDecimal.ZERO;
-            
-            if (settlementAmount.compareTo(BigDecimal.ZERO) > 0 && merged.getSkuId() != null && merged.getQuantity() != null) {
-                try {
-                    // Get purchase price for this SKU
-                    BigDecimal purchasePrice = getPurchasePriceForSku(merged.getSkuId());
-                    
-                    if (purchasePrice.compareTo(BigDecimal.ZERO) > 0) {
-                        // Calculate COGS: Purchase Price × Quantity
-                        BigDecimal cogs = purchasePrice.multiply(BigDecimal.valueOf(merged.getQuantity()));
-                        
-                        // Calculate profit: Revenue - COGS
-                        BigDecimal profit = settlementAmount.subtract(cogs);
-                        
-                        if (profit.signum() > 0) {
-                            LocalDate key = aggregateDate(merged.getOrderDate(), agg);
-                            totals.merge(key, profit, BigDecimal::add);
-                        }
-                    }
-                } catch (Exception e) {
-                    log.warn("Error calculating profit for SKU {}: {}", merged.getSkuId(), e.getMessage());
-                }
-            }
-        });
-        
-        List<TimeSeriesPoint> points = totals.entrySet().stream()
-                .map(en -> new TimeSeriesPoint(en.getKey(), en.getValue()))
-                .toList();
-        return new ChartResponse<>(points);
+        // Net profit (settlement - COGS) of positive settlements with a profit, summed per day in the rollup
+        return toTrend(rollupRepository.sumProfitByOrderDate(start, end), start, end, agg);
     }
 
     public ChartResponse<TimeSeriesPoint> lossTrend(LocalDate start, LocalDate end, Aggregation agg) {
-        var mergedOrders = mergedOrderRepository.findByOrderDateBetween(start, end);
-        Map<LocalDate, BigDecimal> totals = new TreeMap<>();
-        
-        mergedOrders.forEach(merged -> {
-            BigDecimal settlementAmount = merged.getSettlementAmount() != null ? merged.getSettlementAmount() : BigDecimal.ZERO;
-            
-            if (settlementAmount.compareTo(BigDecimal.ZERO) > 0 && merged.getSkuId() != null && merged.getQuantity() != null) {
-                try {
-                    // Get purchase price for this SKU
-                    BigDecimal purchasePrice = getPurchasePriceForSku(merged.getSkuId());
-                    
-                    if (purchasePrice.compareTo(BigDecimal.ZERO) > 0) {
-                        // Calculate COGS: Purchase Price × Quantity
-                        BigDecimal cogs = purchasePrice.multiply(BigDecimal.valueOf(merged.getQuantity()));
-                        
-                        // Calculate profit/loss: Revenue - COGS
-                        BigDecimal netProfit = settlementAmount.subtract(cogs);
-                        
-                        if (netProfit.signum() < 0) {
-                            LocalDate key = aggregateDate(merged.getOrderDate(), agg);
-                            totals.merge(key, netProfit.abs(), BigDecimal::add);
-                        }
-                    }
-                } catch (Exception e) {
-                    log.warn("Error calculating loss for SKU {}: {}", merged.getSkuId(), e.getMessage());
-                }
-            }
-        });
-        
-        List<TimeSeriesPoint> points = totals.entrySet().stream()
-                .map(en -> new TimeSeriesPoint(en.getKey(), en.getValue()))
-                .toList();
+        // Positive settlements that did not cover COGS, reported as positive loss amounts
+        return toTrend(rollupRepository.sumLossByOrderDate(start, end), start, end, agg);
+    }
+
+    /**
+     * Buckets of the requested range, clamped to the days that have rows
+     */
+    private static CalendarIndex trendCalendar(List<Object[]> dailyRows, LocalDate start, LocalDate end, Aggregation agg) {
+        LocalDate firstDay = null;
+        LocalDate lastDay = null;
+        for (Object[] r : dailyRows) {
+            if (!(r[0] instanceof LocalDate day)) continue;
+            if (firstDay == null || day.isBefore(firstDay)) firstDay = day;
+            if (lastDay == null || day.isAfter(lastDay)) lastDay = day;
+        }
+        return CalendarIndex.clamped(start, end, firstDay, lastDay, agg);
+    }
+
+    /**
+     * Chart of [day, count] rows, counts summed per bucket as whole numbers
+     */
+    private ChartResponse<TimeSeriesPoint> toCountTrend(List<Object[]> dailyCounts, LocalDate start, LocalDate end, Aggregation agg) {
+        CalendarIndex calendar = trendCalendar(dailyCounts, start, end, agg);
+        long[] counts = new long[calendar.size()];
+        boolean[] filled = new boolean[calendar.size()];
+        OperationMetrics.scanned(dailyCounts.size());
+        for (Object[] r : dailyCounts) {
+            if (r[0] == null || !(r[1] instanceof Number count)) continue;
+            int bucket = calendar.bucket((LocalDate) r[0]);
+            if (bucket == CalendarIndex.NO_BUCKET) continue;
+            counts[bucket] = Math.addExact(counts[bucket], count.longValue());
+            filled[bucket] = true;
+        }
+        List<TimeSeriesPoint> points = new ArrayList<>();
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            if (filled[bucket]) points.add(new TimeSeriesPoint(calendar.bucketDate(bucket), BigDecimal.valueOf(counts[bucket])));
+        }
         return new ChartResponse<>(points);
     }
+
+    /**
+     * Chart of [day, amount] rows, amounts summed per bucket as absolute values
+     */
+    private ChartResponse<TimeSeriesPoint> toTrend(List<Object[]> dailySums, LocalDate start, LocalDate end, Aggregation agg) {
+        CalendarIndex calendar = trendCalendar(dailySums, start, end, agg);
+        MoneySum[] totals = new MoneySum[calendar.size()];
+        OperationMetrics.scanned(dailySums.size());
+        for (Object[] r : dailySums) {
+            if (r[0] == null || r[1] == null) continue;
+            int bucket = calendar.bucket((LocalDate) r[0]);
+            if (bucket == CalendarIndex.NO_BUCKET) continue;
+            if (totals[bucket] == null) totals[bucket] = new MoneySum();
+            totals[bucket].addAbs(toBigDecimal(r[1]));
+        }
+        return toChart(calendar, totals);
+    }
+
+    /**
+     * Points for the buckets that received at least one row, in date order
+     */
+    private static ChartResponse<TimeSeriesPoint> toChart(CalendarIndex calendar, MoneySum[] totals) {
+        List<TimeSeriesPoint> points = new ArrayList<>();
+        for (int bucket = 0; bucket < totals.length; bucket++) {
+            if (totals[bucket] != null) points.add(new TimeSeriesPoint(calendar.bucketDate(bucket), totals[bucket].toBigDecimal()));
+        }
+        return new ChartResponse<>(points);
+    }
+
+    private static BigDecimal toBigDecimal(Object value) {
+        if (value == null) return BigDecimal.ZERO;
+        if (value instanceof BigDecimal bd) return bd;
+        if (value instanceof BigInteger bi) return new BigDecimal(bi);
+        if (value instanceof Long || value instanceof Integer) return BigDecimal.valueOf(((Number) value).longValue());
+        return new BigDecimal(value.toString());
+    }
     
     /**
      * Get loss orders for a specific date range
      * Returns orders that resulted in losses despite being delivered and paid
      */
     public Map<String, Object> getLossOrders(LocalDate start, LocalDate end) {
+        return coalescer.coalesce("lossOrders", () -> loadLossOrders(start, end), start, end);
+    }
+
+    private Map<String, Object> loadLossOrders(LocalDate start, LocalDate end) {
         try {
-            var mergedOrders = mergedOrderRepository.findByOrderDateBetween(start, end);
-            List<Map<String, Object>> lossOrders = new ArrayList<>();
-            
-            BigDecimal totalRevenue = BigDecimal.ZERO;
-            BigDecimal totalCogs = BigDecimal.ZERO;
-            BigDecimal totalLoss = BigDecimal.ZERO;
-            long totalQuantity = 0;
-            
-            for (MergedOrderPaymentEntity merged : mergedOrders) {
-                if (merged.getSettlementAmount() == null || merged.getSettlementAmount().compareTo(BigDecimal.ZERO) == 0 ||
-                    merged.getSkuId() == null || merged.getQuantity() == null ||
-                    !"DELIVERED".equals(merged.getOrderStatus())) {
-                    continue; // Skip invalid, zero settlement, or non-delivered orders
-                }
-                
-                try {
-                    // Get purchase price for this SKU
-                    BigDecimal purchasePrice = getPurchasePriceForSku(merged.getSkuId());
-                    
-                    if (purchasePrice.compareTo(BigDecimal.ZERO) > 0) {
-                        // Calculate COGS: Purchase Price × Quantity
-                        BigDecimal cogs = purchasePrice.multiply(BigDecimal.valueOf(merged.getQuantity()));
-                        
-                        // Calculate profit/loss: Revenue - COGS
-                        BigDecimal netProfit = merged.getSettlementAmount().subtract(cogs);
-                        
-                        // Only include orders that resulted in losses
-                        if (netProfit.signum() < 0) {
-                            Map<String, Object> orderData = new LinkedHashMap<>();
-                            orderData.put("orderId", merged.getOrderId());
-                            orderData.put("skuId", merged.getSkuId());
-                            orderData.put("quantity", merged.getQuantity());
-                            orderData.put("settlementAmount", merged.getSettlementAmount());
-                            orderData.put("purchasePrice", purchasePrice);
-                            orderData.put("cogs", cogs);
-                            orderData.put("lossAmount", netProfit.abs());
-                            orderData.put("orderStatus", merged.getOrderStatus());
-                            orderData.put("orderDate", merged.getOrderDate());
-                            
-                            lossOrders.add(orderData);
-                            
-                            // Update totals
-                            totalRevenue = totalRevenue.add(merged.getSettlementAmount());
-                            totalCogs = totalCogs.add(cogs);
-                            totalLoss = totalLoss.add(netProfit.abs());
-                            totalQuantity += merged.getQuantity();
-                        }
-                    }
-                } catch (Exception e) {
-                    log.warn("Error calculating loss for SKU {}: {}", merged.getSkuId(), e.getMessage());
-                }
-            }
-            
-            // Sort by loss amount (highest first)
-            lossOrders.sort((a, b) -> {
-                BigDecimal lossA = (BigDecimal) a.get("lossAmount");
-                BigDecimal lossB = (BigDecimal) b.get("lossAmount");
-                return lossB.compareTo(lossA);
-            });
+            // Delivered, settled orders whose stamped net profit is negative, fetched and totalled per month
+            OrderTotals totals = OrderTotals.merge(monthPartitions.map(start, end,
+                    (from, to) -> lossOrderTotals(mergedOrderRepository.findDeliveredLossOrders(from, to))));
+            List<Map<String, Object>> lossOrders = totals.orders();
+            // Largest loss first across all months
+            lossOrders.sort(Comparator.comparing((Map<String, Object> o) -> (BigDecimal) o.get("lossAmount")).reversed());
+            
+            BigDecimal totalRevenue = totals.amount().toBigDecimal();
+            BigDecimal totalCogs = totals.cogs().toBigDecimal();
+            BigDecimal totalLoss = totals.loss().toBigDecimal();
+            long totalQuantity = totals.quantity();
             
             Map<String, Object> result = new LinkedHashMap<>();
             result.put("orders", lossOrders);
@@ -441,74 +417,44 @@ public class AnalyticsService {
         }
     }
 
+    private OrderTotals lossOrderTotals(List<MergedOrderLossRow> mergedOrders) {
+        OrderTotals totals = new OrderTotals();
+        OperationMetrics.scanned(mergedOrders.size());
+        for (MergedOrderLossRow merged : mergedOrders) {
+            BigDecimal lossAmount = merged.netProfit().abs();
+            
+            Map<String, Object> orderData = new LinkedHashMap<>();
+            orderData.put("orderId", merged.orderId());
+            orderData.put("skuId", merged.skuId());
+            orderData.put("quantity", merged.quantity());
+            orderData.put("settlementAmount", merged.settlementAmount());
+            orderData.put("purchasePrice", merged.purchasePrice());
+            orderData.put("cogs", merged.cogs());
+            orderData.put("lossAmount", lossAmount);
+            orderData.put("orderStatus", merged.orderStatus());
+            orderData.put("orderDate", merged.orderDate());
+            
+            totals.add(orderData, merged.quantity(), merged.settlementAmount(), merged.cogs(), lossAmount);
+        }
+        return totals;
+    }
+
     public Map<String, Object> getReturnAnalysis(LocalDate start, LocalDate end) {
+        return coalescer.coalesce("returnAnalysis", () -> loadReturnAnalysis(start, end), start, end);
+    }
+
+    private Map<String, Object> loadReturnAnalysis(LocalDate start, LocalDate end) {
         try {
-            var mergedOrders = mergedOrderRepository.findByOrderDateBetween(start, end);
-            List<Map<String, Object>> returnOrders = new ArrayList<>();
+            // Priced, non-delivered orders with a negative settlement, fetched and totalled per month
+            OrderTotals totals = OrderTotals.merge(monthPartitions.map(start, end,
+                    (from, to) -> returnOrderTotals(mergedOrderRepository.findReturnLossOrders(from, to))));
+            List<Map<String, Object>> returnOrders = totals.orders();
             
-            BigDecimal totalReturnAmount = BigDecimal.ZERO;
-            BigDecimal totalCogs = BigDecimal.ZERO;
-            BigDecimal totalLoss = BigDecimal.ZERO;
-            long totalQuantity = 0;
-            Set<String> unexpectedStatuses = new HashSet<>();
-            
-            for (MergedOrderPaymentEntity merged : mergedOrders) {
-                if (merged.getSettlementAmount() == null || 
-                    merged.getSettlementAmount().compareTo(BigDecimal.ZERO) >= 0 ||
-                    merged.getSkuId() == null || merged.getQuantity() == null ||
-                    "DELIVERED".equals(merged.getOrderStatus())) {
-                    continue; // Skip invalid, non-negative settlement, or delivered orders
-                }
-                
-                try {
-                    // Get purchase price for this SKU
-                    BigDecimal purchasePrice = getPurchasePriceForSku(merged.getSkuId());
-                    
-                    if (purchasePrice.compareTo(BigDecimal.ZERO) > 0) {
-                        // Calculate COGS: Purchase Price × Quantity
-                        BigDecimal cogs = purchasePrice.multiply(BigDecimal.valueOf(merged.getQuantity()));
-                        BigDecimal returnAmount = merged.getSettlementAmount().abs(); // Convert negative to positive
-                        
-                        // Loss calculation: If we received the product, return amount = loss
-                        // If we didn't receive it, loss = COGS (cost of goods)
-                        BigDecimal loss;
-                        if (isProductReceived(merged.getOrderStatus())) {
-                            loss = returnAmount; // Return amount is the actual loss
-                        } else {
-                            loss = cogs; // Full COGS is loss for cancellations/rejections
-                        }
-                        
-                        // Check if status is unexpected (not a typical return status)
-                        String status = merged.getOrderStatus();
-                        if (status != null && !isExpectedReturnStatus(status)) {
-                            unexpectedStatuses.add(status);
-                        }
-                        
-                        Map<String, Object> orderData = new LinkedHashMap<>();
-                        orderData.put("orderId", merged.getOrderId());
-                        orderData.put("skuId", merged.getSkuId());
-                        orderData.put("quantity", merged.getQuantity());
-                        orderData.put("settlementAmount", merged.getSettlementAmount());
-                        orderData.put("returnAmount", returnAmount);
-                        orderData.put("purchasePrice", purchasePrice);
-                        orderData.put("cogs", cogs);
-                        orderData.put("loss", loss);
-                        orderData.put("orderStatus", merged.getOrderStatus());
-                        orderData.put("orderDate", merged.getOrderDate());
-                        orderData.put("isUnexpectedStatus", !isExpectedReturnStatus(status));
-                        
-                        returnOrders.add(orderData);
-                        
-                        // Update totals
-                        totalReturnAmount = totalReturnAmount.add(returnAmount);
-                        totalCogs = totalCogs.add(cogs);
-                        totalLoss = totalLoss.add(loss);
-                        totalQuantity += merged.getQuantity();
-                    }
-                } catch (Exception e) {
-                    log.warn("Error calculating return for SKU {}: {}", merged.getSkuId(), e.getMessage());
-                }
-            }
+            BigDecimal totalReturnAmount = totals.amount().toBigDecimal();
+            BigDecimal totalCogs = totals.cogs().toBigDecimal();
+            BigDecimal totalLoss = totals.loss().toBigDecimal();
+            long totalQuantity = totals.quantity();
+            Set<String> unexpectedStatuses = totals.unexpectedStatuses();
             
             // Sort by unexpected status first, then by return amount (highest first)
             returnOrders.sort((a, b) -> {
@@ -554,7 +500,85 @@ public class AnalyticsService {
         }
     }
     
-    private boolean isExpectedReturnStatus(String status) {
+    private OrderTotals returnOrderTotals(List<MergedOrderLossRow> mergedOrders) {
+        OrderTotals totals = new OrderTotals();
+        OperationMetrics.scanned(mergedOrders.size());
+        for (MergedOrderLossRow merged : mergedOrders) {
+            BigDecimal cogs = merged.cogs();
+            BigDecimal returnAmount = merged.settlementAmount().abs(); // Convert negative to positive
+            
+            // Loss calculation: If we received the product, return amount = loss
+            // If we didn't receive it, loss = COGS (cost of goods)
+            BigDecimal loss = MergedOrderCostService.RETURN_RECEIVED.equals(merged.lossCategory())
+                    ? returnAmount
+                    : cogs;
+            
+            // Check if status is unexpected (not a typical return status)
+            String status = merged.orderStatus();
+            if (status != null && !isExpectedReturnStatus(status)) {
+                totals.unexpectedStatuses().add(status);
+            }
+            
+            Map<String, Object> orderData = new LinkedHashMap<>();
+            orderData.put("orderId", merged.orderId());
+            orderData.put("skuId", merged.skuId());
+            orderData.put("quantity", merged.quantity());
+            orderData.put("settlementAmount", merged.settlementAmount());
+            orderData.put("returnAmount", returnAmount);
+            orderData.put("purchasePrice", merged.purchasePrice());
+            orderData.put("cogs", cogs);
+            orderData.put("loss", loss);
+            orderData.put("orderStatus", merged.orderStatus());
+            orderData.put("orderDate", merged.orderDate());
+            orderData.put("isUnexpectedStatus", !isExpectedReturnStatus(status));
+            
+            totals.add(orderData, merged.quantity(), returnAmount, cogs, loss);
+        }
+        return totals;
+    }
+
+    /**
+     * Order rows and running totals of one month partition of getLossOrders / getReturnAnalysis;
+     * amount is the revenue or the returned amount respectively
+     */
+    private static final class OrderTotals {
+        private final List<Map<String, Object>> orders = new ArrayList<>();
+        private final Set<String> unexpectedStatuses = new HashSet<>();
+        private long quantity;
+        private final MoneySum amount = new MoneySum();
+        private final MoneySum cogs = new MoneySum();
+        private final MoneySum loss = new MoneySum();
+
+        void add(Map<String, Object> order, int orderQuantity, BigDecimal orderAmount, BigDecimal orderCogs, BigDecimal orderLoss) {
+            orders.add(order);
+            quantity += orderQuantity;
+            amount.add(orderAmount);
+            cogs.add(orderCogs);
+            loss.add(orderLoss);
+        }
+
+        static OrderTotals merge(List<OrderTotals> parts) {
+            OrderTotals merged = new OrderTotals();
+            for (OrderTotals part : parts) {
+                merged.orders.addAll(part.orders);
+                merged.unexpectedStatuses.addAll(part.unexpectedStatuses);
+                merged.quantity += part.quantity;
+                merged.amount.add(part.amount);
+                merged.cogs.add(part.cogs);
+                merged.loss.add(part.loss);
+            }
+            return merged;
+        }
+
+        List<Map<String, Object>> orders() { return orders; }
+        Set<String> unexpectedStatuses() { return unexpectedStatuses; }
+        long quantity() { return quantity; }
+        MoneySum amount() { return amount; }
+        MoneySum cogs() { return cogs; }
+        MoneySum loss() { return loss; }
+    }
+    
+    static boolean isExpectedReturnStatus(String status) {
         if (status == null) return false;
         
         // Expected return-related statuses
@@ -567,25 +591,8 @@ public class AnalyticsService {
                upperStatus.contains("FAILED");
     }
     
-    private boolean isProductReceived(String status) {
-        if (status == null) return false;
-        
-        // Statuses where we actually received/handled the product
-        String upperStatus = status.toUpperCase();
-        return upperStatus.contains("RETURN") || 
-               upperStatus.contains("RTO") || 
-               upperStatus.contains("EXCHANGE") ||
-               upperStatus.contains("SHIPPED") ||
-               upperStatus.contains("REFUND");
-    }
-
     public LocalDate aggregateDate(LocalDate date, Aggregation agg) {
-        return switch (agg) {
-            case DAY -> date;
-            case MONTH -> date.withDayOfMonth(1);
-            case YEAR -> date.with(TemporalAdjusters.firstDayOfYear());
-            case QUARTER -> firstDayOfQuarter(date);
-        };
+        return CalendarIndex.bucketStart(date, agg);
     }
 
     public LocalDate firstDayOfQuarter(LocalDate date) {
@@ -597,107 +604,50 @@ public class AnalyticsService {
     /**
      * Monthly summary metrics for a given year/month
      */
-        public Map<String, Object> getMonthlySummary(int year, int month) {
-        LocalDate start = LocalDate.of(year, month, 1);
-        LocalDate end = start.with(TemporalAdjusters.lastDayOfMonth());
+    public Map<String, Object> getMonthlySummary(int year, int month) {
+        return coalescer.coalesce("monthlySummary", () -> loadMonthlySummary(year, month), year, month);
+    }
 
-        // Get data from merged_orders table
-        List<MergedOrderPaymentEntity> mergedOrders = mergedOrderRepository.findByOrderDateBetween(start, end);
-        
-        BigDecimal totalRevenue = BigDecimal.ZERO;
-        BigDecimal totalProfit = BigDecimal.ZERO;
-        BigDecimal totalLossFromDelivered = BigDecimal.ZERO;
-        BigDecimal totalLossFromReturns = BigDecimal.ZERO;
-        BigDecimal totalLoss = BigDecimal.ZERO;
-        long totalOrders = mergedOrders.size();
-
-        // Calculate revenue and profit/loss from merged data
-        for (MergedOrderPaymentEntity merged : mergedOrders) {
-            BigDecimal settlementAmount = merged.getSettlementAmount() != null ? merged.getSettlementAmount() : BigDecimal.ZERO;
-            
-            // Add positive settlement amounts to revenue
-            if (settlementAmount.compareTo(BigDecimal.ZERO) > 0) {
-                totalRevenue = totalRevenue.add(settlementAmount);
-            }
-            
-            // Calculate profit/loss for delivered items with positive settlement
-            if (merged.getSkuId() != null && merged.getQuantity() != null && 
-                settlementAmount.compareTo(BigDecimal.ZERO) > 0 && 
-                "DELIVERED".equals(merged.getOrderStatus())) {
-                
-                try {
-                    // Get purchase price for this SKU
-                    BigDecimal purchasePrice = getPurchasePriceForSku(merged.getSkuId());
-                    
-                    if (purchasePrice.compareTo(BigDecimal.ZERO) > 0) {
-                        // Calculate COGS: Purchase Price × Quantity
-                        BigDecimal cogs = purchasePrice.multiply(BigDecimal.valueOf(merged.getQuantity()));
-                        
-                        // Calculate profit/loss: Revenue - COGS
-                        BigDecimal netProfit = settlementAmount.subtract(cogs);
-                        
-                        if (netProfit.signum() > 0) {
-                            totalProfit = totalProfit.add(netProfit);
-                        } else if (netProfit.signum() < 0) {
-                            totalLossFromDelivered = totalLossFromDelivered.add(netProfit.abs());
-                        }
-                    } else {
-                        log.debug("SKU {} has no purchase price, skipping profit calculation", merged.getSkuId());
-                    }
-                } catch (Exception e) {
-                    log.warn("Error calculating profit for SKU {}: {}", merged.getSkuId(), e.getMessage());
-                }
-            }
-            
-            // Calculate loss from returns (negative settlement amounts)
-            if (merged.getSkuId() != null && merged.getQuantity() != null && 
-                settlementAmount.compareTo(BigDecimal.ZERO) < 0) {
-                
-                try {
-                    // Get purchase price for this SKU
-                    BigDecimal purchasePrice = getPurchasePriceForSku(merged.getSkuId());
-                    
-                    if (purchasePrice.compareTo(BigDecimal.ZERO) > 0) {
-                        // Calculate COGS: Purchase Price × Quantity
-                        BigDecimal cogs = purchasePrice.multiply(BigDecimal.valueOf(merged.getQuantity()));
-                        BigDecimal returnAmount = settlementAmount.abs(); // Convert negative to positive
-                        
-                        // Loss calculation: If we received the product, return amount = loss
-                        // If we didn't receive it, loss = COGS (cost of goods)
-                        BigDecimal loss;
-                        if (isProductReceived(merged.getOrderStatus())) {
-                            loss = returnAmount; // Return amount is the actual loss
-                        } else {
-                            loss = cogs; // Full COGS is loss for cancellations/rejections
-                        }
-                        
-                        totalLossFromReturns = totalLossFromReturns.add(loss);
-                    } else {
-                        log.debug("SKU {} has no purchase price, skipping return loss calculation", merged.getSkuId());
-                    }
-                } catch (Exception e) {
-                    log.warn("Error calculating return loss for SKU {}: {}", merged.getSkuId(), e.getMessage());
-                }
-            }
+    private Map<String, Object> loadMonthlySummary(int year, int month) {
+        YearMonth ym = YearMonth.of(year, month);
+        return monthSummary(ym, summarySnapshots.find(List.of(ym)).get(ym));
+    }
+
+    /**
+     * Monthly summaries of every month of a year; closed months come from their snapshots, read
+     * together by primary key, and only months without one are scanned in the cube
+     */
+    public List<Map<String, Object>> getYearSummaries(int year) {
+        return coalescer.coalesce("yearSummaries", () -> loadYearSummaries(year), year);
+    }
+
+    private List<Map<String, Object>> loadYearSummaries(int year) {
+        List<YearMonth> months = new ArrayList<>(12);
+        for (int month = 1; month <= 12; month++) months.add(YearMonth.of(year, month));
+        Map<YearMonth, DashboardAccumulator.SummaryTotals> stored = summarySnapshots.find(months);
+        List<Map<String, Object>> summaries = new ArrayList<>(12);
+        for (YearMonth ym : months) {
+            summaries.add(monthSummary(ym, stored.get(ym)));
         }
+        return summaries;
+    }
+
+    private Map<String, Object> monthSummary(YearMonth ym, DashboardAccumulator.SummaryTotals stored) {
+        LocalDate start = ym.atDay(1);
+        LocalDate end = ym.atEndOfMonth();
 
-        // Total loss combines both delivered item losses and return losses
-        totalLoss = totalLossFromDelivered.add(totalLossFromReturns);
-        BigDecimal netIncome = totalProfit.subtract(totalLoss);
+        DashboardAccumulator.SummaryTotals totals = stored;
+        if (totals == null) {
+            // Revenue, delivered profit/loss and return loss from one scan of the month in the cube
+            totals = newDashboardAccumulator(Aggregation.MONTH).scan(start, end).summaryTotals();
+        }
 
         Map<String, Object> summary = new LinkedHashMap<>();
-        summary.put("year", year);
-        summary.put("month", month);
+        summary.put("year", ym.getYear());
+        summary.put("month", ym.getMonthValue());
         summary.put("start", start);
         summary.put("end", end);
-        summary.put("totalRevenue", totalRevenue);
-        summary.put("totalProfit", totalProfit);
-        summary.put("totalOrders", totalOrders);
-        summary.put("totalLossFromDelivered", totalLossFromDelivered);
-        summary.put("totalLossFromReturns", totalLossFromReturns);
-        summary.put("totalLoss", totalLoss);
-        summary.put("netIncome", netIncome);
-        summary.put("paymentsReceived", totalRevenue);
+        summary.putAll(totals.toMap());
         return summary;
     }
 
@@ -706,33 +656,18 @@ public class AnalyticsService {
      * Returns total losses from delivered items and returns combined
      */
     public Map<String, Object> getComprehensiveLossMetrics(LocalDate start, LocalDate end) {
+        return coalescer.coalesce("comprehensiveLossMetrics", () -> loadComprehensiveLossMetrics(start, end), start, end);
+    }
+
+    private Map<String, Object> loadComprehensiveLossMetrics(LocalDate start, LocalDate end) {
         try {
-            // Get loss orders (delivered items with losses)
-            Map<String, Object> lossOrdersResult = getLossOrders(start, end);
-            Map<String, Object> lossSummary = (Map<String, Object>) lossOrdersResult.get("summary");
-            
-            // Get return analysis (returns with losses)
-            Map<String, Object> returnAnalysisResult = getReturnAnalysis(start, end);
-            Map<String, Object> returnSummary = (Map<String, Object>) returnAnalysisResult.get("summary");
-            
-            // Extract values safely
-            BigDecimal lossFromDelivered = (BigDecimal) lossSummary.get("totalLoss");
-            BigDecimal lossFromReturns = (BigDecimal) returnSummary.get("totalLoss");
-            
-            if (lossFromDelivered == null) lossFromDelivered = BigDecimal.ZERO;
-            if (lossFromReturns == null) lossFromReturns = BigDecimal.ZERO;
-            
-            BigDecimal totalLoss = lossFromDelivered.add(lossFromReturns);
+            // Delivered and return losses from one scan, same rules as getLossOrders / getReturnAnalysis
+            DashboardAccumulator totals = newDashboardAccumulator(Aggregation.DAY).scan(start, end);
             
             Map<String, Object> metrics = new LinkedHashMap<>();
             metrics.put("startDate", start);
             metrics.put("endDate", end);
-            metrics.put("lossFromDelivered", lossFromDelivered);
-            metrics.put("lossFromReturns", lossFromReturns);
-            metrics.put("totalLoss", totalLoss);
-            metrics.put("deliveredLossOrders", lossSummary.get("totalOrders"));
-            metrics.put("returnLossOrders", returnSummary.get("totalOrders"));
-            metrics.put("totalLossOrders", ((Number) lossSummary.get("totalOrders")).intValue() + ((Number) returnSummary.get("totalOrders")).intValue());
+            metrics.putAll(totals.lossMetrics());
             
             return metrics;
             
@@ -754,58 +689,90 @@ public class AnalyticsService {
 
 
 
+    /**
+     * All dashboard metrics for a range from a single pass over the merged order cube:
+     * summary totals, loss order and return summaries, loss metrics and profit/loss trends.
+     * Each section matches its individual endpoint for the same range.
+     */
+    public Map<String, Object> getDashboard(LocalDate start, LocalDate end, Aggregation agg) {
+        return coalescer.coalesce("dashboard", () -> loadDashboard(start, end, agg), start, end, agg);
+    }
+
+    private Map<String, Object> loadDashboard(LocalDate start, LocalDate end, Aggregation agg) {
+        DashboardAccumulator totals = newDashboardAccumulator(agg).scan(start, end);
+        
+        Map<String, Object> dashboard = new LinkedHashMap<>();
+        dashboard.put("startDate", start);
+        dashboard.put("endDate", end);
+        dashboard.put("aggregation", agg);
+        dashboard.put("summary", totals.summary());
+        dashboard.put("lossOrders", totals.lossOrdersSummary());
+        dashboard.put("returnAnalysis", totals.returnAnalysisSummary());
+        dashboard.put("lossMetrics", totals.lossMetrics());
+        dashboard.put("profitTrend", totals.profitTrend());
+        dashboard.put("lossTrend", totals.lossTrend());
+        return dashboard;
+    }
+    
+    DashboardAccumulator newDashboardAccumulator(Aggregation agg) {
+        return new DashboardAccumulator(cubeService.current(), agg, AnalyticsService::isExpectedReturnStatus);
+    }
+
     /**
      * Diagnostics: show how payments join to orders and computed costs for a given month
      */
     public Map<String, Object> getMonthlyDiagnostics(int year, int month) {
+        return coalescer.coalesce("monthlyDiagnostics", () -> loadMonthlyDiagnostics(year, month), year, month);
+    }
+
+    private Map<String, Object> loadMonthlyDiagnostics(int year, int month) {
         LocalDate start = LocalDate.of(year, month, 1);
         LocalDate end = start.with(TemporalAdjusters.lastDayOfMonth());
         LocalDateTime s = start.atStartOfDay();
         LocalDateTime e = end.plusDays(1).atStartOfDay().minusNanos(1);
 
-        var payments = paymentRepository.findByPaymentDateTimeBetween(s, e);
-        Map<String, BigDecimal> revenueByOrderId = payments.stream()
-                .filter(p -> p.getOrderId() != null)
-                .collect(Collectors.groupingBy(
-                        p -> p.getOrderId().trim(),
-                        Collectors.mapping(
-                                p -> p.getAmount() == null ? BigDecimal.ZERO : p.getAmount(),
-                                Collectors.reducing(BigDecimal.ZERO, BigDecimal::add)
-                        )
-                ));
+        var payments = paymentRepository.findAmountRowsBetween(s, e);
+        OperationMetrics.scanned(payments.size());
+        Map<String, MoneySum> revenueByOrderId = new HashMap<>();
+        for (PaymentAmountRow p : payments) {
+            if (p.orderId() == null) continue;
+            revenueByOrderId.computeIfAbsent(p.orderId().trim(), k -> new MoneySum()).add(p.amount());
+        }
 
         List<String> orderIds = new ArrayList<>(revenueByOrderId.keySet());
-        Map<String, OrderEntity> ordersById = new HashMap<>();
+        Map<String, OrderCostRow> ordersById = new HashMap<>();
         if (!orderIds.isEmpty()) {
-            var found = orderRepository.findByOrderIdIn(orderIds);
-            for (OrderEntity o : found) {
-                if (o.getOrderId() != null) ordersById.put(o.getOrderId().trim(), o);
+            var found = orderRepository.findCostRowsByOrderIdIn(orderIds);
+            OperationMetrics.scanned(found.size());
+            for (OrderCostRow o : found) {
+                if (o.orderId() != null) ordersById.put(o.orderId().trim(), o);
             }
         }
 
         int matched = 0;
         int zeroCost = 0;
         List<Map<String, Object>> samples = new ArrayList<>();
-        for (Map.Entry<String, BigDecimal> en : revenueByOrderId.entrySet()) {
+        for (Map.Entry<String, MoneySum> en : revenueByOrderId.entrySet()) {
             String orderId = en.getKey();
-            OrderEntity o = ordersById.get(orderId);
+            BigDecimal revenue = en.getValue().toBigDecimal();
+            OrderCostRow o = ordersById.get(orderId);
             boolean hasOrder = o != null;
             if (hasOrder) matched++;
-            BigDecimal qty = hasOrder && o.getQuantity() != null ? BigDecimal.valueOf(o.getQuantity()) : BigDecimal.ZERO;
+            BigDecimal qty = hasOrder && o.quantity() != null ? BigDecimal.valueOf(o.quantity()) : BigDecimal.ZERO;
             BigDecimal purchase = hasOrder ? computePurchasePrice(o) : BigDecimal.ZERO;
             BigDecimal cost = purchase.multiply(qty);
             if (cost.compareTo(BigDecimal.ZERO) == 0) zeroCost++;
             if (samples.size() < 10) {
                 Map<String, Object> row = new LinkedHashMap<>();
                 row.put("orderId", orderId);
-                row.put("revenue", en.getValue());
+                row.put("revenue", revenue);
                 row.put("hasOrder", hasOrder);
                 if (hasOrder) {
-                    row.put("sku", o.getSku());
-                    row.put("quantity", o.getQuantity());
+                    row.put("sku", o.sku());
+                    row.put("quantity", o.quantity());
                     row.put("purchasePriceUsed", purchase);
                     row.put("cost", cost);
-                    row.put("profit", en.getValue().subtract(cost));
+                    row.put("profit", revenue.subtract(cost));
                 }
                 samples.add(row);
             }
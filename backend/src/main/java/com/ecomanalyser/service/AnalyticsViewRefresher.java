@@ -0,0 +1,98 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.event.MergedOrdersChangedEvent;
+import com.ecomanalyser.event.PaymentsImportedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Refreshes the status-by-month materialized views, created by migration V5, after the data
+ * under them commits: merged_order_status_month after every merged_orders change, including
+ * per-SKU restamps, and payment_status_month after every payment upload.
+ *
+ * Refreshes run CONCURRENTLY on one background thread, so readers keep the previous contents
+ * until the new ones are in. Requests for a view already waiting to be refreshed are folded
+ * into that refresh. Each refresh is timed as {@code analytics.view.refresh}, tagged with the
+ * view and its outcome.
+ */
+@Service
+@Slf4j
+public class AnalyticsViewRefresher {
+
+    public static final String MERGED_STATUS_MONTH = "merged_order_status_month";
+    public static final String PAYMENT_STATUS_MONTH = "payment_status_month";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "analytics-view-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public AnalyticsViewRefresher(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Refresh one view now, on the calling thread
+     *
+     * @return false when the refresh failed; the view keeps its previous contents
+     */
+    public boolean refresh(String view) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        boolean refreshed = false;
+        try {
+            jdbcTemplate.execute("REFRESH MATERIALIZED VIEW CONCURRENTLY " + view);
+            refreshed = true;
+        } catch (Exception e) {
+            log.warn("Could not refresh materialized view {}: {}", view, e.getMessage());
+        }
+        long nanos = sample.stop(Timer.builder("analytics.view.refresh")
+                .description("Duration of materialized view refreshes")
+                .tag("view", view)
+                .tag("outcome", refreshed ? "success" : "failure")
+                .register(meterRegistry));
+        if (refreshed) log.info("Refreshed materialized view {} in {} ms", view, nanos / 1_000_000);
+        return refreshed;
+    }
+
+    /**
+     * Schedule a refresh of one view
+     */
+    public void refreshAsync(String view) {
+        if (!queued.add(view)) return;
+        refresher.execute(() -> {
+            queued.remove(view);
+            refresh(view);
+        });
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onMergedOrdersChanged(MergedOrdersChangedEvent event) {
+        refreshAsync(MERGED_STATUS_MONTH);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onPaymentsImported(PaymentsImportedEvent event) {
+        refreshAsync(PAYMENT_STATUS_MONTH);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+}
@@ -0,0 +1,105 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.service.AnalyticsService.Aggregation;
+
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps the epoch days of a date span to chart bucket ids for one {@link Aggregation}.
+ *
+ * The table is built once per span with one entry per day and one LocalDate per bucket, so
+ * bucketing a row is an array lookup. Aggregation loops keep their sums in arrays indexed by
+ * bucket id and only turn bucket ids back into dates for the response.
+ *
+ * Spans come from data, never from a request alone: {@link MergedOrderCube#calendar} covers the
+ * cube's dates once per cube, and {@link #clamped} cuts a requested range down to the days rows
+ * were found on, so a request for years 1 to 9999 does not allocate a table per day of it.
+ */
+public final class CalendarIndex {
+
+    /** Bucket id of a day outside the span */
+    public static final int NO_BUCKET = -1;
+
+    private final int firstDay;
+    private final int[] bucketOfDay;
+    private final LocalDate[] bucketStarts;
+
+    private CalendarIndex(int firstDay, int[] bucketOfDay, LocalDate[] bucketStarts) {
+        this.firstDay = firstDay;
+        this.bucketOfDay = bucketOfDay;
+        this.bucketStarts = bucketStarts;
+    }
+
+    /**
+     * Index covering every day from start to end inclusive
+     */
+    public static CalendarIndex of(LocalDate start, LocalDate end, Aggregation agg) {
+        if (end.isBefore(start)) {
+            return new CalendarIndex((int) start.toEpochDay(), new int[0], new LocalDate[0]);
+        }
+        int firstDay = (int) start.toEpochDay();
+        int[] bucketOfDay = new int[(int) (end.toEpochDay() - firstDay) + 1];
+        List<LocalDate> starts = new ArrayList<>();
+        for (LocalDate bucket = bucketStart(start, agg); !bucket.isAfter(end); bucket = nextBucket(bucket, agg)) {
+            int id = starts.size();
+            starts.add(bucket);
+            int from = Math.max(0, (int) (bucket.toEpochDay() - firstDay));
+            int to = Math.min(bucketOfDay.length, (int) (nextBucket(bucket, agg).toEpochDay() - firstDay));
+            for (int day = from; day < to; day++) bucketOfDay[day] = id;
+        }
+        return new CalendarIndex(firstDay, bucketOfDay, starts.toArray(new LocalDate[0]));
+    }
+
+    /**
+     * Index over the part of start..end between the first and last day that has data, empty
+     * when there is no data (either day null)
+     */
+    public static CalendarIndex clamped(LocalDate start, LocalDate end, LocalDate firstDataDay, LocalDate lastDataDay,
+                                        Aggregation agg) {
+        if (firstDataDay == null || lastDataDay == null) return of(start, start.minusDays(1), agg);
+        LocalDate from = firstDataDay.isAfter(start) ? firstDataDay : start;
+        LocalDate to = lastDataDay.isBefore(end) ? lastDataDay : end;
+        return of(from, to, agg);
+    }
+
+    /**
+     * First day of the bucket containing {@code date}
+     */
+    public static LocalDate bucketStart(LocalDate date, Aggregation agg) {
+        return switch (agg) {
+            case DAY -> date;
+            case MONTH -> date.withDayOfMonth(1);
+            case YEAR -> date.with(TemporalAdjusters.firstDayOfYear());
+            case QUARTER -> LocalDate.of(date.getYear(), (date.getMonthValue() - 1) / 3 * 3 + 1, 1);
+        };
+    }
+
+    private static LocalDate nextBucket(LocalDate bucketStart, Aggregation agg) {
+        return switch (agg) {
+            case DAY -> bucketStart.plusDays(1);
+            case MONTH -> bucketStart.plusMonths(1);
+            case QUARTER -> bucketStart.plusMonths(3);
+            case YEAR -> bucketStart.plusYears(1);
+        };
+    }
+
+    public int bucket(long epochDay) {
+        long offset = epochDay - firstDay;
+        return offset >= 0 && offset < bucketOfDay.length ? bucketOfDay[(int) offset] : NO_BUCKET;
+    }
+
+    public int bucket(LocalDate date) {
+        return bucket(date.toEpochDay());
+    }
+
+    public int size() {
+        return bucketStarts.length;
+    }
+
+    public LocalDate bucketDate(int bucket) {
+        return bucketStarts[bucket];
+    }
+}
@@ -0,0 +1,272 @@
+package com.ecomanalyser.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+/**
+ * Column-oriented, primitive representation of the payment columns used by the merge.
+ *
+ * Settlement is held as long paise, dates as epoch-day ints and the repeated string columns
+ * are dictionary encoded. Transaction ids are unique per row, so they are kept as UTF-8 bytes in
+ * one arena instead of a dictionary entry per row. A payment row costs a few dozen bytes
+ * instead of a hydrated PaymentEntity. After {@link #seal()} rows are grouped by order id (stable, so the load
+ * order within one order is kept) and each order's payments occupy a contiguous row range.
+ */
+public final class CompactPaymentTable {
+
+    /** Marker for a missing int value (null quantity or date) */
+    public static final int NO_VALUE = Integer.MIN_VALUE;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final StringDictionary orderIds = new StringDictionary();
+    private final StringDictionary skus = new StringDictionary();
+    private final StringDictionary statuses = new StringDictionary();
+    private final StringDictionary priceTypes = new StringDictionary();
+
+    private int size;
+    private int[] orderCode = new int[INITIAL_CAPACITY];
+    private int[] skuCode = new int[INITIAL_CAPACITY];
+    private int[] quantity = new int[INITIAL_CAPACITY];
+    private long[] settlementPaise = new long[INITIAL_CAPACITY];
+    private int[] paymentDay = new int[INITIAL_CAPACITY];
+    private int[] paymentSecond = new int[INITIAL_CAPACITY];
+    private int[] orderDay = new int[INITIAL_CAPACITY];
+    private int[] statusCode = new int[INITIAL_CAPACITY];
+    // Transaction id of a row: arena bytes [transactionStart, + transactionLength), length -1 for null
+    private int[] transactionStart = new int[INITIAL_CAPACITY];
+    private int[] transactionLength = new int[INITIAL_CAPACITY];
+    private byte[] transactionBytes = new byte[INITIAL_CAPACITY * 16];
+    private int transactionBytesUsed;
+    private int[] priceTypeCode = new int[INITIAL_CAPACITY];
+    private int[] dispatchDay = new int[INITIAL_CAPACITY];
+
+    // Built by seal(): rows of order c are [orderStart[c], orderStart[c + 1])
+    private int[] orderStart;
+    private boolean[] usableStatus;
+
+    /**
+     * Append one payment row. Settlement follows the merge rule: final settlement amount,
+     * falling back to the legacy amount column.
+     */
+    public void add(String orderId, String sku, Integer qty, BigDecimal finalSettlementAmount, BigDecimal amount,
+                    LocalDateTime paymentDateTime, LocalDateTime orderDateTime, String status,
+                    String transactionId, String priceType, LocalDate dispatchDate) {
+        if (orderStart != null) {
+            throw new IllegalStateException("CompactPaymentTable is sealed");
+        }
+        if (orderId == null) return;
+        ensureCapacity(size + 1);
+        int row = size++;
+        orderCode[row] = orderIds.encode(orderId);
+        skuCode[row] = skus.encode(sku);
+        quantity[row] = qty != null ? qty : NO_VALUE;
+        BigDecimal settlement = finalSettlementAmount != null ? finalSettlementAmount : amount;
+        settlementPaise[row] = toPaise(settlement);
+        if (paymentDateTime != null) {
+            paymentDay[row] = (int) paymentDateTime.toLocalDate().toEpochDay();
+            paymentSecond[row] = paymentDateTime.toLocalTime().toSecondOfDay();
+        } else {
+            paymentDay[row] = NO_VALUE;
+            paymentSecond[row] = 0;
+        }
+        orderDay[row] = orderDateTime != null ? (int) orderDateTime.toLocalDate().toEpochDay() : NO_VALUE;
+        statusCode[row] = statuses.encode(status);
+        appendTransactionId(row, transactionId);
+        priceTypeCode[row] = priceTypes.encode(priceType);
+        dispatchDay[row] = dispatchDate != null ? (int) dispatchDate.toEpochDay() : NO_VALUE;
+    }
+
+    /**
+     * Group rows by order id and trim the arrays. No rows can be added afterwards.
+     */
+    public CompactPaymentTable seal() {
+        if (orderStart != null) return this;
+        int orders = orderIds.size();
+
+        // Counting sort by order code keeps the original row order within each order
+        int[] start = new int[orders + 1];
+        for (int row = 0; row < size; row++) start[orderCode[row] + 1]++;
+        for (int c = 0; c < orders; c++) start[c + 1] += start[c];
+        int[] target = new int[size];
+        int[] cursor = Arrays.copyOf(start, orders);
+        for (int row = 0; row < size; row++) target[row] = cursor[orderCode[row]]++;
+
+        orderCode = permute(orderCode, target);
+        skuCode = permute(skuCode, target);
+        quantity = permute(quantity, target);
+        settlementPaise = permute(settlementPaise, target);
+        paymentDay = permute(paymentDay, target);
+        paymentSecond = permute(paymentSecond, target);
+        orderDay = permute(orderDay, target);
+        statusCode = permute(statusCode, target);
+        transactionStart = permute(transactionStart, target);
+        transactionLength = permute(transactionLength, target);
+        transactionBytes = Arrays.copyOf(transactionBytes, transactionBytesUsed);
+        priceTypeCode = permute(priceTypeCode, target);
+        dispatchDay = permute(dispatchDay, target);
+
+        usableStatus = new boolean[statuses.size()];
+        for (int c = 0; c < usableStatus.length; c++) {
+            String s = statuses.decode(c);
+            usableStatus[c] = !s.isBlank() && !"unknown".equalsIgnoreCase(s);
+        }
+        orderStart = start;
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int orderCount() {
+        return orderIds.size();
+    }
+
+    public String orderId(int orderCode) {
+        return orderIds.decode(orderCode);
+    }
+
+    /**
+     * Dictionary code for an order id, or {@link StringDictionary#NULL_CODE} when it has no payments
+     */
+    public int orderCodeOf(String orderId) {
+        return orderIds.codeOf(orderId);
+    }
+
+    public int firstRow(int orderCode) {
+        return orderStart[orderCode];
+    }
+
+    public int endRow(int orderCode) {
+        return orderStart[orderCode + 1];
+    }
+
+    public long settlementPaise(int row) {
+        return settlementPaise[row];
+    }
+
+    public int quantity(int row) {
+        return quantity[row];
+    }
+
+    public String sku(int row) {
+        return skus.decode(skuCode[row]);
+    }
+
+    public boolean hasPaymentTime(int row) {
+        return paymentDay[row] != NO_VALUE;
+    }
+
+    public int paymentDay(int row) {
+        return paymentDay[row];
+    }
+
+    public int paymentSecond(int row) {
+        return paymentSecond[row];
+    }
+
+    public int orderDay(int row) {
+        return orderDay[row];
+    }
+
+    public String status(int row) {
+        return statuses.decode(statusCode[row]);
+    }
+
+    /**
+     * Whether the row carries a status the merge may use (not blank and not "unknown")
+     */
+    public boolean hasUsableStatus(int row) {
+        int code = statusCode[row];
+        return code != StringDictionary.NULL_CODE && usableStatus[code];
+    }
+
+    public String transactionId(int row) {
+        int length = transactionLength[row];
+        return length < 0 ? null : new String(transactionBytes, transactionStart[row], length, StandardCharsets.UTF_8);
+    }
+
+    public String priceType(int row) {
+        return priceTypes.decode(priceTypeCode[row]);
+    }
+
+    public int dispatchDay(int row) {
+        return dispatchDay[row];
+    }
+
+    /**
+     * True when row a was paid strictly later than row b (rows without a payment time never win)
+     */
+    public boolean paidAfter(int a, int b) {
+        if (!hasPaymentTime(a)) return false;
+        if (!hasPaymentTime(b)) return true;
+        if (paymentDay[a] != paymentDay[b]) return paymentDay[a] > paymentDay[b];
+        return paymentSecond[a] > paymentSecond[b];
+    }
+
+    public static long toPaise(BigDecimal value) {
+        if (value == null) return 0L;
+        // Up to two decimals: shifting lands on scale 0, whose long value is read without a BigInteger
+        if (value.scale() <= 2) return value.movePointRight(2).longValueExact();
+        return value.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal fromPaise(long paise) {
+        return BigDecimal.valueOf(paise, 2);
+    }
+
+    public static LocalDate toDate(int epochDay) {
+        return epochDay == NO_VALUE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= orderCode.length) return;
+        int capacity = Math.max(needed, orderCode.length + (orderCode.length >> 1));
+        orderCode = Arrays.copyOf(orderCode, capacity);
+        skuCode = Arrays.copyOf(skuCode, capacity);
+        quantity = Arrays.copyOf(quantity, capacity);
+        settlementPaise = Arrays.copyOf(settlementPaise, capacity);
+        paymentDay = Arrays.copyOf(paymentDay, capacity);
+        paymentSecond = Arrays.copyOf(paymentSecond, capacity);
+        orderDay = Arrays.copyOf(orderDay, capacity);
+        statusCode = Arrays.copyOf(statusCode, capacity);
+        transactionStart = Arrays.copyOf(transactionStart, capacity);
+        transactionLength = Arrays.copyOf(transactionLength, capacity);
+        priceTypeCode = Arrays.copyOf(priceTypeCode, capacity);
+        dispatchDay = Arrays.copyOf(dispatchDay, capacity);
+    }
+
+    private void appendTransactionId(int row, String transactionId) {
+        if (transactionId == null) {
+            transactionStart[row] = transactionBytesUsed;
+            transactionLength[row] = -1;
+            return;
+        }
+        byte[] bytes = transactionId.getBytes(StandardCharsets.UTF_8);
+        int needed = transactionBytesUsed + bytes.length;
+        if (needed > transactionBytes.length) {
+            transactionBytes = Arrays.copyOf(transactionBytes, Math.max(needed, transactionBytes.length + (transactionBytes.length >> 1)));
+        }
+        System.arraycopy(bytes, 0, transactionBytes, transactionBytesUsed, bytes.length);
+        transactionStart[row] = transactionBytesUsed;
+        transactionLength[row] = bytes.length;
+        transactionBytesUsed = needed;
+    }
+
+    private int[] permute(int[] column, int[] target) {
+        int[] out = new int[size];
+        for (int row = 0; row < size; row++) out[target[row]] = column[row];
+        return out;
+    }
+
+    private long[] permute(long[] column, int[] target) {
+        long[] out = new long[size];
+        for (int row = 0; row < size; row++) out[target[row]] = column[row];
+        return out;
+    }
+}
@@ -0,0 +1,87 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.repository.DailyOrderRollupRepository;
+import com.ecomanalyser.repository.MergedOrderPaymentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Maintains daily_order_rollup, the (order date, SKU, status, state) aggregate of merged_orders
+ * that time-series charts, status counts and SKU rankings are answered from.
+ *
+ * Nothing is maintained incrementally. Every merged_orders rebuild deletes and re-inserts the
+ * whole rollup, and a cost re-stamp replaces every day of the re-stamped SKUs, since their cost
+ * columns change on all of their rows. Both run inside the transaction that changed merged_orders.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DailyOrderRollupService {
+
+    private static final int REFRESH_BATCH_SKUS = 500;
+
+    private final DailyOrderRollupRepository rollupRepository;
+    private final MergedOrderPaymentRepository mergedRepo;
+    private final PlatformTransactionManager transactionManager;
+
+    /**
+     * Replace the whole rollup from merged_orders. Pending merged row writes are flushed first.
+     *
+     * @return number of rollup rows written
+     */
+    @Transactional
+    public int rebuildAll() {
+        mergedRepo.flush();
+        rollupRepository.deleteAllRows();
+        int rows = rollupRepository.insertAllFromMergedOrders();
+        log.info("Rebuilt daily_order_rollup with {} rows", rows);
+        return rows;
+    }
+
+    /**
+     * Replace the rollup rows of the given SKUs, all days, from their merged rows
+     */
+    @Transactional
+    public int refreshSkus(Collection<String> skus) {
+        if (skus.isEmpty()) return 0;
+        mergedRepo.flush();
+        List<String> skuList = new ArrayList<>(skus);
+        int rows = 0;
+        for (int from = 0; from < skuList.size(); from += REFRESH_BATCH_SKUS) {
+            List<String> batch = skuList.subList(from, Math.min(from + REFRESH_BATCH_SKUS, skuList.size()));
+            rollupRepository.deleteBySkuIds(batch);
+            rows += rollupRepository.insertFromMergedOrdersForSkus(batch);
+        }
+        log.debug("Refreshed {} daily_order_rollup rows for {} SKUs", rows, skus.size());
+        return rows;
+    }
+
+    /**
+     * Build the rollup for merged data written before it existed, or repair it if it drifted
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfOutOfDate() {
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                long merged = mergedRepo.countByOrderDateIsNotNull();
+                long rolledUp = rollupRepository.sumOrderCount();
+                if (merged != rolledUp) {
+                    log.info("daily_order_rollup covers {} of {} merged orders, rebuilding", rolledUp, merged);
+                    rebuildAll();
+                }
+            });
+        } catch (Exception e) {
+            log.warn("Could not check daily_order_rollup: {}", e.getMessage());
+        }
+    }
+}
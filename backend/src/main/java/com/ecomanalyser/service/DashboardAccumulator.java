@@ -0,0 +1,272 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.dto.ChartResponse;
+import com.ecomanalyser.dto.TimeSeriesPoint;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Every dashboard metric of a date range, accumulated in one pass over the merged order cube.
+ *
+ * Each section applies the same row rules as the endpoint it mirrors:
+ * summary = monthly summary, loss orders = delivered orders with a negative net profit,
+ * return analysis = priced non-delivered orders with a negative settlement, trends =
+ * profit/loss trend. Money is summed in paise with overflow-checked adds.
+ */
+final class DashboardAccumulator {
+
+    private final MergedOrderCube cube;
+    private final AnalyticsService.Aggregation agg;
+    private final Predicate<String> expectedReturnStatus;
+    private final int delivered;
+    private final int returnReceived;
+    private final int returnNotReceived;
+
+    // Summary
+    private long orders;
+    private long revenue;
+    private long deliveredProfit;
+    private long deliveredLoss;
+    private long returnLoss;
+
+    // Loss orders
+    private long lossOrders;
+    private long lossQuantity;
+    private long lossRevenue;
+    private long lossCogs;
+    private long lossAmount;
+
+    // Return analysis
+    private long returnOrders;
+    private long returnQuantity;
+    private long returnAmount;
+    private long returnCogs;
+    private long returnOrderLoss;
+    private final Set<String> unexpectedStatuses = new TreeSet<>();
+
+    // Trends: orders, profit and loss per calendar bucket of the scanned rows; index 0 is the
+    // cube calendar's bucket firstBucket
+    private CalendarIndex calendar;
+    private int firstBucket;
+    private long[] trendOrders;
+    private long[] trendProfit;
+    private long[] trendLoss;
+
+    // Positive settlements per SKU code, only when requested before the scan
+    private long[] skuRevenue;
+
+    DashboardAccumulator(MergedOrderCube cube, AnalyticsService.Aggregation agg,
+                         Predicate<String> expectedReturnStatus) {
+        this.cube = cube;
+        this.agg = agg;
+        this.expectedReturnStatus = expectedReturnStatus;
+        this.delivered = cube.codeOf(MergedOrderCube.Dimension.STATUS, "DELIVERED");
+        this.returnReceived = cube.codeOf(MergedOrderCube.Dimension.LOSS_CATEGORY, MergedOrderCostService.RETURN_RECEIVED);
+        this.returnNotReceived = cube.codeOf(MergedOrderCube.Dimension.LOSS_CATEGORY, MergedOrderCostService.RETURN_NOT_RECEIVED);
+    }
+
+    DashboardAccumulator scan(LocalDate start, LocalDate end) {
+        int first = cube.firstRow(start);
+        int last = cube.endRow(end);
+        // Buckets only need to cover the dates that actually occur in the range
+        calendar = cube.calendar(agg);
+        firstBucket = first < last ? calendar.bucket(cube.epochDay(first)) : 0;
+        int buckets = first < last ? calendar.bucket(cube.epochDay(last - 1)) - firstBucket + 1 : 0;
+        trendOrders = new long[buckets];
+        trendProfit = new long[buckets];
+        trendLoss = new long[buckets];
+        for (int row = first; row < last; row++) {
+            accept(row);
+        }
+        return this;
+    }
+
+    private void accept(int row) {
+        long settlement = cube.settlementPaise(row);
+        boolean isDelivered = cube.statusCode(row) == delivered;
+        boolean priced = cube.hasCost(row);
+        long net = priced ? cube.netProfitPaise(row) : 0L;
+        long cogs = cube.cogsPaise(row) != MergedOrderCube.NO_AMOUNT ? cube.cogsPaise(row) : 0L;
+        int quantity = cube.hasQuantity(row) ? cube.quantity(row) : 0;
+        int category = cube.lossCategoryCode(row);
+
+        orders++;
+        trendOrders[calendar.bucket(cube.epochDay(row)) - firstBucket]++;
+        if (settlement > 0) {
+            revenue = Math.addExact(revenue, settlement);
+            if (skuRevenue != null && cube.skuCode(row) != StringDictionary.NULL_CODE) {
+                skuRevenue[cube.skuCode(row)] = Math.addExact(skuRevenue[cube.skuCode(row)], settlement);
+            }
+            if (isDelivered && net > 0) deliveredProfit = Math.addExact(deliveredProfit, net);
+            if (isDelivered && net < 0) deliveredLoss = Math.subtractExact(deliveredLoss, net);
+            if (net != 0) {
+                long[] trend = net > 0 ? trendProfit : trendLoss;
+                int bucket = calendar.bucket(cube.epochDay(row)) - firstBucket;
+                trend[bucket] = Math.addExact(trend[bucket], net);
+            }
+        }
+        if (category == returnReceived) returnLoss = Math.subtractExact(returnLoss, settlement);
+        else if (category == returnNotReceived) returnLoss = Math.addExact(returnLoss, cogs);
+
+        if (isDelivered && settlement != 0 && net < 0) {
+            lossOrders++;
+            lossQuantity += quantity;
+            lossRevenue = Math.addExact(lossRevenue, settlement);
+            lossCogs = Math.addExact(lossCogs, cogs);
+            lossAmount = Math.subtractExact(lossAmount, net);
+        }
+
+        if (settlement < 0 && !isDelivered && priced) {
+            long returned = -settlement;
+            returnOrders++;
+            returnQuantity += quantity;
+            returnAmount = Math.addExact(returnAmount, returned);
+            returnCogs = Math.addExact(returnCogs, cogs);
+            returnOrderLoss = Math.addExact(returnOrderLoss, category == returnReceived ? returned : cogs);
+            String status = cube.status(row);
+            if (status != null && !expectedReturnStatus.test(status)) unexpectedStatuses.add(status);
+        }
+    }
+
+    long getOrders() {
+        return orders;
+    }
+
+    BigDecimal getRevenue() {
+        return money(revenue);
+    }
+
+    BigDecimal getDeliveredProfit() {
+        return money(deliveredProfit);
+    }
+
+    BigDecimal getDeliveredLoss() {
+        return money(deliveredLoss);
+    }
+
+    BigDecimal getReturnLoss() {
+        return money(returnLoss);
+    }
+
+    Map<String, Object> summary() {
+        return summaryTotals().toMap();
+    }
+
+    SummaryTotals summaryTotals() {
+        return new SummaryTotals(orders, revenue, deliveredProfit, deliveredLoss, returnLoss);
+    }
+
+    /** Same keys as the summary of getLossOrders */
+    Map<String, Object> lossOrdersSummary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("totalOrders", lossOrders);
+        summary.put("totalQuantity", lossQuantity);
+        summary.put("totalRevenue", money(lossRevenue));
+        summary.put("totalCogs", money(lossCogs));
+        summary.put("totalLoss", money(lossAmount));
+        return summary;
+    }
+
+    /** Same keys as the summary of getReturnAnalysis */
+    Map<String, Object> returnAnalysisSummary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("totalOrders", returnOrders);
+        summary.put("totalQuantity", returnQuantity);
+        summary.put("totalReturnAmount", money(returnAmount));
+        summary.put("totalCogs", money(returnCogs));
+        summary.put("totalLoss", money(returnOrderLoss));
+        summary.put("unexpectedStatuses", new ArrayList<>(unexpectedStatuses));
+        return summary;
+    }
+
+    /** Same keys as getComprehensiveLossMetrics, without the dates */
+    Map<String, Object> lossMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("lossFromDelivered", money(lossAmount));
+        metrics.put("lossFromReturns", money(returnOrderLoss));
+        metrics.put("totalLoss", money(Math.addExact(lossAmount, returnOrderLoss)));
+        metrics.put("deliveredLossOrders", lossOrders);
+        metrics.put("returnLossOrders", returnOrders);
+        metrics.put("totalLossOrders", lossOrders + returnOrders);
+        return metrics;
+    }
+
+    ChartResponse<TimeSeriesPoint> profitTrend() {
+        return trend(trendProfit);
+    }
+
+    /** Reported as positive loss amounts, like lossTrend */
+    ChartResponse<TimeSeriesPoint> lossTrend() {
+        return trend(trendLoss);
+    }
+
+    /** Same points as ordersByTime */
+    ChartResponse<TimeSeriesPoint> ordersTrend() {
+        List<TimeSeriesPoint> points = new ArrayList<>();
+        for (int bucket = 0; bucket < trendOrders.length; bucket++) {
+            if (trendOrders[bucket] != 0) points.add(new TimeSeriesPoint(calendar.bucketDate(bucket + firstBucket), BigDecimal.valueOf(trendOrders[bucket])));
+        }
+        return new ChartResponse<>(points);
+    }
+
+    /**
+     * Also sum positive settlements per SKU during the scan, for {@link #topSkusByRevenue}
+     */
+    DashboardAccumulator trackSkuRevenue() {
+        skuRevenue = new long[cube.values(MergedOrderCube.Dimension.SKU).size()];
+        return this;
+    }
+
+    /** Same rows as topProfitableSkus */
+    List<Map<String, Object>> topSkusByRevenue(int limit) {
+        List<String> skus = cube.values(MergedOrderCube.Dimension.SKU);
+        List<Integer> codes = new ArrayList<>();
+        for (int code = 0; code < skuRevenue.length; code++) {
+            if (skuRevenue[code] != 0) codes.add(code);
+        }
+        codes.sort(Comparator.comparingLong((Integer code) -> skuRevenue[code]).reversed());
+        List<Map<String, Object>> top = new ArrayList<>();
+        for (int code : codes.subList(0, Math.min(Math.max(limit, 0), codes.size()))) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("sku", skus.get(code));
+            m.put("profit", money(skuRevenue[code]).longValue());
+            top.add(m);
+        }
+        return top;
+    }
+
+    private ChartResponse<TimeSeriesPoint> trend(long[] sums) {
+        List<TimeSeriesPoint> points = new ArrayList<>();
+        for (int bucket = 0; bucket < sums.length; bucket++) {
+            if (sums[bucket] != 0) points.add(new TimeSeriesPoint(calendar.bucketDate(bucket + firstBucket), money(Math.abs(sums[bucket]))));
+        }
+        return new ChartResponse<>(points);
+    }
+
+    /**
+     * The counters behind {@link #summary()}, in paise; also what a monthly summary snapshot stores
+     */
+    record SummaryTotals(long orders, long revenue, long deliveredProfit, long deliveredLoss, long returnLoss) {
+
+        Map<String, Object> toMap() {
+            BigDecimal totalLoss = money(Math.addExact(deliveredLoss, returnLoss));
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("totalRevenue", money(revenue));
+            summary.put("totalProfit", money(deliveredProfit));
+            summary.put("totalOrders", orders);
+            summary.put("totalLossFromDelivered", money(deliveredLoss));
+            summary.put("totalLossFromReturns", money(returnLoss));
+            summary.put("totalLoss", totalLoss);
+            summary.put("netIncome", money(deliveredProfit).subtract(totalLoss));
+            summary.put("paymentsReceived", money(revenue));
+            return summary;
+        }
+    }
+
+    private static BigDecimal money(long paise) {
+        return CompactPaymentTable.fromPaise(paise);
+    }
+}
@@ -0,0 +1,176 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.event.DataVersionChangedEvent;
+import com.ecomanalyser.event.MergedOrdersChangedEvent;
+import com.ecomanalyser.event.SkuPricesChangedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counter that moves forward every time data behind the analytics endpoints changes on any
+ * node, and again once this node's in-memory cube and price catalog have reloaded. Cached
+ * analytics responses and their ETags are keyed by it, so nothing needs to be invalidated
+ * explicitly.
+ *
+ * Changes are recorded in the shared data_version table, one row per data set, inside the
+ * transaction that makes them. Every node polls that table; when another node's change shows
+ * up, the epoch moves and a {@link DataVersionChangedEvent} tells the cube and the price catalog
+ * to reload. A node therefore serves responses from before another node's change for at most
+ * one poll interval plus its reload.
+ *
+ * The counter itself stays per process, because a response reflects this node's cube and
+ * catalog; ETags carry an instance id so one node never answers 304 to an ETag issued by another.
+ */
+@Component
+@Slf4j
+public class DataEpoch {
+
+    // Data sets with a data_version row
+    public static final String MERGED_ORDERS = "merged_orders";
+    public static final String SKU_PRICES = "sku_prices";
+    public static final String IMPORTS = "imports";
+
+    private static final String ADVANCE_SQL = "INSERT INTO data_version (name, version, changed_at) VALUES (?, 1, now()) "
+            + "ON CONFLICT (name) DO UPDATE SET version = data_version.version + 1, changed_at = now() RETURNING version";
+
+    private final String instanceId = UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicLong epoch = new AtomicLong();
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long pollMillis;
+
+    // Latest version of each data set this node has caught up with
+    private final Map<String, Long> seen = new HashMap<>();
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "data-version-poll");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public DataEpoch(JdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher,
+                     @Value("${analytics.data-version.poll-millis:2000}") long pollMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.pollMillis = pollMillis;
+    }
+
+    public long current() {
+        return epoch.get();
+    }
+
+    public long bump() {
+        long next = epoch.incrementAndGet();
+        log.debug("Data epoch advanced to {}", next);
+        return next;
+    }
+
+    /**
+     * Record a change to a data set. Inside a transaction the shared version is advanced just
+     * before the commit, so the data_version row lock is held only briefly and the version
+     * commits or rolls back with the change; this node's epoch moves after the commit.
+     * Without a transaction both happen right away.
+     */
+    public void changed(String dataSet) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            long[] version = {0};
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    version[0] = advance(dataSet);
+                }
+
+                @Override
+                public void afterCommit() {
+                    caughtUp(dataSet, version[0]);
+                    bump();
+                }
+            });
+        } else {
+            caughtUp(dataSet, advance(dataSet));
+            bump();
+        }
+    }
+
+    /**
+     * Strong ETag for a response computed at the given epoch
+     */
+    public String etag(long epoch) {
+        return "\"" + instanceId + "-" + epoch + "\"";
+    }
+
+    // Published inside the transaction that rewrites merged_orders or changes prices
+    @EventListener
+    public void onMergedOrdersChanged(MergedOrdersChangedEvent event) {
+        changed(MERGED_ORDERS);
+    }
+
+    @EventListener
+    public void onPricesChanged(SkuPricesChangedEvent event) {
+        changed(SKU_PRICES);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startPolling() {
+        if (pollMillis <= 0) return;
+        poller.scheduleWithFixedDelay(this::poll, 0, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Pick up changes other nodes committed since the last poll. The first poll only records
+     * the current versions, since everything loaded so far already reflects them.
+     */
+    void poll() {
+        try {
+            Map<String, Long> versions = new HashMap<>();
+            jdbcTemplate.query("SELECT name, version FROM data_version",
+                    rs -> { versions.put(rs.getString(1), rs.getLong(2)); });
+            for (Map.Entry<String, Long> e : versions.entrySet()) {
+                if (caughtUp(e.getKey(), e.getValue())) {
+                    log.info("{} changed on another node (version {}), refreshing", e.getKey(), e.getValue());
+                    bump();
+                    eventPublisher.publishEvent(new DataVersionChangedEvent(e.getKey(), e.getValue()));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Could not poll data_version: {}", e.getMessage());
+        }
+    }
+
+    private long advance(String dataSet) {
+        Long version = jdbcTemplate.queryForObject(ADVANCE_SQL, Long.class, dataSet);
+        return version != null ? version : 0;
+    }
+
+    /**
+     * Move the seen version of a data set forward
+     *
+     * @return whether it moved past a version seen before, i.e. the data set changed since
+     */
+    private synchronized boolean caughtUp(String dataSet, long version) {
+        Long previous = seen.get(dataSet);
+        if (previous != null && previous >= version) return false;
+        seen.put(dataSet, version);
+        return previous != null;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        poller.shutdownNow();
+    }
+}
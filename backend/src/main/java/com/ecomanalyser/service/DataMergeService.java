@@ -3,18 +3,24 @@ package com.ecomanalyser.service;
 import com.ecomanalyser.domain.OrderEntity;
 import com.ecomanalyser.domain.PaymentEntity;
 import com.ecomanalyser.domain.MergedOrderPaymentEntity;
+import com.ecomanalyser.event.MergedOrdersChangedEvent;
 import com.ecomanalyser.repository.OrderRepository;
 import com.ecomanalyser.repository.PaymentRepository;
 import com.ecomanalyser.repository.MergedOrderPaymentRepository;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.time.LocalDate;
+import java.time.YearMonth;
 
 @Service
 @RequiredArgsConstructor
@@ -24,6 +30,16 @@ public class DataMergeService {
     private final OrderRepository orderRepository;
     private final PaymentRepository paymentRepository;
     private final MergedOrderPaymentRepository mergedRepo;
+    private final MergedOrderCostService costService;
+    private final DailyOrderRollupService rollupService;
+    private final MonthlySummarySnapshots summarySnapshots;
+    private final TablePartitionService partitionService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EntityManager entityManager;
+
+    // Rows between progress updates / cancellation checks, and rows per saveAll batch
+    private static final int PROGRESS_INTERVAL = 10_000;
+    private static final int WRITE_CHUNK_SIZE = 5_000;
 
     /**
      * Merged data structure containing combined order and payment information
@@ -254,6 +270,7 @@ public class DataMergeService {
             log.info("Successfully fetched {} payments", payments.size());
             
             log.info("Found {} orders and {} payments", orders.size(), payments.size());
+            OperationMetrics.scanned(orders.size() + payments.size());
             
             // Check for data consistency
             if (payments.size() > orders.size()) {
@@ -346,141 +363,244 @@ public class DataMergeService {
     /**
      * Rebuild merged table from current orders and payments
      */
+    @Transactional
     public int rebuildMergedTable() {
+        return rebuildMergedTable(new MergeRebuildJob());
+    }
+
+    /**
+     * Rebuild merged table, reporting progress on the job and stopping at the next checkpoint
+     * when it is cancelled (the surrounding transaction then rolls back)
+     */
+    @Transactional
+    public int rebuildMergedTable(MergeRebuildJob job) {
         log.info("Rebuilding merged_orders with aggregation and status priority rules...");
 
-        // Load all orders and payments
+        // Orders are one row per order id; payments are streamed into a compact columnar table
+        job.enterPhase(MergeRebuildJob.Phase.LOADING);
         List<OrderEntity> orders = orderRepository.findAll();
-        List<PaymentEntity> payments = paymentRepository.findAll();
+        job.addLoaded(orders.size());
+        OperationMetrics.scanned(orders.size());
+        CompactPaymentTable payments = loadCompactPayments(job);
+        Map<String, BigDecimal> purchasePrices = costService.loadPurchasePrices();
 
-        Map<String, OrderEntity> orderById = orders.stream()
-                .collect(Collectors.toMap(OrderEntity::getOrderId, o -> o));
+        job.enterPhase(MergeRebuildJob.Phase.MERGING);
+        List<OrderEntity> uniqueOrders = new ArrayList<>(orders.size());
+        boolean[] hasOrder = new boolean[payments.orderCount()];
+        int paymentOnlyOrders = payments.orderCount();
+        Set<String> seenOrderIds = new HashSet<>(orders.size() * 2);
+        for (OrderEntity order : orders) {
+            if (order.getOrderId() == null || !seenOrderIds.add(order.getOrderId())) continue;
+            uniqueOrders.add(order);
+            int code = payments.orderCodeOf(order.getOrderId());
+            if (code != StringDictionary.NULL_CODE) {
+                hasOrder[code] = true;
+                paymentOnlyOrders--;
+            }
+        }
+        job.setTotalOrders(uniqueOrders.size() + (long) paymentOnlyOrders);
 
-        Map<String, List<PaymentEntity>> paymentsByOrder = payments.stream()
-                .collect(Collectors.groupingBy(PaymentEntity::getOrderId));
+        // Months detached for archiving stay out of merged_orders
+        Set<YearMonth> detached = partitionService.detachedMonths();
+        List<MergedOrderPaymentEntity> toPersist = new ArrayList<>(uniqueOrders.size() + paymentOnlyOrders);
+        int merges = 0;
+        for (OrderEntity order : uniqueOrders) {
+            MergedOrderPaymentEntity merged = mergeOrder(order.getOrderId(), order, payments, payments.orderCodeOf(order.getOrderId()));
+            if (!isDetached(merged, detached)) {
+                MergedOrderCostService.stamp(merged, purchasePrices.get(merged.getSkuId()));
+                toPersist.add(merged);
+            }
+            checkpoint(job, ++merges);
+        }
+        // Orders that only exist on the payment side
+        for (int code = 0; code < payments.orderCount(); code++) {
+            if (!hasOrder[code]) {
+                MergedOrderPaymentEntity merged = mergeOrder(payments.orderId(code), null, payments, code);
+                if (!isDetached(merged, detached)) {
+                    MergedOrderCostService.stamp(merged, purchasePrices.get(merged.getSkuId()));
+                    toPersist.add(merged);
+                }
+                checkpoint(job, ++merges);
+            }
+        }
+        job.addMerged(merges % PROGRESS_INTERVAL);
+        int rows = toPersist.size();
+        if (merges > rows) log.info("Left out {} orders of detached months {}", merges - rows, detached);
+        int paymentRows = payments.size();
+        orders = null;
+        uniqueOrders = null;
+        payments = null;
 
-        // All orderIds from either side
-        Set<String> allOrderIds = new HashSet<>();
-        allOrderIds.addAll(orderById.keySet());
-        allOrderIds.addAll(paymentsByOrder.keySet());
+        // Each chunk is flushed and detached once written, and dropped from toPersist, so neither
+        // the persistence context nor the list keeps every merged row alive until the commit.
+        // Rows are persisted rather than saved: their ids are assigned, so save() would merge and
+        // first look each one up by order_id across every month partition of the emptied table.
+        job.enterPhase(MergeRebuildJob.Phase.WRITING);
+        List<Object[]> monthsBefore = mergedRepo.monthFingerprints();
+        mergedRepo.deleteAllInBatch();
+        entityManager.clear();
+        for (int from = 0; from < rows; from += WRITE_CHUNK_SIZE) {
+            job.checkCancelled();
+            List<MergedOrderPaymentEntity> chunk = toPersist.subList(from, Math.min(from + WRITE_CHUNK_SIZE, rows));
+            chunk.forEach(entityManager::persist);
+            entityManager.flush();
+            entityManager.clear();
+            job.addWritten(chunk.size());
+            Collections.fill(chunk, null);
+        }
+        toPersist = null;
+        job.checkCancelled();
+        rollupService.rebuildAll();
+        // Only the months whose rows came out different lose their summary snapshot
+        summarySnapshots.evict(MonthlySummarySnapshots.changedPeriods(monthsBefore, mergedRepo.monthFingerprints()));
+        eventPublisher.publishEvent(MergedOrdersChangedEvent.rebuilt());
+        log.info("Rebuilt merged_orders with {} rows from {} payment rows", rows, paymentRows);
+        return rows;
+    }
 
-        List<MergedOrderPaymentEntity> toPersist = new ArrayList<>(allOrderIds.size());
+    private static boolean isDetached(MergedOrderPaymentEntity merged, Set<YearMonth> detached) {
+        return merged.getOrderDate() != null && detached.contains(YearMonth.from(merged.getOrderDate()));
+    }
 
-        for (String orderId : allOrderIds) {
-            OrderEntity order = orderById.get(orderId);
-            List<PaymentEntity> orderPayments = paymentsByOrder.getOrDefault(orderId, Collections.emptyList());
+    private static void checkpoint(MergeRebuildJob job, int merged) {
+        if (merged % PROGRESS_INTERVAL == 0) {
+            job.addMerged(PROGRESS_INTERVAL);
+            job.checkCancelled();
+        }
+    }
 
-            // Aggregate settlement amount across all payment rows for this order
-            BigDecimal settlementSum = orderPayments.stream()
-                    .map(p -> p.getFinalSettlementAmount() != null ? p.getFinalSettlementAmount() : p.getAmount())
-                    .filter(Objects::nonNull)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+    /**
+     * Stream the merge columns of every payment into a sealed {@link CompactPaymentTable}.
+     * Must run inside a transaction so the cursor stays open while rows are consumed.
+     */
+    CompactPaymentTable loadCompactPayments(MergeRebuildJob job) {
+        CompactPaymentTable table = new CompactPaymentTable();
+        long[] streamed = {0};
+        try (Stream<Object[]> rows = paymentRepository.streamMergeColumns()) {
+            rows.forEach(r -> {
+                table.add(
+                        (String) r[0],
+                        (String) r[1],
+                        (Integer) r[2],
+                        (BigDecimal) r[3],
+                        (BigDecimal) r[4],
+                        (LocalDateTime) r[5],
+                        (LocalDateTime) r[6],
+                        (String) r[7],
+                        (String) r[8],
+                        (String) r[9],
+                        (LocalDate) r[10]);
+                if (++streamed[0] % PROGRESS_INTERVAL == 0) {
+                    job.addLoaded(PROGRESS_INTERVAL);
+                    job.checkCancelled();
+                }
+            });
+        }
+        job.addLoaded(streamed[0] % PROGRESS_INTERVAL);
+        OperationMetrics.scanned(streamed[0]);
+        return table.seal();
+    }
 
-            // Choose latest payment by paymentDateTime
-            PaymentEntity latestPayment = orderPayments.stream()
-                    .filter(p -> p.getPaymentDateTime() != null)
-                    .max(Comparator.comparing(PaymentEntity::getPaymentDateTime))
-                    .orElse(null);
+    /**
+     * Build one merged row from the order (may be null) and its payment rows
+     * (code may be {@link StringDictionary#NULL_CODE} when the order has no payments).
+     */
+    static MergedOrderPaymentEntity mergeOrder(String orderId, OrderEntity order, CompactPaymentTable payments, int code) {
+        int first = code != StringDictionary.NULL_CODE ? payments.firstRow(code) : 0;
+        int end = code != StringDictionary.NULL_CODE ? payments.endRow(code) : 0;
 
-            // Resolve status from payments first: pick first non-blank status scanning by most recent first
-            String resolvedStatus = null;
-            if (!orderPayments.isEmpty()) {
-                List<PaymentEntity> sorted = new ArrayList<>(orderPayments);
-                sorted.sort(Comparator.comparing(PaymentEntity::getPaymentDateTime, Comparator.nullsLast(Comparator.naturalOrder())).reversed());
-                for (PaymentEntity p : sorted) {
-                    if (p.getOrderStatus() != null && !p.getOrderStatus().isBlank() && !"unknown".equalsIgnoreCase(p.getOrderStatus())) {
-                        resolvedStatus = p.getOrderStatus();
-                        break;
-                    }
-                }
+        // Aggregate settlement, pick the latest payment and resolve status in one pass.
+        // Status scans most recent first with undated rows ahead of dated ones.
+        long settlementPaise = 0L;
+        int latest = -1;
+        int undatedStatusRow = -1;
+        int datedStatusRow = -1;
+        String paymentSku = null;
+        Integer paymentQuantity = null;
+        String anyTransactionId = null;
+        for (int row = first; row < end; row++) {
+            settlementPaise = Math.addExact(settlementPaise, payments.settlementPaise(row));
+            if (payments.hasPaymentTime(row) && (latest < 0 || payments.paidAfter(row, latest))) {
+                latest = row;
             }
-            if (resolvedStatus == null) {
-                // Fall back to order's status if available (using reasonForCreditEntry as status surrogate)
-                if (order != null && order.getReasonForCreditEntry() != null && !order.getReasonForCreditEntry().isBlank()) {
-                    resolvedStatus = order.getReasonForCreditEntry();
-                } else {
-                    resolvedStatus = "UNKNOWN";
+            if (payments.hasUsableStatus(row)) {
+                if (!payments.hasPaymentTime(row)) {
+                    if (undatedStatusRow < 0) undatedStatusRow = row;
+                } else if (datedStatusRow < 0 || payments.paidAfter(row, datedStatusRow)) {
+                    datedStatusRow = row;
                 }
             }
-
-            // Compute other fields
-            BigDecimal orderAmount = null;
-            Integer quantity = null;
-            String sku = null;
-            String state = null;
-            LocalDate orderDate = null;
-            if (order != null) {
-                quantity = order.getQuantity();
-                sku = order.getSku();
-                state = order.getCustomerState();
-                orderDate = order.getOrderDateTime() != null ? order.getOrderDateTime().toLocalDate() : null;
-                if (order.getSellingPrice() != null && order.getQuantity() != null) {
-                    orderAmount = order.getSellingPrice().multiply(BigDecimal.valueOf(order.getQuantity()));
-                }
+            if (paymentSku == null) {
+                String s = payments.sku(row);
+                if (s != null && !s.isBlank()) paymentSku = s;
             }
-            
-            // Enhanced SKU resolution: try order SKU first, then fallback to payment SKU
-            if (sku == null || sku.isBlank()) {
-                // Try to get SKU from any payment for this order
-                sku = orderPayments.stream()
-                        .map(PaymentEntity::getSku)
-                        .filter(Objects::nonNull)
-                        .filter(s -> !s.isBlank())
-                        .findFirst()
-                        .orElse(null);
-                
-                if (sku != null) {
-                    log.debug("Resolved SKU for order {} from payment: {}", orderId, sku);
-                }
+            if (paymentQuantity == null && payments.quantity(row) != CompactPaymentTable.NO_VALUE) {
+                paymentQuantity = payments.quantity(row);
             }
-            
-            // Enhanced quantity resolution: try order quantity first, then fallback to payment quantity
-            if (quantity == null) {
-                // Try to get quantity from any payment for this order
-                quantity = orderPayments.stream()
-                        .map(PaymentEntity::getQuantity)
-                        .filter(Objects::nonNull)
-                        .findFirst()
-                        .orElse(null);
-                
-                if (quantity != null) {
-                    log.debug("Resolved quantity for order {} from payment: {}", orderId, quantity);
-                }
+            if (anyTransactionId == null) {
+                String t = payments.transactionId(row);
+                if (t != null && !t.isBlank()) anyTransactionId = t;
             }
+        }
 
-            LocalDate paymentDate = latestPayment != null && latestPayment.getPaymentDateTime() != null
-                    ? latestPayment.getPaymentDateTime().toLocalDate()
-                    : null;
-            // Prefer order_date_time from payments when available, else fallback to orders
-            if (latestPayment != null && latestPayment.getOrderDateTime() != null) {
-                orderDate = latestPayment.getOrderDateTime().toLocalDate();
+        int statusRow = undatedStatusRow >= 0 ? undatedStatusRow : datedStatusRow;
+        String resolvedStatus;
+        if (statusRow >= 0) {
+            resolvedStatus = payments.status(statusRow);
+        } else if (order != null && order.getReasonForCreditEntry() != null && !order.getReasonForCreditEntry().isBlank()) {
+            // Fall back to order's status (using reasonForCreditEntry as status surrogate)
+            resolvedStatus = order.getReasonForCreditEntry();
+        } else {
+            resolvedStatus = "UNKNOWN";
+        }
+
+        BigDecimal orderAmount = null;
+        Integer quantity = null;
+        String sku = null;
+        String state = null;
+        LocalDate orderDate = null;
+        if (order != null) {
+            quantity = order.getQuantity();
+            sku = order.getSku();
+            state = order.getCustomerState();
+            orderDate = order.getOrderDateTime() != null ? order.getOrderDateTime().toLocalDate() : null;
+            if (order.getSellingPrice() != null && order.getQuantity() != null) {
+                orderAmount = order.getSellingPrice().multiply(BigDecimal.valueOf(order.getQuantity()));
             }
-            String transactionId = latestPayment != null && latestPayment.getTransactionId() != null && !latestPayment.getTransactionId().isBlank()
-                    ? latestPayment.getTransactionId()
-                    : orderPayments.stream().map(PaymentEntity::getTransactionId).filter(Objects::nonNull).filter(s -> !s.isBlank()).findFirst().orElse(null);
-            String priceType = latestPayment != null ? latestPayment.getPriceType() : null;
-            LocalDate dispatchDate = latestPayment != null ? latestPayment.getDispatchDate() : null;
+        }
+        // Order SKU and quantity first, then fall back to the first payment that has one
+        if (sku == null || sku.isBlank()) sku = paymentSku;
+        if (quantity == null) quantity = paymentQuantity;
 
-            toPersist.add(MergedOrderPaymentEntity.builder()
-                    .orderId(orderId)
-                    .orderAmount(orderAmount)
-                    .settlementAmount(settlementSum)
-                    .orderStatus(resolvedStatus)
-                    .skuId(sku)
-                    .orderDate(orderDate)
-                    .paymentDate(paymentDate)
-                    .quantity(quantity)
-                    .state(state)
-                    .transactionId(transactionId)
-                    .dispatchDate(dispatchDate)
-                    .priceType(priceType)
-                    .build());
+        LocalDate paymentDate = null;
+        String transactionId = anyTransactionId;
+        String priceType = null;
+        LocalDate dispatchDate = null;
+        if (latest >= 0) {
+            paymentDate = CompactPaymentTable.toDate(payments.paymentDay(latest));
+            // Prefer order_date_time from payments when available, else fallback to orders
+            LocalDate paymentOrderDate = CompactPaymentTable.toDate(payments.orderDay(latest));
+            if (paymentOrderDate != null) orderDate = paymentOrderDate;
+            String latestTransactionId = payments.transactionId(latest);
+            if (latestTransactionId != null && !latestTransactionId.isBlank()) transactionId = latestTransactionId;
+            priceType = payments.priceType(latest);
+            dispatchDate = CompactPaymentTable.toDate(payments.dispatchDay(latest));
         }
 
-        mergedRepo.deleteAllInBatch();
-        mergedRepo.saveAll(toPersist);
-        log.info("Rebuilt merged_orders with {} rows", toPersist.size());
-        return toPersist.size();
+        return MergedOrderPaymentEntity.builder()
+                .orderId(orderId)
+                .orderAmount(orderAmount)
+                .settlementAmount(CompactPaymentTable.fromPaise(settlementPaise))
+                .orderStatus(resolvedStatus)
+                .skuId(sku)
+                .orderDate(orderDate)
+                .paymentDate(paymentDate)
+                .quantity(quantity)
+                .state(state)
+                .transactionId(transactionId)
+                .dispatchDate(dispatchDate)
+                .priceType(priceType)
+                .build();
     }
     
     /**
@@ -3,6 +3,7 @@ package com.ecomanalyser.service;
 import com.ecomanalyser.domain.OrderEntity;
 import com.ecomanalyser.domain.PaymentEntity;
 import com.ecomanalyser.domain.SkuPriceEntity;
+import com.ecomanalyser.event.PaymentsImportedEvent;
 import com.ecomanalyser.repository.OrderRepository;
 import com.ecomanalyser.repository.PaymentRepository;
 import com.ecomanalyser.repository.SkuPriceRepository;
@@ -18,6 +19,7 @@ import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
@@ -44,7 +46,10 @@ public class ExcelImportService {
     private final OrderRepository orderRepository;
     private final PaymentRepository paymentRepository;
     private final SkuPriceRepository skuPriceRepository;
-    private final DataMergeService dataMergeService;
+    private final MergeRebuildCoordinator mergeRebuildCoordinator;
+    private final MergedOrderCostService costService;
+    private final DataEpoch dataEpoch;
+    private final ApplicationEventPublisher eventPublisher;
 
     // Collect per-request import warnings (thread-local for web requests)
     private final ThreadLocal<java.util.List<String>> importWarnings = ThreadLocal.withInitial(java.util.ArrayList::new);
@@ -73,6 +78,7 @@ public class ExcelImportService {
     @Transactional
     public int importOrders(MultipartFile file) throws Exception {
         log.info("Starting order import for file: {}", file.getOriginalFilename());
+        dataEpoch.changed(DataEpoch.IMPORTS);
         if (isCsv(file)) {
             log.info("Detected CSV file, using CSV parser");
             return importOrdersCsv(file);
@@ -95,6 +101,7 @@ public class ExcelImportService {
                 log.info("Header index map: {}", hmap);
 
                 int firstDataRow = header.getRowNum() + 1;
+                OperationMetrics.scanned(Math.max(0, sheet.getLastRowNum() - firstDataRow + 1));
                 for (int r = firstDataRow; r <= sheet.getLastRowNum(); r++) {
                     Row row = sheet.getRow(r);
                     if (row == null) continue;
@@ -200,9 +207,9 @@ public class ExcelImportService {
             }
             
             log.info("Successfully saved {} order entities", savedCount);
-            // Trigger merged table rebuild after orders upload
+            // Trigger merged table rebuild once the orders upload commits
             try {
-                dataMergeService.rebuildMergedTable();
+                mergeRebuildCoordinator.rebuildAfterCommit();
             } catch (Exception e) {
                 log.warn("Failed to rebuild merged_orders after orders upload: {}", e.getMessage());
             }
@@ -213,6 +220,8 @@ public class ExcelImportService {
     @Transactional
     public int importPayments(MultipartFile file) throws Exception {
         log.info("Starting payment import for file: {}", file.getOriginalFilename());
+        dataEpoch.changed(DataEpoch.IMPORTS);
+        eventPublisher.publishEvent(new PaymentsImportedEvent(file.getOriginalFilename()));
         if (isCsv(file)) {
             log.info("Detected CSV file, using CSV parser");
             return importPaymentsCsv(file);
@@ -256,6 +265,7 @@ public class ExcelImportService {
                 int skippedRows = 0;
                 int validRows = 0;
 
+                OperationMetrics.scanned(Math.max(0, lastRowIndex - firstDataRow + 1));
                 for (int r = firstDataRow; r <= lastRowIndex; r++) {
                     processedRows++;
                     Row row = sheet.getRow(r);
@@ -468,9 +478,9 @@ public class ExcelImportService {
                 }
 
                 log.info("Successfully processed {} payment entities", savedCount);
-                // Trigger merged table rebuild after payments upload
+                // Trigger merged table rebuild once the payments upload commits
                 try {
-                    dataMergeService.rebuildMergedTable();
+                    mergeRebuildCoordinator.rebuildAfterCommit();
                 } catch (Exception e) {
                     log.warn("Failed to rebuild merged_orders after payments upload: {}", e.getMessage());
                 }
@@ -481,30 +491,35 @@ public class ExcelImportService {
 
     @Transactional
     public int importSkuPrices(MultipartFile file) throws Exception {
-        if (isCsv(file)) {
-            return importSkuPricesCsv(file);
-        } else {
-            List<SkuPriceEntity> toSave = new ArrayList<>();
-            try (InputStream is = file.getInputStream(); Workbook wb = new XSSFWorkbook(is)) {
-                Sheet sheet = wb.getSheetAt(0);
-                boolean headerSkipped = false;
-                for (Row row : sheet) {
-                    if (!headerSkipped) { headerSkipped = true; continue; }
-                    if (row == null) continue;
-                    String sku = getCellAsString(row, 0).trim();
-                    if (sku.isEmpty()) continue;
-                    BigDecimal purchasePrice = parseBigDecimal(getCellAsString(row, 1));
-                    toSave.add(SkuPriceEntity.builder()
-                            .sku(sku)
-                            .purchasePrice(purchasePrice)
-                            .updatedAt(LocalDateTime.now())
-                            .build());
-                }
+        Map<String, BigDecimal> pricesBefore = costService.loadPurchasePrices();
+        int imported = isCsv(file) ? importSkuPricesCsv(file) : importSkuPricesXlsx(file);
+        // Re-stamp cost columns of merged rows whose SKU price changed
+        costService.restampChangedPrices(pricesBefore);
+        return imported;
+    }
+
+    private int importSkuPricesXlsx(MultipartFile file) throws Exception {
+        List<SkuPriceEntity> toSave = new ArrayList<>();
+        try (InputStream is = file.getInputStream(); Workbook wb = new XSSFWorkbook(is)) {
+            Sheet sheet = wb.getSheetAt(0);
+            boolean headerSkipped = false;
+            OperationMetrics.scanned(Math.max(0, sheet.getPhysicalNumberOfRows() - 1));
+            for (Row row : sheet) {
+                if (!headerSkipped) { headerSkipped = true; continue; }
+                if (row == null) continue;
+                String sku = getCellAsString(row, 0).trim();
+                if (sku.isEmpty()) continue;
+                BigDecimal purchasePrice = parseBigDecimal(getCellAsString(row, 1));
+                toSave.add(SkuPriceEntity.builder()
+                        .sku(sku)
+                        .purchasePrice(purchasePrice)
+                        .updatedAt(LocalDateTime.now())
+                        .build());
             }
-            skuPriceRepository.deleteAllInBatch();
-            skuPriceRepository.saveAll(toSave);
-            return toSave.size();
         }
+        skuPriceRepository.deleteAllInBatch();
+        skuPriceRepository.saveAll(toSave);
+        return toSave.size();
     }
 
     // Helpers
@@ -523,6 +538,7 @@ public class ExcelImportService {
             log.info("CSV header map: {}", headerMap);
             
             for (CSVRecord r : parser) {
+                OperationMetrics.scanned(1);
                 String orderId = getAny(r, headerMap,
                         List.of("orderId", "order id", "sub order no", "sub order number", "suborderno"), 0);
                 String sku = getAny(r, headerMap, List.of("sku", "supplier sku", "product sku"), 1);
@@ -607,6 +623,7 @@ public class ExcelImportService {
              CSVParser parser = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(reader)) {
             var headerMap = parser.getHeaderMap();
             for (CSVRecord r : parser) {
+                OperationMetrics.scanned(1);
                 String paymentId = clamp(getAny(r, headerMap, List.of("payment id", "paymentId", "transaction id"), 0), "payment_id");
                 String orderId = clamp(getAny(r, headerMap, List.of("order id", "orderId", "sub order no", "sub order number"), 1), "order_id");
                 String amtStr = getAny(r, headerMap, List.of("final settlement amount", "net settlement amount", "amount"), 2);
@@ -793,6 +810,7 @@ public class ExcelImportService {
              CSVParser parser = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(reader)) {
             var headerMap = parser.getHeaderMap();
             for (CSVRecord r : parser) {
+                OperationMetrics.scanned(1);
                 String sku = getAny(r, headerMap, List.of("sku", "SKU", "Sku"), 0);
                 if (sku == null || sku.isBlank()) continue;
                 String priceStr = getAny(r, headerMap, List.of("purchasePrice", "purchase price", "price"), 1);
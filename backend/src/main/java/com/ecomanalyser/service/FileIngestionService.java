@@ -99,6 +99,7 @@ public class FileIngestionService {
             // Process rows
             List<CSVRecord> records = parser.getRecords();
             log.info("Found {} CSV records to process", records.size());
+            OperationMetrics.scanned(records.size());
             
             // Validate that we have records
             if (records.isEmpty()) {
@@ -196,6 +197,7 @@ public class FileIngestionService {
             
             log.info("Found {} data rows starting from row {} (1-based) (header was at row {} 1-based)", 
                     dataRows.size(), dataStartRow + 1, headerRowNum + 1);
+            OperationMetrics.scanned(dataRows.size());
             
             return processExcelRows(fileType, batchId, dataRows, warnings, errors, file);
         }
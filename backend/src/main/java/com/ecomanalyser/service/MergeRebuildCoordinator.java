@@ -0,0 +1,434 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.domain.MergeRebuildLockEntity;
+import com.ecomanalyser.repository.MergeRebuildLockRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Single-flight coordination for merged_orders rebuilds.
+ *
+ * Within a node, concurrent callers share one in-flight rebuild. Across nodes, a lease row in
+ * merge_rebuild_lock makes sure only one node truncates and rewrites merged_orders at a time;
+ * other nodes wait for the lease to be released and return the holder's result. A heartbeat keeps
+ * the lease alive while the rebuild runs, so a crashed holder is taken over once its lease expires.
+ *
+ * Every flight carries a {@link MergeRebuildJob} so callers can follow progress or cancel it.
+ * {@link #submit()} and {@link #rebuildAfterCommit()} run the flight on a dedicated single-thread
+ * executor instead of the caller's thread. Only one flight runs at a time; fresh rebuilds asked for
+ * while one is running are folded into a single rebuild started when it ends.
+ */
+@Service
+@Slf4j
+public class MergeRebuildCoordinator {
+
+    static final String LOCK_NAME = "merged_orders";
+
+    private static final String STATUS_SUCCESS = "SUCCESS";
+    private static final String STATUS_FAILED = "FAILED";
+    private static final String STATUS_CANCELLED = "CANCELLED";
+    private static final int RETAINED_JOBS = 50;
+
+    private final DataMergeService dataMergeService;
+    private final MergeRebuildLockRepository lockRepository;
+    private final TransactionTemplate requiresNew;
+    private final MeterRegistry meterRegistry;
+    private final String nodeId;
+    private final long leaseSeconds;
+    private final long pollMillis;
+    private final Duration maxWait;
+
+    private final AtomicReference<Flight> inFlight = new AtomicReference<>();
+    private final AtomicBoolean freshQueued = new AtomicBoolean();
+    private final AtomicInteger held = new AtomicInteger();
+    private final ScheduledExecutorService heartbeat;
+    private final ThreadPoolExecutor rebuildExecutor;
+
+    // Recent jobs by id, oldest evicted first
+    private final Map<String, MergeRebuildJob> jobs = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, MergeRebuildJob> eldest) {
+                    return size() > RETAINED_JOBS;
+                }
+            });
+
+    public MergeRebuildCoordinator(DataMergeService dataMergeService,
+                                   MergeRebuildLockRepository lockRepository,
+                                   PlatformTransactionManager transactionManager,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${merge.rebuild.node-id:}") String nodeId,
+                                   @Value("${merge.rebuild.lease-seconds:60}") long leaseSeconds,
+                                   @Value("${merge.rebuild.poll-millis:500}") long pollMillis,
+                                   @Value("${merge.rebuild.max-wait-seconds:1800}") long maxWaitSeconds) {
+        this.dataMergeService = dataMergeService;
+        this.lockRepository = lockRepository;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.meterRegistry = meterRegistry;
+        this.nodeId = nodeId == null || nodeId.isBlank() ? ManagementFactory.getRuntimeMXBean().getName() : nodeId;
+        this.leaseSeconds = Math.max(3, leaseSeconds);
+        this.pollMillis = Math.max(10, pollMillis);
+        this.maxWait = Duration.ofSeconds(maxWaitSeconds);
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "merge-rebuild-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        // Flights are started one at a time, so one worker and room for the flight queued behind it
+        this.rebuildExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1), r -> {
+                    Thread t = new Thread(r, "merge-rebuild");
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("merge.rebuild.lock.held", held, AtomicInteger::get)
+                .description("1 while this node holds the merged_orders rebuild lease")
+                .tag("node", this.nodeId)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Rebuild merged_orders, or join a rebuild already running on this or another node
+     *
+     * @return number of merged rows written by the rebuild that served this call
+     */
+    public int rebuild() {
+        return execute(false);
+    }
+
+    /**
+     * Rebuild merged_orders from data committed before this call. Unlike {@link #rebuild()} this
+     * never joins a rebuild that may have read the tables before the caller's changes were committed.
+     */
+    public int rebuildFresh() {
+        return execute(true);
+    }
+
+    /**
+     * Start a rebuild in the background, or return the job of the rebuild already in flight
+     *
+     * @throws RejectedExecutionException when the rebuild executor is saturated
+     */
+    public MergeRebuildJob submit() {
+        Flight mine = new Flight(false, System.nanoTime());
+        Flight existing = inFlight.compareAndExchange(null, mine);
+        if (existing != null) {
+            return existing.job;
+        }
+        start(mine);
+        return mine.job;
+    }
+
+    public Optional<MergeRebuildJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    /**
+     * Request cancellation of a job. Callers sharing the same flight see the cancellation too.
+     *
+     * @return true when the job exists and was still running
+     */
+    public boolean cancel(String jobId) {
+        MergeRebuildJob job = jobs.get(jobId);
+        return job != null && job.requestCancel();
+    }
+
+    /**
+     * Queue a fresh rebuild on the rebuild executor once the current transaction commits
+     * (immediately when there is none) and return. Used by imports so the rebuild sees the
+     * imported rows without holding up the upload request.
+     */
+    public void rebuildAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submitFresh();
+                }
+            });
+        } else {
+            submitFresh();
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Queue a rebuild of data committed before this call. Starts it now when nothing is in
+     * flight; otherwise the flight in progress, which may have read the tables already, starts
+     * it when it ends, together with every other request made in the meantime.
+     */
+    void submitFresh() {
+        freshQueued.set(true);
+        startQueued();
+    }
+
+    private void startQueued() {
+        if (!freshQueued.get()) return;
+        Flight mine = new Flight(true, System.nanoTime());
+        if (!inFlight.compareAndSet(null, mine)) return;
+        // Not started yet, so it reads every change committed before the requests it clears
+        freshQueued.set(false);
+        try {
+            start(mine);
+        } catch (RejectedExecutionException e) {
+            log.warn("Could not queue merged_orders rebuild: {}", e.getMessage());
+        }
+    }
+
+    private void start(Flight flight) {
+        jobs.put(flight.job.getId(), flight.job);
+        try {
+            rebuildExecutor.execute(() -> {
+                try {
+                    lead(flight);
+                } catch (RuntimeException e) {
+                    log.error("Background merged_orders rebuild {} ended with: {}", flight.job.getId(), e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            flight.job.fail(e);
+            flight.result.completeExceptionally(e);
+            inFlight.compareAndSet(flight, null);
+            throw e;
+        }
+    }
+
+    private int execute(boolean fresh) {
+        long requestedAt = System.nanoTime();
+        while (true) {
+            Flight mine = new Flight(fresh, System.nanoTime());
+            Flight existing = inFlight.compareAndExchange(null, mine);
+            if (existing == null) {
+                jobs.put(mine.job.getId(), mine.job);
+                return lead(mine);
+            }
+            // A fresh caller may only share a fresh flight that started after it asked
+            if (!fresh || (existing.fresh && existing.startedAt - requestedAt >= 0)) {
+                return join(existing, requestedAt);
+            }
+            try {
+                existing.result.join();
+            } catch (CompletionException | CancellationException ignored) {
+                // The earlier rebuild failed; this caller still needs its own
+            }
+        }
+    }
+
+    private int join(Flight flight, long waitStart) {
+        try {
+            int result = flight.result.join();
+            recordWait(waitStart, "joined_local");
+            return result;
+        } catch (CancellationException e) {
+            recordWait(waitStart, "cancelled");
+            throw e;
+        } catch (CompletionException e) {
+            recordWait(waitStart, "failed");
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+
+    private int lead(Flight flight) {
+        try {
+            int result = runExclusive(flight.fresh, flight.job);
+            flight.job.complete(result);
+            flight.result.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            flight.job.fail(e);
+            flight.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.compareAndSet(flight, null);
+            startQueued();
+        }
+    }
+
+    /**
+     * Acquire the cluster lease and rebuild, or wait for the node holding it and take its result
+     */
+    private int runExclusive(boolean fresh, MergeRebuildJob job) {
+        long waitStart = System.nanoTime();
+        long deadline = waitStart + maxWait.toNanos();
+        while (true) {
+            job.checkCancelled();
+            Long observedGeneration = requiresNew.execute(status -> {
+                lockRepository.ensureLock(LOCK_NAME);
+                if (lockRepository.tryAcquire(LOCK_NAME, nodeId, leaseSeconds) == 1) {
+                    return null;
+                }
+                return lockRepository.findById(LOCK_NAME).map(MergeRebuildLockEntity::getGeneration).orElse(0L);
+            });
+            if (observedGeneration == null) {
+                recordWait(waitStart, "acquired");
+                return rebuildHoldingLease(job);
+            }
+
+            log.info("merged_orders rebuild is running on another node, waiting for it to finish");
+            job.enterPhase(MergeRebuildJob.Phase.WAITING_FOR_LOCK);
+            MergeRebuildLockEntity released = awaitRelease(observedGeneration, deadline, waitStart, job);
+            if (released != null && !fresh) {
+                if (!STATUS_SUCCESS.equals(released.getLastStatus())) {
+                    recordWait(waitStart, "failed");
+                    throw new IllegalStateException("merged_orders rebuild failed on another node");
+                }
+                recordWait(waitStart, "joined_remote");
+                return released.getLastResult() != null ? released.getLastResult() : 0;
+            }
+            // Lease expired, or a fresh rebuild is required: try to take the lease ourselves
+        }
+    }
+
+    /**
+     * Poll until the lease generation moves past the observed one (returns the released row)
+     * or the holder's lease expires (returns null)
+     */
+    private MergeRebuildLockEntity awaitRelease(long observedGeneration, long deadline, long waitStart,
+                                                MergeRebuildJob job) {
+        while (true) {
+            if (job.isCancelRequested()) {
+                recordWait(waitStart, "cancelled");
+                job.checkCancelled();
+            }
+            if (System.nanoTime() - deadline > 0) {
+                recordWait(waitStart, "timeout");
+                throw new IllegalStateException("Timed out waiting for merged_orders rebuild lock after " + maxWait);
+            }
+            try {
+                Thread.sleep(pollMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for merged_orders rebuild lock", e);
+            }
+            MergeRebuildLockEntity lock = requiresNew.execute(status -> lockRepository.findById(LOCK_NAME).orElse(null));
+            if (lock == null || lock.getGeneration() != observedGeneration) {
+                return lock;
+            }
+            Boolean expired = requiresNew.execute(status -> lockRepository.isLeaseExpired(LOCK_NAME));
+            if (Boolean.TRUE.equals(expired)) {
+                log.warn("merged_orders rebuild lease held by {} expired, taking over", lock.getHolder());
+                return null;
+            }
+        }
+    }
+
+    private int rebuildHoldingLease(MergeRebuildJob job) {
+        held.set(1);
+        long period = Math.max(1, leaseSeconds / 3);
+        ScheduledFuture<?> beat = heartbeat.scheduleAtFixedRate(() -> renewLease(job), period, period, TimeUnit.SECONDS);
+        Integer result = null;
+        String status = STATUS_FAILED;
+        try {
+            result = requiresNew.execute(s -> {
+                int rows = dataMergeService.rebuildMergedTable(job);
+                fence(job);
+                return rows;
+            });
+            status = STATUS_SUCCESS;
+            return result != null ? result : 0;
+        } catch (CancellationException e) {
+            status = STATUS_CANCELLED;
+            throw e;
+        } finally {
+            beat.cancel(false);
+            held.set(0);
+            releaseLease(result, status);
+        }
+    }
+
+    /**
+     * Last step of the rebuild transaction: commit only while this node still holds an unexpired
+     * lease. The fencing update keeps the lease row locked until the commit, so no other node can
+     * take the lease over between this check and the commit.
+     */
+    private void fence(MergeRebuildJob job) {
+        if (lockRepository.fence(LOCK_NAME, nodeId, leaseSeconds) == 0) {
+            job.abort("lease lost");
+            job.checkCancelled();
+        }
+    }
+
+    private void renewLease(MergeRebuildJob job) {
+        try {
+            Integer renewed = requiresNew.execute(s -> lockRepository.renew(LOCK_NAME, nodeId, leaseSeconds));
+            if (renewed == null || renewed == 0) {
+                // Another node has taken over; stop writing at the next checkpoint
+                log.warn("Lost merged_orders rebuild lease on node {}, aborting rebuild {}", nodeId, job.getId());
+                job.abort("lease lost");
+            }
+        } catch (Exception e) {
+            log.warn("Failed to renew merged_orders rebuild lease: {}", e.getMessage());
+        }
+    }
+
+    private void releaseLease(Integer result, String status) {
+        try {
+            requiresNew.executeWithoutResult(s -> lockRepository.release(LOCK_NAME, nodeId, result, status));
+        } catch (Exception e) {
+            // The lease will expire on its own; waiting nodes then take over
+            log.error("Failed to release merged_orders rebuild lease: {}", e.getMessage(), e);
+        }
+    }
+
+    private void recordWait(long waitStart, String outcome) {
+        Timer.builder("merge.rebuild.lock.wait")
+                .description("Time spent waiting for, or joining, a merged_orders rebuild")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(System.nanoTime() - waitStart, TimeUnit.NANOSECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        heartbeat.shutdownNow();
+        rebuildExecutor.shutdownNow();
+    }
+
+    private static final class Flight {
+        private final boolean fresh;
+        private final long startedAt;
+        private final CompletableFuture<Integer> result = new CompletableFuture<>();
+        private final MergeRebuildJob job = new MergeRebuildJob();
+
+        private Flight(boolean fresh, long startedAt) {
+            this.fresh = fresh;
+            this.startedAt = startedAt;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.ecomanalyser.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Handle and progress of one merged_orders rebuild. Counters are updated by the rebuild thread
+ * and read by status requests, so everything here is safe to read concurrently.
+ */
+public class MergeRebuildJob {
+
+    public enum Phase { QUEUED, WAITING_FOR_LOCK, LOADING, MERGING, WRITING, COMPLETED, FAILED, CANCELLED }
+
+    private final String id = UUID.randomUUID().toString();
+    private final Instant submittedAt = Instant.now();
+    private final AtomicLong rowsLoaded = new AtomicLong();
+    private final AtomicLong rowsMerged = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+
+    private volatile Phase phase = Phase.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant mergeStartedAt;
+    private volatile Instant finishedAt;
+    private volatile long totalOrders;
+    private volatile boolean cancelRequested;
+    private volatile String abortReason;
+    private volatile Integer result;
+    private volatile String error;
+
+    public String getId() {
+        return id;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public Instant getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public long getRowsLoaded() {
+        return rowsLoaded.get();
+    }
+
+    public long getRowsMerged() {
+        return rowsMerged.get();
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten.get();
+    }
+
+    public long getTotalOrders() {
+        return totalOrders;
+    }
+
+    public Integer getResult() {
+        return result;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    public boolean isFinished() {
+        return phase == Phase.COMPLETED || phase == Phase.FAILED || phase == Phase.CANCELLED;
+    }
+
+    public Duration getElapsed() {
+        Instant start = startedAt != null ? startedAt : submittedAt;
+        Instant end = finishedAt != null ? finishedAt : Instant.now();
+        return Duration.between(start, end);
+    }
+
+    /**
+     * Estimated time left, extrapolated from merge + write throughput. Null until the number of
+     * orders is known (after loading) and some work has been done.
+     */
+    public Duration getEta() {
+        if (isFinished()) return Duration.ZERO;
+        Instant since = mergeStartedAt;
+        long total = totalOrders;
+        long done = rowsMerged.get() + rowsWritten.get();
+        if (since == null || total <= 0 || done <= 0) return null;
+        long workTotal = 2 * total;
+        long elapsedMillis = Duration.between(since, Instant.now()).toMillis();
+        return Duration.ofMillis(elapsedMillis * Math.max(0, workTotal - done) / done);
+    }
+
+    /**
+     * Ask the rebuild to stop at its next checkpoint; the rebuild transaction is rolled back
+     */
+    public boolean requestCancel() {
+        if (isFinished()) return false;
+        cancelRequested = true;
+        return true;
+    }
+
+    /**
+     * Stop the rebuild at its next checkpoint as a failure, e.g. when this node lost the lease
+     * and another node may already be rewriting merged_orders
+     */
+    void abort(String reason) {
+        if (!isFinished()) abortReason = reason;
+    }
+
+    /**
+     * Checkpoint called from the rebuild loops
+     */
+    public void checkCancelled() {
+        String reason = abortReason;
+        if (reason != null) {
+            throw new IllegalStateException("merged_orders rebuild " + id + " aborted: " + reason);
+        }
+        if (cancelRequested) {
+            throw new CancellationException("merged_orders rebuild " + id + " was cancelled");
+        }
+    }
+
+    void enterPhase(Phase next) {
+        if (startedAt == null && next != Phase.QUEUED) startedAt = Instant.now();
+        if (next == Phase.MERGING) mergeStartedAt = Instant.now();
+        phase = next;
+    }
+
+    void setTotalOrders(long totalOrders) {
+        this.totalOrders = totalOrders;
+    }
+
+    void addLoaded(long rows) {
+        rowsLoaded.addAndGet(rows);
+    }
+
+    void addMerged(long rows) {
+        rowsMerged.addAndGet(rows);
+    }
+
+    void addWritten(long rows) {
+        rowsWritten.addAndGet(rows);
+    }
+
+    void complete(int rows) {
+        result = rows;
+        finish(Phase.COMPLETED);
+    }
+
+    void fail(Throwable cause) {
+        error = cause.getMessage();
+        finish(cause instanceof CancellationException ? Phase.CANCELLED : Phase.FAILED);
+    }
+
+    private void finish(Phase terminal) {
+        finishedAt = Instant.now();
+        phase = terminal;
+    }
+}
@@ -0,0 +1,176 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.domain.MergedOrderPaymentEntity;
+import com.ecomanalyser.event.MergedOrdersChangedEvent;
+import com.ecomanalyser.event.SkuPricesChangedEvent;
+import com.ecomanalyser.repository.MergedOrderPaymentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Stamps purchase price, COGS, net profit and a loss category onto merged_orders rows so
+ * profit and loss analytics can be answered with plain SQL sums.
+ *
+ * Purchase price follows the analytics rule: SKU group price when positive, otherwise the
+ * individual SKU price when positive, otherwise the row is UNPRICED. The merge stamps the rows
+ * it writes with {@link #stamp}; price and group changes re-stamp existing rows with one UPDATE
+ * per batch of SKUs that applies the same rules in SQL.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MergedOrderCostService {
+
+    // Loss categories
+    public static final String PROFIT = "PROFIT";
+    public static final String LOSS = "LOSS";
+    public static final String BREAK_EVEN = "BREAK_EVEN";
+    public static final String NO_SETTLEMENT = "NO_SETTLEMENT";
+    public static final String RETURN_RECEIVED = "RETURN_RECEIVED";
+    public static final String RETURN_NOT_RECEIVED = "RETURN_NOT_RECEIVED";
+    public static final String UNPRICED = "UNPRICED";
+
+    private static final int RESTAMP_BATCH_SKUS = 500;
+
+    private final SkuPriceCatalog priceCatalog;
+    private final MergedOrderPaymentRepository mergedRepo;
+    private final PlatformTransactionManager transactionManager;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DailyOrderRollupService rollupService;
+    private final MonthlySummarySnapshots summarySnapshots;
+
+    /**
+     * Resolve the purchase price of every priced SKU as seen by the current transaction
+     */
+    @Transactional(readOnly = true)
+    public Map<String, BigDecimal> loadPurchasePrices() {
+        return priceCatalog.loadSnapshot().purchasePrices();
+    }
+
+    /**
+     * Fill the cost columns of one merged row from its SKU's purchase price (null when unpriced).
+     * Used by the merge; {@code MergedOrderPaymentRepository.restampSkus} is its SQL counterpart.
+     */
+    public static void stamp(MergedOrderPaymentEntity row, BigDecimal purchasePrice) {
+        if (row.getSkuId() == null || row.getQuantity() == null || !isPositive(purchasePrice)) {
+            row.setPurchasePrice(null);
+            row.setCogs(null);
+            row.setNetProfit(null);
+            row.setLossCategory(UNPRICED);
+            return;
+        }
+        BigDecimal settlement = row.getSettlementAmount() != null ? row.getSettlementAmount() : BigDecimal.ZERO;
+        BigDecimal cogs = purchasePrice.multiply(BigDecimal.valueOf(row.getQuantity()));
+        BigDecimal netProfit = settlement.subtract(cogs);
+        row.setPurchasePrice(purchasePrice);
+        row.setCogs(cogs);
+        row.setNetProfit(netProfit);
+        row.setLossCategory(classify(settlement, netProfit, row.getOrderStatus()));
+    }
+
+    static String classify(BigDecimal settlement, BigDecimal netProfit, String status) {
+        int settled = settlement.signum();
+        if (settled == 0) return NO_SETTLEMENT;
+        if (settled < 0) {
+            // Received product: the refunded amount is the loss; otherwise the goods are lost (COGS)
+            return isProductReceived(status) ? RETURN_RECEIVED : RETURN_NOT_RECEIVED;
+        }
+        int net = netProfit.signum();
+        return net > 0 ? PROFIT : net < 0 ? LOSS : BREAK_EVEN;
+    }
+
+    /**
+     * Statuses where we actually received/handled the product
+     */
+    static boolean isProductReceived(String status) {
+        if (status == null) return false;
+        String upperStatus = status.toUpperCase();
+        return upperStatus.contains("RETURN") ||
+               upperStatus.contains("RTO") ||
+               upperStatus.contains("EXCHANGE") ||
+               upperStatus.contains("SHIPPED") ||
+               upperStatus.contains("REFUND");
+    }
+
+    /**
+     * Re-stamp merged rows whose SKU resolves to a different price than in {@code before}.
+     * Call with the result of {@link #loadPurchasePrices()} taken before a price or group change,
+     * inside the same transaction as the change. The price catalog is refreshed once the
+     * change commits.
+     *
+     * @return number of merged rows re-stamped
+     */
+    @Transactional
+    public int restampChangedPrices(Map<String, BigDecimal> before) {
+        Map<String, BigDecimal> after = loadPurchasePrices();
+        Set<String> changed = new HashSet<>();
+        for (Map.Entry<String, BigDecimal> e : after.entrySet()) {
+            BigDecimal old = before.get(e.getKey());
+            if (old == null || old.compareTo(e.getValue()) != 0) changed.add(e.getKey());
+        }
+        for (String sku : before.keySet()) {
+            if (!after.containsKey(sku)) changed.add(sku);
+        }
+        // Published even when no price moved: group names may still have changed
+        eventPublisher.publishEvent(new SkuPricesChangedEvent(changed));
+        return restampSkus(changed);
+    }
+
+    /**
+     * Re-stamp all merged rows of the given SKUs from the prices visible to the current
+     * transaction, in the database, refresh their daily rollup rows and evict the monthly
+     * summary snapshots of their months
+     */
+    @Transactional
+    public int restampSkus(Collection<String> skus) {
+        if (skus.isEmpty()) return 0;
+        List<String> skuList = new ArrayList<>(skus);
+        Set<Integer> months = new HashSet<>();
+        int restamped = 0;
+        for (int from = 0; from < skuList.size(); from += RESTAMP_BATCH_SKUS) {
+            List<String> batch = skuList.subList(from, Math.min(from + RESTAMP_BATCH_SKUS, skuList.size()));
+            restamped += mergedRepo.restampSkus(batch);
+            months.addAll(mergedRepo.findPeriodsBySkuIdIn(batch));
+        }
+        summarySnapshots.evict(months);
+        rollupService.refreshSkus(skus);
+        eventPublisher.publishEvent(new MergedOrdersChangedEvent(new HashSet<>(skus)));
+        log.info("Re-stamped cost columns on {} merged rows for {} SKUs", restamped, skus.size());
+        return restamped;
+    }
+
+    /**
+     * Stamp rows written before the cost columns existed
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void stampUnstampedRows() {
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                List<String> skus = mergedRepo.findUnstampedSkus();
+                int withoutSku = mergedRepo.markUnstampedWithoutSkuUnpriced();
+                if (!skus.isEmpty()) {
+                    restampSkus(skus);
+                }
+                if (withoutSku > 0 || !skus.isEmpty()) {
+                    log.info("Back-filled cost columns for {} SKUs and {} rows without SKU", skus.size(), withoutSku);
+                }
+            });
+        } catch (Exception e) {
+            log.warn("Could not back-fill merged_orders cost columns: {}", e.getMessage());
+        }
+    }
+
+    private static boolean isPositive(BigDecimal value) {
+        return value != null && value.compareTo(BigDecimal.ZERO) > 0;
+    }
+}
@@ -0,0 +1,471 @@
+package com.ecomanalyser.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.LongConsumer;
+
+/**
+ * Immutable, column-oriented copy of merged_orders for in-process analytics.
+ *
+ * Dates are epoch-day ints, money columns are long paise and SKU, status, state and loss
+ * category are dictionary encoded. Rows are sorted by order date so a date range is a
+ * contiguous row range found by binary search; undated rows sit in front of it and are only
+ * visible through the dictionaries. Build one with {@link Builder}; the scans report the rows
+ * they read to the builder's {@link Builder#onScan scan listener}.
+ */
+public final class MergedOrderCube {
+
+    /** Marker for a missing int value (null date or quantity) */
+    public static final int NO_VALUE = CompactPaymentTable.NO_VALUE;
+
+    /** Marker for a missing money value (unstamped cost columns) */
+    public static final long NO_AMOUNT = Long.MIN_VALUE;
+
+    /** Code returned for a value that no row has; never equal to a row code */
+    public static final int NO_MATCH = -2;
+
+    public enum Dimension { SKU, STATUS, STATE, LOSS_CATEGORY, PRICE_TYPE }
+
+    private final int size;
+    private final int firstDated;
+    private final int[] epochDay;
+    private final int[] quantity;
+    private final long[] settlementPaise;
+    private final long[] cogsPaise;
+    private final long[] netProfitPaise;
+    private final int[] skuCode;
+    private final int[] statusCode;
+    private final int[] stateCode;
+    private final int[] lossCategoryCode;
+    private final int[] priceTypeCode;
+    private final StringDictionary skus;
+    private final StringDictionary statuses;
+    private final StringDictionary states;
+    private final StringDictionary lossCategories;
+    private final StringDictionary priceTypes;
+    private final long builtAtMillis = System.currentTimeMillis();
+    private final LongConsumer scanListener;
+    // Calendar over the dated rows per aggregation, built on first use
+    private final AtomicReferenceArray<CalendarIndex> calendars =
+            new AtomicReferenceArray<>(AnalyticsService.Aggregation.values().length);
+
+    private MergedOrderCube(Builder b, int[] order) {
+        size = b.size;
+        scanListener = b.scanListener;
+        epochDay = permute(b.epochDay, order);
+        quantity = permute(b.quantity, order);
+        settlementPaise = permute(b.settlementPaise, order);
+        cogsPaise = permute(b.cogsPaise, order);
+        netProfitPaise = permute(b.netProfitPaise, order);
+        skuCode = permute(b.skuCode, order);
+        statusCode = permute(b.statusCode, order);
+        stateCode = permute(b.stateCode, order);
+        lossCategoryCode = permute(b.lossCategoryCode, order);
+        priceTypeCode = permute(b.priceTypeCode, order);
+        skus = b.skus;
+        statuses = b.statuses;
+        states = b.states;
+        lossCategories = b.lossCategories;
+        priceTypes = b.priceTypes;
+        int dated = 0;
+        while (dated < size && epochDay[dated] == NO_VALUE) dated++;
+        firstDated = dated;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getBuiltAtMillis() {
+        return builtAtMillis;
+    }
+
+    // ---- Row range -------------------------------------------------------------------------
+
+    /**
+     * First row with an order date on or after {@code start} (null: first dated row)
+     */
+    public int firstRow(LocalDate start) {
+        if (start == null) return firstDated;
+        return lowerBound(start.toEpochDay());
+    }
+
+    /**
+     * Row after the last row with an order date on or before {@code end} (null: end of table)
+     */
+    public int endRow(LocalDate end) {
+        if (end == null) return size;
+        return lowerBound(end.toEpochDay() + 1);
+    }
+
+    /**
+     * Calendar covering every order date in the cube, shared by all scans of it. Buckets of a
+     * row range run from {@code calendar.bucket(epochDay(first))} to that of its last row.
+     */
+    public CalendarIndex calendar(AnalyticsService.Aggregation agg) {
+        CalendarIndex calendar = calendars.get(agg.ordinal());
+        if (calendar == null) {
+            calendar = firstDated < size
+                    ? CalendarIndex.of(orderDate(firstDated), orderDate(size - 1), agg)
+                    : CalendarIndex.of(LocalDate.EPOCH, LocalDate.EPOCH.minusDays(1), agg);
+            // Racing scans build equal indexes; keep whichever was stored first
+            if (!calendars.compareAndSet(agg.ordinal(), null, calendar)) calendar = calendars.get(agg.ordinal());
+        }
+        return calendar;
+    }
+
+    private int lowerBound(long day) {
+        int lo = firstDated;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (epochDay[mid] < day) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // ---- Scans -----------------------------------------------------------------------------
+
+    /**
+     * Visit every row ordered between start and end (inclusive, null for open ends)
+     */
+    public void forEachRow(LocalDate start, LocalDate end, IntConsumer visitor) {
+        int first = firstRow(start), last = endRow(end);
+        scanListener.accept(Math.max(0, last - first));
+        for (int row = first; row < last; row++) {
+            visitor.accept(row);
+        }
+    }
+
+    /**
+     * Aggregate the rows in range that pass {@code filter} (null: all rows)
+     */
+    public Aggregate aggregate(LocalDate start, LocalDate end, IntPredicate filter) {
+        Aggregate total = new Aggregate();
+        int first = firstRow(start), last = endRow(end);
+        scanListener.accept(Math.max(0, last - first));
+        for (int row = first; row < last; row++) {
+            if (filter == null || filter.test(row)) total.add(this, row);
+        }
+        return total;
+    }
+
+    /**
+     * Group the rows in range that pass {@code filter} by a dictionary column. Rows whose
+     * value is null are skipped.
+     */
+    public Map<String, Aggregate> groupBy(LocalDate start, LocalDate end, IntPredicate filter, Dimension dimension) {
+        int[] codes = codes(dimension);
+        StringDictionary dictionary = dictionary(dimension);
+        Aggregate[] byCode = new Aggregate[dictionary.size()];
+        int first = firstRow(start), last = endRow(end);
+        scanListener.accept(Math.max(0, last - first));
+        for (int row = first; row < last; row++) {
+            int code = codes[row];
+            if (code == StringDictionary.NULL_CODE || (filter != null && !filter.test(row))) continue;
+            Aggregate agg = byCode[code];
+            if (agg == null) byCode[code] = agg = new Aggregate();
+            agg.add(this, row);
+        }
+        Map<String, Aggregate> result = new HashMap<>();
+        for (int code = 0; code < byCode.length; code++) {
+            if (byCode[code] != null) result.put(dictionary.decode(code), byCode[code]);
+        }
+        return result;
+    }
+
+    /**
+     * Group the rows in range that pass {@code filter} by an arbitrary key. Rows whose key is
+     * null are skipped.
+     */
+    public <K> Map<K, Aggregate> groupBy(LocalDate start, LocalDate end, IntPredicate filter, IntFunction<K> key) {
+        Map<K, Aggregate> result = new HashMap<>();
+        int first = firstRow(start), last = endRow(end);
+        scanListener.accept(Math.max(0, last - first));
+        for (int row = first; row < last; row++) {
+            if (filter != null && !filter.test(row)) continue;
+            K k = key.apply(row);
+            if (k != null) result.computeIfAbsent(k, x -> new Aggregate()).add(this, row);
+        }
+        return result;
+    }
+
+    /**
+     * Every distinct non-null value of a dictionary column, including undated rows
+     */
+    public List<String> values(Dimension dimension) {
+        StringDictionary dictionary = dictionary(dimension);
+        List<String> values = new ArrayList<>(dictionary.size());
+        for (int code = 0; code < dictionary.size(); code++) values.add(dictionary.decode(code));
+        return values;
+    }
+
+    // ---- Column access ---------------------------------------------------------------------
+
+    public int epochDay(int row) {
+        return epochDay[row];
+    }
+
+    public LocalDate orderDate(int row) {
+        return CompactPaymentTable.toDate(epochDay[row]);
+    }
+
+    public boolean hasQuantity(int row) {
+        return quantity[row] != NO_VALUE;
+    }
+
+    public int quantity(int row) {
+        return quantity[row];
+    }
+
+    public long settlementPaise(int row) {
+        return settlementPaise[row];
+    }
+
+    /** True when cost columns are stamped (purchase price known) */
+    public boolean hasCost(int row) {
+        return netProfitPaise[row] != NO_AMOUNT;
+    }
+
+    public long cogsPaise(int row) {
+        return cogsPaise[row];
+    }
+
+    public long netProfitPaise(int row) {
+        return netProfitPaise[row];
+    }
+
+    public int skuCode(int row) {
+        return skuCode[row];
+    }
+
+    public String sku(int row) {
+        return skus.decode(skuCode[row]);
+    }
+
+    public int statusCode(int row) {
+        return statusCode[row];
+    }
+
+    public String status(int row) {
+        return statuses.decode(statusCode[row]);
+    }
+
+    public String state(int row) {
+        return states.decode(stateCode[row]);
+    }
+
+    public int lossCategoryCode(int row) {
+        return lossCategoryCode[row];
+    }
+
+    /**
+     * Dictionary code of a row's value in any dictionary column; {@link StringDictionary#NULL_CODE}
+     * for null
+     */
+    public int code(Dimension dimension, int row) {
+        return codes(dimension)[row];
+    }
+
+    public String decode(Dimension dimension, int code) {
+        return dictionary(dimension).decode(code);
+    }
+
+    /**
+     * Dictionary code of a value, for comparing against row codes; {@link #NO_MATCH} when no
+     * row has the value
+     */
+    public int codeOf(Dimension dimension, String value) {
+        int code = dictionary(dimension).codeOf(value);
+        return code == StringDictionary.NULL_CODE && value != null ? NO_MATCH : code;
+    }
+
+    private int[] codes(Dimension dimension) {
+        return switch (dimension) {
+            case SKU -> skuCode;
+            case STATUS -> statusCode;
+            case STATE -> stateCode;
+            case LOSS_CATEGORY -> lossCategoryCode;
+            case PRICE_TYPE -> priceTypeCode;
+        };
+    }
+
+    private StringDictionary dictionary(Dimension dimension) {
+        return switch (dimension) {
+            case SKU -> skus;
+            case STATUS -> statuses;
+            case STATE -> states;
+            case LOSS_CATEGORY -> lossCategories;
+            case PRICE_TYPE -> priceTypes;
+        };
+    }
+
+    private static int[] permute(int[] column, int[] order) {
+        int[] out = new int[order.length];
+        for (int i = 0; i < order.length; i++) out[i] = column[order[i]];
+        return out;
+    }
+
+    private static long[] permute(long[] column, int[] order) {
+        long[] out = new long[order.length];
+        for (int i = 0; i < order.length; i++) out[i] = column[order[i]];
+        return out;
+    }
+
+    /**
+     * Running totals of a group of rows. Money is kept in paise with overflow-checked adds; null
+     * quantities and unstamped cost columns are left out of their sums.
+     */
+    public static final class Aggregate {
+        private long orders;
+        private long quantity;
+        private long settlementPaise;
+        private long revenuePaise;
+        private long cogsPaise;
+        private long netProfitPaise;
+
+        void add(MergedOrderCube cube, int row) {
+            orders++;
+            if (cube.hasQuantity(row)) quantity += cube.quantity(row);
+            long settlement = cube.settlementPaise(row);
+            settlementPaise = Math.addExact(settlementPaise, settlement);
+            if (settlement > 0) revenuePaise = Math.addExact(revenuePaise, settlement);
+            if (cube.hasCost(row)) netProfitPaise = Math.addExact(netProfitPaise, cube.netProfitPaise(row));
+            if (cube.cogsPaise(row) != NO_AMOUNT) cogsPaise = Math.addExact(cogsPaise, cube.cogsPaise(row));
+        }
+
+        void add(Aggregate other) {
+            orders += other.orders;
+            quantity += other.quantity;
+            settlementPaise = Math.addExact(settlementPaise, other.settlementPaise);
+            revenuePaise = Math.addExact(revenuePaise, other.revenuePaise);
+            cogsPaise = Math.addExact(cogsPaise, other.cogsPaise);
+            netProfitPaise = Math.addExact(netProfitPaise, other.netProfitPaise);
+        }
+
+        public long getOrders() {
+            return orders;
+        }
+
+        public long getQuantity() {
+            return quantity;
+        }
+
+        public long getSettlementPaise() {
+            return settlementPaise;
+        }
+
+        public BigDecimal getSettlement() {
+            return CompactPaymentTable.fromPaise(settlementPaise);
+        }
+
+        /** Sum of positive settlements */
+        public BigDecimal getRevenue() {
+            return CompactPaymentTable.fromPaise(revenuePaise);
+        }
+
+        public BigDecimal getCogs() {
+            return CompactPaymentTable.fromPaise(cogsPaise);
+        }
+
+        public BigDecimal getNetProfit() {
+            return CompactPaymentTable.fromPaise(netProfitPaise);
+        }
+    }
+
+    /**
+     * Accumulates rows in any order; {@link #build()} sorts them by order date
+     */
+    public static final class Builder {
+
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private final StringDictionary skus = new StringDictionary();
+        private final StringDictionary statuses = new StringDictionary();
+        private final StringDictionary states = new StringDictionary();
+        private final StringDictionary lossCategories = new StringDictionary();
+        private final StringDictionary priceTypes = new StringDictionary();
+
+        private int size;
+        private boolean built;
+        private LongConsumer scanListener = rows -> { };
+        private int[] epochDay = new int[INITIAL_CAPACITY];
+        private int[] quantity = new int[INITIAL_CAPACITY];
+        private long[] settlementPaise = new long[INITIAL_CAPACITY];
+        private long[] cogsPaise = new long[INITIAL_CAPACITY];
+        private long[] netProfitPaise = new long[INITIAL_CAPACITY];
+        private int[] skuCode = new int[INITIAL_CAPACITY];
+        private int[] statusCode = new int[INITIAL_CAPACITY];
+        private int[] stateCode = new int[INITIAL_CAPACITY];
+        private int[] lossCategoryCode = new int[INITIAL_CAPACITY];
+        private int[] priceTypeCode = new int[INITIAL_CAPACITY];
+
+        public Builder add(LocalDate orderDate, String sku, String status, String state, Integer qty,
+                           BigDecimal settlement, BigDecimal cogs, BigDecimal netProfit, String lossCategory) {
+            return add(orderDate, sku, status, state, qty, settlement, cogs, netProfit, lossCategory, null);
+        }
+
+        public Builder add(LocalDate orderDate, String sku, String status, String state, Integer qty,
+                           BigDecimal settlement, BigDecimal cogs, BigDecimal netProfit, String lossCategory,
+                           String priceType) {
+            if (built) {
+                throw new IllegalStateException("MergedOrderCube already built");
+            }
+            ensureCapacity(size + 1);
+            int row = size++;
+            epochDay[row] = orderDate != null ? (int) orderDate.toEpochDay() : NO_VALUE;
+            quantity[row] = qty != null ? qty : NO_VALUE;
+            settlementPaise[row] = CompactPaymentTable.toPaise(settlement);
+            cogsPaise[row] = cogs != null ? CompactPaymentTable.toPaise(cogs) : NO_AMOUNT;
+            netProfitPaise[row] = netProfit != null ? CompactPaymentTable.toPaise(netProfit) : NO_AMOUNT;
+            skuCode[row] = skus.encode(sku);
+            statusCode[row] = statuses.encode(status);
+            stateCode[row] = states.encode(state);
+            lossCategoryCode[row] = lossCategories.encode(lossCategory);
+            priceTypeCode[row] = priceTypes.encode(priceType);
+            return this;
+        }
+
+        /**
+         * Called with the number of rows in range whenever the built cube scans a date range
+         */
+        public Builder onScan(LongConsumer listener) {
+            this.scanListener = listener;
+            return this;
+        }
+
+        public MergedOrderCube build() {
+            built = true;
+            // Sort (day, row) pairs packed into longs; undated rows (NO_VALUE) come first
+            long[] keys = new long[size];
+            for (int row = 0; row < size; row++) {
+                keys[row] = ((long) epochDay[row] << 32) | row;
+            }
+            Arrays.sort(keys);
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) order[i] = (int) keys[i];
+            return new MergedOrderCube(this, order);
+        }
+
+        private void ensureCapacity(int needed) {
+            if (needed <= epochDay.length) return;
+            int capacity = Math.max(needed, epochDay.length + (epochDay.length >> 1));
+            epochDay = Arrays.copyOf(epochDay, capacity);
+            quantity = Arrays.copyOf(quantity, capacity);
+            settlementPaise = Arrays.copyOf(settlementPaise, capacity);
+            cogsPaise = Arrays.copyOf(cogsPaise, capacity);
+            netProfitPaise = Arrays.copyOf(netProfitPaise, capacity);
+            skuCode = Arrays.copyOf(skuCode, capacity);
+            statusCode = Arrays.copyOf(statusCode, capacity);
+            stateCode = Arrays.copyOf(stateCode, capacity);
+            lossCategoryCode = Arrays.copyOf(lossCategoryCode, capacity);
+            priceTypeCode = Arrays.copyOf(priceTypeCode, capacity);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.event.DataVersionChangedEvent;
+import com.ecomanalyser.event.MergedOrdersChangedEvent;
+import com.ecomanalyser.repository.MergedOrderPaymentRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Owns the current {@link MergedOrderCube}. The cube is loaded on first use and reloaded in the
+ * background after every committed change to merged_orders, made on this node or, as seen
+ * through {@link DataEpoch}, on another one; readers keep using the previous cube until the new
+ * one is swapped in.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MergedOrderCubeService {
+
+    private final MergedOrderPaymentRepository mergedRepo;
+    private final PlatformTransactionManager transactionManager;
+    private final DataEpoch dataEpoch;
+    private final MonthlySummarySnapshots summarySnapshots;
+
+    private final AtomicReference<MergedOrderCube> current = new AtomicReference<>();
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();
+    private final Object loadLock = new Object();
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "merged-cube-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Current cube, loading it on first use
+     */
+    public MergedOrderCube current() {
+        MergedOrderCube cube = current.get();
+        if (cube != null) return cube;
+        synchronized (loadLock) {
+            cube = current.get();
+            return cube != null ? cube : refresh();
+        }
+    }
+
+    /**
+     * Load a new cube from merged_orders and swap it in
+     */
+    public MergedOrderCube refresh() {
+        synchronized (loadLock) {
+            long started = System.currentTimeMillis();
+            long version = summarySnapshots.beforeLoad();
+            TransactionTemplate tx = new TransactionTemplate(transactionManager);
+            tx.setReadOnly(true);
+            MergedOrderCube cube = tx.execute(status -> {
+                // Scans count towards the service operation reading the cube on that thread
+                MergedOrderCube.Builder builder = new MergedOrderCube.Builder().onScan(OperationMetrics::scanned);
+                try (Stream<Object[]> rows = mergedRepo.streamCubeColumns()) {
+                    rows.forEach(r -> builder.add(
+                            (LocalDate) r[0],
+                            (String) r[1],
+                            (String) r[2],
+                            (String) r[3],
+                            (Integer) r[4],
+                            (BigDecimal) r[5],
+                            (BigDecimal) r[6],
+                            (BigDecimal) r[7],
+                            (String) r[8],
+                            (String) r[9]));
+                }
+                return builder.build();
+            });
+            current.set(cube);
+            try {
+                summarySnapshots.afterLoad(version, cube);
+            } catch (Exception e) {
+                // Months without a snapshot are scanned in the cube instead
+                log.warn("Could not update monthly summary snapshots: {}", e.getMessage());
+            }
+            dataEpoch.bump();
+            log.info("Loaded merged order cube with {} rows in {} ms", cube.size(), System.currentTimeMillis() - started);
+            return cube;
+        }
+    }
+
+    /**
+     * Schedule a reload; requests made while one is already queued are folded into it
+     */
+    public void refreshAsync() {
+        if (!refreshQueued.compareAndSet(false, true)) return;
+        refresher.execute(() -> {
+            refreshQueued.set(false);
+            try {
+                refresh();
+            } catch (Exception e) {
+                log.warn("Could not reload merged order cube: {}", e.getMessage());
+            }
+        });
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onMergedOrdersChanged(MergedOrdersChangedEvent event) {
+        refreshAsync();
+    }
+
+    @EventListener
+    public void onDataVersionChanged(DataVersionChangedEvent event) {
+        if (DataEpoch.MERGED_ORDERS.equals(event.getDataSet())) refreshAsync();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+}
@@ -0,0 +1,116 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.repository.MergedOrderPaymentRepository;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes merged_orders as NDJSON or CSV straight from a database cursor.
+ *
+ * Rows are read as scalar columns with a fixed fetch size and written as they arrive, so memory
+ * stays flat however large the table is and the client sees the first row as soon as the first
+ * fetch returns.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MergedOrderExportService {
+
+    static final String[] COLUMNS = {
+            "orderId", "skuId", "orderStatus", "orderDate", "paymentDate",
+            "quantity", "orderAmount", "settlementAmount", "state", "transactionId"
+    };
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final MergedOrderPaymentRepository mergedRepo;
+    private final PlatformTransactionManager transactionManager;
+
+    public enum Format { NDJSON, CSV }
+
+    /**
+     * Stream rows matching the optional filters to {@code out}; returns the number of rows written
+     */
+    public long export(Format format, LocalDate startDate, LocalDate endDate, String status, String skuId, OutputStream out) {
+        long started = System.currentTimeMillis();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+        Long written = tx.execute(s -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+            try (Stream<Object[]> rows = mergedRepo.streamForExport(startDate, endDate, blankToNull(status), blankToNull(skuId))) {
+                return format == Format.CSV ? writeCsv(rows.iterator(), writer) : writeNdjson(rows.iterator(), writer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        log.info("Exported {} merged rows as {} in {} ms", written, format, System.currentTimeMillis() - started);
+        return written != null ? written : 0;
+    }
+
+    static long writeNdjson(Iterator<Object[]> rows, Writer writer) throws IOException {
+        long count = 0;
+        try (JsonGenerator json = JSON.createGenerator(writer)) {
+            json.setRootValueSeparator(null);
+            while (rows.hasNext()) {
+                Object[] row = rows.next();
+                json.writeStartObject();
+                for (int i = 0; i < COLUMNS.length; i++) {
+                    json.writeFieldName(COLUMNS[i]);
+                    writeJsonValue(json, row[i]);
+                }
+                json.writeEndObject();
+                json.writeRaw('\n');
+                // Push the first row out at once; later rows go out as the buffer fills
+                if (count++ == 0) json.flush();
+            }
+        }
+        return count;
+    }
+
+    static long writeCsv(Iterator<Object[]> rows, Writer writer) throws IOException {
+        long count = 0;
+        try (CSVPrinter csv = new CSVPrinter(writer, CSVFormat.DEFAULT.builder().setHeader(COLUMNS).build())) {
+            while (rows.hasNext()) {
+                csv.printRecord(rows.next());
+                if (count++ == 0) csv.flush();
+            }
+        }
+        return count;
+    }
+
+    private static void writeJsonValue(JsonGenerator json, Object value) throws IOException {
+        if (value == null) {
+            json.writeNull();
+        } else if (value instanceof BigDecimal amount) {
+            json.writeNumber(amount);
+        } else if (value instanceof Integer number) {
+            json.writeNumber(number);
+        } else {
+            // Dates print as ISO yyyy-MM-dd
+            json.writeString(value.toString());
+        }
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
@@ -0,0 +1,107 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.domain.MergedOrderPaymentEntity;
+import com.ecomanalyser.repository.MergedOrderPaymentRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Pages through merged_orders in the database, newest order date first.
+ *
+ * Pages are read with keyset pagination on (order_date, order_id): each page returns a cursor for
+ * the last row, and the next page starts right after it through the keyset index, so latency does
+ * not grow with the table or the page number. A page number without a cursor still works, as an
+ * offset from the first page. The optional search is a case-insensitive substring match on order
+ * id, SKU and status, served by trigram indexes.
+ */
+@Service
+@RequiredArgsConstructor
+public class MergedOrderPageService {
+
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    /** Approximate search counts stop at this many matches */
+    static final int APPROX_COUNT_CAP = 10_000;
+
+    // Sorts before every real key, so the first page starts at the top
+    private static final LocalDate FIRST_PAGE_DATE = LocalDate.of(9999, 12, 31);
+    // Undated rows, matching the COALESCE in the repository's page key
+    private static final LocalDate UNDATED = LocalDate.of(1, 1, 1);
+
+    private final MergedOrderPaymentRepository mergedRepo;
+
+    public enum CountMode { EXACT, APPROX, NONE }
+
+    /**
+     * One page of rows. {@code totalRecords} is null when no count was requested and is a lower
+     * bound or planner estimate when {@code approximate} is set.
+     */
+    public record Page(List<MergedOrderPaymentEntity> rows, int page, int size, boolean hasNext,
+                       String nextCursor, Long totalRecords, boolean approximate) {
+    }
+
+    @Transactional(readOnly = true)
+    public Page page(int page, int size, String query, String cursor, CountMode countMode) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        int pageNumber = Math.max(0, page);
+        String pattern = query != null && !query.isBlank() ? "%" + escapeLike(query.trim()) + "%" : null;
+
+        Long total = null;
+        boolean approximate = false;
+        switch (countMode) {
+            case EXACT -> total = pattern != null ? mergedRepo.countSearch(pattern) : mergedRepo.count();
+            case APPROX -> {
+                total = pattern != null ? mergedRepo.countSearchUpTo(pattern, APPROX_COUNT_CAP) : mergedRepo.estimateRowCount();
+                approximate = pattern == null || total >= APPROX_COUNT_CAP;
+            }
+            case NONE -> { }
+        }
+
+        LocalDate afterDate = FIRST_PAGE_DATE;
+        String afterId = "";
+        long offset = 0;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] key = decodeCursor(cursor);
+            afterDate = LocalDate.parse(key[0]);
+            afterId = key[1];
+        } else {
+            // Keep a page number past the end on the last page, as the in-memory paging did
+            if (total != null && !approximate && total > 0) {
+                pageNumber = (int) Math.min(pageNumber, (total - 1) / pageSize);
+            }
+            offset = (long) pageNumber * pageSize;
+        }
+
+        // One extra row tells whether another page follows
+        List<MergedOrderPaymentEntity> rows = pattern != null
+                ? mergedRepo.searchPage(pattern, afterDate, afterId, offset, pageSize + 1)
+                : mergedRepo.findPage(afterDate, afterId, offset, pageSize + 1);
+        boolean hasNext = rows.size() > pageSize;
+        if (hasNext) rows = rows.subList(0, pageSize);
+        String nextCursor = hasNext ? encodeCursor(rows.get(rows.size() - 1)) : null;
+        return new Page(rows, pageNumber, pageSize, hasNext, nextCursor, total, approximate);
+    }
+
+    static String encodeCursor(MergedOrderPaymentEntity row) {
+        LocalDate date = row.getOrderDate() != null ? row.getOrderDate() : UNDATED;
+        String key = date + "|" + row.getOrderId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String[] decodeCursor(String cursor) {
+        String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        int separator = key.indexOf('|');
+        if (separator < 0) throw new IllegalArgumentException("Malformed cursor");
+        return new String[] {key.substring(0, separator), key.substring(separator + 1)};
+    }
+
+    static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,359 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.dto.PivotRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ToIntFunction;
+
+/**
+ * Declarative group-by over the merged order cube.
+ *
+ * A request names whitelisted dimensions and measures plus value filters; it is compiled to
+ * one pass over the cube's date range in which every row is reduced to a packed key of its
+ * dimension codes. Grouping sets are then totalled from those finest groups, the way SQL
+ * GROUPING SETS would, without scanning again.
+ */
+@Service
+@RequiredArgsConstructor
+public class MergedOrderPivotService {
+
+    public static final int DEFAULT_LIMIT = 1000;
+    public static final int MAX_LIMIT = 10000;
+    // Finest key spaces up to this size are accumulated in an array instead of a map
+    private static final int DENSE_KEYS = 1 << 20;
+
+    public enum Dimension {
+        ORDER_DATE(null),
+        SKU(MergedOrderCube.Dimension.SKU),
+        STATUS(MergedOrderCube.Dimension.STATUS),
+        STATE(MergedOrderCube.Dimension.STATE),
+        PRICE_TYPE(MergedOrderCube.Dimension.PRICE_TYPE),
+        SKU_GROUP(null),
+        LOSS_CATEGORY(MergedOrderCube.Dimension.LOSS_CATEGORY);
+
+        private final MergedOrderCube.Dimension column;
+
+        Dimension(MergedOrderCube.Dimension column) {
+            this.column = column;
+        }
+    }
+
+    public enum Measure {
+        COUNT, QUANTITY, SETTLEMENT, REVENUE, COGS, PROFIT;
+
+        Object value(MergedOrderCube.Aggregate a) {
+            return switch (this) {
+                case COUNT -> a.getOrders();
+                case QUANTITY -> a.getQuantity();
+                case SETTLEMENT -> a.getSettlement();
+                case REVENUE -> a.getRevenue();
+                case COGS -> a.getCogs();
+                case PROFIT -> a.getNetProfit();
+            };
+        }
+    }
+
+    private final MergedOrderCubeService cubeService;
+    private final SkuPriceCatalog priceCatalog;
+
+    /**
+     * Result rows keyed by dimension and measure name; money in rupees, counts as longs
+     *
+     * @throws IllegalArgumentException for unknown names or malformed grouping sets
+     */
+    public Map<String, Object> pivot(PivotRequest request) {
+        List<Dimension> dimensions = parseAll(Dimension.class, request.getDimensions());
+        if (dimensions.size() != dimensions.stream().distinct().count()) {
+            throw new IllegalArgumentException("Repeated dimension in " + request.getDimensions());
+        }
+        List<Measure> measures = parseAll(Measure.class, request.getMeasures());
+        if (measures.isEmpty()) measures = List.of(Measure.COUNT);
+        Measure orderBy = request.getOrderBy() != null ? parse(Measure.class, request.getOrderBy()) : null;
+        int limit = request.getLimit() != null ? request.getLimit() : DEFAULT_LIMIT;
+        if (limit < 1 || limit > MAX_LIMIT) throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+
+        List<int[]> groupingSets = new ArrayList<>();
+        if (request.getGroupingSets() == null) {
+            int[] all = new int[dimensions.size()];
+            Arrays.setAll(all, i -> i);
+            groupingSets.add(all);
+        } else {
+            for (List<String> set : request.getGroupingSets()) {
+                List<Dimension> members = parseAll(Dimension.class, set);
+                if (members.size() != members.stream().distinct().count()) {
+                    throw new IllegalArgumentException("Repeated dimension in grouping set " + set);
+                }
+                int[] positions = new int[members.size()];
+                for (int i = 0; i < positions.length; i++) {
+                    positions[i] = dimensions.indexOf(members.get(i));
+                    if (positions[i] < 0) throw new IllegalArgumentException("Grouping set " + set + " is not within the dimensions");
+                }
+                groupingSets.add(positions);
+            }
+        }
+
+        MergedOrderCube cube = cubeService.current();
+        int first = cube.firstRow(request.getStart());
+        int last = cube.endRow(request.getEnd());
+        Scan scan = new Scan(cube, first, last, request.getAgg() != null ? request.getAgg() : AnalyticsService.Aggregation.DAY);
+
+        // Filters: accepted[code + 1] per filtered dimension
+        List<Coder> filterCoders = new ArrayList<>();
+        List<boolean[]> accepted = new ArrayList<>();
+        if (request.getFilters() != null) {
+            for (Map.Entry<String, List<String>> filter : request.getFilters().entrySet()) {
+                Dimension dimension = parse(Dimension.class, filter.getKey());
+                if (dimension == Dimension.ORDER_DATE) throw new IllegalArgumentException("Filter order dates with start and end");
+                Coder coder = scan.coder(dimension);
+                boolean[] ok = new boolean[coder.cardinality() + 1];
+                for (String value : filter.getValue() != null ? filter.getValue() : List.<String>of()) {
+                    int code = coder.codeOf(value);
+                    if (code != MergedOrderCube.NO_MATCH) ok[code + 1] = true;
+                }
+                filterCoders.add(coder);
+                accepted.add(ok);
+            }
+        }
+
+        // Mixed-radix packing of the dimension codes, NULL_CODE (-1) shifted to 0
+        Coder[] coders = new Coder[dimensions.size()];
+        long[] strides = new long[dimensions.size()];
+        long keySpace = 1;
+        for (int i = 0; i < coders.length; i++) {
+            coders[i] = scan.coder(dimensions.get(i));
+            strides[i] = keySpace;
+            try {
+                keySpace = Math.multiplyExact(keySpace, coders[i].cardinality() + 1L);
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("Too many dimension combinations");
+            }
+        }
+
+        Map<Long, MergedOrderCube.Aggregate> finest = keySpace <= DENSE_KEYS
+                ? scanDense(cube, first, last, coders, strides, (int) keySpace, filterCoders, accepted)
+                : scanSparse(cube, first, last, coders, strides, filterCoders, accepted);
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        boolean truncated = false;
+        for (int[] set : groupingSets) {
+            Map<Long, MergedOrderCube.Aggregate> groups = set.length == coders.length ? finest : project(finest, set, coders, strides);
+            List<Map<String, Object>> setRows = new ArrayList<>(groups.size());
+            for (Map.Entry<Long, MergedOrderCube.Aggregate> group : groups.entrySet()) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                for (int i : set) {
+                    int code = (int) (group.getKey() / strides[i] % (coders[i].cardinality() + 1)) - 1;
+                    row.put(name(dimensions.get(i)), code == StringDictionary.NULL_CODE ? null : coders[i].decode(code));
+                }
+                for (Measure measure : measures) row.put(name(measure), measure.value(group.getValue()));
+                if (request.getGroupingSets() != null) row.put("grouping", Arrays.stream(set).mapToObj(i -> name(dimensions.get(i))).toList());
+                setRows.add(row);
+            }
+            setRows.sort(orderBy != null ? byMeasure(orderBy) : byDimensions(set, dimensions));
+            if (setRows.size() > limit) {
+                truncated = true;
+                setRows = setRows.subList(0, limit);
+            }
+            rows.addAll(setRows);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("dimensions", dimensions.stream().map(MergedOrderPivotService::name).toList());
+        response.put("measures", measures.stream().map(MergedOrderPivotService::name).toList());
+        response.put("rows", rows);
+        response.put("truncated", truncated);
+        return response;
+    }
+
+    private static Map<Long, MergedOrderCube.Aggregate> scanDense(MergedOrderCube cube, int first, int last, Coder[] coders, long[] strides,
+                                                                  int keySpace, List<Coder> filterCoders, List<boolean[]> accepted) {
+        MergedOrderCube.Aggregate[] byKey = new MergedOrderCube.Aggregate[keySpace];
+        for (int row = first; row < last; row++) {
+            if (!passes(row, filterCoders, accepted)) continue;
+            int key = (int) key(row, coders, strides);
+            MergedOrderCube.Aggregate agg = byKey[key];
+            if (agg == null) byKey[key] = agg = new MergedOrderCube.Aggregate();
+            agg.add(cube, row);
+        }
+        Map<Long, MergedOrderCube.Aggregate> groups = new HashMap<>();
+        for (int key = 0; key < keySpace; key++) {
+            if (byKey[key] != null) groups.put((long) key, byKey[key]);
+        }
+        return groups;
+    }
+
+    private static Map<Long, MergedOrderCube.Aggregate> scanSparse(MergedOrderCube cube, int first, int last, Coder[] coders, long[] strides,
+                                                                   List<Coder> filterCoders, List<boolean[]> accepted) {
+        Map<Long, MergedOrderCube.Aggregate> groups = new HashMap<>();
+        for (int row = first; row < last; row++) {
+            if (passes(row, filterCoders, accepted)) {
+                groups.computeIfAbsent(key(row, coders, strides), k -> new MergedOrderCube.Aggregate()).add(cube, row);
+            }
+        }
+        return groups;
+    }
+
+    private static boolean passes(int row, List<Coder> filterCoders, List<boolean[]> accepted) {
+        for (int f = 0; f < filterCoders.size(); f++) {
+            if (!accepted.get(f)[filterCoders.get(f).code(row) + 1]) return false;
+        }
+        return true;
+    }
+
+    private static long key(int row, Coder[] coders, long[] strides) {
+        long key = 0;
+        for (int i = 0; i < coders.length; i++) key += (coders[i].code(row) + 1L) * strides[i];
+        return key;
+    }
+
+    /**
+     * Totals of the finest groups re-keyed by the dimensions of one grouping set
+     */
+    private static Map<Long, MergedOrderCube.Aggregate> project(Map<Long, MergedOrderCube.Aggregate> finest, int[] set,
+                                                                Coder[] coders, long[] strides) {
+        Map<Long, MergedOrderCube.Aggregate> groups = new HashMap<>();
+        for (Map.Entry<Long, MergedOrderCube.Aggregate> group : finest.entrySet()) {
+            long key = 0;
+            for (int i : set) {
+                key += group.getKey() / strides[i] % (coders[i].cardinality() + 1) * strides[i];
+            }
+            groups.computeIfAbsent(key, k -> new MergedOrderCube.Aggregate()).add(group.getValue());
+        }
+        return groups;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Comparator<Map<String, Object>> byDimensions(int[] set, List<Dimension> dimensions) {
+        Comparator<Map<String, Object>> order = (a, b) -> 0;
+        for (int i : set) {
+            String name = name(dimensions.get(i));
+            order = order.thenComparing(row -> (Comparable) row.get(name), Comparator.nullsLast(Comparator.naturalOrder()));
+        }
+        return order;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Comparator<Map<String, Object>> byMeasure(Measure measure) {
+        String name = name(measure);
+        return Comparator.comparing((Map<String, Object> row) -> (Comparable) row.get(name)).reversed();
+    }
+
+    /**
+     * Row to code mapping of one dimension over one scan. Codes run from 0 to cardinality - 1,
+     * with {@link StringDictionary#NULL_CODE} for rows without a value; {@code codeOf} maps a
+     * filter value to its code, or {@link MergedOrderCube#NO_MATCH} when no row can have it.
+     */
+    private record Coder(IntUnaryOperator codes, int cardinality, IntFunction<Object> decoder, ToIntFunction<String> filterCodes) {
+        int code(int row) {
+            return codes.applyAsInt(row);
+        }
+
+        Object decode(int code) {
+            return decoder.apply(code);
+        }
+
+        int codeOf(String value) {
+            return filterCodes.applyAsInt(value);
+        }
+    }
+
+    /**
+     * Coders for one request; date buckets and SKU groups are resolved once per scan
+     */
+    private final class Scan {
+        private final MergedOrderCube cube;
+        private final int first;
+        private final int last;
+        private final AnalyticsService.Aggregation agg;
+
+        Scan(MergedOrderCube cube, int first, int last, AnalyticsService.Aggregation agg) {
+            this.cube = cube;
+            this.first = first;
+            this.last = last;
+            this.agg = agg;
+        }
+
+        Coder coder(Dimension dimension) {
+            return switch (dimension) {
+                case ORDER_DATE -> dateCoder();
+                case SKU_GROUP -> groupCoder();
+                default -> columnCoder(dimension.column);
+            };
+        }
+
+        private Coder columnCoder(MergedOrderCube.Dimension column) {
+            int cardinality = cube.values(column).size();
+            return new Coder(row -> cube.code(column, row), cardinality, code -> cube.decode(column, code),
+                    value -> cube.codeOf(column, value));
+        }
+
+        private Coder dateCoder() {
+            // Codes are the cube calendar's buckets of the scanned rows, shifted to start at 0
+            CalendarIndex calendar = cube.calendar(agg);
+            int firstBucket = first < last ? calendar.bucket(cube.epochDay(first)) : 0;
+            int buckets = first < last ? calendar.bucket(cube.epochDay(last - 1)) - firstBucket + 1 : 0;
+            return new Coder(row -> calendar.bucket(cube.epochDay(row)) - firstBucket, buckets,
+                    code -> calendar.bucketDate(code + firstBucket), value -> MergedOrderCube.NO_MATCH);
+        }
+
+        private Coder groupCoder() {
+            SkuPriceCatalog.Snapshot catalog = priceCatalog.current();
+            List<String> skus = cube.values(MergedOrderCube.Dimension.SKU);
+            List<String> groups = new ArrayList<>();
+            Map<String, Integer> groupCodes = new HashMap<>();
+            int[] groupOfSku = new int[skus.size()];
+            for (int sku = 0; sku < skus.size(); sku++) {
+                String group = catalog.groupName(skus.get(sku)).orElse(null);
+                groupOfSku[sku] = group == null ? StringDictionary.NULL_CODE : groupCodes.computeIfAbsent(group, g -> {
+                    groups.add(g);
+                    return groups.size() - 1;
+                });
+            }
+            return new Coder(row -> {
+                int sku = cube.skuCode(row);
+                return sku == StringDictionary.NULL_CODE ? StringDictionary.NULL_CODE : groupOfSku[sku];
+            }, groups.size(), groups::get, value -> value == null ? StringDictionary.NULL_CODE : groupCodes.getOrDefault(value, MergedOrderCube.NO_MATCH));
+        }
+    }
+
+    static String name(Enum<?> constant) {
+        StringBuilder name = new StringBuilder();
+        boolean upper = false;
+        for (char c : constant.name().toLowerCase(Locale.ROOT).toCharArray()) {
+            if (c == '_') {
+                upper = true;
+            } else {
+                name.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            }
+        }
+        return name.toString();
+    }
+
+    private static <E extends Enum<E>> E parse(Class<E> type, String name) {
+        if (name == null || name.isBlank()) throw new IllegalArgumentException("Missing " + type.getSimpleName().toLowerCase(Locale.ROOT));
+        String constant = name.trim().replaceAll("([a-z0-9])([A-Z])", "$1_$2").replace('-', '_').toUpperCase(Locale.ROOT);
+        try {
+            return Enum.valueOf(type, constant);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown " + type.getSimpleName().toLowerCase(Locale.ROOT) + ": " + name);
+        }
+    }
+
+    private static <E extends Enum<E>> List<E> parseAll(Class<E> type, List<String> names) {
+        List<E> parsed = new ArrayList<>();
+        if (names != null) for (String name : names) parsed.add(parse(type, name));
+        return parsed;
+    }
+}
@@ -0,0 +1,71 @@
+package com.ecomanalyser.service;
+
+import java.math.BigDecimal;
+
+/**
+ * Mutable running total of rupee amounts, held as a long count of paise.
+ *
+ * Aggregation loops add into a MoneySum instead of allocating a new BigDecimal per add, and
+ * convert back with {@link #toBigDecimal()} once the total is returned. Additions are
+ * overflow-checked and throw ArithmeticException rather than wrapping.
+ *
+ * The total remembers the largest scale (0 to 2) of the amounts added, so a sum of whole-rupee
+ * amounts comes back as "300" and a sum of paise amounts as "300.00", exactly as adding the
+ * BigDecimals would have printed. Amounts with more than two decimals are rounded half-up to paise.
+ */
+public final class MoneySum {
+
+    private long paise;
+    private int scale;
+
+    public MoneySum add(BigDecimal amount) {
+        if (amount == null) return this;
+        paise = Math.addExact(paise, CompactPaymentTable.toPaise(amount));
+        widenScale(amount);
+        return this;
+    }
+
+    /**
+     * Add the magnitude of {@code amount}, for losses reported as positive numbers
+     */
+    public MoneySum addAbs(BigDecimal amount) {
+        if (amount == null) return this;
+        paise = Math.addExact(paise, Math.absExact(CompactPaymentTable.toPaise(amount)));
+        widenScale(amount);
+        return this;
+    }
+
+    public MoneySum addPaise(long amountPaise) {
+        paise = Math.addExact(paise, amountPaise);
+        scale = 2;
+        return this;
+    }
+
+    public MoneySum add(MoneySum other) {
+        paise = Math.addExact(paise, other.paise);
+        scale = Math.max(scale, other.scale);
+        return this;
+    }
+
+    public long paise() {
+        return paise;
+    }
+
+    public int signum() {
+        return Long.signum(paise);
+    }
+
+    public BigDecimal toBigDecimal() {
+        // Exact: every amount added had at most this many decimals
+        return BigDecimal.valueOf(paise, 2).setScale(scale);
+    }
+
+    private void widenScale(BigDecimal amount) {
+        scale = Math.max(scale, Math.min(Math.max(amount.scale(), 0), 2));
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
@@ -0,0 +1,88 @@
+package com.ecomanalyser.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+
+/**
+ * Runs range queries one calendar month at a time on a shared, bounded fork-join pool.
+ *
+ * Each month slice is fetched and aggregated by its own worker into its own result, and the
+ * caller merges the per-month results. The pool size ({@code analytics.parallel.max-threads})
+ * caps the database connections taken by partition work across all requests, so a multi-year
+ * range cannot drain the connection pool.
+ */
+@Component
+public class MonthPartitions {
+
+    private final ForkJoinPool pool;
+
+    public MonthPartitions(@Value("${analytics.parallel.max-threads:4}") int maxThreads) {
+        this.pool = new ForkJoinPool(Math.max(1, maxThreads), p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("analytics-partition-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Apply {@code work} to every month slice of [start, end] and return the results in month
+     * order. A range within one month runs on the calling thread.
+     */
+    public <P> List<P> map(LocalDate start, LocalDate end, BiFunction<LocalDate, LocalDate, P> work) {
+        List<LocalDate[]> slices = split(start, end);
+        if (slices.size() <= 1) {
+            return List.of(work.apply(start, end));
+        }
+
+        List<Callable<P>> tasks = new ArrayList<>(slices.size());
+        for (LocalDate[] slice : slices) {
+            tasks.add(() -> work.apply(slice[0], slice[1]));
+        }
+        List<P> results = new ArrayList<>(slices.size());
+        try {
+            for (Future<P> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while aggregating " + start + " to " + end, e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : new IllegalStateException(e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Month slices of [start, end]; the first and last are clipped to the range
+     */
+    static List<LocalDate[]> split(LocalDate start, LocalDate end) {
+        List<LocalDate[]> slices = new ArrayList<>();
+        if (start == null || end == null || end.isBefore(start)) {
+            return slices;
+        }
+        for (LocalDate from = start; !from.isAfter(end); ) {
+            LocalDate monthEnd = from.with(TemporalAdjusters.lastDayOfMonth());
+            LocalDate to = monthEnd.isBefore(end) ? monthEnd : end;
+            slices.add(new LocalDate[] {from, to});
+            from = to.plusDays(1);
+        }
+        return slices;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,181 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.domain.MonthlySummarySnapshotEntity;
+import com.ecomanalyser.repository.MonthlySummarySnapshotRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persisted monthly summary totals of closed months, one monthly_summary_snapshot row per month.
+ *
+ * Reads only look snapshots up by primary key and never write. A merge deletes the snapshots of
+ * the months it changes inside its own transaction, so a committed change is never answered
+ * from an older snapshot. Missing snapshots are written after each cube load, from the loaded
+ * cube, and only while merged_orders is still at the version the load started from; a merge
+ * committed during the load leaves them to the load it triggers. Months changed by this node are
+ * evicted once more after that load, which removes a snapshot another load wrote from rows the
+ * merge had not committed yet. The month in progress is never stored.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MonthlySummarySnapshots {
+
+    private static final String INSERT_SQL = "INSERT INTO monthly_summary_snapshot (period, order_count, revenue_paise, "
+            + "delivered_profit_paise, delivered_loss_paise, return_loss_paise, computed_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?) ON CONFLICT (period) DO NOTHING";
+
+    private final MonthlySummarySnapshotRepository repository;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    // Months whose snapshots committed merges deleted since the last cube load finished
+    private final Set<Integer> evictedSinceLoad = ConcurrentHashMap.newKeySet();
+
+    static boolean isClosed(YearMonth month, LocalDate today) {
+        return month.atEndOfMonth().isBefore(today);
+    }
+
+    static int period(YearMonth month) {
+        return month.getYear() * 100 + month.getMonthValue();
+    }
+
+    /**
+     * Months whose fingerprint differs between two {@code [period, fingerprint]} listings of
+     * merged_orders, including months present in only one of them
+     */
+    static Set<Integer> changedPeriods(List<Object[]> before, List<Object[]> after) {
+        Map<Integer, Object> previous = new HashMap<>();
+        for (Object[] row : before) previous.put(((Number) row[0]).intValue(), row[1]);
+        Set<Integer> changed = new TreeSet<>();
+        for (Object[] row : after) {
+            int period = ((Number) row[0]).intValue();
+            if (!previous.containsKey(period) || !Objects.equals(previous.remove(period), row[1])) changed.add(period);
+        }
+        changed.addAll(previous.keySet());
+        return changed;
+    }
+
+    /**
+     * Stored totals of the closed months among {@code months}, read in one primary-key lookup
+     */
+    Map<YearMonth, DashboardAccumulator.SummaryTotals> find(Collection<YearMonth> months) {
+        Map<Integer, YearMonth> byPeriod = new HashMap<>();
+        LocalDate today = LocalDate.now();
+        for (YearMonth month : months) {
+            if (isClosed(month, today)) byPeriod.put(period(month), month);
+        }
+        Map<YearMonth, DashboardAccumulator.SummaryTotals> found = new HashMap<>();
+        if (byPeriod.isEmpty()) return found;
+        try {
+            for (MonthlySummarySnapshotEntity snapshot : repository.findAllById(byPeriod.keySet())) {
+                found.put(byPeriod.get(snapshot.getPeriod()), toTotals(snapshot));
+            }
+        } catch (Exception e) {
+            log.warn("Could not read monthly summary snapshots: {}", e.getMessage());
+        }
+        return found;
+    }
+
+    /**
+     * Delete the snapshots of months whose merged rows changed. Called inside the transaction
+     * that changes them; the months are evicted again after the cube load that follows its commit.
+     */
+    public void evict(Collection<Integer> periods) {
+        if (periods.isEmpty()) return;
+        List<Integer> months = List.copyOf(periods);
+        repository.deleteAllByIdInBatch(months);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictedSinceLoad.addAll(months);
+                }
+            });
+        } else {
+            evictedSinceLoad.addAll(months);
+        }
+        log.debug("Evicted monthly summary snapshots of {}", months);
+    }
+
+    /**
+     * merged_orders version a cube load starting now reflects at least; pass it to
+     * {@link #afterLoad} with the loaded cube
+     */
+    long beforeLoad() {
+        return mergedOrdersVersion(false);
+    }
+
+    /**
+     * Evict the months merges changed since the previous load, then store every closed month of
+     * {@code cube} that has no snapshot, unless merged_orders moved past {@code loadVersion}.
+     * The version row is read FOR SHARE, so a merge cannot commit until the snapshots are in.
+     *
+     * @return number of snapshots written
+     */
+    int afterLoad(long loadVersion, MergedOrderCube cube) {
+        List<Integer> evicted = new ArrayList<>(evictedSinceLoad);
+        evictedSinceLoad.removeAll(evicted);
+        Integer written = new TransactionTemplate(transactionManager).execute(status -> {
+            if (!evicted.isEmpty()) repository.deleteAllByIdInBatch(evicted);
+            if (mergedOrdersVersion(true) != loadVersion) return 0;
+            return storeMissing(cube);
+        });
+        return written != null ? written : 0;
+    }
+
+    private int storeMissing(MergedOrderCube cube) {
+        int first = cube.firstRow(null);
+        if (first >= cube.size()) return 0;
+        YearMonth month = YearMonth.from(cube.orderDate(first));
+        YearMonth last = YearMonth.from(cube.orderDate(cube.size() - 1));
+        LocalDate today = LocalDate.now();
+        List<Integer> periods = new ArrayList<>();
+        for (YearMonth m = month; !m.isAfter(last) && isClosed(m, today); m = m.plusMonths(1)) {
+            periods.add(period(m));
+        }
+        if (periods.isEmpty()) return 0;
+        Set<Integer> stored = new HashSet<>();
+        repository.findAllById(periods).forEach(s -> stored.add(s.getPeriod()));
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>();
+        for (int period : periods) {
+            if (stored.contains(period)) continue;
+            YearMonth ym = YearMonth.of(period / 100, period % 100);
+            DashboardAccumulator.SummaryTotals totals = new DashboardAccumulator(cube, AnalyticsService.Aggregation.MONTH,
+                    AnalyticsService::isExpectedReturnStatus).scan(ym.atDay(1), ym.atEndOfMonth()).summaryTotals();
+            rows.add(new Object[]{period, totals.orders(), totals.revenue(), totals.deliveredProfit(),
+                    totals.deliveredLoss(), totals.returnLoss(), now});
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+            log.info("Stored monthly summary snapshots of {} closed months", rows.size());
+        }
+        return rows.size();
+    }
+
+    private long mergedOrdersVersion(boolean forShare) {
+        List<Long> version = jdbcTemplate.queryForList("SELECT version FROM data_version WHERE name = ?"
+                + (forShare ? " FOR SHARE" : ""), Long.class, DataEpoch.MERGED_ORDERS);
+        return version.isEmpty() ? 0 : version.get(0);
+    }
+
+    private static DashboardAccumulator.SummaryTotals toTotals(MonthlySummarySnapshotEntity snapshot) {
+        return new DashboardAccumulator.SummaryTotals(snapshot.getOrderCount(), snapshot.getRevenuePaise(),
+                snapshot.getDeliveredProfitPaise(), snapshot.getDeliveredLossPaise(), snapshot.getReturnLossPaise());
+    }
+}
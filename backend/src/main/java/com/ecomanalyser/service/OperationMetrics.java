@@ -0,0 +1,128 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.config.QueryBudget;
+import com.ecomanalyser.config.SqlStatementCounter;
+import com.ecomanalyser.dto.ChartResponse;
+import com.ecomanalyser.dto.IngestionResponse;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Per-call meters of the analytics and import services, recorded around each public method by
+ * {@code ServiceOperationAspect}:
+ *
+ * - {@code service.operation}: timer with a percentile histogram bounded to 1 ms - 60 s,
+ *   tagged outcome
+ * - {@code service.operation.rows.scanned}: rows the call read, reported by the scans through
+ *   {@link #scanned(long)}
+ * - {@code service.operation.rows.returned}: size of the result, for results that are lists,
+ *   charts, maps of lists or row counts
+ * - {@code service.operation.queries}: SQL statements Hibernate prepared during the call,
+ *   also checked against the per-call {@link QueryBudget}
+ *
+ * The row and query counts are plain summaries (count, total, max) without histogram buckets.
+ * Tags are the service class and method name, both fixed sets. Nested operations count their
+ * rows and statements towards every enclosing one as well. Work handed to other threads, such
+ * as the parallel month partitions, is inside the timing but not in the counts.
+ */
+@Component
+public class OperationMetrics {
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    // Histogram range of the timer; calls outside it land in the first or last bucket
+    private static final Duration MIN_EXPECTED = Duration.ofMillis(1);
+    private static final Duration MAX_EXPECTED = Duration.ofSeconds(60);
+
+    /** Rows scanned by the innermost operation on this thread and the ones enclosing it */
+    private static final class Scope {
+        final Scope parent;
+        long rowsScanned;
+
+        Scope(Scope parent) {
+            this.parent = parent;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Operation<T> {
+        T call() throws Throwable;
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final QueryBudget queryBudget;
+
+    public OperationMetrics(MeterRegistry meterRegistry, QueryBudget queryBudget) {
+        this.meterRegistry = meterRegistry;
+        this.queryBudget = queryBudget;
+    }
+
+    /**
+     * Count rows read by the operation running on this thread; a no-op outside one
+     */
+    public static void scanned(long rows) {
+        for (Scope scope = CURRENT.get(); scope != null; scope = scope.parent) scope.rowsScanned += rows;
+    }
+
+    public <T> T record(String service, String method, Operation<T> operation) throws Throwable {
+        Scope scope = new Scope(CURRENT.get());
+        CURRENT.set(scope);
+        SqlStatementCounter.Scope sql = SqlStatementCounter.open();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+        T result = null;
+        try {
+            result = operation.call();
+            return result;
+        } catch (Throwable t) {
+            outcome = "error";
+            throw t;
+        } finally {
+            if (scope.parent != null) CURRENT.set(scope.parent);
+            else CURRENT.remove();
+            sql.close();
+            sample.stop(Timer.builder("service.operation")
+                    .tag("service", service).tag("method", method).tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(MIN_EXPECTED)
+                    .maximumExpectedValue(MAX_EXPECTED)
+                    .register(meterRegistry));
+            summary("service.operation.rows.scanned", service, method).record(scope.rowsScanned);
+            summary("service.operation.queries", service, method).record(sql.statements());
+            queryBudget.check(QueryBudget.CALL, service + "." + method, sql);
+            long returned = rowsReturned(result);
+            if (returned >= 0) summary("service.operation.rows.returned", service, method).record(returned);
+        }
+    }
+
+    private DistributionSummary summary(String name, String service, String method) {
+        return DistributionSummary.builder(name)
+                .tag("service", service).tag("method", method)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Rows in a result: list and chart sizes, the largest list in a map, accepted ingestion rows
+     * or an int/long import count. -1 when the result has no row count.
+     */
+    static long rowsReturned(Object result) {
+        if (result instanceof Collection<?> c) return c.size();
+        if (result instanceof ChartResponse<?> chart) return chart.getData() != null ? chart.getData().size() : 0;
+        if (result instanceof IngestionResponse ingestion) return ingestion.getAcceptedRows() != null ? ingestion.getAcceptedRows() : 0;
+        if (result instanceof Integer || result instanceof Long) return ((Number) result).longValue();
+        if (result instanceof Map<?, ?> map) {
+            long largest = -1;
+            for (Object value : map.values()) {
+                if (value instanceof Collection<?> c) largest = Math.max(largest, c.size());
+            }
+            return largest;
+        }
+        return -1;
+    }
+}
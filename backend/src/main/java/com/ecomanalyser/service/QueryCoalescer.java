@@ -0,0 +1,80 @@
+package com.ecomanalyser.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight execution for read-only queries.
+ *
+ * Concurrent calls of the same query with equal arguments share one in-flight computation: the
+ * first caller runs it on its own thread, later callers wait for that result instead of starting
+ * their own scan. Once the computation finishes the next call starts a fresh one, so nothing is
+ * cached beyond the flight itself.
+ *
+ * Metrics: {@code analytics.coalesce.calls} counts calls per query tagged {@code role=leader}
+ * or {@code role=coalesced}, and {@code analytics.coalesce.wait} times how long coalesced
+ * callers waited for the leader.
+ */
+@Component
+public class QueryCoalescer {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<List<Object>, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    public QueryCoalescer(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Run {@code computation}, or join an identical one already running. Arguments form the key
+     * together with the query name, so they need proper equals/hashCode.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T coalesce(String query, Supplier<T> computation, Object... args) {
+        List<Object> key = Arrays.asList(query, Arrays.asList(args));
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> leader = inFlight.putIfAbsent(key, flight);
+
+        if (leader != null) {
+            counter(query, "coalesced").increment();
+            Timer.Sample waiting = Timer.start(meterRegistry);
+            try {
+                return (T) leader.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            } finally {
+                waiting.stop(Timer.builder("analytics.coalesce.wait").tag("query", query).register(meterRegistry));
+            }
+        }
+
+        counter(query, "leader").increment();
+        try {
+            T result = computation.get();
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private Counter counter(String query, String role) {
+        return Counter.builder("analytics.coalesce.calls").tag("query", query).tag("role", role).register(meterRegistry);
+    }
+}
@@ -1,7 +1,6 @@
 package com.ecomanalyser.service;
 
 import com.ecomanalyser.domain.ReturnTrackingEntity;
-import com.ecomanalyser.repository.MergedOrderPaymentRepository;
 import com.ecomanalyser.repository.ReturnTrackingRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,7 +8,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -26,9 +24,6 @@ public class ReturnTrackingService {
     @Autowired
     private ReturnTrackingRepository returnTrackingRepository;
     
-    @Autowired
-    private MergedOrderPaymentRepository mergedOrderRepository;
-    
     /**
      * Sync return orders from merged_orders table
      * This method identifies orders with RETURN/RTO status and adds them to tracking
@@ -38,57 +33,21 @@ public class ReturnTrackingService {
         log.info("Starting return orders sync...");
         
         try {
-            // Get all orders with RETURN or RTO status from merged_orders
-            List<Object[]> returnOrders = mergedOrderRepository.findReturnOrdersForTracking();
-            
-            int addedCount = 0;
-            int updatedCount = 0;
+            // Orders with RETURN or RTO status are inserted or refreshed in one statement
+            Object[] counts = returnTrackingRepository.upsertFromMergedOrders().get(0);
+            int addedCount = ((Number) counts[0]).intValue();
+            int updatedCount = ((Number) counts[1]).intValue();
             int skippedCount = 0;
             
-            for (Object[] row : returnOrders) {
-                String orderId = (String) row[0];
-                String skuId = (String) row[1];
-                Integer quantity = (Integer) row[2];
-                BigDecimal returnAmount = (BigDecimal) row[3];
-                String orderStatus = (String) row[4];
-                LocalDate orderDate = (LocalDate) row[5];
-                
-                // Check if order already exists in tracking
-                Optional<ReturnTrackingEntity> existingTracking = returnTrackingRepository.findByOrderId(orderId);
-                
-                if (existingTracking.isPresent()) {
-                    // Update existing tracking record
-                    ReturnTrackingEntity tracking = existingTracking.get();
-                    tracking.setSkuId(skuId);
-                    tracking.setQuantity(quantity);
-                    tracking.setReturnAmount(returnAmount);
-                    tracking.setOrderStatus(orderStatus);
-                    tracking.setOrderDate(orderDate);
-                    
-                    returnTrackingRepository.save(tracking);
-                    updatedCount++;
-                    log.debug("Updated tracking for order: {}", orderId);
-                } else {
-                    // Create new tracking record
-                    ReturnTrackingEntity newTracking = new ReturnTrackingEntity(
-                        orderId, skuId, quantity, returnAmount, orderStatus, orderDate
-                    );
-                    
-                    returnTrackingRepository.save(newTracking);
-                    addedCount++;
-                    log.debug("Added new tracking for order: {}", orderId);
-                }
-            }
-            
             Map<String, Object> result = new HashMap<>();
             result.put("success", true);
             result.put("addedCount", addedCount);
             result.put("updatedCount", updatedCount);
             result.put("skippedCount", skippedCount);
-            result.put("totalProcessed", returnOrders.size());
+            result.put("totalProcessed", addedCount + updatedCount);
             
             log.info("Return orders sync completed. Added: {}, Updated: {}, Total: {}", 
-                    addedCount, updatedCount, returnOrders.size());
+                    addedCount, updatedCount, addedCount + updatedCount);
             
             return result;
             
@@ -4,13 +4,11 @@ import com.ecomanalyser.domain.SkuGroupEntity;
 import com.ecomanalyser.domain.SkuGroupMappingEntity;
 import com.ecomanalyser.domain.OrderEntity;
 import com.ecomanalyser.domain.PaymentEntity;
-import com.ecomanalyser.domain.MergedOrderPaymentEntity;
 import com.ecomanalyser.repository.SkuGroupRepository;
 import com.ecomanalyser.repository.SkuGroupMappingRepository;
 import com.ecomanalyser.repository.OrderRepository;
 import com.ecomanalyser.repository.PaymentRepository;
 import com.ecomanalyser.repository.SkuPriceRepository;
-import com.ecomanalyser.repository.MergedOrderPaymentRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -34,7 +32,9 @@ public class SkuGroupService {
     private final OrderRepository orderRepository;
     private final PaymentRepository paymentRepository;
     private final SkuPriceRepository skuPriceRepository;
-    private final MergedOrderPaymentRepository mergedOrderRepository;
+    private final MergedOrderCostService costService;
+    private final SkuPriceCatalog priceCatalog;
+    private final MergedOrderCubeService cubeService;
     
     /**
      * Import SKU groups from Excel template
@@ -42,6 +42,7 @@ public class SkuGroupService {
     @Transactional
     public int importSkuGroups(MultipartFile file) throws IOException {
         log.info("Starting SKU group import from file: {}", file.getOriginalFilename());
+        Map<String, BigDecimal> pricesBefore = costService.loadPurchasePrices();
         
         // Clear existing groups and mappings
         skuGroupMappingRepository.deleteAllInBatch();
@@ -54,6 +55,7 @@ public class SkuGroupService {
             var sheet = workbook.getSheetAt(0);
             
             // Skip header row
+            OperationMetrics.scanned(Math.max(0, sheet.getLastRowNum()));
             for (int i = 1; i <= sheet.getLastRowNum(); i++) {
                 var row = sheet.getRow(i);
                 if (row == null) continue;
@@ -107,6 +109,7 @@ public class SkuGroupService {
         }
         
         log.info("SKU group import completed: {} groups, {} mappings", importedGroups, importedMappings);
+        costService.restampChangedPrices(pricesBefore);
         return importedGroups;
     }
     
@@ -114,19 +117,7 @@ public class SkuGroupService {
      * Get purchase price for a SKU (from group or individual price)
      */
     public BigDecimal getPurchasePriceForSku(String sku) {
-        // First try to get price from group mapping
-        Optional<String> groupName = skuGroupMappingRepository.findGroupNameBySku(sku);
-        if (groupName.isPresent()) {
-            Optional<SkuGroupEntity> group = skuGroupRepository.findByGroupName(groupName.get());
-            if (group.isPresent()) {
-                return group.get().getPurchasePrice();
-            }
-        }
-        
-        // Fallback to individual SKU price
-        return skuPriceRepository.findBySku(sku)
-                .map(sp -> sp.getPurchasePrice())
-                .orElse(BigDecimal.ZERO);
+        return priceCatalog.current().assignedPrice(sku);
     }
     
     /**
@@ -134,41 +125,8 @@ public class SkuGroupService {
      * Uses merged_orders table for accurate revenue and profit calculations
      */
     public List<Map<String, Object>> getTopPerformingGroupsByOrders(LocalDate start, LocalDate end) {
-        // Use merged_orders table for accurate data
-        var mergedOrders = mergedOrderRepository.findByOrderDateBetween(start, end);
-        
-        // Group orders by SKU group
-        Map<String, GroupAnalytics> groupAnalytics = new HashMap<>();
-        
-        for (MergedOrderPaymentEntity merged : mergedOrders) {
-            if (merged.getSkuId() == null || merged.getSettlementAmount() == null || 
-                merged.getSettlementAmount().compareTo(BigDecimal.ZERO) <= 0) {
-                continue; // Skip invalid records
-            }
-            
-            String groupName = skuGroupMappingRepository.findGroupNameBySku(merged.getSkuId())
-                    .orElse("Ungrouped SKUs");
-            
-            GroupAnalytics analytics = groupAnalytics.computeIfAbsent(groupName, 
-                k -> new GroupAnalytics(k, BigDecimal.ZERO, 0L, BigDecimal.ZERO));
-            
-            analytics.orderCount++;
-            analytics.totalQuantity += merged.getQuantity() != null ? merged.getQuantity() : 0;
-            // Use actual settlement amount (real revenue) instead of listed price
-            analytics.totalRevenue = analytics.totalRevenue.add(merged.getSettlementAmount());
-        }
-        
-        // Calculate profit for each group using accurate cost calculation
-        for (GroupAnalytics analytics : groupAnalytics.values()) {
-            if (!"Ungrouped SKUs".equals(analytics.groupName)) {
-                // Calculate total cost using weighted average of purchase prices
-                BigDecimal totalCost = calculateGroupTotalCost(analytics.groupName, analytics.totalQuantity);
-                analytics.totalProfit = analytics.totalRevenue.subtract(totalCost);
-            }
-        }
-        
         // Sort by order count and return top 10
-        return groupAnalytics.values().stream()
+        return collectGroupAnalytics(start, end).values().stream()
                 .sorted(Comparator.comparingLong((GroupAnalytics a) -> a.orderCount).reversed())
                 .limit(10)
                 .map(this::convertToMap)
@@ -180,33 +138,13 @@ public class SkuGroupService {
      * Uses merged_orders table for accurate revenue calculations
      */
     public List<Map<String, Object>> getRevenueContributionByGroup(LocalDate start, LocalDate end) {
-        // Use merged_orders table for accurate data
-        var mergedOrders = mergedOrderRepository.findByOrderDateBetween(start, end);
-        
-        // Group orders by SKU group
-        Map<String, BigDecimal> groupRevenue = new HashMap<>();
-        
-        for (MergedOrderPaymentEntity merged : mergedOrders) {
-            if (merged.getSkuId() == null || merged.getSettlementAmount() == null || 
-                merged.getSettlementAmount().compareTo(BigDecimal.ZERO) <= 0) {
-                continue; // Skip invalid records
-            }
-            
-            String groupName = skuGroupMappingRepository.findGroupNameBySku(merged.getSkuId())
-                    .orElse("Ungrouped SKUs");
-            
-            // Use actual settlement amount (real revenue) instead of listed price
-            BigDecimal revenue = merged.getSettlementAmount();
-            groupRevenue.merge(groupName, revenue, BigDecimal::add);
-        }
-        
         // Convert to list and sort by revenue
-        return groupRevenue.entrySet().stream()
-                .sorted(Map.Entry.<String, BigDecimal>comparingByValue().reversed())
-                .map(entry -> {
+        return collectGroupAnalytics(start, end).values().stream()
+                .sorted(Comparator.comparingLong((GroupAnalytics a) -> a.totalRevenue.paise()).reversed())
+                .map(analytics -> {
                     Map<String, Object> map = new HashMap<>();
-                    map.put("groupName", entry.getKey());
-                    map.put("revenue", entry.getValue());
+                    map.put("groupName", analytics.groupName);
+                    map.put("revenue", analytics.totalRevenue.toBigDecimal());
                     return map;
                 })
                 .collect(Collectors.toList());
@@ -217,44 +155,43 @@ public class SkuGroupService {
      * Uses merged_orders table for accurate revenue and profit calculations
      */
     public List<Map<String, Object>> getProfitComparisonByGroup(LocalDate start, LocalDate end) {
-        // Use merged_orders table for accurate data
-        var mergedOrders = mergedOrderRepository.findByOrderDateBetween(start, end);
+        // Sort by profit and return
+        return collectGroupAnalytics(start, end).values().stream()
+                .sorted(Comparator.comparing((GroupAnalytics a) -> a.totalProfit).reversed())
+                .map(this::convertToMap)
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * Orders, quantity, revenue and profit per SKU group for orders with a positive settlement.
+     * Scans the in-memory merged order cube per SKU, then folds SKUs into their groups.
+     */
+    private Map<String, GroupAnalytics> collectGroupAnalytics(LocalDate start, LocalDate end) {
+        MergedOrderCube cube = cubeService.current();
+        SkuPriceCatalog.Snapshot prices = priceCatalog.current();
         
-        // Group orders by SKU group
-        Map<String, GroupAnalytics> groupAnalytics = new HashMap<>();
+        // Use actual settlement amount (real revenue) instead of listed price
+        var bySku = cube.groupBy(start, end, row -> cube.settlementPaise(row) > 0, MergedOrderCube.Dimension.SKU);
         
-        for (MergedOrderPaymentEntity merged : mergedOrders) {
-            if (merged.getSkuId() == null || merged.getSettlementAmount() == null || 
-                merged.getSettlementAmount().compareTo(BigDecimal.ZERO) <= 0) {
-                continue; // Skip invalid records
-            }
-            
-            String groupName = skuGroupMappingRepository.findGroupNameBySku(merged.getSkuId())
-                    .orElse("Ungrouped SKUs");
-            
-            GroupAnalytics analytics = groupAnalytics.computeIfAbsent(groupName, 
-                k -> new GroupAnalytics(k, BigDecimal.ZERO, 0L, BigDecimal.ZERO));
-            
-            analytics.orderCount++;
-            analytics.totalQuantity += merged.getQuantity() != null ? merged.getQuantity() : 0;
-            // Use actual settlement amount (real revenue) instead of listed price
-            analytics.totalRevenue = analytics.totalRevenue.add(merged.getSettlementAmount());
-        }
+        // Group SKUs by SKU group
+        Map<String, GroupAnalytics> groupAnalytics = new HashMap<>();
+        bySku.forEach((sku, agg) -> {
+            String groupName = prices.groupName(sku).orElse("Ungrouped SKUs");
+            GroupAnalytics analytics = groupAnalytics.computeIfAbsent(groupName, GroupAnalytics::new);
+            analytics.orderCount += agg.getOrders();
+            analytics.totalQuantity += agg.getQuantity();
+            analytics.totalRevenue.addPaise(agg.getSettlementPaise());
+        });
         
         // Calculate profit for each group using accurate cost calculation
         for (GroupAnalytics analytics : groupAnalytics.values()) {
             if (!"Ungrouped SKUs".equals(analytics.groupName)) {
                 // Calculate total cost using weighted average of purchase prices
-                BigDecimal totalCost = calculateGroupTotalCost(analytics.groupName, analytics.totalQuantity);
-                analytics.totalProfit = analytics.totalRevenue.subtract(totalCost);
+                BigDecimal totalCost = calculateGroupTotalCost(prices, analytics.groupName, analytics.totalQuantity);
+                analytics.totalProfit = analytics.totalRevenue.toBigDecimal().subtract(totalCost);
             }
         }
-        
-        // Sort by profit and return
-        return groupAnalytics.values().stream()
-                .sorted(Comparator.comparing((GroupAnalytics a) -> a.totalProfit).reversed())
-                .map(this::convertToMap)
-                .collect(Collectors.toList());
+        return groupAnalytics;
     }
     
     /**
@@ -268,18 +205,11 @@ public class SkuGroupService {
      * Get ungrouped SKUs
      */
     public List<String> getUngroupedSkus() {
-        var allSkus = mergedOrderRepository.findAll().stream()
-                .map(MergedOrderPaymentEntity::getSkuId)
-                .filter(Objects::nonNull)
-                .distinct()
-                .collect(Collectors.toSet());
-        
-        var groupedSkus = skuGroupMappingRepository.findAll().stream()
-                .map(SkuGroupMappingEntity::getSku)
-                .collect(Collectors.toSet());
+        var allSkus = cubeService.current().values(MergedOrderCube.Dimension.SKU);
+        SkuPriceCatalog.Snapshot prices = priceCatalog.current();
         
         return allSkus.stream()
-                .filter(sku -> !groupedSkus.contains(sku))
+                .filter(sku -> prices.groupName(sku).isEmpty())
                 .collect(Collectors.toList());
     }
 
@@ -305,12 +235,15 @@ public class SkuGroupService {
     public SkuGroupEntity updateSkuGroup(Long id, String groupName, double purchasePrice, String description) {
         SkuGroupEntity group = skuGroupRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("SKU group not found with id: " + id));
+        Map<String, BigDecimal> pricesBefore = costService.loadPurchasePrices();
         
         group.setGroupName(groupName);
         group.setPurchasePrice(BigDecimal.valueOf(purchasePrice));
         group.setDescription(description != null ? description : "");
         
-        return skuGroupRepository.save(group);
+        SkuGroupEntity saved = skuGroupRepository.save(group);
+        costService.restampChangedPrices(pricesBefore);
+        return saved;
     }
 
     /**
@@ -318,12 +251,15 @@ public class SkuGroupService {
      */
     @Transactional
     public void deleteSkuGroup(Long id) {
+        Map<String, BigDecimal> pricesBefore = costService.loadPurchasePrices();
+
         // First delete all mappings for this group
         List<SkuGroupMappingEntity> mappings = skuGroupMappingRepository.findBySkuGroupId(id);
         skuGroupMappingRepository.deleteAll(mappings);
         
         // Then delete the group
         skuGroupRepository.deleteById(id);
+        costService.restampChangedPrices(pricesBefore);
     }
 
     /**
@@ -355,6 +291,7 @@ public class SkuGroupService {
         if (existingMapping.isPresent()) {
             throw new RuntimeException("SKU " + skuId + " is already mapped to a group");
         }
+        Map<String, BigDecimal> pricesBefore = costService.loadPurchasePrices();
         
         SkuGroupMappingEntity mapping = SkuGroupMappingEntity.builder()
                 .sku(skuId)
@@ -362,6 +299,7 @@ public class SkuGroupService {
                 .build();
         
         SkuGroupMappingEntity savedMapping = skuGroupMappingRepository.save(mapping);
+        costService.restampChangedPrices(pricesBefore);
         
         // Return a DTO to avoid lazy loading issues
         Map<String, Object> result = new HashMap<>();
@@ -384,11 +322,13 @@ public class SkuGroupService {
         // Find existing mapping
         SkuGroupMappingEntity existingMapping = skuGroupMappingRepository.findBySku(skuId)
                 .orElseThrow(() -> new RuntimeException("SKU mapping not found for: " + skuId));
+        Map<String, BigDecimal> pricesBefore = costService.loadPurchasePrices();
         
         // Update the group
         existingMapping.setSkuGroup(group);
         
         SkuGroupMappingEntity savedMapping = skuGroupMappingRepository.save(existingMapping);
+        costService.restampChangedPrices(pricesBefore);
         
         // Return a DTO to avoid lazy loading issues
         Map<String, Object> result = new HashMap<>();
@@ -409,17 +349,10 @@ public class SkuGroupService {
     /**
      * Calculate total cost for a group using weighted average of purchase prices
      */
-    private BigDecimal calculateGroupTotalCost(String groupName, long totalQuantity) {
-        try {
-            Optional<SkuGroupEntity> group = skuGroupRepository.findByGroupName(groupName);
-            if (group.isPresent() && group.get().getPurchasePrice() != null) {
-                return group.get().getPurchasePrice().multiply(BigDecimal.valueOf(totalQuantity));
-            }
-            return BigDecimal.ZERO;
-        } catch (Exception e) {
-            log.warn("Error calculating cost for group {}: {}", groupName, e.getMessage());
-            return BigDecimal.ZERO;
-        }
+    private BigDecimal calculateGroupTotalCost(SkuPriceCatalog.Snapshot prices, String groupName, long totalQuantity) {
+        return prices.groupPrice(groupName)
+                .map(price -> price.multiply(BigDecimal.valueOf(totalQuantity)))
+                .orElse(BigDecimal.ZERO);
     }
     
     private Map<String, Object> convertToMap(GroupAnalytics analytics) {
@@ -427,7 +360,7 @@ public class SkuGroupService {
         map.put("groupName", analytics.groupName);
         map.put("orderCount", analytics.orderCount);
         map.put("totalQuantity", analytics.totalQuantity);
-        map.put("totalRevenue", analytics.totalRevenue);
+        map.put("totalRevenue", analytics.totalRevenue.toBigDecimal());
         map.put("totalProfit", analytics.totalProfit);
         return map;
     }
@@ -463,17 +396,13 @@ public class SkuGroupService {
     // Inner class for analytics data
     private static class GroupAnalytics {
         String groupName;
-        BigDecimal totalRevenue;
+        final MoneySum totalRevenue = new MoneySum();
         long totalQuantity;
-        BigDecimal totalProfit;
+        BigDecimal totalProfit = BigDecimal.ZERO;
         long orderCount;
         
-        GroupAnalytics(String groupName, BigDecimal totalRevenue, long totalQuantity, BigDecimal totalProfit) {
+        GroupAnalytics(String groupName) {
             this.groupName = groupName;
-            this.totalRevenue = totalRevenue;
-            this.totalQuantity = totalQuantity;
-            this.totalProfit = totalProfit;
-            this.orderCount = 0L;
         }
     }
 }
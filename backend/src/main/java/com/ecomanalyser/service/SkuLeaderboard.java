@@ -0,0 +1,183 @@
+package com.ecomanalyser.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Approximate top-K SKUs over any date range, from Space-Saving summaries of the merged order
+ * cube.
+ *
+ * One summary per day and per calendar month is built for each metric the first time the
+ * current cube is queried. A range is answered by merging the month summaries it covers and
+ * the day summaries of its partial months, so a multi-year range merges a few dozen summaries
+ * instead of grouping every row. Days with at most {@code analytics.leaderboard.capacity}
+ * SKUs are summarised exactly; results report each SKU's maximum overcount.
+ */
+@Service
+@Slf4j
+public class SkuLeaderboard {
+
+    public enum Metric {
+        /** Ordered quantity, as topOrderedSkus */
+        QUANTITY,
+        /** Sum of positive settlements in paise, as topProfitableSkus */
+        REVENUE
+    }
+
+    /**
+     * {@code estimate} never undercounts and exceeds the true value by at most {@code error};
+     * {@code guaranteed} is set when the SKU certainly belongs to the requested top K
+     */
+    public record Entry(String sku, long estimate, long error, boolean guaranteed) {
+    }
+
+    private final MergedOrderCubeService cubeService;
+    private final int capacity;
+    private volatile Index index;
+
+    public SkuLeaderboard(MergedOrderCubeService cubeService,
+                          @Value("${analytics.leaderboard.capacity:128}") int capacity) {
+        this.cubeService = cubeService;
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /**
+     * Largest capacity-bounded K this leaderboard can answer; larger requests need the exact path
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    public List<Entry> top(Metric metric, LocalDate start, LocalDate end, int k) {
+        Index idx = index(cubeService.current());
+        SpaceSavingSketch range = idx.range(metric, start, end);
+        List<SpaceSavingSketch.Counter> top = range.top(k);
+        List<Entry> entries = new ArrayList<>(top.size());
+        for (int i = 0; i < top.size(); i++) {
+            SpaceSavingSketch.Counter c = top.get(i);
+            entries.add(new Entry(idx.skus.get(c.key()), c.count(), c.error(), range.isGuaranteedTop(i, k)));
+        }
+        return entries;
+    }
+
+    private Index index(MergedOrderCube cube) {
+        Index idx = index;
+        if (idx != null && idx.cube == cube) return idx;
+        synchronized (this) {
+            idx = index;
+            if (idx == null || idx.cube != cube) {
+                long started = System.currentTimeMillis();
+                idx = new Index(cube, capacity);
+                index = idx;
+                log.info("Built SKU leaderboard summaries for {} days in {} ms", idx.days, System.currentTimeMillis() - started);
+            }
+            return idx;
+        }
+    }
+
+    /**
+     * Day and month summaries of one cube
+     */
+    private static final class Index {
+        private final MergedOrderCube cube;
+        private final List<String> skus;
+        private final int capacity;
+        private final int firstDay;
+        private final int days;
+        // [metric][day - firstDay], null for days without rows
+        private final SpaceSavingSketch[][] daily;
+        // [metric] yyyyMM -> summary
+        private final List<Map<Integer, SpaceSavingSketch>> monthly = new ArrayList<>();
+
+        Index(MergedOrderCube cube, int capacity) {
+            this.cube = cube;
+            this.capacity = capacity;
+            this.skus = cube.values(MergedOrderCube.Dimension.SKU);
+            int first = cube.firstRow(null);
+            int last = cube.endRow(null);
+            this.firstDay = first < last ? cube.epochDay(first) : 0;
+            this.days = first < last ? cube.epochDay(last - 1) - firstDay + 1 : 0;
+            Metric[] metrics = Metric.values();
+            this.daily = new SpaceSavingSketch[metrics.length][days];
+
+            // Exact per-SKU sums of the current day, over the SKUs touched that day
+            long[][] sums = new long[metrics.length][skus.size()];
+            int[] touched = new int[skus.size()];
+            boolean[] isTouched = new boolean[skus.size()];
+            long[] weights = new long[skus.size()];
+            int touchedCount = 0;
+            for (int row = first; row < last; row++) {
+                int sku = cube.skuCode(row);
+                if (sku != StringDictionary.NULL_CODE) {
+                    if (!isTouched[sku]) {
+                        isTouched[sku] = true;
+                        touched[touchedCount++] = sku;
+                    }
+                    if (cube.hasQuantity(row)) sums[Metric.QUANTITY.ordinal()][sku] += Math.max(0, cube.quantity(row));
+                    long settlement = cube.settlementPaise(row);
+                    if (settlement > 0) sums[Metric.REVENUE.ordinal()][sku] = Math.addExact(sums[Metric.REVENUE.ordinal()][sku], settlement);
+                }
+                boolean dayEnds = row + 1 == last || cube.epochDay(row + 1) != cube.epochDay(row);
+                if (dayEnds) {
+                    int day = cube.epochDay(row) - firstDay;
+                    for (Metric metric : metrics) {
+                        long[] metricSums = sums[metric.ordinal()];
+                        for (int i = 0; i < touchedCount; i++) weights[i] = metricSums[touched[i]];
+                        daily[metric.ordinal()][day] = SpaceSavingSketch.ofExact(capacity, touched, weights, touchedCount);
+                        for (int i = 0; i < touchedCount; i++) metricSums[touched[i]] = 0;
+                    }
+                    for (int i = 0; i < touchedCount; i++) isTouched[touched[i]] = false;
+                    touchedCount = 0;
+                }
+            }
+
+            for (Metric metric : metrics) {
+                Map<Integer, SpaceSavingSketch> months = new HashMap<>();
+                for (int day = 0; day < days; day++) {
+                    SpaceSavingSketch sketch = daily[metric.ordinal()][day];
+                    if (sketch == null) continue;
+                    months.merge(monthKey(firstDay + day), sketch, SpaceSavingSketch::merge);
+                }
+                monthly.add(months);
+            }
+        }
+
+        SpaceSavingSketch range(Metric metric, LocalDate start, LocalDate end) {
+            SpaceSavingSketch result = SpaceSavingSketch.empty(capacity);
+            if (days == 0) return result;
+            long from = Math.max(start != null ? start.toEpochDay() : firstDay, firstDay);
+            long to = Math.min(end != null ? end.toEpochDay() : firstDay + days - 1, firstDay + days - 1);
+            SpaceSavingSketch[] byDay = daily[metric.ordinal()];
+            Map<Integer, SpaceSavingSketch> byMonth = monthly.get(metric.ordinal());
+            long day = from;
+            while (day <= to) {
+                LocalDate date = LocalDate.ofEpochDay(day);
+                long monthEnd = date.withDayOfMonth(date.lengthOfMonth()).toEpochDay();
+                if (date.getDayOfMonth() == 1 && monthEnd <= to) {
+                    // Whole month in range
+                    SpaceSavingSketch month = byMonth.get(monthKey(day));
+                    if (month != null) result = result.merge(month);
+                    day = monthEnd + 1;
+                } else {
+                    SpaceSavingSketch sketch = byDay[(int) (day - firstDay)];
+                    if (sketch != null) result = result.merge(sketch);
+                    day++;
+                }
+            }
+            return result;
+        }
+
+        private static int monthKey(long epochDay) {
+            YearMonth month = YearMonth.from(LocalDate.ofEpochDay(epochDay));
+            return month.getYear() * 100 + month.getMonthValue();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.event.DataVersionChangedEvent;
+import com.ecomanalyser.event.SkuPricesChangedEvent;
+import com.ecomanalyser.repository.SkuPriceRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-memory view of SKU prices and group assignments so analytics can resolve purchase prices
+ * and group names without a query per row.
+ *
+ * The catalog holds one immutable {@link Snapshot} built by a single query. Price and group
+ * changes publish {@link SkuPricesChangedEvent}; once the change commits, or once
+ * {@link DataEpoch} sees another node's change, a new snapshot is loaded and swapped in
+ * atomically, so readers always see either the old or the new catalog as a whole.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SkuPriceCatalog {
+
+    private final SkuPriceRepository skuPriceRepository;
+    private final DataEpoch dataEpoch;
+
+    private final AtomicReference<Snapshot> current = new AtomicReference<>();
+    private final AtomicLong versions = new AtomicLong();
+
+    /**
+     * Current committed catalog, loaded on first use
+     */
+    public Snapshot current() {
+        Snapshot snapshot = current.get();
+        return snapshot != null ? snapshot : reload();
+    }
+
+    /**
+     * Query a fresh snapshot without publishing it. Runs in the caller's transaction, so it
+     * sees price changes that have not been committed yet.
+     */
+    @Transactional(readOnly = true)
+    public Snapshot loadSnapshot() {
+        return Snapshot.fromRows(versions.incrementAndGet(), skuPriceRepository.findPriceCatalogRows());
+    }
+
+    /**
+     * Load and publish a new snapshot. A slower load never replaces a newer snapshot.
+     */
+    public Snapshot reload() {
+        Snapshot loaded = loadSnapshot();
+        Snapshot published = current.accumulateAndGet(loaded,
+                (existing, next) -> existing == null || next.getVersion() > existing.getVersion() ? next : existing);
+        log.debug("SKU price catalog version {} loaded with {} SKUs", loaded.getVersion(), loaded.size());
+        return published;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onPricesChanged(SkuPricesChangedEvent event) {
+        reloadChanged();
+    }
+
+    @EventListener
+    public void onDataVersionChanged(DataVersionChangedEvent event) {
+        if (DataEpoch.SKU_PRICES.equals(event.getDataSet())) reloadChanged();
+    }
+
+    private void reloadChanged() {
+        try {
+            reload();
+        } catch (Exception e) {
+            // Drop the stale catalog so the next reader retries the load
+            current.set(null);
+            log.warn("Could not reload SKU price catalog: {}", e.getMessage());
+        }
+        // Responses cached before the reload may have used the old prices
+        dataEpoch.bump();
+    }
+
+    /**
+     * Prices and group of one SKU; any field may be null
+     */
+    public record Entry(BigDecimal skuPrice, String groupName, BigDecimal groupPrice) {
+    }
+
+    /**
+     * Immutable catalog version
+     */
+    public static final class Snapshot {
+
+        private final long version;
+        private final Map<String, Entry> entries;
+        private final Map<String, BigDecimal> groupPrices;
+
+        private Snapshot(long version, Map<String, Entry> entries, Map<String, BigDecimal> groupPrices) {
+            this.version = version;
+            this.entries = entries;
+            this.groupPrices = groupPrices;
+        }
+
+        static Snapshot fromRows(long version, List<Object[]> rows) {
+            Map<String, Entry> entries = new HashMap<>(Math.max(16, rows.size() * 2));
+            Map<String, BigDecimal> groupPrices = new HashMap<>();
+            for (Object[] r : rows) {
+                if (r[0] == null) continue;
+                Entry entry = new Entry(toBigDecimal(r[1]), (String) r[2], toBigDecimal(r[3]));
+                entries.put(r[0].toString(), entry);
+                if (entry.groupName() != null && entry.groupPrice() != null) {
+                    groupPrices.put(entry.groupName(), entry.groupPrice());
+                }
+            }
+            return new Snapshot(version, Collections.unmodifiableMap(entries), Collections.unmodifiableMap(groupPrices));
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public int size() {
+            return entries.size();
+        }
+
+        public Optional<Entry> entry(String sku) {
+            return sku == null ? Optional.empty() : Optional.ofNullable(entries.get(sku));
+        }
+
+        /**
+         * Analytics rule: group price when positive, otherwise the SKU's own price when positive,
+         * otherwise zero
+         */
+        public BigDecimal purchasePrice(String sku) {
+            Entry e = entry(sku).orElse(null);
+            if (e == null) return BigDecimal.ZERO;
+            if (isPositive(e.groupPrice())) return e.groupPrice();
+            if (isPositive(e.skuPrice())) return e.skuPrice();
+            return BigDecimal.ZERO;
+        }
+
+        /**
+         * Assigned price: the group price when the SKU is grouped, otherwise the SKU's own price
+         */
+        public BigDecimal assignedPrice(String sku) {
+            Entry e = entry(sku).orElse(null);
+            if (e == null) return BigDecimal.ZERO;
+            if (e.groupName() != null) return e.groupPrice();
+            return e.skuPrice() != null ? e.skuPrice() : BigDecimal.ZERO;
+        }
+
+        /**
+         * Individual SKU price as imported, zero when absent
+         */
+        public BigDecimal skuPrice(String sku) {
+            return entry(sku).map(Entry::skuPrice).orElse(BigDecimal.ZERO);
+        }
+
+        public Optional<String> groupName(String sku) {
+            return entry(sku).map(Entry::groupName);
+        }
+
+        /**
+         * Price of a group that has at least one SKU assigned
+         */
+        public Optional<BigDecimal> groupPrice(String groupName) {
+            return groupName == null ? Optional.empty() : Optional.ofNullable(groupPrices.get(groupName));
+        }
+
+        /**
+         * Every SKU with a positive purchase price under the analytics rule
+         */
+        public Map<String, BigDecimal> purchasePrices() {
+            Map<String, BigDecimal> prices = new HashMap<>(Math.max(16, entries.size() * 2));
+            for (String sku : entries.keySet()) {
+                BigDecimal price = purchasePrice(sku);
+                if (isPositive(price)) prices.put(sku, price);
+            }
+            return prices;
+        }
+
+        private static boolean isPositive(BigDecimal value) {
+            return value != null && value.compareTo(BigDecimal.ZERO) > 0;
+        }
+
+        private static BigDecimal toBigDecimal(Object value) {
+            if (value == null) return null;
+            if (value instanceof BigDecimal bd) return bd;
+            return new BigDecimal(value.toString());
+        }
+    }
+}
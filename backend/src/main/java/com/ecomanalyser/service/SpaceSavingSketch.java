@@ -0,0 +1,111 @@
+package com.ecomanalyser.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, mergeable Space-Saving summary of non-negative weights per int key.
+ *
+ * At most {@code capacity} keys are held. Each held key has an estimate that never undercounts
+ * and an error that bounds the overcount, so its true weight lies in
+ * [{@code count - error}, {@code count}]. Any key not held weighs at most {@link #floor()}.
+ * Merging two summaries keeps both guarantees, so summaries of days can be combined into a
+ * summary of any range of days.
+ */
+public final class SpaceSavingSketch {
+
+    public record Counter(int key, long count, long error) {
+        public long lowerBound() {
+            return count - error;
+        }
+    }
+
+    private static final Comparator<Counter> BY_COUNT_DESC =
+            Comparator.comparingLong(Counter::count).reversed().thenComparingInt(Counter::key);
+
+    private final int capacity;
+    // Sorted by count, largest first
+    private final Counter[] counters;
+    private final long floor;
+
+    private SpaceSavingSketch(int capacity, Counter[] counters, long floor) {
+        this.capacity = capacity;
+        this.counters = counters;
+        this.floor = floor;
+    }
+
+    public static SpaceSavingSketch empty(int capacity) {
+        return new SpaceSavingSketch(capacity, new Counter[0], 0);
+    }
+
+    /**
+     * Summary of exact weights: the heaviest {@code capacity} keys are held without error
+     */
+    public static SpaceSavingSketch ofExact(int capacity, int[] keys, long[] weights, int n) {
+        Counter[] all = new Counter[n];
+        for (int i = 0; i < n; i++) all[i] = new Counter(keys[i], weights[i], 0);
+        Arrays.sort(all, BY_COUNT_DESC);
+        if (n <= capacity) return new SpaceSavingSketch(capacity, all, 0);
+        return new SpaceSavingSketch(capacity, Arrays.copyOf(all, capacity), all[capacity].count());
+    }
+
+    public SpaceSavingSketch merge(SpaceSavingSketch other) {
+        if (other.counters.length == 0 && other.floor == 0) return this;
+        if (counters.length == 0 && floor == 0) return other;
+
+        Map<Integer, Counter> theirs = new HashMap<>(other.counters.length * 2);
+        for (Counter c : other.counters) theirs.put(c.key(), c);
+        List<Counter> union = new ArrayList<>(counters.length + other.counters.length);
+        for (Counter c : counters) {
+            // A key missing from one side weighs at most that side's floor there
+            Counter o = theirs.remove(c.key());
+            union.add(o != null
+                    ? new Counter(c.key(), c.count() + o.count(), c.error() + o.error())
+                    : new Counter(c.key(), c.count() + other.floor, c.error() + other.floor));
+        }
+        for (Counter o : theirs.values()) {
+            union.add(new Counter(o.key(), o.count() + floor, o.error() + floor));
+        }
+        union.sort(BY_COUNT_DESC);
+
+        // Keys held by neither side weigh at most both floors; dropped keys at most their count
+        long mergedFloor = floor + other.floor;
+        if (union.size() > capacity) {
+            mergedFloor = Math.max(mergedFloor, union.get(capacity).count());
+            union = union.subList(0, capacity);
+        }
+        return new SpaceSavingSketch(capacity, union.toArray(new Counter[0]), mergedFloor);
+    }
+
+    /**
+     * The {@code k} heaviest held keys, largest estimate first
+     */
+    public List<Counter> top(int k) {
+        return List.of(Arrays.copyOf(counters, Math.min(k, counters.length)));
+    }
+
+    /**
+     * True when the i-th heaviest key certainly belongs to the top {@code k}: its lower bound
+     * is at least the estimate of every key ranked below k
+     */
+    public boolean isGuaranteedTop(int i, int k) {
+        long outside = k < counters.length ? Math.max(floor, counters[k].count()) : floor;
+        return counters[i].lowerBound() >= outside;
+    }
+
+    public long floor() {
+        return floor;
+    }
+
+    public int size() {
+        return counters.length;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
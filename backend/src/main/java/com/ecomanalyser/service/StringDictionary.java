@@ -0,0 +1,79 @@
+package com.ecomanalyser.service;
+
+import java.util.Arrays;
+
+/**
+ * Dictionary encoding for repeated string values (SKUs, statuses, ids).
+ * Each distinct value gets a dense int code; null is encoded as {@link #NULL_CODE}.
+ *
+ * Codes are kept in an open-addressing int table next to the value array rather than a
+ * HashMap, so a value costs its String plus a few ints instead of a map entry and a boxed code.
+ */
+public final class StringDictionary {
+
+    public static final int NULL_CODE = -1;
+
+    private String[] values = new String[16];
+    private int size;
+    // code + 1 per slot, 0 for an empty slot; at most half full
+    private int[] slots = new int[32];
+
+    public int encode(String value) {
+        if (value == null) return NULL_CODE;
+        int slot = slot(value);
+        if (slots[slot] != 0) return slots[slot] - 1;
+        if (size == values.length) values = Arrays.copyOf(values, size * 2);
+        int code = size++;
+        values[code] = value;
+        slots[slot] = code + 1;
+        if (size * 2 > slots.length) rehash();
+        return code;
+    }
+
+    /**
+     * Code of an already encoded value, or {@link #NULL_CODE} when the value is unknown
+     */
+    public int codeOf(String value) {
+        if (value == null) return NULL_CODE;
+        return slots[slot(value)] - 1;
+    }
+
+    public String decode(int code) {
+        if (code == NULL_CODE) return null;
+        if (code < 0 || code >= size) throw new IndexOutOfBoundsException(code);
+        return values[code];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Slot holding the value, or the empty slot where it belongs
+     */
+    private int slot(String value) {
+        int mask = slots.length - 1;
+        int slot = mix(value.hashCode()) & mask;
+        for (int entry; (entry = slots[slot]) != 0; slot = (slot + 1) & mask) {
+            if (values[entry - 1].equals(value)) return slot;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        int[] old = slots;
+        slots = new int[old.length * 2];
+        int mask = slots.length - 1;
+        for (int entry : old) {
+            if (entry == 0) continue;
+            int slot = mix(values[entry - 1].hashCode()) & mask;
+            while (slots[slot] != 0) slot = (slot + 1) & mask;
+            slots[slot] = entry;
+        }
+    }
+
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
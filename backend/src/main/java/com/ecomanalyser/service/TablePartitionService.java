@@ -0,0 +1,184 @@
+package com.ecomanalyser.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.YearMonth;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upkeep of the monthly range partitions of merged_orders.
+ *
+ * Migration V6 converts merged_orders into a table partitioned by month on order_date, with a
+ * partition per month that has rows, three months ahead and a DEFAULT partition for everything
+ * else, so date-bounded queries are pruned to the months they touch. A daily task keeps creating
+ * the next {@code partitioning.months-ahead} months, moving any rows that already landed in the
+ * DEFAULT partition, and old months can be detached for archiving; merged_orders rebuilds skip
+ * detached months. orders and payments are not partitioned, since their order_id / payment_id
+ * keys could then only be unique together with the date.
+ */
+@Service
+@Slf4j
+public class TablePartitionService {
+
+    /**
+     * A partitioned table and its date column
+     */
+    record Table(String name, String column) {
+        String partition(YearMonth month) {
+            return String.format("%s_p%04d%02d", name, month.getYear(), month.getMonthValue());
+        }
+
+        String defaultPartition() {
+            return name + "_default";
+        }
+    }
+
+    static final List<Table> TABLES = List.of(new Table("merged_orders", "order_date"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate tx;
+    private final int monthsAhead;
+    private final ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "table-partition-maintenance");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public TablePartitionService(JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${partitioning.months-ahead:3}") int monthsAhead) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.monthsAhead = Math.max(1, monthsAhead);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startMaintenance() {
+        maintenance.scheduleAtFixedRate(this::createMonthsAhead, 0, 1, TimeUnit.DAYS);
+    }
+
+    public boolean isPartitioned(String table) {
+        Boolean partitioned = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table pt JOIN pg_class c ON c.oid = pt.partrelid "
+                        + "WHERE c.relname = ? AND c.relnamespace = to_regnamespace(current_schema()))",
+                Boolean.class, table);
+        return Boolean.TRUE.equals(partitioned);
+    }
+
+    /**
+     * Create the current and next months' partitions of every partitioned table
+     */
+    public void createMonthsAhead() {
+        YearMonth current = YearMonth.now();
+        for (Table table : TABLES) {
+            try {
+                if (!isPartitioned(table.name())) continue;
+                for (int i = 0; i <= monthsAhead; i++) createPartition(table, current.plusMonths(i));
+            } catch (Exception e) {
+                log.warn("Could not create partitions ahead for {}: {}", table.name(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Partitions of a table with their bounds and estimated row counts
+     */
+    public List<Map<String, Object>> partitions(String tableName) {
+        Table table = table(tableName);
+        return jdbcTemplate.query(
+                "SELECT c.relname, pg_get_expr(c.relpartbound, c.oid), c.reltuples FROM pg_inherits i "
+                        + "JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent "
+                        + "WHERE p.relname = ? ORDER BY c.relname",
+                (rs, n) -> {
+                    Map<String, Object> m = new LinkedHashMap<>();
+                    m.put("partition", rs.getString(1));
+                    m.put("bounds", rs.getString(2));
+                    m.put("estimatedRows", Math.max(0, rs.getLong(3)));
+                    return m;
+                }, table.name());
+    }
+
+    /**
+     * Detach a past month's partition; it stays behind as a standalone table to archive or drop.
+     * Its order ids are released from merged_order_keys, which only tracks attached rows, and the
+     * month is recorded in merged_orders_detached_month so later rebuilds leave it out.
+     *
+     * @return name of the detached table
+     */
+    public String detach(String tableName, YearMonth month) {
+        Table table = table(tableName);
+        if (!month.isBefore(YearMonth.now())) throw new IllegalArgumentException("Only past months can be detached");
+        String partition = table.partition(month);
+        if (!partitionExists(partition)) throw new IllegalArgumentException("No partition " + partition);
+        tx.executeWithoutResult(status -> {
+            jdbcTemplate.execute("ALTER TABLE " + table.name() + " DETACH PARTITION " + partition);
+            jdbcTemplate.update("DELETE FROM merged_order_keys k USING " + partition + " p WHERE k.order_id = p.order_id");
+            jdbcTemplate.update("INSERT INTO merged_orders_detached_month (period, detached_table, detached_at) VALUES (?, ?, now()) "
+                    + "ON CONFLICT (period) DO UPDATE SET detached_table = EXCLUDED.detached_table, detached_at = now()",
+                    month.getYear() * 100 + month.getMonthValue(), partition);
+        });
+        log.info("Detached partition {} of {}", partition, table.name());
+        return partition;
+    }
+
+    /**
+     * Months of merged_orders that were detached; a rebuild does not write their orders again
+     */
+    public Set<YearMonth> detachedMonths() {
+        Set<YearMonth> months = new HashSet<>();
+        jdbcTemplate.query("SELECT period FROM merged_orders_detached_month",
+                rs -> { months.add(YearMonth.of(rs.getInt(1) / 100, rs.getInt(1) % 100)); });
+        return months;
+    }
+
+    static String bounds(YearMonth month) {
+        return "FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')";
+    }
+
+    /**
+     * Create one month's partition unless it exists. Rows of that month already in the DEFAULT
+     * partition are moved into it first, since attaching would otherwise fail; the move goes
+     * around the merged_orders triggers, so merged_order_keys is left as it is.
+     */
+    private void createPartition(Table table, YearMonth month) {
+        String partition = table.partition(month);
+        if (partitionExists(partition)) return;
+        tx.executeWithoutResult(status -> {
+            String range = table.column() + " >= '" + month.atDay(1) + "' AND " + table.column() + " < '" + month.plusMonths(1).atDay(1) + "'";
+            jdbcTemplate.execute("CREATE TABLE " + partition + " (LIKE " + table.name() + " INCLUDING DEFAULTS)");
+            jdbcTemplate.execute("WITH moved AS (DELETE FROM " + table.defaultPartition() + " WHERE " + range + " RETURNING *) "
+                    + "INSERT INTO " + partition + " SELECT * FROM moved");
+            jdbcTemplate.execute("ALTER TABLE " + table.name() + " ATTACH PARTITION " + partition + " " + bounds(month));
+        });
+        log.info("Created partition {}", partition);
+    }
+
+    private boolean partitionExists(String partition) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, partition));
+    }
+
+    private static Table table(String name) {
+        return TABLES.stream().filter(t -> t.name().equals(name)).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown partitioned table: " + name));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        maintenance.shutdownNow();
+    }
+}
@@ -0,0 +1,303 @@
+-- Baseline of the entity tables as Hibernate maps them (users is V2). Every statement is
+-- idempotent so the baseline also applies cleanly to a database ddl-auto created earlier.
+
+CREATE TABLE IF NOT EXISTS orders (
+    quantity integer not null,
+    selling_price numeric(38,2) not null,
+    supplier_discounted_price numeric(38,2),
+    supplier_listed_price numeric(38,2),
+    id bigint generated by default as identity,
+    order_date_time timestamp(6) not null,
+    customer_state varchar(255),
+    order_id varchar(255) not null unique,
+    packet_id varchar(255),
+    product_name varchar(255),
+    reason_for_credit_entry varchar(255),
+    size varchar(255),
+    sku varchar(255) not null,
+    supplier_sku varchar(255),
+    primary key (id)
+);
+
+CREATE TABLE IF NOT EXISTS payments (
+    amount numeric(12,2),
+    claims numeric(38,2),
+    compensation numeric(38,2),
+    dispatch_date date,
+    final_settlement_amount numeric(12,2),
+    fixed_fee numeric(38,2),
+    gst_compensation numeric(38,2),
+    gst_on_net_other_support_service_charges numeric(38,2),
+    listing_price_incl_taxes numeric(12,2),
+    meesho_commission numeric(38,2),
+    meesho_commission_percentage numeric(38,2),
+    meesho_gold_platform_fee numeric(38,2),
+    meesho_mall_platform_fee numeric(38,2),
+    net_other_support_service_charges numeric(38,2),
+    other_support_service_charges numeric(38,2),
+    product_gst_percentage numeric(5,2),
+    quantity integer,
+    recovery numeric(38,2),
+    return_premium numeric(38,2),
+    return_shipping_charge numeric(38,2),
+    shipping_charge numeric(38,2),
+    tcs numeric(38,2),
+    tds numeric(38,2),
+    tds_rate_percentage numeric(38,2),
+    total_sale_amount numeric(38,2),
+    total_sale_return_amount numeric(38,2),
+    waivers numeric(38,2),
+    warehousing_fee numeric(38,2),
+    id bigint generated by default as identity,
+    order_date_time timestamp(6),
+    payment_date_time timestamp(6) not null,
+    claims_reason varchar(255),
+    compensation_reason varchar(255),
+    order_id varchar(255) not null,
+    order_status varchar(255) not null,
+    payment_id varchar(255) not null unique,
+    price_type varchar(255),
+    recovery_reason varchar(255),
+    sku varchar(255),
+    transaction_id varchar(255),
+    primary key (id),
+    constraint uk_payments_order_transaction unique (order_id, transaction_id)
+);
+
+CREATE TABLE IF NOT EXISTS merged_orders (
+    cogs numeric(38,2),
+    dispatch_date date,
+    net_profit numeric(38,2),
+    order_amount numeric(38,2),
+    order_date date,
+    payment_date date,
+    purchase_price numeric(38,2),
+    quantity integer,
+    settlement_amount numeric(38,2),
+    loss_category varchar(32),
+    order_id varchar(255) not null,
+    order_status varchar(255),
+    price_type varchar(255),
+    sku_id varchar(255),
+    state varchar(255),
+    transaction_id varchar(255),
+    primary key (order_id)
+);
+
+-- Databases that ddl-auto built from older entities have merged_orders without the cost columns;
+-- V3 indexes net_profit
+ALTER TABLE merged_orders ADD COLUMN IF NOT EXISTS purchase_price numeric(38,2);
+ALTER TABLE merged_orders ADD COLUMN IF NOT EXISTS cogs numeric(38,2);
+ALTER TABLE merged_orders ADD COLUMN IF NOT EXISTS net_profit numeric(38,2);
+ALTER TABLE merged_orders ADD COLUMN IF NOT EXISTS loss_category varchar(32);
+
+CREATE TABLE IF NOT EXISTS orders_raw (
+    processed boolean not null,
+    row_number integer not null,
+    created_at timestamp(6) not null,
+    id bigint generated by default as identity,
+    batch_id varchar(255) not null,
+    raw_data TEXT,
+    validation_errors TEXT,
+    validation_status varchar(255) check (validation_status in ('PENDING','VALID','INVALID','PROCESSED')),
+    primary key (id)
+);
+
+CREATE TABLE IF NOT EXISTS payments_raw (
+    processed boolean not null,
+    row_number integer not null,
+    created_at timestamp(6) not null,
+    id bigint generated by default as identity,
+    batch_id varchar(255) not null,
+    raw_data TEXT,
+    validation_errors TEXT,
+    validation_status varchar(255) check (validation_status in ('PENDING','VALID','INVALID','PROCESSED')),
+    primary key (id)
+);
+
+CREATE TABLE IF NOT EXISTS normalized_orders (
+    order_date date,
+    quantity integer,
+    selling_price numeric(10,2),
+    sku_resolved boolean not null,
+    supplier_discounted_price numeric(10,2),
+    supplier_listed_price numeric(10,2),
+    created_at timestamp(6),
+    id bigint generated by default as identity,
+    raw_row_id bigint,
+    updated_at timestamp(6),
+    batch_id varchar(255),
+    customer_state varchar(255),
+    order_id varchar(255) not null unique,
+    original_status varchar(255),
+    packet_id varchar(255),
+    product_name varchar(255),
+    size varchar(255),
+    sku varchar(255) not null,
+    standardized_status varchar(255) not null,
+    supplier_sku varchar(255),
+    validation_errors varchar(255),
+    primary key (id)
+);
+
+CREATE TABLE IF NOT EXISTS normalized_payments (
+    amount numeric(38,2),
+    payment_date date,
+    id bigint generated by default as identity,
+    raw_row_id bigint,
+    batch_id varchar(255) not null,
+    order_id varchar(255) not null unique,
+    original_status varchar(255),
+    payment_id varchar(255),
+    price_type varchar(255),
+    standardized_status varchar(255) not null,
+    transaction_id varchar(255),
+    validation_errors TEXT,
+    primary key (id)
+);
+
+CREATE TABLE IF NOT EXISTS return_tracking (
+    order_date date,
+    quantity integer,
+    return_amount numeric(10,2),
+    created_at timestamp(6),
+    id bigint generated by default as identity,
+    received_date timestamp(6),
+    updated_at timestamp(6),
+    notes varchar(255),
+    order_id varchar(255) not null unique,
+    order_status varchar(255),
+    received_by varchar(255),
+    return_status varchar(255) check (return_status in ('PENDING_RECEIPT','RECEIVED','NOT_RECEIVED')),
+    sku_id varchar(255),
+    primary key (id)
+);
+
+CREATE TABLE IF NOT EXISTS sku_prices (
+    purchase_price numeric(38,2) not null,
+    id bigint generated by default as identity,
+    updated_at timestamp(6) not null,
+    sku varchar(255) not null unique,
+    primary key (id)
+);
+
+CREATE TABLE IF NOT EXISTS sku_groups (
+    purchase_price numeric(10,2) not null,
+    created_at timestamp(6),
+    id bigint generated by default as identity,
+    updated_at timestamp(6),
+    description varchar(255),
+    group_name varchar(255) not null unique,
+    primary key (id)
+);
+
+CREATE TABLE IF NOT EXISTS sku_group_mappings (
+    created_at timestamp(6),
+    group_id bigint not null references sku_groups,
+    id bigint generated by default as identity,
+    sku varchar(255) not null unique,
+    primary key (id)
+);
+
+CREATE TABLE IF NOT EXISTS daily_order_rollup (
+    cogs_sum numeric(38,2) not null,
+    loss_sum numeric(38,2) not null,
+    negative_settlement_sum numeric(38,2) not null,
+    order_date date not null,
+    positive_settlement_sum numeric(38,2) not null,
+    profit_sum numeric(38,2) not null,
+    settlement_sum numeric(38,2) not null,
+    id bigint generated by default as identity,
+    order_count bigint not null,
+    quantity bigint not null,
+    order_status varchar(255),
+    sku_id varchar(255),
+    state varchar(255),
+    primary key (id)
+);
+
+CREATE TABLE IF NOT EXISTS merge_rebuild_lock (
+    last_result integer,
+    acquired_at timestamp(6),
+    generation bigint not null,
+    last_completed_at timestamp(6),
+    lease_until timestamp(6),
+    last_status varchar(16),
+    lock_name varchar(64) not null,
+    holder varchar(255),
+    primary key (lock_name)
+);
+
+CREATE INDEX IF NOT EXISTS idx_daily_rollup_date ON daily_order_rollup (order_date);
+CREATE INDEX IF NOT EXISTS idx_daily_rollup_sku ON daily_order_rollup (sku_id);
+
+-- Spring Batch required tables
+CREATE TABLE IF NOT EXISTS BATCH_JOB_INSTANCE  (
+    JOB_INSTANCE_ID BIGINT  NOT NULL PRIMARY KEY,
+    VERSION BIGINT,
+    JOB_NAME VARCHAR(512) NOT NULL,
+    JOB_KEY VARCHAR(2500)
+);
+
+CREATE TABLE IF NOT EXISTS BATCH_JOB_EXECUTION  (
+    JOB_EXECUTION_ID BIGINT  NOT NULL PRIMARY KEY,
+    VERSION BIGINT,
+    JOB_INSTANCE_ID BIGINT NOT NULL,
+    CREATE_TIME TIMESTAMP NOT NULL,
+    START_TIME TIMESTAMP DEFAULT NULL,
+    END_TIME TIMESTAMP DEFAULT NULL,
+    STATUS VARCHAR(10),
+    EXIT_CODE VARCHAR(2500),
+    EXIT_MESSAGE VARCHAR(2500),
+    LAST_UPDATED TIMESTAMP,
+    JOB_CONFIGURATION_LOCATION VARCHAR(2500) NULL,
+    constraint JOB_INST_EXEC_FK foreign key (JOB_INSTANCE_ID)
+    references BATCH_JOB_INSTANCE(JOB_INSTANCE_ID)
+);
+
+CREATE TABLE IF NOT EXISTS BATCH_JOB_EXECUTION_PARAMS  (
+    JOB_EXECUTION_ID BIGINT NOT NULL,
+    PARAMETER_NAME VARCHAR(100) NOT NULL,
+    PARAMETER_TYPE VARCHAR(100) NOT NULL,
+    PARAMETER_VALUE VARCHAR(2500),
+    IDENTIFYING CHAR(1) NOT NULL,
+    constraint JOB_EXEC_PARAMS_FK foreign key (JOB_EXECUTION_ID)
+    references BATCH_JOB_EXECUTION(JOB_EXECUTION_ID)
+);
+
+CREATE TABLE IF NOT EXISTS BATCH_STEP_EXECUTION  (
+    STEP_EXECUTION_ID BIGINT  NOT NULL PRIMARY KEY,
+    VERSION BIGINT NOT NULL,
+    STEP_NAME VARCHAR(100) NOT NULL,
+    JOB_EXECUTION_ID BIGINT NOT NULL,
+    CREATE_TIME TIMESTAMP NOT NULL,
+    START_TIME TIMESTAMP DEFAULT NULL,
+    END_TIME TIMESTAMP DEFAULT NULL,
+    STATUS VARCHAR(10),
+    COMMIT_COUNT BIGINT,
+    READ_COUNT BIGINT,
+    FILTER_COUNT BIGINT,
+    WRITE_COUNT BIGINT,
+    READ_SKIP_COUNT BIGINT,
+    WRITE_SKIP_COUNT BIGINT,
+    PROCESS_SKIP_COUNT BIGINT,
+    ROLLBACK_COUNT BIGINT,
+    EXIT_CODE VARCHAR(2500),
+    EXIT_MESSAGE VARCHAR(2500),
+    LAST_UPDATED TIMESTAMP,
+    constraint JOB_EXEC_STEP_FK foreign key (JOB_EXECUTION_ID)
+    references BATCH_JOB_EXECUTION(JOB_EXECUTION_ID)
+);
+
+CREATE TABLE IF NOT EXISTS BATCH_STEP_EXECUTION_SEQ (ID BIGINT);
+CREATE TABLE IF NOT EXISTS BATCH_JOB_EXECUTION_SEQ (ID BIGINT);
+CREATE TABLE IF NOT EXISTS BATCH_JOB_SEQ (ID BIGINT);
+
+-- Spring Batch indexes
+CREATE INDEX IF NOT EXISTS BATCH_JOB_INSTANCE_JOB_KEY_IX ON BATCH_JOB_INSTANCE(JOB_KEY);
+CREATE INDEX IF NOT EXISTS BATCH_JOB_EXECUTION_JOB_INSTANCE_FK ON BATCH_JOB_EXECUTION(JOB_INSTANCE_ID);
+CREATE INDEX IF NOT EXISTS BATCH_JOB_EXECUTION_STATUS_IX ON BATCH_JOB_EXECUTION(STATUS);
+CREATE INDEX IF NOT EXISTS BATCH_JOB_EXECUTION_CREATE_TIME_IX ON BATCH_JOB_EXECUTION(CREATE_TIME);
+CREATE INDEX IF NOT EXISTS BATCH_STEP_EXECUTION_JOB_EXECUTION_FK ON BATCH_STEP_EXECUTION(JOB_EXECUTION_ID);
+CREATE INDEX IF NOT EXISTS BATCH_STEP_EXECUTION_STEP_NAME_IX ON BATCH_STEP_EXECUTION(STEP_NAME);
+CREATE INDEX IF NOT EXISTS BATCH_STEP_EXECUTION_STATUS_IX ON BATCH_STEP_EXECUTION(STATUS);
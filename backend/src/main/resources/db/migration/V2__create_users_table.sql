@@ -17,19 +17,7 @@ CREATE INDEX IF NOT EXISTS idx_users_email ON users(email);
 -- Create index on role for role-based access control
 CREATE INDEX IF NOT EXISTS idx_users_role ON users(role);
 
--- Insert a default admin user (password: admin123)
--- Note: In production, this should be changed immediately
-INSERT INTO users (email, password, first_name, last_name, role, enabled, created_at, updated_at)
-VALUES (
-    'admin@ecomanalyser.com',
-    '$2a$10$N.zmdr9k7uOCQb376NoUnuTJ8iAt6Z5EHsM8lE9lBOsl7iKTVEFDa', -- admin123
-    'Admin',
-    'User',
-    'ADMIN',
-    true,
-    CURRENT_TIMESTAMP,
-    CURRENT_TIMESTAMP
-) ON CONFLICT (email) DO NOTHING;
+-- No account is seeded here; the dev profile creates a local admin (DevAdminUser)
 
 -- Add comments
 COMMENT ON TABLE users IS 'User authentication and authorization table';
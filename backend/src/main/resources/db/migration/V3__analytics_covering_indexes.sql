@@ -0,0 +1,27 @@
+-- Covering indexes for the date-bounded analytics queries. The INCLUDE columns are the ones the
+-- repository queries read, so a range is answered by an index-only scan once the visibility map
+-- is current. Built CONCURRENTLY so a live database keeps accepting imports; the runner builds
+-- them normally on partitioned tables, which cannot be indexed concurrently.
+
+-- MergedOrderPaymentRepository: findOrderStatusCounts, findTopOrderedSkus, findTopProfitableSkus
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_merged_orders_order_date_covering
+    ON merged_orders (order_date) INCLUDE (sku_id, quantity, settlement_amount, order_status);
+
+-- MergedOrderPaymentRepository: the loss queries only read rows that lost money
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_merged_orders_order_date_negative
+    ON merged_orders (order_date) WHERE settlement_amount < 0 OR net_profit < 0;
+
+-- MergedOrderPaymentRepository: findByPaymentDateBetween, findByOrderStatus
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_merged_orders_payment_date ON merged_orders (payment_date);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_merged_orders_order_status ON merged_orders (order_status);
+
+-- PaymentRepository: findAmountRowsBetween, getOrderCountsByStatus
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_payments_payment_date_time_covering
+    ON payments (payment_date_time) INCLUDE (order_id, sku, amount, order_status);
+
+-- OrderRepository: top ordered SKUs by order time
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_orders_order_date_time_covering
+    ON orders (order_date_time) INCLUDE (sku, quantity);
+
+-- OrderRepository: findBySupplierSku
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_orders_supplier_sku ON orders (supplier_sku);
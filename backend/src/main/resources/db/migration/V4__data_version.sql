@@ -0,0 +1,9 @@
+-- One row per data set the analytics endpoints read from. The version is advanced inside the
+-- transaction that changes the data set, so every node can tell from this table, rather than
+-- from its own memory, whether its cached responses, cube and price catalog are still current.
+-- Rows are created on first change.
+CREATE TABLE IF NOT EXISTS data_version (
+    name varchar(64) primary key,
+    version bigint not null,
+    changed_at timestamp(6) with time zone not null
+);
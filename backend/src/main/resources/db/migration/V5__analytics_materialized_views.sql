@@ -0,0 +1,28 @@
+-- Status-by-month breakdowns read by MergedOrderPaymentRepository and PaymentRepository.
+-- AnalyticsViewRefresher refreshes them after merged_orders changes and after payment uploads.
+-- Each view has a unique index over its grouping columns so it can be refreshed CONCURRENTLY,
+-- without blocking the readers.
+
+CREATE MATERIALIZED VIEW IF NOT EXISTS merged_order_status_month AS
+SELECT order_status,
+       CAST(EXTRACT(YEAR FROM order_date) AS INTEGER) AS year,
+       CAST(EXTRACT(MONTH FROM order_date) AS INTEGER) AS month,
+       COUNT(*) AS order_count
+FROM merged_orders
+WHERE order_date IS NOT NULL
+GROUP BY order_status, EXTRACT(YEAR FROM order_date), EXTRACT(MONTH FROM order_date);
+
+CREATE UNIQUE INDEX IF NOT EXISTS ux_merged_order_status_month
+    ON merged_order_status_month (year, month, order_status);
+
+CREATE MATERIALIZED VIEW IF NOT EXISTS payment_status_month AS
+SELECT order_status,
+       CAST(EXTRACT(YEAR FROM payment_date_time) AS INTEGER) AS year,
+       CAST(EXTRACT(MONTH FROM payment_date_time) AS INTEGER) AS month,
+       COUNT(DISTINCT order_id) AS order_count
+FROM payments
+WHERE order_status IS NOT NULL
+GROUP BY order_status, EXTRACT(YEAR FROM payment_date_time), EXTRACT(MONTH FROM payment_date_time);
+
+CREATE UNIQUE INDEX IF NOT EXISTS ux_payment_status_month
+    ON payment_status_month (year, month, order_status);
@@ -0,0 +1,99 @@
+-- merged_orders range-partitioned by month on order_date, so the date-bounded analytics scans
+-- only read the months they touch and past months can be detached for archiving
+-- (TablePartitionService keeps creating the coming months). orders and payments stay plain
+-- tables: imports look their rows up by order_id and payment_id, which must remain unique.
+--
+-- A key on a partitioned table has to include the partition column, and order_date may be
+-- null, so merged_orders loses its primary key. order_id stays unique through merged_order_keys,
+-- which statement triggers keep in step with every insert, delete and update.
+
+CREATE TABLE IF NOT EXISTS merged_order_keys (
+    order_id varchar(255) PRIMARY KEY
+);
+
+-- Months whose partition was detached for archiving. merged_orders rebuilds leave their orders
+-- out, so a detached month does not come back through the DEFAULT partition.
+CREATE TABLE IF NOT EXISTS merged_orders_detached_month (
+    period integer PRIMARY KEY,
+    detached_table varchar(255) NOT NULL,
+    detached_at timestamp(6) with time zone NOT NULL
+);
+
+CREATE OR REPLACE FUNCTION merged_order_keys_sync() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP IN ('DELETE', 'UPDATE') THEN
+        DELETE FROM merged_order_keys k USING old_rows o WHERE k.order_id = o.order_id;
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        INSERT INTO merged_order_keys (order_id) SELECT order_id FROM new_rows;
+    END IF;
+    RETURN NULL;
+END $$;
+
+DO $$
+DECLARE
+    index_definitions text[];
+    definition text;
+    this_month date := date_trunc('month', current_date);
+    partition_month date;
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_partitioned_table pt JOIN pg_class c ON c.oid = pt.partrelid
+               WHERE c.relname = 'merged_orders' AND c.relnamespace = to_regnamespace(current_schema())) THEN
+        RETURN;
+    END IF;
+
+    LOCK TABLE merged_orders IN ACCESS EXCLUSIVE MODE;
+
+    -- Indexes to rebuild on the new table; the primary key is replaced by merged_order_keys
+    SELECT array_agg(pg_get_indexdef(i.indexrelid)) INTO index_definitions
+    FROM pg_index i WHERE i.indrelid = 'merged_orders'::regclass AND NOT i.indisunique;
+
+    -- The only dependent object; recreated below. Anything else depending on the table makes
+    -- the DROP TABLE fail instead of being dropped along with it.
+    DROP MATERIALIZED VIEW IF EXISTS merged_order_status_month;
+
+    ALTER TABLE merged_orders RENAME TO merged_orders_unpartitioned;
+    CREATE TABLE merged_orders (LIKE merged_orders_unpartitioned INCLUDING DEFAULTS INCLUDING CONSTRAINTS)
+        PARTITION BY RANGE (order_date);
+    CREATE TABLE merged_orders_default PARTITION OF merged_orders DEFAULT;
+
+    -- One partition per month from the oldest row, at most ten years back, to three months
+    -- ahead; stray older dates stay in the DEFAULT partition
+    SELECT LEAST(GREATEST(COALESCE(date_trunc('month', MIN(order_date)), this_month), this_month - interval '120 months'), this_month)
+    INTO partition_month FROM merged_orders_unpartitioned;
+    WHILE partition_month <= this_month + interval '3 months' LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF merged_orders FOR VALUES FROM (%L) TO (%L)',
+                'merged_orders_p' || to_char(partition_month, 'YYYYMM'), partition_month,
+                CAST(partition_month + interval '1 month' AS date));
+        partition_month := partition_month + interval '1 month';
+    END LOOP;
+
+    CREATE TRIGGER merged_order_keys_insert AFTER INSERT ON merged_orders
+        REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION merged_order_keys_sync();
+    CREATE TRIGGER merged_order_keys_update AFTER UPDATE ON merged_orders
+        REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION merged_order_keys_sync();
+    CREATE TRIGGER merged_order_keys_delete AFTER DELETE ON merged_orders
+        REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE FUNCTION merged_order_keys_sync();
+
+    DELETE FROM merged_order_keys;
+    INSERT INTO merged_orders SELECT * FROM merged_orders_unpartitioned;
+    DROP TABLE merged_orders_unpartitioned;
+
+    FOREACH definition IN ARRAY COALESCE(index_definitions, ARRAY[]::text[]) LOOP
+        EXECUTE definition;
+    END LOOP;
+    -- Lookups by order_id, which the primary key used to serve
+    CREATE INDEX IF NOT EXISTS idx_merged_orders_order_id ON merged_orders (order_id);
+END $$;
+
+CREATE MATERIALIZED VIEW IF NOT EXISTS merged_order_status_month AS
+SELECT order_status,
+       CAST(EXTRACT(YEAR FROM order_date) AS INTEGER) AS year,
+       CAST(EXTRACT(MONTH FROM order_date) AS INTEGER) AS month,
+       COUNT(*) AS order_count
+FROM merged_orders
+WHERE order_date IS NOT NULL
+GROUP BY order_status, EXTRACT(YEAR FROM order_date), EXTRACT(MONTH FROM order_date);
+
+CREATE UNIQUE INDEX IF NOT EXISTS ux_merged_order_status_month
+    ON merged_order_status_month (year, month, order_status);
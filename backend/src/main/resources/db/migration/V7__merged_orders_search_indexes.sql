@@ -0,0 +1,24 @@
+-- merged_orders indexes behind paging and search (MergedOrderPageService). merged_orders is
+-- partitioned by V6, so these are plain CREATE INDEX builds.
+
+-- Keyset paging, newest orders first
+CREATE INDEX IF NOT EXISTS idx_merged_orders_keyset
+    ON merged_orders ((COALESCE(order_date, DATE '0001-01-01')) DESC, order_id DESC);
+
+-- Substring search. pg_trgm may not be installable by this role; search then falls back to a
+-- sequential scan rather than stopping startup.
+DO $$
+BEGIN
+    CREATE EXTENSION IF NOT EXISTS pg_trgm;
+EXCEPTION WHEN OTHERS THEN
+    RAISE WARNING 'pg_trgm unavailable, merged_orders search stays unindexed: %', SQLERRM;
+END $$;
+
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_extension WHERE extname = 'pg_trgm') THEN
+        CREATE INDEX IF NOT EXISTS idx_merged_orders_order_id_trgm ON merged_orders USING gin (order_id gin_trgm_ops);
+        CREATE INDEX IF NOT EXISTS idx_merged_orders_sku_id_trgm ON merged_orders USING gin (sku_id gin_trgm_ops);
+        CREATE INDEX IF NOT EXISTS idx_merged_orders_status_trgm ON merged_orders USING gin (order_status gin_trgm_ops);
+    END IF;
+END $$;
@@ -0,0 +1,12 @@
+-- Monthly summary totals of closed months, in paise, keyed by yyyyMM (MonthlySummarySnapshots).
+-- A merge deletes the rows of the months it changes; they are written again after the next cube
+-- load.
+CREATE TABLE IF NOT EXISTS monthly_summary_snapshot (
+    period integer primary key,
+    order_count bigint not null,
+    revenue_paise bigint not null,
+    delivered_profit_paise bigint not null,
+    delivered_loss_paise bigint not null,
+    return_loss_paise bigint not null,
+    computed_at timestamp(6) not null
+);
@@ -1,5 +1,5 @@
 -- optional explicit schema; JPA is set to update
--- provided for reference/testing
+-- provided for reference/testing; the versioned scripts in db/migration are what gets applied
 -- Core tables
 CREATE TABLE IF NOT EXISTS orders (
     id BIGSERIAL PRIMARY KEY,
@@ -89,6 +89,81 @@ CREATE TABLE IF NOT EXISTS sku_group_mappings (
     FOREIGN KEY (group_id) REFERENCES sku_groups(id) ON DELETE CASCADE
 );
 
+-- Lease lock so only one node rebuilds merged_orders at a time
+CREATE TABLE IF NOT EXISTS merge_rebuild_lock (
+    lock_name VARCHAR(64) PRIMARY KEY,
+    holder VARCHAR(255),
+    acquired_at TIMESTAMP,
+    lease_until TIMESTAMP,
+    generation BIGINT NOT NULL DEFAULT 0,
+    last_result INTEGER,
+    last_status VARCHAR(16),
+    last_completed_at TIMESTAMP
+);
+
+-- Daily aggregate of merged_orders, rebuilt with it and refreshed per SKU on cost changes
+CREATE TABLE IF NOT EXISTS daily_order_rollup (
+    id BIGSERIAL PRIMARY KEY,
+    order_date DATE NOT NULL,
+    sku_id VARCHAR(255),
+    order_status VARCHAR(255),
+    state VARCHAR(255),
+    order_count BIGINT NOT NULL,
+    quantity BIGINT NOT NULL,
+    settlement_sum NUMERIC(38,2) NOT NULL,
+    positive_settlement_sum NUMERIC(38,2) NOT NULL,
+    negative_settlement_sum NUMERIC(38,2) NOT NULL,
+    cogs_sum NUMERIC(38,2) NOT NULL,
+    profit_sum NUMERIC(38,2) NOT NULL,
+    loss_sum NUMERIC(38,2) NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_daily_rollup_date ON daily_order_rollup(order_date);
+CREATE INDEX IF NOT EXISTS idx_daily_rollup_sku ON daily_order_rollup(sku_id);
+
+-- Monthly summary totals of closed months, keyed by yyyyMM (migration V8)
+CREATE TABLE IF NOT EXISTS monthly_summary_snapshot (
+    period INTEGER PRIMARY KEY,
+    order_count BIGINT NOT NULL,
+    revenue_paise BIGINT NOT NULL,
+    delivered_profit_paise BIGINT NOT NULL,
+    delivered_loss_paise BIGINT NOT NULL,
+    return_loss_paise BIGINT NOT NULL,
+    computed_at TIMESTAMP NOT NULL
+);
+
+-- merged_orders paging and search (migration V7)
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS idx_merged_orders_keyset ON merged_orders((COALESCE(order_date, DATE '0001-01-01')) DESC, order_id DESC);
+CREATE INDEX IF NOT EXISTS idx_merged_orders_order_id_trgm ON merged_orders USING gin (order_id gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_merged_orders_sku_id_trgm ON merged_orders USING gin (sku_id gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_merged_orders_status_trgm ON merged_orders USING gin (order_status gin_trgm_ops);
+
+-- merged_orders is range-partitioned by month on order_date by migration V6, with order_id kept
+-- unique by the merged_order_keys table and its triggers; TablePartitionService adds the coming
+-- months, e.g.:
+--   CREATE TABLE merged_orders_p202501 PARTITION OF merged_orders FOR VALUES FROM ('2025-01-01') TO ('2025-02-01');
+-- Detached months (yyyyMM) are recorded so that rebuilds leave them out
+CREATE TABLE IF NOT EXISTS merged_orders_detached_month (
+    period INTEGER PRIMARY KEY,
+    detached_table VARCHAR(255) NOT NULL,
+    detached_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+-- Status-by-month breakdowns (migration V5, refreshed concurrently by AnalyticsViewRefresher
+-- after merged_orders changes and after payment uploads)
+CREATE MATERIALIZED VIEW IF NOT EXISTS merged_order_status_month AS
+SELECT order_status, CAST(EXTRACT(YEAR FROM order_date) AS INTEGER) AS year,
+       CAST(EXTRACT(MONTH FROM order_date) AS INTEGER) AS month, COUNT(*) AS order_count
+FROM merged_orders WHERE order_date IS NOT NULL
+GROUP BY order_status, EXTRACT(YEAR FROM order_date), EXTRACT(MONTH FROM order_date);
+CREATE UNIQUE INDEX IF NOT EXISTS ux_merged_order_status_month ON merged_order_status_month(year, month, order_status);
+CREATE MATERIALIZED VIEW IF NOT EXISTS payment_status_month AS
+SELECT order_status, CAST(EXTRACT(YEAR FROM payment_date_time) AS INTEGER) AS year,
+       CAST(EXTRACT(MONTH FROM payment_date_time) AS INTEGER) AS month, COUNT(DISTINCT order_id) AS order_count
+FROM payments WHERE order_status IS NOT NULL
+GROUP BY order_status, EXTRACT(YEAR FROM payment_date_time), EXTRACT(MONTH FROM payment_date_time);
+CREATE UNIQUE INDEX IF NOT EXISTS ux_payment_status_month ON payment_status_month(year, month, order_status);
+
 -- Staging tables for file ingestion
 CREATE TABLE IF NOT EXISTS orders_raw (
     id BIGSERIAL PRIMARY KEY,
@@ -0,0 +1,91 @@
+package com.ecomanalyser.config;
+
+import com.ecomanalyser.service.DataEpoch;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class AnalyticsCacheFilterTest {
+
+    private final DataEpoch dataEpoch = new DataEpoch(mock(JdbcTemplate.class), mock(ApplicationEventPublisher.class), 0);
+    private final AnalyticsCacheFilter filter = new AnalyticsCacheFilter(dataEpoch, new AnalyticsResponseCache(10, 1024));
+    private final AtomicInteger computed = new AtomicInteger();
+    private final FilterChain chain = (request, response) -> {
+        response.setContentType("application/json");
+        response.getOutputStream().write(("{\"run\":" + computed.incrementAndGet() + "}").getBytes(StandardCharsets.UTF_8));
+    };
+
+    @Test
+    void testServesCacheAndNotModifiedUntilEpochChanges() throws Exception {
+        MockHttpServletResponse first = get("start=2024-01-01&end=2024-01-31", null);
+        assertEquals(200, first.getStatus());
+        assertEquals("{\"run\":1}", first.getContentAsString());
+        String etag = first.getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+
+        // Same parameters in another order hit the cache
+        MockHttpServletResponse cached = get("end=2024-01-31&start=2024-01-01", null);
+        assertEquals("{\"run\":1}", cached.getContentAsString());
+        assertEquals(etag, cached.getHeader(HttpHeaders.ETAG));
+
+        MockHttpServletResponse notModified = get("start=2024-01-01&end=2024-01-31", etag);
+        assertEquals(304, notModified.getStatus());
+        assertEquals(1, computed.get());
+
+        dataEpoch.bump();
+        MockHttpServletResponse fresh = get("start=2024-01-01&end=2024-01-31", etag);
+        assertEquals(200, fresh.getStatus());
+        assertEquals("{\"run\":2}", fresh.getContentAsString());
+        assertNotEquals(etag, fresh.getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void testResponseCacheEvictsByWeight() {
+        AnalyticsResponseCache cache = new AnalyticsResponseCache(10, 10);
+        cache.put("a", 1, entry(4));
+        cache.put("b", 1, entry(4));
+        cache.get("a", 1);
+        cache.put("c", 1, entry(4));
+
+        // "b" was least recently used
+        assertNotNull(cache.get("a", 1));
+        assertNull(cache.get("b", 1));
+        assertNotNull(cache.get("c", 1));
+
+        // Oversized bodies and older epochs are never stored
+        cache.put("d", 1, entry(11));
+        assertNull(cache.get("d", 1));
+        cache.put("e", 2, entry(1));
+        cache.put("f", 1, entry(1));
+        assertNull(cache.get("a", 2));
+        assertNull(cache.get("f", 1));
+        assertNotNull(cache.get("e", 2));
+    }
+
+    private MockHttpServletResponse get(String query, String ifNoneMatch) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/analytics/profit-trend");
+        request.setQueryString(query);
+        for (String param : query.split("&")) {
+            String[] pair = param.split("=");
+            request.addParameter(pair[0], pair[1]);
+        }
+        if (ifNoneMatch != null) request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private static AnalyticsResponseCache.Entry entry(int size) {
+        return new AnalyticsResponseCache.Entry(new byte[size], "application/json");
+    }
+}
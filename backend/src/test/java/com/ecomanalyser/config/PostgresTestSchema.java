@@ -0,0 +1,144 @@
+package com.ecomanalyser.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A throwaway schema, migrated with the versioned scripts, on the PostgreSQL given by
+ * -Dtest.jdbc.url (-Dtest.jdbc.user / -Dtest.jdbc.password default to postgres). For the tests
+ * that need real SQL semantics; they are skipped when the property is not set. Closing drops
+ * the schema.
+ */
+public final class PostgresTestSchema implements AutoCloseable {
+
+    public static final String URL_PROPERTY = "test.jdbc.url";
+
+    private final SingleConnectionDataSource dataSource;
+    private final JdbcTemplate jdbc;
+    private final String schema;
+    private EntityManagerFactory entityManagerFactory;
+
+    private PostgresTestSchema() {
+        schema = "test_" + Long.toHexString(System.nanoTime());
+        dataSource = new SingleConnectionDataSource(System.getProperty(URL_PROPERTY),
+                System.getProperty("test.jdbc.user", "postgres"), System.getProperty("test.jdbc.password", "postgres"), true);
+        jdbc = new JdbcTemplate(dataSource);
+    }
+
+    public static PostgresTestSchema create() throws IOException {
+        PostgresTestSchema db = empty();
+        try {
+            db.migrate();
+            return db;
+        } catch (RuntimeException | IOException e) {
+            db.close();
+            throw e;
+        }
+    }
+
+    /**
+     * A schema no migration has run in yet, for tests that set up an older schema first
+     */
+    public static PostgresTestSchema empty() {
+        PostgresTestSchema db = new PostgresTestSchema();
+        try {
+            db.jdbc.execute("CREATE SCHEMA " + db.schema);
+            db.jdbc.execute("SET search_path TO " + db.schema);
+            return db;
+        } catch (RuntimeException e) {
+            db.close();
+            throw e;
+        }
+    }
+
+    public void migrate() throws IOException {
+        new SchemaMigrations(jdbc, false).migrate();
+    }
+
+    public JdbcTemplate jdbc() {
+        return jdbc;
+    }
+
+    public DataSource dataSource() {
+        return dataSource;
+    }
+
+    public String schema() {
+        return schema;
+    }
+
+    /**
+     * JDBC URL of the database with this schema as the connection's current schema, for
+     * application contexts started against it
+     */
+    public String url() {
+        String url = System.getProperty(URL_PROPERTY);
+        return url + (url.contains("?") ? "&" : "?") + "currentSchema=" + schema;
+    }
+
+    /**
+     * Generated orders, payments and merged rows over three years from 2023-01-01, order ids
+     * O1..On in every table. A third of the rows are RTO or RETURN and about one in seven has
+     * a negative settlement.
+     */
+    public void generate(int rows) {
+        String statuses = "(ARRAY['DELIVERED','DELIVERED','DELIVERED','RTO','RETURN','SHIPPED'])[1 + i % 6]";
+        String day = "DATE '2023-01-01' + (i % 1095)";
+        jdbc.update("INSERT INTO merged_orders (order_id, sku_id, order_status, order_date, payment_date, quantity, "
+                + "settlement_amount, purchase_price, cogs, net_profit, state) "
+                + "SELECT 'O' || i, 'SKU' || (i % 2000), " + statuses + ", " + day + ", " + day + " + 7, 1 + i % 3, "
+                + "(i % 1000) - 150, 200, 200 * (1 + i % 3), (i % 1000) - 150 - 200 * (1 + i % 3), 'KA' "
+                + "FROM generate_series(1, ?) i", rows);
+        jdbc.update("INSERT INTO payments (payment_id, order_id, sku, order_status, payment_date_time, amount, quantity) "
+                + "SELECT 'P' || i, 'O' || i, 'SKU' || (i % 2000), " + statuses + ", "
+                + "TIMESTAMP '2023-01-08 00:00' + (i % 1095) * INTERVAL '1 day', (i % 1000) - 150, 1 + i % 3 "
+                + "FROM generate_series(1, ?) i", rows);
+        jdbc.update("INSERT INTO orders (order_id, sku, supplier_sku, quantity, selling_price, order_date_time) "
+                + "SELECT 'O' || i, 'SKU' || (i % 2000), 'SSKU' || i, 1 + i % 3, 499, "
+                + "TIMESTAMP '2023-01-01 00:00' + (i % 1095) * INTERVAL '1 day' "
+                + "FROM generate_series(1, ?) i", rows);
+        for (String table : List.of("merged_orders", "payments", "orders")) jdbc.execute("VACUUM ANALYZE " + table);
+    }
+
+    /**
+     * Spring Data repositories over this schema, on a Hibernate session factory named like the
+     * application's, with every statement Hibernate prepares passed through the given inspector
+     */
+    public JpaRepositoryFactory repositories(StatementInspector inspector) {
+        LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+        factory.setDataSource(dataSource);
+        factory.setPackagesToScan("com.ecomanalyser.domain");
+        factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factory.setJpaPropertyMap(Map.of(
+                "hibernate.hbm2ddl.auto", "none",
+                "hibernate.physical_naming_strategy", CamelCaseToUnderscoresNamingStrategy.class.getName(),
+                "hibernate.implicit_naming_strategy", SpringImplicitNamingStrategy.class.getName(),
+                "hibernate.session_factory.statement_inspector", inspector));
+        factory.afterPropertiesSet();
+        if (entityManagerFactory != null) entityManagerFactory.close();
+        entityManagerFactory = factory.getObject();
+        return new JpaRepositoryFactory(entityManagerFactory.createEntityManager());
+    }
+
+    @Override
+    public void close() {
+        if (entityManagerFactory != null) entityManagerFactory.close();
+        try {
+            jdbc.execute("DROP SCHEMA IF EXISTS " + schema + " CASCADE");
+        } finally {
+            dataSource.destroy();
+        }
+    }
+}
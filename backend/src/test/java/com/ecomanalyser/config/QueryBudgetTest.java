@@ -0,0 +1,61 @@
+package com.ecomanalyser.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryBudgetTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final QueryBudget budget = new QueryBudget(registry, 5, 3, 3);
+    private final SqlStatementCounter inspector = new SqlStatementCounter();
+
+    @Test
+    void testFlagsStatementBudgetAndRepeatedStatements() {
+        try (SqlStatementCounter.Scope outer = SqlStatementCounter.open()) {
+            inspector.inspect("select a");
+            try (SqlStatementCounter.Scope inner = SqlStatementCounter.open()) {
+                inspector.inspect("select b where id=?");
+                inspector.inspect("select b where id=?");
+                assertEquals(2, inner.statements());
+                assertFalse(budget.check(QueryBudget.CALL, "SkuGroupService.getUngroupedSkus", inner));
+
+                inspector.inspect("select b where id=?");
+                assertEquals(3, inner.mostRepeated().getValue());
+                // Within the call budget of 3, but the same lookup three times is an N+1
+                assertTrue(budget.check(QueryBudget.CALL, "SkuGroupService.getUngroupedSkus", inner));
+            }
+            // The enclosing scope saw the inner statements too
+            assertEquals(4, outer.statements());
+            inspector.inspect("select c");
+            inspector.inspect("select d");
+            assertTrue(budget.check(QueryBudget.REQUEST, "GET /api/sku-groups", outer));
+        }
+
+        assertEquals(1, registry.get("sql.query.budget.exceeded").tag("scope", "call").tag("reason", "repeated").counter().count());
+        assertEquals(1, registry.get("sql.query.budget.exceeded").tag("scope", "request").tag("reason", "budget").counter().count());
+    }
+
+    @Test
+    void testFilterCountsStatementsPerEndpointPattern() throws Exception {
+        QueryCountFilter filter = new QueryCountFilter(registry, budget);
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/api/sku-groups/7");
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/sku-groups/{id}");
+            for (int i = 0; i < 6; i++) inspector.inspect("select m from sku_group_mappings m where sku=?");
+        });
+
+        assertEquals(6, registry.get("http.request.queries")
+                .tag("endpoint", "PUT /api/sku-groups/{id}").summary().totalAmount());
+        assertEquals(1, registry.get("sql.query.budget.exceeded").tag("scope", "request").counter().count());
+
+        // Requests outside the API are not counted
+        filter.doFilter(new MockHttpServletRequest("GET", "/actuator/prometheus"), new MockHttpServletResponse(),
+                (req, res) -> inspector.inspect("select 1"));
+        assertNull(registry.find("http.request.queries").tag("endpoint", "GET unmapped").summary());
+    }
+}
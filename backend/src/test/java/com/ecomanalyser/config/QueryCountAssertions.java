@@ -0,0 +1,60 @@
+package com.ecomanalyser.config;
+
+import org.mockito.invocation.Invocation;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Query budgets for tests. {@link #assertMaxQueries} fails when a unit of work prepares more SQL
+ * statements than allowed, through the same {@link SqlStatementCounter} the application uses.
+ * Against a database the application's statement inspector does the counting
+ * ({@code EndpointQueryBudgetTest}). Without one, repositories created with {@link #countingMock}
+ * stand in: each call counts as the statements it would prepare, named after the repository
+ * method, so an N+1 loop over a repository fails the budget the same way it would against
+ * PostgreSQL.
+ */
+public final class QueryCountAssertions {
+
+    private static final SqlStatementCounter COUNTER = new SqlStatementCounter();
+
+    // Calls Hibernate runs as at least one statement per entity: IDENTITY ids rule out insert
+    // batching, and these deletes remove row by row
+    private static final Set<String> PER_ENTITY = Set.of("saveAll", "saveAllAndFlush", "deleteAll", "deleteAllById");
+
+    private QueryCountAssertions() {
+    }
+
+    public static <T> T assertMaxQueries(long max, Callable<T> work) throws Exception {
+        try (SqlStatementCounter.Scope sql = SqlStatementCounter.open()) {
+            T result = work.call();
+            Map.Entry<String, Integer> repeated = sql.mostRepeated();
+            assertTrue(sql.statements() <= max, () -> "Expected at most " + max + " queries but ran " + sql.statements()
+                    + (repeated != null ? "; most repeated " + repeated.getValue() + "x: " + repeated.getKey() : ""));
+            return result;
+        }
+    }
+
+    /**
+     * A mock repository whose every call, stubbed or not, counts as one query, except that
+     * saveAll, saveAllAndFlush, deleteAll and deleteAllById count one per entity or id passed
+     */
+    public static <T> T countingMock(Class<T> repositoryType) {
+        return mock(repositoryType, withSettings().invocationListeners(report -> {
+            if (report.getInvocation() instanceof Invocation invocation) {
+                String method = invocation.getMethod().getName();
+                long statements = 1;
+                if (PER_ENTITY.contains(method) && invocation.getArguments().length == 1
+                        && invocation.getArgument(0) instanceof Iterable<?> entities) {
+                    statements = 0;
+                    for (Object ignored : entities) statements++;
+                }
+                for (long i = 0; i < statements; i++) COUNTER.inspect(repositoryType.getSimpleName() + "." + method);
+            }
+        }));
+    }
+}
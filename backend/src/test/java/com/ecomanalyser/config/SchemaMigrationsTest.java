@@ -0,0 +1,170 @@
+package com.ecomanalyser.config;
+
+import com.ecomanalyser.repository.MergedOrderPaymentRepository;
+import com.ecomanalyser.repository.OrderRepository;
+import com.ecomanalyser.repository.PaymentRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaMigrationsTest {
+
+    @Test
+    void testLoadsScriptsInVersionOrderAndSplitsStatements() throws Exception {
+        List<SchemaMigrations.Migration> migrations = SchemaMigrations.load(
+                new PathMatchingResourcePatternResolver().getResources(SchemaMigrations.LOCATION));
+        for (int i = 0; i < migrations.size(); i++) assertEquals(String.valueOf(i + 1), migrations.get(i).version());
+
+        List<String> statements = SchemaMigrations.split(
+                "-- header\nCREATE TABLE t (a text DEFAULT 'x;--y'); -- trailing\n\nINSERT INTO t VALUES ('a');\n");
+        assertEquals(List.of("CREATE TABLE t (a text DEFAULT 'x;--y')", "INSERT INTO t VALUES ('a')"), statements);
+
+        // Semicolons, quotes and comments inside dollar-quoted bodies stay in their statement
+        List<String> blocks = SchemaMigrations.split("DO $$ BEGIN -- it's\n PERFORM 1; END $$;\n"
+                + "CREATE FUNCTION f() RETURNS int LANGUAGE sql AS $body$ SELECT 1; $body$;");
+        assertEquals(List.of("DO $$ BEGIN -- it's\n PERFORM 1; END $$",
+                "CREATE FUNCTION f() RETURNS int LANGUAGE sql AS $body$ SELECT 1; $body$"), blocks);
+    }
+
+    @Test
+    void testOnlyConcurrentIndexesLoseConcurrently() {
+        assertEquals("CREATE INDEX IF NOT EXISTS i ON t (a)",
+                SchemaMigrations.withoutConcurrently("CREATE INDEX CONCURRENTLY IF NOT EXISTS i ON t (a)"));
+        assertEquals("CREATE TABLE t (a int)", SchemaMigrations.withoutConcurrently("CREATE TABLE t (a int)"));
+    }
+
+    @Test
+    void testFindsTheIndexACreateIndexIfNotExistsBuilds() {
+        assertEquals("idx_a", SchemaMigrations.createdIndex("CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_a ON t (a)"));
+        assertEquals("ux_b", SchemaMigrations.createdIndex("CREATE UNIQUE INDEX IF NOT EXISTS ux_b\n    ON t (b)"));
+        assertNull(SchemaMigrations.createdIndex("CREATE INDEX idx_c ON t (c)"));
+        assertNull(SchemaMigrations.createdIndex("DO $$ BEGIN CREATE INDEX IF NOT EXISTS idx_d ON t (d); END $$"));
+    }
+
+    /**
+     * A merged_orders table ddl-auto built from the entity before the cost columns existed gets
+     * them from the baseline, so the later scripts indexing net_profit apply. Needs a PostgreSQL:
+     * mvn test -Dtest=SchemaMigrationsTest -Dtest.jdbc.url=jdbc:postgresql://localhost:5432/ecomanalyser
+     */
+    @Test
+    @EnabledIfSystemProperty(named = PostgresTestSchema.URL_PROPERTY, matches = ".+")
+    void testMigratesAMergedOrdersTableWithoutCostColumns() throws Exception {
+        try (PostgresTestSchema db = PostgresTestSchema.empty()) {
+            db.jdbc().execute("CREATE TABLE merged_orders (order_id varchar(255) NOT NULL PRIMARY KEY, "
+                    + "order_amount numeric(38,2), settlement_amount numeric(38,2), order_status varchar(255), "
+                    + "sku_id varchar(255), order_date date, payment_date date, quantity integer, state varchar(255), "
+                    + "transaction_id varchar(255), dispatch_date date, price_type varchar(255))");
+            db.jdbc().update("INSERT INTO merged_orders (order_id, order_date, settlement_amount) VALUES ('O1', DATE '2024-01-05', -10)");
+
+            db.migrate();
+
+            assertEquals(1, db.jdbc().queryForObject(
+                    "SELECT COUNT(*) FROM merged_orders WHERE order_id = 'O1' AND net_profit IS NULL AND loss_category IS NULL",
+                    Integer.class));
+            assertEquals(Boolean.TRUE, db.jdbc().queryForObject(
+                    "SELECT to_regclass('idx_merged_orders_order_date_negative') IS NOT NULL", Boolean.class));
+        }
+    }
+
+    /**
+     * Fails if an analytics repository query plans a sequential scan over a large generated
+     * dataset. The repositories run for real and the SQL Hibernate prepares for their @Query and
+     * derived queries is captured, then explained with the arguments it was called with.
+     * Needs a PostgreSQL the tests may create and drop a schema in. Run with:
+     * mvn test -Dtest=SchemaMigrationsTest -Dtest.jdbc.url=jdbc:postgresql://localhost:5432/ecomanalyser
+     * (-Dexplain.rows defaults to 300000)
+     */
+    @Test
+    @EnabledIfSystemProperty(named = PostgresTestSchema.URL_PROPERTY, matches = ".+")
+    void explainAnalyticsQueriesUseIndexes() throws Exception {
+        int rows = Integer.getInteger("explain.rows", 300_000);
+        List<String> prepared = new ArrayList<>();
+        try (PostgresTestSchema db = PostgresTestSchema.create()) {
+            db.generate(rows);
+            JpaRepositoryFactory repositories = db.repositories(sql -> {
+                prepared.add(sql);
+                return sql;
+            });
+
+            ObjectMapper mapper = new ObjectMapper();
+            Map<String, List<String>> seqScans = new LinkedHashMap<>();
+            for (Map.Entry<String, RepositoryCall> query : explainedQueries(repositories).entrySet()) {
+                prepared.clear();
+                query.getValue().call().run();
+                assertFalse(prepared.isEmpty(), query.getKey() + " prepared no statement");
+                String plan = explain(db.jdbc(), prepared.get(prepared.size() - 1), query.getValue().arguments());
+                List<String> scanned = new ArrayList<>();
+                collectSeqScans(mapper.readTree(plan).get(0).get("Plan"), scanned);
+                if (!scanned.isEmpty()) seqScans.put(query.getKey(), scanned);
+            }
+            assertTrue(seqScans.isEmpty(), () -> "Sequential scans: " + seqScans);
+        }
+    }
+
+    /** A repository call and its arguments as SQL literals, in the order its statement binds them */
+    private record RepositoryCall(String arguments, Runnable call) {
+    }
+
+    // The analytics repository queries over one month of a three year dataset
+    private static Map<String, RepositoryCall> explainedQueries(JpaRepositoryFactory repositories) {
+        MergedOrderPaymentRepository merged = repositories.getRepository(MergedOrderPaymentRepository.class);
+        PaymentRepository payments = repositories.getRepository(PaymentRepository.class);
+        OrderRepository orders = repositories.getRepository(OrderRepository.class);
+        LocalDate start = LocalDate.of(2024, 3, 1);
+        LocalDate end = LocalDate.of(2024, 3, 31);
+        LocalDateTime startTime = start.atStartOfDay();
+        LocalDateTime endTime = end.atTime(23, 59, 59);
+        String month = "DATE '2024-03-01', DATE '2024-03-31'";
+        String monthTime = "TIMESTAMP '2024-03-01 00:00:00', TIMESTAMP '2024-03-31 23:59:59'";
+
+        Map<String, RepositoryCall> queries = new LinkedHashMap<>();
+        queries.put("findOrderStatusCounts", new RepositoryCall(month, () -> merged.findOrderStatusCounts(start, end)));
+        queries.put("findTopOrderedSkus", new RepositoryCall(month, () -> merged.findTopOrderedSkus(start, end)));
+        queries.put("findTopProfitableSkus", new RepositoryCall(month, () -> merged.findTopProfitableSkus(start, end)));
+        queries.put("findDeliveredLossOrders", new RepositoryCall(month, () -> merged.findDeliveredLossOrders(start, end)));
+        queries.put("findReturnLossOrders", new RepositoryCall(month, () -> merged.findReturnLossOrders(start, end)));
+        queries.put("findByPaymentDateBetween", new RepositoryCall(month, () -> merged.findByPaymentDateBetween(start, end)));
+        queries.put("findAmountRowsBetween", new RepositoryCall(monthTime, () -> payments.findAmountRowsBetween(startTime, endTime)));
+        queries.put("getOrderCountsByStatus", new RepositoryCall(monthTime, () -> payments.getOrderCountsByStatus(startTime, endTime)));
+        queries.put("topOrderedSkus", new RepositoryCall(monthTime, () -> orders.topOrderedSkus(startTime, endTime)));
+        queries.put("findBySupplierSku", new RepositoryCall("'SSKU42'", () -> orders.findBySupplierSku("SSKU42")));
+        return queries;
+    }
+
+    /**
+     * Plan of a statement as Hibernate prepared it, its ? placeholders bound to the arguments
+     * through a prepared statement so the planner sees their types and values
+     */
+    private static String explain(JdbcTemplate jdbc, String sql, String arguments) {
+        StringBuilder positional = new StringBuilder();
+        int parameter = 0;
+        for (char c : sql.toCharArray()) {
+            if (c == '?') positional.append('$').append(++parameter);
+            else positional.append(c);
+        }
+        jdbc.execute("PREPARE explained AS " + positional);
+        try {
+            return jdbc.queryForObject("EXPLAIN (FORMAT JSON) EXECUTE explained(" + arguments + ")", String.class);
+        } finally {
+            jdbc.execute("DEALLOCATE explained");
+        }
+    }
+
+    private static void collectSeqScans(JsonNode plan, List<String> scanned) {
+        if ("Seq Scan".equals(plan.path("Node Type").asText())) scanned.add(plan.path("Relation Name").asText());
+        for (JsonNode child : plan.path("Plans")) collectSeqScans(child, scanned);
+    }
+}
@@ -58,7 +58,7 @@ class AnalyticsControllerTest {
                 .thenReturn(mockData);
 
         // When
-        List<Map<String, Object>> result = analyticsController.topOrdered(startDate, endDate, 10);
+        List<Map<String, Object>> result = analyticsController.topOrdered(startDate, endDate, 10, false);
 
         // Then
         assertEquals(2, result.size());
@@ -80,7 +80,7 @@ class AnalyticsControllerTest {
                 .thenReturn(mockData);
 
         // When
-        List<Map<String, Object>> result = analyticsController.topProfitableSkus(startDate, endDate, 10);
+        List<Map<String, Object>> result = analyticsController.topProfitableSkus(startDate, endDate, 10, false);
 
         // Then
         assertEquals(2, result.size());
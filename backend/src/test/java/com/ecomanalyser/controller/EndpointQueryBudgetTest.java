@@ -0,0 +1,110 @@
+package com.ecomanalyser.controller;
+
+import com.ecomanalyser.config.PostgresTestSchema;
+import com.ecomanalyser.service.AnalyticsService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Map;
+
+import static com.ecomanalyser.config.QueryCountAssertions.assertMaxQueries;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SQL statement budgets of the dashboard, analytics, merged-data and return sync endpoints,
+ * counted by the statement inspector the application registers with Hibernate. The controllers
+ * run in the full application context against a migrated schema with generated data, so a
+ * change that adds a query per row or per SKU fails here. Statements issued through
+ * JdbcTemplate are not counted. Needs a PostgreSQL the tests may create and drop a schema in:
+ * mvn test -Dtest=EndpointQueryBudgetTest -Dtest.jdbc.url=jdbc:postgresql://localhost:5432/ecomanalyser
+ */
+@SpringBootTest(properties = {
+        "kafka.enabled=false",
+        "sample.generate=false",
+        "analytics.data-version.poll-millis=0",
+        "spring.jpa.hibernate.ddl-auto=none"
+})
+@EnabledIfSystemProperty(named = PostgresTestSchema.URL_PROPERTY, matches = ".+")
+class EndpointQueryBudgetTest {
+
+    private static final LocalDate START = LocalDate.of(2024, 3, 1);
+    private static final LocalDate END = LocalDate.of(2024, 3, 31);
+
+    private static PostgresTestSchema db;
+
+    @Autowired
+    private AnalyticsController analyticsController;
+
+    @Autowired
+    private DataMergeController dataMergeController;
+
+    @Autowired
+    private ReturnTrackingController returnTrackingController;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) throws IOException {
+        db = PostgresTestSchema.create();
+        db.generate(20_000);
+        registry.add("spring.datasource.url", db::url);
+        registry.add("spring.datasource.username", () -> System.getProperty("test.jdbc.user", "postgres"));
+        registry.add("spring.datasource.password", () -> System.getProperty("test.jdbc.password", "postgres"));
+    }
+
+    @AfterAll
+    static void dropSchema() {
+        if (db != null) db.close();
+    }
+
+    @Test
+    void testDashboardReadsTheCubeAtMostOnce() throws Exception {
+        ResponseEntity<Map<String, Object>> response = assertMaxQueries(1,
+                () -> analyticsController.getDashboard(START, END, AnalyticsService.Aggregation.DAY));
+
+        assertTrue(response.getStatusCode().is2xxSuccessful());
+        assertNotNull(response.getBody().get("summary"));
+    }
+
+    @Test
+    void testAnalyticsChartsRunOneQueryEach() throws Exception {
+        assertMaxQueries(1, () -> analyticsController.ordersByTime(START, END, AnalyticsService.Aggregation.DAY));
+        assertMaxQueries(1, () -> analyticsController.paymentsByTime(START, END, AnalyticsService.Aggregation.DAY));
+        assertMaxQueries(1, () -> analyticsController.topOrdered(START, END, 10, false));
+        assertTrue(assertMaxQueries(1, () -> analyticsController.getOrderCountsByStatus(START, END))
+                .getStatusCode().is2xxSuccessful());
+    }
+
+    @Test
+    void testMergedDataRunsOneQueryAndPagesRunTwo() throws Exception {
+        ResponseEntity<?> all = assertMaxQueries(1, () -> dataMergeController.getMergedData());
+        assertTrue(all.getStatusCode().is2xxSuccessful());
+
+        // The page and its estimated or capped count, whether searching or not
+        ResponseEntity<Map<String, Object>> page = assertMaxQueries(2,
+                () -> dataMergeController.getMergedDataPaginated(0, 50, null, null, "approx"));
+        assertTrue(page.getStatusCode().is2xxSuccessful());
+        ResponseEntity<Map<String, Object>> search = assertMaxQueries(2,
+                () -> dataMergeController.getMergedDataPaginated(0, 50, "SKU12", null, "approx"));
+        assertTrue(search.getStatusCode().is2xxSuccessful());
+    }
+
+    @Test
+    void testReturnSyncUpsertsInOneStatement() throws Exception {
+        Map<String, Object> first = assertMaxQueries(1, () -> returnTrackingController.syncReturnOrders()).getBody();
+        assertEquals(true, first.get("success"), () -> String.valueOf(first.get("error")));
+        int added = (Integer) first.get("addedCount");
+        assertTrue(added > 0);
+
+        // A second sync refreshes the same rows instead of adding them again
+        Map<String, Object> second = assertMaxQueries(1, () -> returnTrackingController.syncReturnOrders()).getBody();
+        assertEquals(0, second.get("addedCount"));
+        assertEquals(added, second.get("updatedCount"));
+    }
+}
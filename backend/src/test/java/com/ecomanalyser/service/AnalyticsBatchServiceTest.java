@@ -0,0 +1,98 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.dto.AnalyticsBatchRequest;
+import com.ecomanalyser.dto.ChartResponse;
+import com.ecomanalyser.dto.TimeSeriesPoint;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class AnalyticsBatchServiceTest {
+
+    private static final LocalDate JAN_5 = LocalDate.of(2024, 1, 5);
+    private static final LocalDate JAN_20 = LocalDate.of(2024, 1, 20);
+
+    private final MergedOrderCube cube = new MergedOrderCube.Builder()
+            .add(JAN_5, "A", "DELIVERED", null, 1, bd("500.00"), bd("200.00"), bd("300.00"), MergedOrderCostService.PROFIT)
+            .add(JAN_20, "B", "DELIVERED", null, 2, bd("800.00"), bd("400.00"), bd("400.00"), MergedOrderCostService.PROFIT)
+            .add(JAN_20, "A", "DELIVERED", null, 1, bd("100.00"), bd("150.00"), bd("-50.00"), MergedOrderCostService.LOSS)
+            .build();
+    private final AnalyticsService analyticsService = mock(AnalyticsService.class);
+    private final AnalyticsBatchService batchService =
+            new AnalyticsBatchService(analyticsService, new QueryCoalescer(new SimpleMeterRegistry()));
+
+    @Test
+    void testQueriesOverOneRangeShareOneScan() {
+        when(analyticsService.newDashboardAccumulator(any())).thenAnswer(invocation ->
+                new DashboardAccumulator(cube, invocation.getArgument(0), status -> false));
+        when(analyticsService.topOrderedSkus(JAN_5, JAN_20, 5)).thenReturn(List.of(Map.of("sku", "B", "quantity", 2L)));
+
+        AnalyticsBatchRequest request = AnalyticsBatchRequest.builder()
+                .start(JAN_5).end(JAN_20)
+                .queries(List.of(
+                        query("summary"),
+                        query("ordersByTime"),
+                        query("topProfitable"),
+                        AnalyticsBatchRequest.Query.builder().metric("profitTrend").agg(AnalyticsService.Aggregation.MONTH).build(),
+                        AnalyticsBatchRequest.Query.builder().id("top5").metric("top-ordered").limit(5).build()))
+                .build();
+
+        Map<String, Object> response = batchService.execute(request);
+
+        // DAY for the first three queries, MONTH for the profit trend
+        assertEquals(2, response.get("scans"));
+        verify(analyticsService, times(2)).newDashboardAccumulator(any());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> results = (Map<String, Object>) response.get("results");
+        assertEquals(List.of("summary", "ordersByTime", "topProfitable", "profitTrend", "top5"), List.copyOf(results.keySet()));
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> summary = (Map<String, Object>) results.get("summary");
+        assertEquals(3L, summary.get("totalOrders"));
+        assertEquals(JAN_5, summary.get("start"));
+
+        @SuppressWarnings("unchecked")
+        List<TimeSeriesPoint> orders = ((ChartResponse<TimeSeriesPoint>) results.get("ordersByTime")).getData();
+        assertEquals(2, orders.size());
+        assertEquals(0, BigDecimal.valueOf(2).compareTo(orders.get(1).getValue()));
+
+        assertEquals(List.of(Map.of("sku", "B", "profit", 800L), Map.of("sku", "A", "profit", 600L)), results.get("topProfitable"));
+
+        @SuppressWarnings("unchecked")
+        List<TimeSeriesPoint> profit = ((ChartResponse<TimeSeriesPoint>) results.get("profitTrend")).getData();
+        assertEquals(1, profit.size());
+        assertEquals(0, bd("700.00").compareTo(profit.get(0).getValue()));
+
+        assertEquals(List.of(Map.of("sku", "B", "quantity", 2L)), results.get("top5"));
+    }
+
+    @Test
+    void testMalformedBatchIsRejectedBeforeRunning() {
+        AnalyticsBatchRequest unknown = AnalyticsBatchRequest.builder()
+                .start(JAN_5).end(JAN_20)
+                .queries(List.of(query("summary"), query("bogus")))
+                .build();
+        assertThrows(IllegalArgumentException.class, () -> batchService.execute(unknown));
+
+        AnalyticsBatchRequest noRange = AnalyticsBatchRequest.builder().queries(List.of(query("lossMetrics"))).build();
+        assertThrows(IllegalArgumentException.class, () -> batchService.execute(noRange));
+
+        verifyNoInteractions(analyticsService);
+    }
+
+    private static AnalyticsBatchRequest.Query query(String metric) {
+        return AnalyticsBatchRequest.Query.builder().metric(metric).build();
+    }
+
+    private static BigDecimal bd(String value) {
+        return new BigDecimal(value);
+    }
+}
@@ -1,29 +1,35 @@
 package com.ecomanalyser.service;
 
 import com.ecomanalyser.domain.OrderEntity;
-import com.ecomanalyser.domain.PaymentEntity;
 import com.ecomanalyser.domain.SkuPriceEntity;
+import com.ecomanalyser.dto.PaymentAmountRow;
+import com.ecomanalyser.repository.DailyOrderRollupRepository;
 import com.ecomanalyser.repository.OrderRepository;
 import com.ecomanalyser.repository.PaymentRepository;
 import com.ecomanalyser.repository.SkuPriceRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class AnalyticsServiceTest {
@@ -37,6 +43,15 @@ class AnalyticsServiceTest {
     @Mock
     private SkuPriceRepository skuPriceRepository;
 
+    @Mock
+    private DailyOrderRollupRepository rollupRepository;
+
+    @Mock
+    private MonthlySummarySnapshots summarySnapshots;
+
+    @Spy
+    private QueryCoalescer coalescer = new QueryCoalescer(new SimpleMeterRegistry());
+
     @InjectMocks
     private AnalyticsService analyticsService;
 
@@ -185,41 +200,30 @@ class AnalyticsServiceTest {
 
     @Test
     void testOrdersByTime() {
-        // Given
-        OrderEntity order1 = OrderEntity.builder()
-                .orderDateTime(LocalDateTime.of(2025, 8, 1, 10, 0))
-                .quantity(2)
-                .build();
-        OrderEntity order2 = OrderEntity.builder()
-                .orderDateTime(LocalDateTime.of(2025, 8, 1, 14, 0))
-                .quantity(3)
-                .build();
-
-        when(orderRepository.findByOrderDateTimeBetween(startDateTime, endDateTime))
-                .thenReturn(Arrays.asList(order1, order2));
+        // Given: daily order counts from the rollup
+        when(rollupRepository.sumOrderCountByOrderDate(startDate, endDate)).thenReturn(List.of(
+                new Object[]{LocalDate.of(2025, 8, 1), 2L},
+                new Object[]{LocalDate.of(2025, 8, 2), 3L}));
 
         // When
-        var result = analyticsService.ordersByTime(startDate, endDate, AnalyticsService.Aggregation.DAY);
-
-        // Then
-        assertNotNull(result);
-        assertEquals(1, result.getData().size());
-        assertEquals(5, result.getData().get(0).getValue().intValue());
+        var byDay = analyticsService.ordersByTime(startDate, endDate, AnalyticsService.Aggregation.DAY);
+        var byMonth = analyticsService.ordersByTime(startDate, endDate, AnalyticsService.Aggregation.MONTH);
+
+        // Then: counts stay whole numbers
+        assertEquals(2, byDay.getData().size());
+        assertEquals(BigDecimal.valueOf(2), byDay.getData().get(0).getValue());
+        assertEquals(1, byMonth.getData().size());
+        assertEquals(LocalDate.of(2025, 8, 1), byMonth.getData().get(0).getPeriod());
+        assertEquals(BigDecimal.valueOf(5), byMonth.getData().get(0).getValue());
     }
 
     @Test
     void testPaymentsByTime() {
         // Given
-        PaymentEntity payment1 = PaymentEntity.builder()
-                .paymentDateTime(LocalDateTime.of(2025, 8, 1, 10, 0))
-                .amount(new BigDecimal("100"))
-                .build();
-        PaymentEntity payment2 = PaymentEntity.builder()
-                .paymentDateTime(LocalDateTime.of(2025, 8, 1, 14, 0))
-                .amount(new BigDecimal("200"))
-                .build();
+        PaymentAmountRow payment1 = new PaymentAmountRow(null, null, LocalDateTime.of(2025, 8, 1, 10, 0), new BigDecimal("100"));
+        PaymentAmountRow payment2 = new PaymentAmountRow(null, null, LocalDateTime.of(2025, 8, 1, 14, 0), new BigDecimal("200"));
 
-        when(paymentRepository.findByPaymentDateTimeBetween(startDateTime, endDateTime))
+        when(paymentRepository.findAmountRowsBetween(startDateTime, endDateTime))
                 .thenReturn(Arrays.asList(payment1, payment2));
 
         // When
@@ -233,54 +237,53 @@ class AnalyticsServiceTest {
 
     @Test
     void testProfitTrend() {
-        // Given
-        OrderEntity order = OrderEntity.builder()
-                .orderDateTime(LocalDateTime.of(2025, 8, 1, 10, 0))
-                .sellingPrice(new BigDecimal("100"))
-                .quantity(1)
-                .sku("SKU1")
-                .build();
-
-        when(orderRepository.findByOrderDateTimeBetween(startDateTime, endDateTime))
-                .thenReturn(List.of(order));
-        when(skuPriceRepository.findBySku("SKU1"))
-                .thenReturn(Optional.of(SkuPriceEntity.builder()
-                        .purchasePrice(new BigDecimal("60"))
-                        .build()));
+        // Given: daily net profit from the rollup
+        when(rollupRepository.sumProfitByOrderDate(startDate, endDate)).thenReturn(List.of(
+                new Object[]{LocalDate.of(2025, 8, 1), new BigDecimal("40.00")},
+                new Object[]{LocalDate.of(2025, 8, 3), new BigDecimal("12.50")}));
 
         // When
-        var result = analyticsService.profitTrend(startDate, endDate, AnalyticsService.Aggregation.DAY);
+        var result = analyticsService.profitTrend(startDate, endDate, AnalyticsService.Aggregation.MONTH);
 
         // Then
         assertNotNull(result);
         assertEquals(1, result.getData().size());
-        assertEquals(new BigDecimal("40"), result.getData().get(0).getValue());
+        assertEquals(0, new BigDecimal("52.50").compareTo(result.getData().get(0).getValue()));
     }
 
     @Test
     void testLossTrend() {
-        // Given
-        OrderEntity order = OrderEntity.builder()
-                .orderDateTime(LocalDateTime.of(2025, 8, 1, 10, 0))
-                .sellingPrice(new BigDecimal("50"))
-                .quantity(1)
-                .sku("SKU1")
-                .build();
-
-        when(orderRepository.findByOrderDateTimeBetween(startDateTime, endDateTime))
-                .thenReturn(List.of(order));
-        when(skuPriceRepository.findBySku("SKU1"))
-                .thenReturn(Optional.of(SkuPriceEntity.builder()
-                        .purchasePrice(new BigDecimal("100"))
-                        .build()));
+        // Given: the rollup stores losses as negative sums
+        when(rollupRepository.sumLossByOrderDate(startDate, endDate)).thenReturn(List.<Object[]>of(
+                new Object[]{LocalDate.of(2025, 8, 1), new BigDecimal("-50.00")}));
 
         // When
         var result = analyticsService.lossTrend(startDate, endDate, AnalyticsService.Aggregation.DAY);
 
-        // Then
+        // Then: reported as a positive loss amount
         assertNotNull(result);
         assertEquals(1, result.getData().size());
-        assertEquals(new BigDecimal("50"), result.getData().get(0).getValue());
+        assertEquals(LocalDate.of(2025, 8, 1), result.getData().get(0).getPeriod());
+        assertEquals(0, new BigDecimal("50").compareTo(result.getData().get(0).getValue()));
+    }
+
+    @Test
+    void testYearSummariesOfClosedMonthsComeFromSnapshots() {
+        // Given: every month of 2024 has a snapshot
+        Map<YearMonth, DashboardAccumulator.SummaryTotals> stored = new HashMap<>();
+        for (int month = 1; month <= 12; month++) {
+            stored.put(YearMonth.of(2024, month), new DashboardAccumulator.SummaryTotals(month, month * 100L, 0, 0, 0));
+        }
+        when(summarySnapshots.find(anyCollection())).thenReturn(stored);
+
+        // When
+        List<Map<String, Object>> result = analyticsService.getYearSummaries(2024);
+
+        // Then: one lookup, and no month is scanned in the cube
+        assertEquals(12, result.size());
+        assertEquals(3L, result.get(2).get("totalOrders"));
+        assertEquals(0, new BigDecimal("3.00").compareTo((BigDecimal) result.get(2).get("totalRevenue")));
+        verify(summarySnapshots, times(1)).find(anyCollection());
     }
 
     @Test
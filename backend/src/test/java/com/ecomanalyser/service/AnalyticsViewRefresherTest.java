@@ -0,0 +1,46 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.event.MergedOrdersChangedEvent;
+import com.ecomanalyser.event.PaymentsImportedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AnalyticsViewRefresherTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AnalyticsViewRefresher refresher = new AnalyticsViewRefresher(jdbcTemplate, registry);
+
+    @Test
+    void testRefreshIsConcurrentAndTimedByOutcome() {
+        assertTrue(refresher.refresh(AnalyticsViewRefresher.MERGED_STATUS_MONTH));
+        verify(jdbcTemplate).execute("REFRESH MATERIALIZED VIEW CONCURRENTLY merged_order_status_month");
+
+        doThrow(new DataAccessResourceFailureException("down")).when(jdbcTemplate)
+                .execute("REFRESH MATERIALIZED VIEW CONCURRENTLY payment_status_month");
+        assertFalse(refresher.refresh(AnalyticsViewRefresher.PAYMENT_STATUS_MONTH));
+
+        assertEquals(1, registry.get("analytics.view.refresh")
+                .tags("view", "merged_order_status_month", "outcome", "success").timer().count());
+        assertEquals(1, registry.get("analytics.view.refresh")
+                .tags("view", "payment_status_month", "outcome", "failure").timer().count());
+    }
+
+    @Test
+    void testEveryMergedChangeAndPaymentUploadRefreshesItsView() {
+        refresher.onMergedOrdersChanged(new MergedOrdersChangedEvent(Set.of("SKU1")));
+        verify(jdbcTemplate, timeout(5000)).execute("REFRESH MATERIALIZED VIEW CONCURRENTLY merged_order_status_month");
+
+        refresher.onPaymentsImported(new PaymentsImportedEvent("payments.csv"));
+        verify(jdbcTemplate, timeout(5000)).execute("REFRESH MATERIALIZED VIEW CONCURRENTLY payment_status_month");
+        refresher.shutdown();
+        verify(jdbcTemplate, times(1)).execute("REFRESH MATERIALIZED VIEW CONCURRENTLY merged_order_status_month");
+    }
+}
@@ -0,0 +1,70 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.service.AnalyticsService.Aggregation;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CalendarIndexTest {
+
+    @Test
+    void testBucketStarts() {
+        LocalDate day = LocalDate.of(2024, 5, 17);
+        assertEquals(day, CalendarIndex.bucketStart(day, Aggregation.DAY));
+        assertEquals(LocalDate.of(2024, 5, 1), CalendarIndex.bucketStart(day, Aggregation.MONTH));
+        assertEquals(LocalDate.of(2024, 4, 1), CalendarIndex.bucketStart(day, Aggregation.QUARTER));
+        assertEquals(LocalDate.of(2024, 1, 1), CalendarIndex.bucketStart(day, Aggregation.YEAR));
+        assertEquals(LocalDate.of(2024, 10, 1), CalendarIndex.bucketStart(LocalDate.of(2024, 12, 31), Aggregation.QUARTER));
+    }
+
+    @Test
+    void testEveryDayMapsToItsBucket() {
+        LocalDate start = LocalDate.of(2023, 11, 17);
+        LocalDate end = LocalDate.of(2025, 2, 3);
+
+        for (Aggregation agg : Aggregation.values()) {
+            CalendarIndex calendar = CalendarIndex.of(start, end, agg);
+            LocalDate previous = null;
+            int expectedBucket = -1;
+            for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+                LocalDate bucketDate = CalendarIndex.bucketStart(day, agg);
+                if (!bucketDate.equals(previous)) expectedBucket++;
+                previous = bucketDate;
+                int bucket = calendar.bucket(day);
+                assertEquals(expectedBucket, bucket, agg + " " + day);
+                assertEquals(bucketDate, calendar.bucketDate(bucket), agg + " " + day);
+                assertEquals(bucket, calendar.bucket(day.toEpochDay()), agg + " " + day);
+            }
+            assertEquals(expectedBucket + 1, calendar.size(), agg.name());
+            assertEquals(CalendarIndex.NO_BUCKET, calendar.bucket(start.minusDays(1)));
+            assertEquals(CalendarIndex.NO_BUCKET, calendar.bucket(end.plusDays(1)));
+        }
+        // Q4 2023 through Q1 2025; the first bucket starts before the span
+        CalendarIndex quarters = CalendarIndex.of(start, end, Aggregation.QUARTER);
+        assertEquals(6, quarters.size());
+        assertEquals(LocalDate.of(2023, 10, 1), quarters.bucketDate(0));
+        assertEquals(0, CalendarIndex.of(end, start, Aggregation.DAY).size());
+    }
+
+    @Test
+    void testClampedToDataDays() {
+        LocalDate firstData = LocalDate.of(2024, 3, 10);
+        LocalDate lastData = LocalDate.of(2024, 3, 20);
+
+        CalendarIndex wide = CalendarIndex.clamped(LocalDate.of(1, 1, 1), LocalDate.of(9999, 12, 31), firstData, lastData,
+                Aggregation.DAY);
+        assertEquals(11, wide.size());
+        assertEquals(firstData, wide.bucketDate(0));
+        assertEquals(CalendarIndex.NO_BUCKET, wide.bucket(firstData.minusDays(1)));
+
+        // The request still bounds the index when it is narrower than the data
+        CalendarIndex narrow = CalendarIndex.clamped(LocalDate.of(2024, 3, 15), LocalDate.of(2024, 3, 16), firstData, lastData,
+                Aggregation.DAY);
+        assertEquals(2, narrow.size());
+        assertEquals(CalendarIndex.NO_BUCKET, narrow.bucket(lastData));
+
+        assertEquals(0, CalendarIndex.clamped(firstData, lastData, null, null, Aggregation.MONTH).size());
+    }
+}
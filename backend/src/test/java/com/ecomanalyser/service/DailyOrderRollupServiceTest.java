@@ -0,0 +1,139 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.config.PostgresTestSchema;
+import com.ecomanalyser.repository.DailyOrderRollupRepository;
+import com.ecomanalyser.repository.MergedOrderPaymentRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DailyOrderRollupServiceTest {
+
+    @Mock
+    private DailyOrderRollupRepository rollupRepository;
+
+    @Mock
+    private MergedOrderPaymentRepository mergedRepo;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private DailyOrderRollupService rollupService;
+
+    @Test
+    void testRefreshSkusReplacesRowsInBatches() {
+        List<String> skus = IntStream.range(0, 1200).mapToObj(i -> "SKU" + i).collect(Collectors.toList());
+        when(rollupRepository.insertFromMergedOrdersForSkus(anyCollection()))
+                .thenAnswer(invocation -> ((Collection<?>) invocation.getArgument(0)).size());
+
+        int rows = rollupService.refreshSkus(skus);
+
+        assertEquals(1200, rows);
+        verify(mergedRepo).flush();
+        verify(rollupRepository, times(3)).deleteBySkuIds(anyCollection());
+        verify(rollupRepository, times(3)).insertFromMergedOrdersForSkus(anyCollection());
+        assertEquals(0, rollupService.refreshSkus(List.of()));
+    }
+
+    @Test
+    void testStartupRebuildOnlyWhenCountsDrift() {
+        when(mergedRepo.countByOrderDateIsNotNull()).thenReturn(10L, 10L);
+        when(rollupRepository.sumOrderCount()).thenReturn(10L, 7L);
+
+        rollupService.rebuildIfOutOfDate();
+        verify(rollupRepository, never()).insertAllFromMergedOrders();
+
+        rollupService.rebuildIfOutOfDate();
+        verify(rollupRepository).deleteAllRows();
+        verify(rollupRepository).insertAllFromMergedOrders();
+    }
+
+    /**
+     * Runs the repository's rollup SQL against PostgreSQL: groups, sign-split sums, COALESCE of
+     * empty sums and the per-SKU refresh. Run with -Dtest.jdbc.url=jdbc:postgresql://localhost:5432/ecomanalyser
+     */
+    @Test
+    @EnabledIfSystemProperty(named = PostgresTestSchema.URL_PROPERTY, matches = ".+")
+    void testRollupSqlGroupsAndSums() throws Exception {
+        try (PostgresTestSchema db = PostgresTestSchema.create()) {
+            JdbcTemplate jdbc = db.jdbc();
+            merged(jdbc, "O1", "A", "DELIVERED", "KA", "2024-03-01", 2, "500", "300", "200");
+            merged(jdbc, "O2", "A", "DELIVERED", "KA", "2024-03-01", 1, "100", "150", "-50");
+            merged(jdbc, "O3", "A", "DELIVERED", "KA", "2024-03-01", 1, "-80", "150", "-230");
+            merged(jdbc, "O4", "A", "DELIVERED", "TN", "2024-03-01", 1, "200", null, null);
+            merged(jdbc, "O5", "A", "DELIVERED", "KA", null, 5, "900", "100", "800");
+            merged(jdbc, "O6", "B", "RTO", "KA", "2024-03-02", null, null, null, null);
+
+            jdbc.update(DailyOrderRollupRepository.ROLLUP_INSERT + DailyOrderRollupRepository.ROLLUP_GROUP_BY);
+
+            assertEquals(3, jdbc.queryForObject("SELECT COUNT(*) FROM daily_order_rollup", Integer.class));
+            // Orders without an order date are left out
+            assertEquals(5, jdbc.queryForObject("SELECT SUM(order_count) FROM daily_order_rollup", Integer.class));
+
+            Map<String, Object> ka = rollup(jdbc, "A", "KA");
+            assertEquals(3L, ka.get("order_count"));
+            assertEquals(4L, ka.get("quantity"));
+            assertMoney("520", ka.get("settlement_sum"));
+            assertMoney("600", ka.get("positive_settlement_sum"));
+            assertMoney("-80", ka.get("negative_settlement_sum"));
+            assertMoney("600", ka.get("cogs_sum"));
+            // Profit and loss only count positive settlements: O3's -230 is a return, not a loss
+            assertMoney("200", ka.get("profit_sum"));
+            assertMoney("-50", ka.get("loss_sum"));
+
+            Map<String, Object> tn = rollup(jdbc, "A", "TN");
+            assertEquals(1L, tn.get("order_count"));
+            assertMoney("0", tn.get("cogs_sum"));
+            assertMoney("0", tn.get("negative_settlement_sum"));
+
+            Map<String, Object> b = rollup(jdbc, "B", "KA");
+            assertEquals(0L, b.get("quantity"));
+            assertMoney("0", b.get("settlement_sum"));
+
+            // Per-SKU refresh replaces only that SKU's rows
+            jdbc.update("UPDATE merged_orders SET quantity = 3 WHERE order_id = 'O6'");
+            NamedParameterJdbcTemplate named = new NamedParameterJdbcTemplate(jdbc);
+            Map<String, Object> skus = Map.of("skus", List.of("B"));
+            named.update("DELETE FROM daily_order_rollup WHERE sku_id IN (:skus)", skus);
+            named.update(DailyOrderRollupRepository.ROLLUP_INSERT + DailyOrderRollupRepository.ROLLUP_SKU_FILTER
+                    + DailyOrderRollupRepository.ROLLUP_GROUP_BY, skus);
+            assertEquals(3L, rollup(jdbc, "B", "KA").get("quantity"));
+            assertEquals(3, jdbc.queryForObject("SELECT COUNT(*) FROM daily_order_rollup", Integer.class));
+        }
+    }
+
+    private static void merged(JdbcTemplate jdbc, String orderId, String sku, String status, String state, String orderDate,
+                               Integer quantity, String settlement, String cogs, String netProfit) {
+        jdbc.update("INSERT INTO merged_orders (order_id, sku_id, order_status, state, order_date, quantity, "
+                        + "settlement_amount, cogs, net_profit) VALUES (?, ?, ?, ?, CAST(? AS date), ?, "
+                        + "CAST(? AS numeric), CAST(? AS numeric), CAST(? AS numeric))",
+                orderId, sku, status, state, orderDate, quantity, settlement, cogs, netProfit);
+    }
+
+    private static Map<String, Object> rollup(JdbcTemplate jdbc, String sku, String state) {
+        return jdbc.queryForMap("SELECT * FROM daily_order_rollup WHERE sku_id = ? AND state = ?", sku, state);
+    }
+
+    private static void assertMoney(String expected, Object actual) {
+        assertEquals(0, new BigDecimal(expected).compareTo((BigDecimal) actual), () -> expected + " != " + actual);
+    }
+}
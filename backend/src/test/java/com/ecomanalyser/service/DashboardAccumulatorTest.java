@@ -0,0 +1,75 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.dto.TimeSeriesPoint;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DashboardAccumulatorTest {
+
+    private static final LocalDate JAN_5 = LocalDate.of(2024, 1, 5);
+    private static final LocalDate JAN_20 = LocalDate.of(2024, 1, 20);
+    private static final LocalDate FEB_3 = LocalDate.of(2024, 2, 3);
+
+    @Test
+    void testSinglePassMatchesEndpointRules() {
+        MergedOrderCube cube = new MergedOrderCube.Builder()
+                // Delivered profit and delivered loss
+                .add(JAN_5, "A", "DELIVERED", null, 1, bd("500.00"), bd("200.00"), bd("300.00"), MergedOrderCostService.PROFIT)
+                .add(JAN_20, "A", "DELIVERED", null, 2, bd("300.00"), bd("400.00"), bd("-100.00"), MergedOrderCostService.LOSS)
+                // Shipped at a loss: counts for the loss trend but not as a delivered loss
+                .add(JAN_20, "B", "SHIPPED", null, 1, bd("50.00"), bd("80.00"), bd("-30.00"), MergedOrderCostService.LOSS)
+                // Returns: received loses the refund, not received loses the goods
+                .add(FEB_3, "A", "RTO_COMPLETE", null, 1, bd("-40.00"), bd("200.00"), bd("-240.00"), MergedOrderCostService.RETURN_RECEIVED)
+                .add(FEB_3, "B", "LOST", null, 1, bd("-10.00"), bd("80.00"), bd("-90.00"), MergedOrderCostService.RETURN_NOT_RECEIVED)
+                // Unpriced rows only count as orders and revenue
+                .add(FEB_3, "C", "DELIVERED", null, 1, bd("70.00"), null, null, MergedOrderCostService.UNPRICED)
+                .build();
+        DashboardAccumulator totals = new DashboardAccumulator(cube,
+                AnalyticsService.Aggregation.MONTH, status -> status.contains("RTO")).scan(null, null);
+
+        Map<String, Object> summary = totals.summary();
+        assertEquals(6L, summary.get("totalOrders"));
+        assertMoney("920.00", summary.get("totalRevenue"));
+        assertMoney("300.00", summary.get("totalProfit"));
+        assertMoney("100.00", summary.get("totalLossFromDelivered"));
+        assertMoney("120.00", summary.get("totalLossFromReturns"));
+        assertMoney("80.00", summary.get("netIncome"));
+
+        Map<String, Object> lossOrders = totals.lossOrdersSummary();
+        assertEquals(1L, lossOrders.get("totalOrders"));
+        assertEquals(2L, lossOrders.get("totalQuantity"));
+        assertMoney("100.00", lossOrders.get("totalLoss"));
+
+        Map<String, Object> returns = totals.returnAnalysisSummary();
+        assertEquals(2L, returns.get("totalOrders"));
+        assertMoney("50.00", returns.get("totalReturnAmount"));
+        assertMoney("120.00", returns.get("totalLoss"));
+        assertEquals(List.of("LOST"), returns.get("unexpectedStatuses"));
+
+        Map<String, Object> metrics = totals.lossMetrics();
+        assertMoney("220.00", metrics.get("totalLoss"));
+        assertEquals(3L, metrics.get("totalLossOrders"));
+
+        List<TimeSeriesPoint> profit = totals.profitTrend().getData();
+        assertEquals(1, profit.size());
+        assertEquals(LocalDate.of(2024, 1, 1), profit.get(0).getPeriod());
+        assertMoney("300.00", profit.get(0).getValue());
+        List<TimeSeriesPoint> loss = totals.lossTrend().getData();
+        assertEquals(1, loss.size());
+        assertMoney("130.00", loss.get(0).getValue());
+    }
+
+    private static void assertMoney(String expected, Object actual) {
+        assertEquals(0, new BigDecimal(expected).compareTo((BigDecimal) actual), () -> expected + " != " + actual);
+    }
+
+    private static BigDecimal bd(String value) {
+        return new BigDecimal(value);
+    }
+}
@@ -0,0 +1,78 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.event.DataVersionChangedEvent;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DataEpochTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final DataEpoch dataEpoch = new DataEpoch(jdbcTemplate, eventPublisher, 0);
+    private final Map<String, Long> versions = new LinkedHashMap<>();
+
+    @Test
+    void testPollPublishesChangesMadeByOtherNodes() throws Exception {
+        stubVersions();
+        versions.put(DataEpoch.MERGED_ORDERS, 4L);
+
+        // The first poll only records where this node starts from
+        dataEpoch.poll();
+        assertEquals(0, dataEpoch.current());
+        verifyNoInteractions(eventPublisher);
+
+        versions.put(DataEpoch.MERGED_ORDERS, 5L);
+        versions.put(DataEpoch.SKU_PRICES, 1L);
+        dataEpoch.poll();
+
+        assertEquals(1, dataEpoch.current());
+        ArgumentCaptor<DataVersionChangedEvent> event = ArgumentCaptor.forClass(DataVersionChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(DataEpoch.MERGED_ORDERS, event.getValue().getDataSet());
+        assertEquals(5L, event.getValue().getVersion());
+
+        // Nothing new on the next poll
+        dataEpoch.poll();
+        assertEquals(1, dataEpoch.current());
+    }
+
+    @Test
+    void testOwnChangesAreNotReportedAgainByThePoll() throws Exception {
+        stubVersions();
+        versions.put(DataEpoch.IMPORTS, 2L);
+        dataEpoch.poll();
+
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class), eq(DataEpoch.IMPORTS))).thenReturn(3L);
+        dataEpoch.changed(DataEpoch.IMPORTS);
+        assertEquals(1, dataEpoch.current());
+
+        versions.put(DataEpoch.IMPORTS, 3L);
+        dataEpoch.poll();
+        assertEquals(1, dataEpoch.current());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    private void stubVersions() throws Exception {
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (Map.Entry<String, Long> e : versions.entrySet()) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getString(1)).thenReturn(e.getKey());
+                when(rs.getLong(2)).thenReturn(e.getValue());
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+    }
+}
@@ -0,0 +1,249 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.domain.MergedOrderPaymentEntity;
+import com.ecomanalyser.domain.OrderEntity;
+import com.ecomanalyser.domain.PaymentEntity;
+import com.ecomanalyser.event.MergedOrdersChangedEvent;
+import com.ecomanalyser.repository.MergedOrderPaymentRepository;
+import com.ecomanalyser.repository.OrderRepository;
+import com.ecomanalyser.repository.PaymentRepository;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@Slf4j
+class DataMergeServiceTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private PaymentRepository paymentRepository;
+
+    @Mock
+    private MergedOrderPaymentRepository mergedRepo;
+
+    @Mock
+    private MergedOrderCostService costService;
+
+    @Mock
+    private DailyOrderRollupService rollupService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private MonthlySummarySnapshots summarySnapshots;
+
+    @Mock
+    private TablePartitionService partitionService;
+
+    @InjectMocks
+    private DataMergeService dataMergeService;
+
+    // Rows persisted by the rebuild; the service releases each chunk's rows once it is written
+    private final List<MergedOrderPaymentEntity> saved = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        lenient().doAnswer(invocation -> saved.add(invocation.getArgument(0)))
+                .when(entityManager).persist(any(MergedOrderPaymentEntity.class));
+    }
+
+    @Test
+    void testRebuildMergedTableAggregatesPayments() {
+        OrderEntity order = new OrderEntity();
+        order.setOrderId("O1");
+        order.setSku("SKU1");
+        order.setQuantity(2);
+        order.setSellingPrice(new BigDecimal("150.00"));
+        order.setCustomerState("Delhi");
+        order.setOrderDateTime(LocalDateTime.of(2024, 1, 1, 9, 0));
+
+        LocalDateTime early = LocalDateTime.of(2024, 1, 5, 10, 0);
+        LocalDateTime late = LocalDateTime.of(2024, 1, 9, 18, 30);
+        when(orderRepository.findAll()).thenReturn(List.of(order));
+        when(paymentRepository.streamMergeColumns()).thenReturn(Stream.of(
+                row("O1", null, null, new BigDecimal("100.50"), null, early, null, "SHIPPED", "T1", "A", null),
+                row("O1", null, null, null, new BigDecimal("-20.25"), late, early, "RTO", "T2", "B", LocalDate.of(2024, 1, 3)),
+                row("O2", "SKU2", 3, new BigDecimal("50"), null, null, null, "unknown", " ", null, null),
+                row("O2", "SKU3", 4, new BigDecimal("10"), null, early, null, "DELIVERED", "T3", null, null)
+        ));
+
+        // January's rows come out different; a stale March disappears
+        when(mergedRepo.monthFingerprints()).thenReturn(
+                List.of(new Object[]{202401, BigDecimal.ONE}, new Object[]{202403, BigDecimal.ONE}),
+                List.<Object[]>of(new Object[]{202401, BigDecimal.TEN}));
+
+        int rows = dataMergeService.rebuildMergedTable();
+
+        assertEquals(2, rows);
+        verify(rollupService).rebuildAll();
+        verify(summarySnapshots).evict(Set.of(202401, 202403));
+        verify(eventPublisher).publishEvent(MergedOrdersChangedEvent.rebuilt());
+        Map<String, MergedOrderPaymentEntity> merged = captureSaved();
+
+        MergedOrderPaymentEntity o1 = merged.get("O1");
+        assertEquals(0, new BigDecimal("80.25").compareTo(o1.getSettlementAmount()));
+        assertEquals(0, new BigDecimal("300.00").compareTo(o1.getOrderAmount()));
+        assertEquals("RTO", o1.getOrderStatus());
+        assertEquals("SKU1", o1.getSkuId());
+        assertEquals(2, o1.getQuantity());
+        assertEquals("Delhi", o1.getState());
+        assertEquals(LocalDate.of(2024, 1, 9), o1.getPaymentDate());
+        assertEquals(LocalDate.of(2024, 1, 5), o1.getOrderDate());
+        assertEquals("T2", o1.getTransactionId());
+        assertEquals("B", o1.getPriceType());
+        assertEquals(LocalDate.of(2024, 1, 3), o1.getDispatchDate());
+
+        // Payment-only order: SKU and quantity from the first payment that has them
+        MergedOrderPaymentEntity o2 = merged.get("O2");
+        assertEquals(0, new BigDecimal("60").compareTo(o2.getSettlementAmount()));
+        assertNull(o2.getOrderAmount());
+        assertEquals("DELIVERED", o2.getOrderStatus());
+        assertEquals("SKU2", o2.getSkuId());
+        assertEquals(3, o2.getQuantity());
+        assertEquals("T3", o2.getTransactionId());
+    }
+
+    @Test
+    void testRebuildMergedTableStatusFallbacks() {
+        OrderEntity withReason = new OrderEntity();
+        withReason.setOrderId("O1");
+        withReason.setReasonForCreditEntry("CANCELLED");
+        OrderEntity withoutPayments = new OrderEntity();
+        withoutPayments.setOrderId("O2");
+
+        LocalDateTime time = LocalDateTime.of(2024, 3, 1, 12, 0);
+        when(orderRepository.findAll()).thenReturn(List.of(withReason, withoutPayments));
+        when(paymentRepository.streamMergeColumns()).thenReturn(Stream.of(
+                row("O1", null, null, null, null, time, null, "Unknown", null, null, null),
+                // Undated rows win the status scan, ties on time keep the first row
+                row("O3", null, null, null, null, time, null, "SHIPPED", null, null, null),
+                row("O3", null, null, null, null, time, null, "DELIVERED", null, null, null),
+                row("O3", null, null, null, null, null, null, "RTO", null, null, null)
+        ));
+
+        dataMergeService.rebuildMergedTable();
+
+        Map<String, MergedOrderPaymentEntity> merged = captureSaved();
+        assertEquals(3, merged.size());
+        assertEquals("CANCELLED", merged.get("O1").getOrderStatus());
+        assertEquals("UNKNOWN", merged.get("O2").getOrderStatus());
+        assertEquals(0, BigDecimal.ZERO.compareTo(merged.get("O2").getSettlementAmount()));
+        assertNull(merged.get("O2").getPaymentDate());
+        assertEquals("RTO", merged.get("O3").getOrderStatus());
+    }
+
+    @Test
+    void testRebuildLeavesOutDetachedMonths() {
+        OrderEntity archived = new OrderEntity();
+        archived.setOrderId("O1");
+        archived.setOrderDateTime(LocalDateTime.of(2024, 1, 10, 9, 0));
+        OrderEntity current = new OrderEntity();
+        current.setOrderId("O2");
+        current.setOrderDateTime(LocalDateTime.of(2024, 2, 10, 9, 0));
+        when(orderRepository.findAll()).thenReturn(List.of(archived, current));
+        when(paymentRepository.streamMergeColumns()).thenReturn(Stream.empty());
+        when(partitionService.detachedMonths()).thenReturn(Set.of(YearMonth.of(2024, 1)));
+
+        assertEquals(1, dataMergeService.rebuildMergedTable());
+
+        assertEquals(Set.of("O2"), captureSaved().keySet());
+    }
+
+    /**
+     * Heap comparison between hydrated payment entities and the compact table.
+     * Run with: mvn test -Dtest=DataMergeServiceTest -Dbenchmark=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkCompactPaymentMemory() {
+        int rows = 1_000_000;
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+        long before = usedHeap();
+        List<PaymentEntity> entities = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            entities.add(benchmarkPayment(i, base));
+        }
+        long entityBytes = usedHeap() - before;
+        entities = null;
+
+        // Fed row by row as the repository stream would, so no entity list is retained
+        before = usedHeap();
+        CompactPaymentTable table = new CompactPaymentTable();
+        for (int i = 0; i < rows; i++) {
+            PaymentEntity p = benchmarkPayment(i, base);
+            table.add(p.getOrderId(), p.getSku(), p.getQuantity(), p.getFinalSettlementAmount(), p.getAmount(),
+                    p.getPaymentDateTime(), p.getOrderDateTime(), p.getOrderStatus(), p.getTransactionId(),
+                    p.getPriceType(), p.getDispatchDate());
+        }
+        table.seal();
+        long compactBytes = usedHeap() - before;
+
+        log.info("payments={} entities={} MB compact={} MB", rows, entityBytes >> 20, compactBytes >> 20);
+        assertEquals(rows / 2, table.orderCount());
+    }
+
+    private static PaymentEntity benchmarkPayment(int i, LocalDateTime base) {
+        PaymentEntity p = new PaymentEntity();
+        p.setOrderId("ORD" + (i / 2));
+        p.setSku("SKU" + (i % 500));
+        p.setQuantity(1 + i % 3);
+        p.setFinalSettlementAmount(BigDecimal.valueOf(i % 10_000, 2));
+        p.setPaymentDateTime(base.plusMinutes(i));
+        p.setOrderDateTime(base.plusMinutes(i / 2));
+        p.setOrderStatus(i % 7 == 0 ? "RTO" : "DELIVERED");
+        p.setTransactionId("TX" + i);
+        p.setPriceType("Regular");
+        return p;
+    }
+
+    private Map<String, MergedOrderPaymentEntity> captureSaved() {
+        verify(mergedRepo).deleteAllInBatch();
+        verify(mergedRepo, never()).saveAll(anyList());
+        verify(entityManager).flush();
+        return saved.stream()
+                .collect(Collectors.toMap(MergedOrderPaymentEntity::getOrderId, Function.identity()));
+    }
+
+    private static Object[] row(String orderId, String sku, Integer qty, BigDecimal finalSettlement, BigDecimal amount,
+                                LocalDateTime paymentDateTime, LocalDateTime orderDateTime, String status,
+                                String transactionId, String priceType, LocalDate dispatchDate) {
+        return new Object[]{orderId, sku, qty, finalSettlement, amount, paymentDateTime, orderDateTime,
+                status, transactionId, priceType, dispatchDate};
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
@@ -0,0 +1,191 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.domain.MergeRebuildLockEntity;
+import com.ecomanalyser.repository.MergeRebuildLockRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MergeRebuildCoordinatorTest {
+
+    @Mock
+    private DataMergeService dataMergeService;
+
+    @Mock
+    private MergeRebuildLockRepository lockRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private MergeRebuildCoordinator coordinator;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        coordinator = new MergeRebuildCoordinator(dataMergeService, lockRepository, transactionManager,
+                meterRegistry, "node-a", 60, 10, 5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        coordinator.shutdown();
+    }
+
+    @Test
+    void testRebuildAcquiresAndReleasesLease() {
+        when(lockRepository.tryAcquire(MergeRebuildCoordinator.LOCK_NAME, "node-a", 60)).thenReturn(1);
+        when(dataMergeService.rebuildMergedTable(any(MergeRebuildJob.class))).thenReturn(12);
+        when(lockRepository.fence(MergeRebuildCoordinator.LOCK_NAME, "node-a", 60)).thenReturn(1);
+
+        assertEquals(12, coordinator.rebuild());
+
+        verify(lockRepository).release(MergeRebuildCoordinator.LOCK_NAME, "node-a", 12, "SUCCESS");
+        assertEquals(1, meterRegistry.get("merge.rebuild.lock.wait").tag("outcome", "acquired").timer().count());
+        assertEquals(0.0, meterRegistry.get("merge.rebuild.lock.held").tag("node", "node-a").gauge().value());
+    }
+
+    @Test
+    void testRebuildReleasesLeaseAsFailedOnError() {
+        when(lockRepository.tryAcquire(MergeRebuildCoordinator.LOCK_NAME, "node-a", 60)).thenReturn(1);
+        when(dataMergeService.rebuildMergedTable(any(MergeRebuildJob.class))).thenThrow(new IllegalStateException("boom"));
+
+        assertThrows(IllegalStateException.class, () -> coordinator.rebuild());
+
+        verify(lockRepository).release(MergeRebuildCoordinator.LOCK_NAME, "node-a", null, "FAILED");
+    }
+
+    @Test
+    void testRebuildFailsWhenLeaseWasLostBeforeCommit() {
+        when(lockRepository.tryAcquire(MergeRebuildCoordinator.LOCK_NAME, "node-a", 60)).thenReturn(1);
+        when(dataMergeService.rebuildMergedTable(any(MergeRebuildJob.class))).thenReturn(12);
+        // Another node took the lease over while this one was writing
+        when(lockRepository.fence(MergeRebuildCoordinator.LOCK_NAME, "node-a", 60)).thenReturn(0);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> coordinator.rebuild());
+
+        assertTrue(e.getMessage().contains("lease lost"), e.getMessage());
+        verify(lockRepository).release(MergeRebuildCoordinator.LOCK_NAME, "node-a", null, "FAILED");
+    }
+
+    @Test
+    void testRebuildJoinsRemoteHolder() {
+        when(lockRepository.tryAcquire(MergeRebuildCoordinator.LOCK_NAME, "node-a", 60)).thenReturn(0);
+        MergeRebuildLockEntity running = MergeRebuildLockEntity.builder()
+                .lockName(MergeRebuildCoordinator.LOCK_NAME).holder("node-b").generation(5).build();
+        MergeRebuildLockEntity finished = MergeRebuildLockEntity.builder()
+                .lockName(MergeRebuildCoordinator.LOCK_NAME).generation(6).lastStatus("SUCCESS").lastResult(42).build();
+        when(lockRepository.findById(MergeRebuildCoordinator.LOCK_NAME))
+                .thenReturn(Optional.of(running), Optional.of(finished));
+
+        assertEquals(42, coordinator.rebuild());
+
+        verify(dataMergeService, never()).rebuildMergedTable(any(MergeRebuildJob.class));
+        verify(lockRepository, never()).release(any(), any(), any(), any());
+        assertEquals(1, meterRegistry.get("merge.rebuild.lock.wait").tag("outcome", "joined_remote").timer().count());
+    }
+
+    @Test
+    void testConcurrentCallersShareOneRebuild() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(lockRepository.tryAcquire(MergeRebuildCoordinator.LOCK_NAME, "node-a", 60)).thenReturn(1);
+        when(dataMergeService.rebuildMergedTable(any(MergeRebuildJob.class))).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return 7;
+        });
+        when(lockRepository.fence(MergeRebuildCoordinator.LOCK_NAME, "node-a", 60)).thenReturn(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> leader = pool.submit(() -> coordinator.rebuild());
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<Integer> follower = pool.submit(() -> coordinator.rebuild());
+            // Give the follower time to attach to the in-flight rebuild
+            Thread.sleep(50);
+            release.countDown();
+
+            assertEquals(7, leader.get(5, TimeUnit.SECONDS));
+            assertEquals(7, follower.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+        verify(dataMergeService, times(1)).rebuildMergedTable(any(MergeRebuildJob.class));
+    }
+
+    @Test
+    void testSubmittedRebuildCanBeCancelled() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        when(lockRepository.tryAcquire(MergeRebuildCoordinator.LOCK_NAME, "node-a", 60)).thenReturn(1);
+        when(dataMergeService.rebuildMergedTable(any(MergeRebuildJob.class))).thenAnswer(invocation -> {
+            MergeRebuildJob job = invocation.getArgument(0);
+            started.countDown();
+            while (true) {
+                job.checkCancelled();
+                Thread.sleep(5);
+            }
+        });
+
+        MergeRebuildJob job = coordinator.submit();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        // A second submit attaches to the running job
+        assertSame(job, coordinator.submit());
+        assertTrue(coordinator.cancel(job.getId()));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!job.isFinished() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(MergeRebuildJob.Phase.CANCELLED, job.getPhase());
+        assertFalse(coordinator.cancel(job.getId()));
+        verify(lockRepository, timeout(5000)).release(MergeRebuildCoordinator.LOCK_NAME, "node-a", null, "CANCELLED");
+        assertTrue(coordinator.getJob(job.getId()).isPresent());
+    }
+
+    @Test
+    void testImportRebuildsRunInTheBackgroundAndFoldIntoOne() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> threads = new CopyOnWriteArrayList<>();
+        when(lockRepository.tryAcquire(MergeRebuildCoordinator.LOCK_NAME, "node-a", 60)).thenReturn(1);
+        when(dataMergeService.rebuildMergedTable(any(MergeRebuildJob.class))).thenAnswer(invocation -> {
+            threads.add(Thread.currentThread().getName());
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return 3;
+        });
+        when(lockRepository.fence(MergeRebuildCoordinator.LOCK_NAME, "node-a", 60)).thenReturn(1);
+
+        // Returns at once; the rebuild runs on the rebuild executor
+        coordinator.rebuildAfterCommit();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        // Asked for while it runs: one more rebuild, started once it ends
+        coordinator.rebuildAfterCommit();
+        coordinator.rebuildAfterCommit();
+        release.countDown();
+
+        verify(dataMergeService, timeout(5000).times(2)).rebuildMergedTable(any(MergeRebuildJob.class));
+        verify(lockRepository, timeout(5000).times(2)).release(MergeRebuildCoordinator.LOCK_NAME, "node-a", 3, "SUCCESS");
+        assertEquals(List.of("merge-rebuild", "merge-rebuild"), threads);
+    }
+}
@@ -0,0 +1,135 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.domain.MergedOrderPaymentEntity;
+import com.ecomanalyser.event.SkuPricesChangedEvent;
+import com.ecomanalyser.repository.MergedOrderPaymentRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MergedOrderCostServiceTest {
+
+    @Mock
+    private SkuPriceCatalog priceCatalog;
+
+    @Mock
+    private MergedOrderPaymentRepository mergedRepo;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private DailyOrderRollupService rollupService;
+
+    @Mock
+    private MonthlySummarySnapshots summarySnapshots;
+
+    @InjectMocks
+    private MergedOrderCostService costService;
+
+    @Test
+    void testStampDeliveredProfitAndLoss() {
+        MergedOrderPaymentEntity profit = row("SKU1", 2, "500.00", "DELIVERED");
+        MergedOrderCostService.stamp(profit, new BigDecimal("100.00"));
+        assertEquals(0, new BigDecimal("200.00").compareTo(profit.getCogs()));
+        assertEquals(0, new BigDecimal("300.00").compareTo(profit.getNetProfit()));
+        assertEquals(MergedOrderCostService.PROFIT, profit.getLossCategory());
+
+        MergedOrderPaymentEntity loss = row("SKU1", 3, "250.00", "DELIVERED");
+        MergedOrderCostService.stamp(loss, new BigDecimal("100.00"));
+        assertEquals(0, new BigDecimal("-50.00").compareTo(loss.getNetProfit()));
+        assertEquals(MergedOrderCostService.LOSS, loss.getLossCategory());
+    }
+
+    @Test
+    void testStampReturnsAndUnpricedRows() {
+        MergedOrderPaymentEntity received = row("SKU1", 1, "-80.00", "RTO_COMPLETE");
+        MergedOrderCostService.stamp(received, new BigDecimal("100.00"));
+        assertEquals(MergedOrderCostService.RETURN_RECEIVED, received.getLossCategory());
+
+        MergedOrderPaymentEntity notReceived = row("SKU1", 1, "-80.00", "CANCELLED");
+        MergedOrderCostService.stamp(notReceived, new BigDecimal("100.00"));
+        assertEquals(MergedOrderCostService.RETURN_NOT_RECEIVED, notReceived.getLossCategory());
+
+        MergedOrderPaymentEntity unsettled = row("SKU1", 1, "0", "SHIPPED");
+        MergedOrderCostService.stamp(unsettled, new BigDecimal("100.00"));
+        assertEquals(MergedOrderCostService.NO_SETTLEMENT, unsettled.getLossCategory());
+
+        MergedOrderPaymentEntity unpriced = row("SKU1", 1, "500.00", "DELIVERED");
+        MergedOrderCostService.stamp(unpriced, BigDecimal.ZERO);
+        assertEquals(MergedOrderCostService.UNPRICED, unpriced.getLossCategory());
+        assertNull(unpriced.getPurchasePrice());
+        assertNull(unpriced.getNetProfit());
+
+        MergedOrderPaymentEntity noQuantity = row("SKU1", null, "500.00", "DELIVERED");
+        MergedOrderCostService.stamp(noQuantity, new BigDecimal("100.00"));
+        assertEquals(MergedOrderCostService.UNPRICED, noQuantity.getLossCategory());
+    }
+
+    @Test
+    void testRestampChangedPricesOnlyTouchesAffectedSkus() {
+        when(priceCatalog.loadSnapshot()).thenReturn(SkuPriceCatalog.Snapshot.fromRows(1, List.of(
+                price("A", "10.00"), price("B", "25.00"), price("D", "5.00"))));
+        Set<String> requested = new HashSet<>();
+        when(mergedRepo.restampSkus(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> skus = invocation.getArgument(0);
+            requested.addAll(skus);
+            return 4;
+        });
+        when(mergedRepo.findPeriodsBySkuIdIn(anyCollection())).thenReturn(List.of(202401, 202402));
+
+        // A unchanged, B repriced, C removed, D added
+        Map<String, BigDecimal> before = Map.of(
+                "A", new BigDecimal("10.0"), "B", new BigDecimal("20.00"), "C", new BigDecimal("7.00"));
+        int restamped = costService.restampChangedPrices(before);
+
+        // One UPDATE for the batch; no rows are loaded into the session
+        assertEquals(4, restamped);
+        assertEquals(Set.of("B", "C", "D"), requested);
+        verify(mergedRepo, times(1)).restampSkus(anyCollection());
+        verify(mergedRepo, never()).saveAll(anyCollection());
+        verify(rollupService).refreshSkus(Set.of("B", "C", "D"));
+        verify(summarySnapshots).evict(Set.of(202401, 202402));
+        verify(eventPublisher).publishEvent(new SkuPricesChangedEvent(Set.of("B", "C", "D")));
+    }
+
+    @Test
+    void testRestampSplitsLargeSkuSetsIntoBatches() {
+        Set<String> skus = new HashSet<>();
+        for (int i = 0; i < 1200; i++) skus.add("SKU" + i);
+        when(mergedRepo.restampSkus(anyCollection())).thenReturn(10);
+
+        assertEquals(30, costService.restampSkus(skus));
+
+        verify(mergedRepo, times(3)).restampSkus(anyCollection());
+    }
+
+    private static MergedOrderPaymentEntity row(String sku, Integer quantity, String settlement, String status) {
+        return MergedOrderPaymentEntity.builder()
+                .orderId("O-" + sku)
+                .skuId(sku)
+                .quantity(quantity)
+                .settlementAmount(new BigDecimal(settlement))
+                .orderStatus(status)
+                .build();
+    }
+
+    private static Object[] price(String sku, String price) {
+        return new Object[] { sku, new BigDecimal(price), null, null };
+    }
+}
@@ -0,0 +1,105 @@
+package com.ecomanalyser.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MergedOrderCubeTest {
+
+    private static final LocalDate JAN_1 = LocalDate.of(2024, 1, 1);
+    private static final LocalDate JAN_2 = LocalDate.of(2024, 1, 2);
+    private static final LocalDate FEB_1 = LocalDate.of(2024, 2, 1);
+
+    private MergedOrderCube cube() {
+        // Added out of date order on purpose
+        return new MergedOrderCube.Builder()
+                .add(FEB_1, "A", "DELIVERED", "Delhi", 1, bd("100.00"), bd("40.00"), bd("60.00"), "PROFIT")
+                .add(JAN_2, "B", "RTO", "Goa", 2, bd("-30.50"), bd("20.00"), bd("-50.50"), "RETURN_RECEIVED")
+                .add(null, "U", "DELIVERED", null, 5, bd("10.00"), null, null, "UNPRICED")
+                .add(JAN_1, "A", "DELIVERED", "Delhi", 3, bd("90.00"), bd("120.00"), bd("-30.00"), "LOSS")
+                .add(JAN_1, null, null, null, null, null, null, null, null)
+                .build();
+    }
+
+    @Test
+    void testRowsAreSortedAndRangesAreInclusive() {
+        MergedOrderCube cube = cube();
+
+        assertEquals(5, cube.size());
+        assertEquals(JAN_1, cube.orderDate(cube.firstRow(null)));
+        assertEquals(2, cube.endRow(JAN_1) - cube.firstRow(JAN_1));
+        assertEquals(3, cube.endRow(LocalDate.of(2024, 1, 31)) - cube.firstRow(null));
+        assertEquals(cube.endRow(null), cube.firstRow(LocalDate.of(2024, 3, 1)));
+
+        MergedOrderCube.Aggregate all = cube.aggregate(null, null, null);
+        // Undated rows are outside every date range
+        assertEquals(4, all.getOrders());
+        assertEquals(6, all.getQuantity());
+        assertEquals(0, new BigDecimal("159.50").compareTo(all.getSettlement()));
+        assertEquals(0, new BigDecimal("190.00").compareTo(all.getRevenue()));
+        assertEquals(0, new BigDecimal("-20.50").compareTo(all.getNetProfit()));
+        assertEquals(0, new BigDecimal("180.00").compareTo(all.getCogs()));
+    }
+
+    @Test
+    void testCalendarCoversDatedRowsAndIsBuiltOnce() {
+        MergedOrderCube cube = cube();
+
+        CalendarIndex days = cube.calendar(AnalyticsService.Aggregation.DAY);
+        assertSame(days, cube.calendar(AnalyticsService.Aggregation.DAY));
+        // Jan 1 through Feb 1; the undated row does not widen it
+        assertEquals(32, days.size());
+        assertEquals(JAN_1, days.bucketDate(0));
+        assertEquals(2, cube.calendar(AnalyticsService.Aggregation.MONTH).size());
+        assertEquals(0, new MergedOrderCube.Builder().build().calendar(AnalyticsService.Aggregation.DAY).size());
+    }
+
+    @Test
+    void testScansReportRowsInRangeToTheListener() {
+        List<Long> scanned = new ArrayList<>();
+        MergedOrderCube cube = new MergedOrderCube.Builder()
+                .add(JAN_1, "A", "DELIVERED", "Delhi", 1, bd("10.00"), null, null, null)
+                .add(FEB_1, "A", "DELIVERED", "Delhi", 1, bd("10.00"), null, null, null)
+                .onScan(scanned::add)
+                .build();
+
+        cube.aggregate(JAN_1, JAN_2, null);
+        cube.groupBy(null, null, null, MergedOrderCube.Dimension.SKU);
+        cube.forEachRow(FEB_1, null, row -> { });
+        assertEquals(List.of(1L, 2L, 1L), scanned);
+    }
+
+    @Test
+    void testGroupByDimensionAndKey() {
+        MergedOrderCube cube = cube();
+
+        Map<String, MergedOrderCube.Aggregate> bySku = cube.groupBy(null, null,
+                row -> cube.settlementPaise(row) > 0, MergedOrderCube.Dimension.SKU);
+        assertEquals(Set.of("A"), bySku.keySet());
+        assertEquals(2, bySku.get("A").getOrders());
+        assertEquals(4, bySku.get("A").getQuantity());
+
+        Map<LocalDate, MergedOrderCube.Aggregate> byMonth = cube.groupBy(null, null, null,
+                row -> cube.orderDate(row).withDayOfMonth(1));
+        assertEquals(3, byMonth.get(JAN_1).getOrders());
+        assertEquals(1, byMonth.get(FEB_1).getOrders());
+
+        int delivered = cube.codeOf(MergedOrderCube.Dimension.STATUS, "DELIVERED");
+        assertEquals(2, cube.aggregate(null, null, row -> cube.statusCode(row) == delivered).getOrders());
+        assertEquals(MergedOrderCube.NO_MATCH, cube.codeOf(MergedOrderCube.Dimension.STATUS, "SHIPPED"));
+
+        assertEquals(new HashSet<>(List.of("A", "B", "U")), new HashSet<>(cube.values(MergedOrderCube.Dimension.SKU)));
+    }
+
+    private static BigDecimal bd(String value) {
+        return new BigDecimal(value);
+    }
+}
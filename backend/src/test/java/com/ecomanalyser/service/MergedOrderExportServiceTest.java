@@ -0,0 +1,44 @@
+package com.ecomanalyser.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MergedOrderExportServiceTest {
+
+    private final List<Object[]> rows = List.of(
+            new Object[] {"O-1", "SKU,1", "DELIVERED", LocalDate.of(2024, 5, 1), null, 2,
+                    new BigDecimal("500"), new BigDecimal("420.50"), "KA", "T-1"},
+            new Object[] {"O-2", "SKU-2", "RTO", null, null, 1, null, new BigDecimal("-80"), null, null});
+
+    @Test
+    void testNdjsonWritesOneObjectPerLine() throws Exception {
+        StringWriter out = new StringWriter();
+
+        assertEquals(2, MergedOrderExportService.writeNdjson(rows.iterator(), out));
+
+        String[] lines = out.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("{\"orderId\":\"O-1\",\"skuId\":\"SKU,1\",\"orderStatus\":\"DELIVERED\",\"orderDate\":\"2024-05-01\","
+                + "\"paymentDate\":null,\"quantity\":2,\"orderAmount\":500,\"settlementAmount\":420.50,\"state\":\"KA\","
+                + "\"transactionId\":\"T-1\"}", lines[0]);
+        assertTrue(lines[1].contains("\"settlementAmount\":-80"));
+    }
+
+    @Test
+    void testCsvQuotesValuesAndWritesHeader() throws Exception {
+        StringWriter out = new StringWriter();
+
+        assertEquals(2, MergedOrderExportService.writeCsv(rows.iterator(), out));
+
+        String[] lines = out.toString().split("\r\n");
+        assertEquals(String.join(",", MergedOrderExportService.COLUMNS), lines[0]);
+        assertEquals("O-1,\"SKU,1\",DELIVERED,2024-05-01,,2,500,420.50,KA,T-1", lines[1]);
+        assertEquals("O-2,SKU-2,RTO,,,1,,-80,,", lines[2]);
+    }
+}
@@ -0,0 +1,70 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.domain.MergedOrderPaymentEntity;
+import com.ecomanalyser.repository.MergedOrderPaymentRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MergedOrderPageServiceTest {
+
+    @Mock
+    private MergedOrderPaymentRepository mergedRepo;
+
+    @InjectMocks
+    private MergedOrderPageService pageService;
+
+    @Test
+    void testSearchPageReturnsCursorForNextPage() {
+        List<MergedOrderPaymentEntity> rows = new ArrayList<>();
+        rows.add(row("O-3", LocalDate.of(2024, 5, 3)));
+        rows.add(row("O-2", LocalDate.of(2024, 5, 2)));
+        rows.add(row("O-1", null));
+        when(mergedRepo.countSearch("%50\\%\\_off%")).thenReturn(7L);
+        when(mergedRepo.searchPage(eq("%50\\%\\_off%"), eq(LocalDate.of(9999, 12, 31)), eq(""), eq(2L), eq(3)))
+                .thenReturn(rows);
+
+        MergedOrderPageService.Page page = pageService.page(1, 2, " 50%_off ", null, MergedOrderPageService.CountMode.EXACT);
+
+        assertEquals(2, page.rows().size());
+        assertTrue(page.hasNext());
+        assertEquals(7L, page.totalRecords());
+        assertFalse(page.approximate());
+        assertArrayEquals(new String[] {"2024-05-02", "O-2"}, MergedOrderPageService.decodeCursor(page.nextCursor()));
+
+        // The cursor continues after the last row, without an offset
+        when(mergedRepo.findPage(LocalDate.of(2024, 5, 2), "O-2", 0L, 3)).thenReturn(List.of(rows.get(2)));
+        MergedOrderPageService.Page next = pageService.page(0, 2, null, page.nextCursor(), MergedOrderPageService.CountMode.NONE);
+        assertFalse(next.hasNext());
+        assertNull(next.nextCursor());
+        assertNull(next.totalRecords());
+        verify(mergedRepo, never()).count();
+    }
+
+    @Test
+    void testPageNumberPastTheEndShowsLastPage() {
+        when(mergedRepo.count()).thenReturn(5L);
+        when(mergedRepo.findPage(any(), eq(""), eq(4L), eq(3))).thenReturn(List.of(row("O-1", null)));
+
+        MergedOrderPageService.Page page = pageService.page(10, 2, "", null, MergedOrderPageService.CountMode.EXACT);
+
+        assertEquals(2, page.page());
+        assertEquals(1, page.rows().size());
+        assertEquals("0001-01-01", MergedOrderPageService.decodeCursor(MergedOrderPageService.encodeCursor(page.rows().get(0)))[0]);
+    }
+
+    private static MergedOrderPaymentEntity row(String orderId, LocalDate orderDate) {
+        return MergedOrderPaymentEntity.builder().orderId(orderId).orderDate(orderDate).build();
+    }
+}
@@ -0,0 +1,100 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.dto.PivotRequest;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MergedOrderPivotServiceTest {
+
+    private static final LocalDate JAN_5 = LocalDate.of(2024, 1, 5);
+    private static final LocalDate JAN_20 = LocalDate.of(2024, 1, 20);
+    private static final LocalDate FEB_3 = LocalDate.of(2024, 2, 3);
+
+    private final MergedOrderCubeService cubeService = mock(MergedOrderCubeService.class);
+    private final SkuPriceCatalog priceCatalog = mock(SkuPriceCatalog.class);
+    private final MergedOrderPivotService pivotService = new MergedOrderPivotService(cubeService, priceCatalog);
+
+    MergedOrderPivotServiceTest() {
+        when(cubeService.current()).thenReturn(new MergedOrderCube.Builder()
+                .add(JAN_5, "A", "DELIVERED", "KA", 1, bd("500.00"), bd("200.00"), bd("300.00"), MergedOrderCostService.PROFIT, "COD")
+                .add(JAN_20, "B", "DELIVERED", "KA", 2, bd("300.00"), bd("400.00"), bd("-100.00"), MergedOrderCostService.LOSS, "PREPAID")
+                .add(JAN_20, "C", "RTO_COMPLETE", null, 1, bd("-40.00"), bd("200.00"), bd("-240.00"), MergedOrderCostService.RETURN_RECEIVED, "COD")
+                .add(FEB_3, "A", "DELIVERED", "MH", 3, bd("900.00"), bd("600.00"), bd("300.00"), MergedOrderCostService.PROFIT, "COD")
+                .build());
+        when(priceCatalog.current()).thenReturn(SkuPriceCatalog.Snapshot.fromRows(1, List.of(
+                new Object[]{"A", null, "Shirts", new BigDecimal("200.00")},
+                new Object[]{"B", null, "Shirts", new BigDecimal("200.00")})));
+    }
+
+    @Test
+    void testGroupsByDimensionsWithFilters() {
+        Map<String, Object> result = pivotService.pivot(PivotRequest.builder()
+                .agg(AnalyticsService.Aggregation.MONTH)
+                .dimensions(List.of("orderDate", "skuGroup"))
+                .measures(List.of("count", "quantity", "profit"))
+                .filters(Map.of("priceType", List.of("COD")))
+                .build());
+
+        List<Map<String, Object>> rows = rows(result);
+        assertEquals(3, rows.size());
+        // Sorted by month, then group with ungrouped SKUs last
+        assertRow(rows.get(0), LocalDate.of(2024, 1, 1), "Shirts", 1L, 1L, "300.00");
+        assertRow(rows.get(1), LocalDate.of(2024, 1, 1), null, 1L, 1L, "-240.00");
+        assertRow(rows.get(2), LocalDate.of(2024, 2, 1), "Shirts", 1L, 3L, "300.00");
+        assertEquals(false, result.get("truncated"));
+    }
+
+    @Test
+    void testGroupingSetsTotalFromOneScan() {
+        Map<String, Object> result = pivotService.pivot(PivotRequest.builder()
+                .start(JAN_5).end(JAN_20)
+                .dimensions(List.of("state", "status"))
+                .measures(List.of("settlement"))
+                .groupingSets(List.of(List.of("state", "status"), List.of("state"), List.of()))
+                .orderBy("settlement")
+                .build());
+
+        List<Map<String, Object>> rows = rows(result);
+        // Both Karnataka orders are delivered
+        assertEquals(2 + 2 + 1, rows.size());
+        Map<String, Object> byState = rows.get(2);
+        assertEquals(List.of("state"), byState.get("grouping"));
+        assertEquals("KA", byState.get("state"));
+        assertMoney("800.00", byState.get("settlement"));
+        Map<String, Object> total = rows.get(4);
+        assertEquals(List.of(), total.get("grouping"));
+        assertMoney("760.00", total.get("settlement"));
+
+        assertThrows(IllegalArgumentException.class, () -> pivotService.pivot(PivotRequest.builder()
+                .dimensions(List.of("customerName")).build()));
+        assertThrows(IllegalArgumentException.class, () -> pivotService.pivot(PivotRequest.builder()
+                .dimensions(List.of("state")).groupingSets(List.of(List.of("sku"))).build()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> rows(Map<String, Object> result) {
+        return (List<Map<String, Object>>) result.get("rows");
+    }
+
+    private static void assertRow(Map<String, Object> row, LocalDate month, String group, long count, long quantity, String profit) {
+        assertEquals(Arrays.asList(month, group, count, quantity),
+                Arrays.asList(row.get("orderDate"), row.get("skuGroup"), row.get("count"), row.get("quantity")));
+        assertMoney(profit, row.get("profit"));
+    }
+
+    private static void assertMoney(String expected, Object actual) {
+        assertEquals(0, new BigDecimal(expected).compareTo((BigDecimal) actual), () -> expected + " != " + actual);
+    }
+
+    private static BigDecimal bd(String value) {
+        return new BigDecimal(value);
+    }
+}
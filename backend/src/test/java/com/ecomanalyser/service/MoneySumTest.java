@@ -0,0 +1,85 @@
+package com.ecomanalyser.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+class MoneySumTest {
+
+    @Test
+    void testSumKeepsBigDecimalScaleAndChecksOverflow() {
+        // Prints like the BigDecimal sum would
+        assertEquals(new BigDecimal("300"), new MoneySum().add(new BigDecimal("100")).add(new BigDecimal("200")).toBigDecimal());
+        assertEquals(new BigDecimal("300.50"), new MoneySum().add(new BigDecimal("100")).add(new BigDecimal("200.50")).toBigDecimal());
+        assertEquals(new BigDecimal("0.3"), new MoneySum().add(new BigDecimal("0.1")).add(new BigDecimal("0.2")).toBigDecimal());
+        assertEquals(BigDecimal.ZERO, new MoneySum().add((BigDecimal) null).toBigDecimal());
+        assertEquals(new BigDecimal("12.35"), new MoneySum().add(new BigDecimal("12.345")).toBigDecimal());
+
+        MoneySum partial = new MoneySum().addPaise(-250);
+        assertEquals(new BigDecimal("7.50"), new MoneySum().add(new BigDecimal("10")).add(partial).toBigDecimal());
+        assertEquals(-1, partial.signum());
+
+        MoneySum huge = new MoneySum().addPaise(Long.MAX_VALUE);
+        assertThrows(ArithmeticException.class, () -> huge.addPaise(1));
+    }
+
+    /**
+     * Sums one million settlement amounts with BigDecimal.add and with MoneySum, reporting
+     * throughput and bytes allocated by this thread. Run with:
+     * mvn test -Dtest=MoneySumTest -Dbenchmark=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkBigDecimalVersusPaise() {
+        int rows = 1_000_000;
+        BigDecimal[] amounts = new BigDecimal[rows];
+        for (int i = 0; i < rows; i++) {
+            amounts[i] = BigDecimal.valueOf(10_000 + (i * 37L) % 90_000, 2);
+        }
+
+        long[] paiseAmounts = new long[rows];
+        for (int i = 0; i < rows; i++) paiseAmounts[i] = CompactPaymentTable.toPaise(amounts[i]);
+
+        BigDecimal expected = measure("BigDecimal.add", rows, () -> {
+            BigDecimal total = BigDecimal.ZERO;
+            for (BigDecimal v : amounts) total = total.add(v);
+            return total;
+        });
+        assertEquals(expected, measure("MoneySum.add", rows, () -> {
+            MoneySum total = new MoneySum();
+            for (BigDecimal v : amounts) total.add(v);
+            return total.toBigDecimal();
+        }));
+        // Paise-native sources (cube, compact payment table) skip the conversion entirely
+        assertEquals(expected, measure("MoneySum.addPaise", rows, () -> {
+            MoneySum total = new MoneySum();
+            for (long p : paiseAmounts) total.addPaise(p);
+            return total.toBigDecimal();
+        }));
+    }
+
+    private static BigDecimal measure(String name, int rows, Supplier<BigDecimal> sum) {
+        // Warm up before measuring
+        for (int i = 0; i < 5; i++) sum.get();
+        long allocated = allocatedBytes();
+        long started = System.nanoTime();
+        BigDecimal result = sum.get();
+        report(name, rows, System.nanoTime() - started, allocatedBytes() - allocated);
+        return result;
+    }
+
+    private static void report(String name, int rows, long nanos, long bytes) {
+        log.info("{}: {} M adds/s, {} bytes allocated", name, String.format("%.1f", rows * 1_000.0 / nanos), bytes);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+}
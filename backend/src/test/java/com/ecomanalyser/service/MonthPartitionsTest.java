@@ -0,0 +1,48 @@
+package com.ecomanalyser.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MonthPartitionsTest {
+
+    @Test
+    void testSplitClipsFirstAndLastMonth() {
+        List<LocalDate[]> slices = MonthPartitions.split(LocalDate.of(2024, 1, 15), LocalDate.of(2024, 3, 10));
+
+        assertEquals(3, slices.size());
+        assertArrayEquals(new LocalDate[] {LocalDate.of(2024, 1, 15), LocalDate.of(2024, 1, 31)}, slices.get(0));
+        assertArrayEquals(new LocalDate[] {LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 29)}, slices.get(1));
+        assertArrayEquals(new LocalDate[] {LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 10)}, slices.get(2));
+        assertTrue(MonthPartitions.split(LocalDate.of(2024, 2, 1), LocalDate.of(2024, 1, 1)).isEmpty());
+    }
+
+    @Test
+    void testMapRunsMonthsOnWorkersAndKeepsOrder() {
+        MonthPartitions partitions = new MonthPartitions(2);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        try {
+            List<String> months = partitions.map(LocalDate.of(2023, 11, 20), LocalDate.of(2024, 2, 5), (from, to) -> {
+                threads.add(Thread.currentThread().getName());
+                return from + ".." + to;
+            });
+
+            assertEquals(List.of("2023-11-20..2023-11-30", "2023-12-01..2023-12-31",
+                    "2024-01-01..2024-01-31", "2024-02-01..2024-02-05"), months);
+            assertTrue(threads.stream().allMatch(name -> name.startsWith("analytics-partition-")));
+            assertTrue(threads.size() <= 2);
+
+            // A single month stays on the caller
+            String caller = Thread.currentThread().getName();
+            assertEquals(caller, partitions.map(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31),
+                    (from, to) -> Thread.currentThread().getName()).get(0));
+        } finally {
+            partitions.shutdown();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.domain.MonthlySummarySnapshotEntity;
+import com.ecomanalyser.repository.MonthlySummarySnapshotRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MonthlySummarySnapshotsTest {
+
+    @Mock
+    private MonthlySummarySnapshotRepository repository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private MonthlySummarySnapshots snapshots;
+
+    private final MergedOrderCube cube = new MergedOrderCube.Builder()
+            .add(LocalDate.of(2024, 1, 5), "A", "DELIVERED", "Goa", 1, new BigDecimal("100.00"), new BigDecimal("40.00"), new BigDecimal("60.00"), "PROFIT")
+            .add(LocalDate.of(2024, 3, 5), "A", "DELIVERED", "Goa", 1, new BigDecimal("80.00"), new BigDecimal("40.00"), new BigDecimal("40.00"), "PROFIT")
+            .build();
+
+    @Test
+    void testReadsTheClosedMonthsOfAYearInOneLookup() {
+        when(repository.findAllById(anyIterable())).thenReturn(List.of(MonthlySummarySnapshotEntity.builder()
+                .period(202401).orderCount(1).revenuePaise(10000).deliveredProfitPaise(6000).build()));
+
+        List<YearMonth> months = new ArrayList<>();
+        for (int month = 1; month <= 12; month++) months.add(YearMonth.of(2024, month));
+        months.add(YearMonth.now());
+        Map<YearMonth, DashboardAccumulator.SummaryTotals> found = snapshots.find(months);
+
+        // The month in progress is never looked up
+        ArgumentCaptor<Iterable<Integer>> periods = ArgumentCaptor.forClass(Iterable.class);
+        verify(repository, times(1)).findAllById(periods.capture());
+        List<Integer> requested = new ArrayList<>();
+        periods.getValue().forEach(requested::add);
+        assertEquals(12, requested.size());
+        assertEquals(Set.of(YearMonth.of(2024, 1)), found.keySet());
+        assertEquals(new BigDecimal("60.00"), found.get(YearMonth.of(2024, 1)).toMap().get("netIncome"));
+    }
+
+    @Test
+    void testStoresMissingClosedMonthsAfterALoad() {
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), any())).thenReturn(List.of(3L));
+        when(repository.findAllById(anyIterable())).thenReturn(List.of(
+                MonthlySummarySnapshotEntity.builder().period(202401).build()));
+
+        // A merge evicted January; it is evicted again, then February and March are stored
+        snapshots.evict(Set.of(202401));
+        assertEquals(2, snapshots.afterLoad(3L, cube));
+
+        verify(repository, times(2)).deleteAllByIdInBatch(List.of(202401));
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), rows.capture());
+        assertEquals(List.of(202402, 202403), rows.getValue().stream().map(r -> r[0]).toList());
+        assertEquals(8000L, rows.getValue().get(1)[2]);
+    }
+
+    @Test
+    void testSkipsStoringWhenMergedOrdersMovedDuringTheLoad() {
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), any())).thenReturn(List.of(4L));
+
+        assertEquals(0, snapshots.afterLoad(3L, cube));
+
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void testChangedPeriodsComparesMonthFingerprints() {
+        List<Object[]> before = List.of(new Object[]{202401, BigDecimal.ONE}, new Object[]{202402, BigDecimal.TEN},
+                new Object[]{202403, BigDecimal.ONE});
+        List<Object[]> after = List.of(new Object[]{202401, BigDecimal.ONE}, new Object[]{202402, BigDecimal.ONE},
+                new Object[]{202404, BigDecimal.ONE});
+
+        assertEquals(Set.of(202402, 202403, 202404), MonthlySummarySnapshots.changedPeriods(before, after));
+    }
+}
@@ -0,0 +1,83 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.config.QueryBudget;
+import com.ecomanalyser.config.SqlStatementCounter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OperationMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final OperationMetrics metrics = new OperationMetrics(registry, new QueryBudget(registry, 50, 25, 10));
+    private final SqlStatementCounter statements = new SqlStatementCounter();
+
+    @Test
+    void testRecordsRowsAndStatementsOfNestedOperations() throws Throwable {
+        Map<String, DistributionStatisticConfig> distributions = new HashMap<>();
+        registry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                distributions.put(id.getName(), config);
+                return config;
+            }
+        });
+        List<String> result = metrics.record("AnalyticsService", "outer", () -> {
+            OperationMetrics.scanned(10);
+            statements.inspect("select 1");
+            metrics.record("SkuGroupService", "inner", () -> {
+                OperationMetrics.scanned(5);
+                statements.inspect("select 2");
+                return Map.of("rows", List.of(1, 2), "total", 2);
+            });
+            return List.of("a", "b", "c");
+        });
+        assertEquals(3, result.size());
+
+        assertEquals(15, summary("service.operation.rows.scanned", "outer").totalAmount());
+        assertEquals(2, summary("service.operation.queries", "outer").totalAmount());
+        assertEquals(3, summary("service.operation.rows.returned", "outer").totalAmount());
+        assertEquals(5, summary("service.operation.rows.scanned", "inner").totalAmount());
+        assertEquals(1, summary("service.operation.queries", "inner").totalAmount());
+        assertEquals(2, summary("service.operation.rows.returned", "inner").totalAmount());
+        assertEquals(1, registry.get("service.operation").tag("method", "outer").tag("outcome", "success").timer().count());
+
+        // Only the timer publishes histogram buckets, bounded to its expected range
+        DistributionStatisticConfig timer = distributions.get("service.operation");
+        assertTrue(timer.isPublishingHistogram());
+        assertEquals(Duration.ofMillis(1).toNanos(), timer.getMinimumExpectedValueAsDouble());
+        assertEquals(Duration.ofSeconds(60).toNanos(), timer.getMaximumExpectedValueAsDouble());
+        assertFalse(Boolean.TRUE.equals(distributions.get("service.operation.rows.scanned").isPercentileHistogram()));
+        assertFalse(Boolean.TRUE.equals(distributions.get("service.operation.queries").isPercentileHistogram()));
+
+        // Outside an operation scans are not attributed to anything
+        OperationMetrics.scanned(100);
+        assertEquals(15, summary("service.operation.rows.scanned", "outer").totalAmount());
+    }
+
+    @Test
+    void testFailuresAreTimedWithErrorOutcome() {
+        assertThrows(IllegalStateException.class, () -> metrics.record("DataMergeService", "rebuildMergedTable", () -> {
+            throw new IllegalStateException("boom");
+        }));
+        assertEquals(1, registry.get("service.operation").tag("outcome", "error").timer().count());
+        // No result, so no returned rows
+        assertNull(registry.find("service.operation.rows.returned").tag("method", "rebuildMergedTable").summary());
+        assertEquals(-1, OperationMetrics.rowsReturned("text"));
+        assertEquals(42, OperationMetrics.rowsReturned(42));
+    }
+
+    private DistributionSummary summary(String name, String method) {
+        return registry.get(name).tag("method", method).summary();
+    }
+}
@@ -0,0 +1,65 @@
+package com.ecomanalyser.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryCoalescerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final QueryCoalescer coalescer = new QueryCoalescer(registry);
+
+    @Test
+    void testConcurrentIdenticalCallsShareOneComputation() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() ->
+                coalescer.coalesce("summary", () -> {
+                    runs.incrementAndGet();
+                    started.countDown();
+                    await(release);
+                    return "result";
+                }, 2024, 1));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<String> follower = CompletableFuture.supplyAsync(() ->
+                coalescer.coalesce("summary", () -> "own " + runs.incrementAndGet(), 2024, 1));
+        // Different arguments never join the flight
+        assertEquals("other", coalescer.coalesce("summary", () -> "other", 2024, 2));
+
+        while (registry.find("analytics.coalesce.calls").tag("role", "coalesced").counter() == null) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        assertEquals("result", leader.get(5, TimeUnit.SECONDS));
+        assertEquals("result", follower.get(5, TimeUnit.SECONDS));
+        assertEquals(1, runs.get());
+        assertEquals(0, coalescer.inFlightCount());
+        assertEquals(1, registry.get("analytics.coalesce.wait").timer().count());
+    }
+
+    @Test
+    void testFailureReachesEveryCallerAndIsNotKept() {
+        assertThrows(IllegalStateException.class, () -> coalescer.coalesce("summary", () -> {
+            throw new IllegalStateException("db down");
+        }, 2024, 1));
+        assertEquals("ok", coalescer.coalesce("summary", () -> "ok", 2024, 1));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.domain.ReturnTrackingEntity;
+import com.ecomanalyser.repository.ReturnTrackingRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.ecomanalyser.config.QueryCountAssertions.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ReturnTrackingServiceTest {
+
+    private final ReturnTrackingRepository trackingRepository = countingMock(ReturnTrackingRepository.class);
+    private final ReturnTrackingService service = new ReturnTrackingService();
+
+    ReturnTrackingServiceTest() {
+        ReflectionTestUtils.setField(service, "returnTrackingRepository", trackingRepository);
+    }
+
+    @Test
+    void testSyncUpsertsAllReturnsInOneStatement() throws Exception {
+        when(trackingRepository.upsertFromMergedOrders()).thenReturn(List.<Object[]>of(new Object[]{2499L, 1L}));
+
+        // However many returns there are, nothing is looked up or saved entity by entity
+        Map<String, Object> result = assertMaxQueries(1, service::syncReturnOrders);
+
+        assertEquals(true, result.get("success"));
+        assertEquals(2499, result.get("addedCount"));
+        assertEquals(1, result.get("updatedCount"));
+        assertEquals(2500, result.get("totalProcessed"));
+        verify(trackingRepository, never()).saveAll(any());
+        verify(trackingRepository, never()).findByOrderId(any());
+    }
+
+    @Test
+    void testCountsEveryEntityOfABatchSave() {
+        // saveAll of IDENTITY entities inserts row by row, so the mock counts it that way too
+        assertThrows(AssertionError.class, () -> assertMaxQueries(1, () -> trackingRepository.saveAll(
+                List.of(new ReturnTrackingEntity(), new ReturnTrackingEntity()))));
+    }
+}
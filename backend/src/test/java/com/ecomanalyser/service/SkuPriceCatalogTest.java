@@ -0,0 +1,89 @@
+package com.ecomanalyser.service;
+
+import com.ecomanalyser.event.SkuPricesChangedEvent;
+import com.ecomanalyser.repository.SkuPriceRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SkuPriceCatalogTest {
+
+    @Mock
+    private SkuPriceRepository skuPriceRepository;
+
+    @Mock
+    private DataEpoch dataEpoch;
+
+    @InjectMocks
+    private SkuPriceCatalog catalog;
+
+    @Test
+    void testSnapshotPriceRules() {
+        SkuPriceCatalog.Snapshot snapshot = SkuPriceCatalog.Snapshot.fromRows(1, List.of(
+                row("A", "10.00", "G1", "50.00"),
+                row("B", "20.00", "G2", "0"),
+                row("C", "0", null, null),
+                row("D", null, "G1", "50.00"),
+                row("E", "15.00", null, null)));
+
+        // Analytics rule: positive group price, then positive SKU price
+        assertEquals(new BigDecimal("50.00"), snapshot.purchasePrice("A"));
+        assertEquals(new BigDecimal("20.00"), snapshot.purchasePrice("B"));
+        assertEquals(BigDecimal.ZERO, snapshot.purchasePrice("C"));
+        assertEquals(BigDecimal.ZERO, snapshot.purchasePrice("missing"));
+
+        // Assigned rule: a grouped SKU always takes its group's price
+        assertEquals(new BigDecimal("0"), snapshot.assignedPrice("B"));
+        assertEquals(new BigDecimal("15.00"), snapshot.assignedPrice("E"));
+
+        assertEquals(Optional.of("G1"), snapshot.groupName("D"));
+        assertEquals(Optional.empty(), snapshot.groupName("E"));
+        assertEquals(Optional.of(new BigDecimal("50.00")), snapshot.groupPrice("G1"));
+        assertEquals(BigDecimal.ZERO, snapshot.skuPrice("D"));
+
+        Map<String, BigDecimal> prices = snapshot.purchasePrices();
+        assertEquals(Set.of("A", "B", "D", "E"), prices.keySet());
+    }
+
+    @Test
+    void testCatalogLoadsOnceAndSwapsOnChange() {
+        when(skuPriceRepository.findPriceCatalogRows())
+                .thenReturn(List.<Object[]>of(row("A", "10.00", null, null)))
+                .thenReturn(List.<Object[]>of(row("A", "12.00", null, null)));
+
+        SkuPriceCatalog.Snapshot first = catalog.current();
+        assertSame(first, catalog.current());
+        assertEquals(new BigDecimal("10.00"), first.purchasePrice("A"));
+
+        catalog.onPricesChanged(new SkuPricesChangedEvent(Set.of("A")));
+
+        SkuPriceCatalog.Snapshot second = catalog.current();
+        assertTrue(second.getVersion() > first.getVersion());
+        assertEquals(new BigDecimal("12.00"), second.purchasePrice("A"));
+        // Readers holding the old snapshot keep a consistent view
+        assertEquals(new BigDecimal("10.00"), first.purchasePrice("A"));
+        verify(skuPriceRepository, times(2)).findPriceCatalogRows();
+        verify(dataEpoch).bump();
+    }
+
+    private static Object[] row(String sku, String skuPrice, String groupName, String groupPrice) {
+        return new Object[] {
+                sku,
+                skuPrice != null ? new BigDecimal(skuPrice) : null,
+                groupName,
+                groupPrice != null ? new BigDecimal(groupPrice) : null
+        };
+    }
+}
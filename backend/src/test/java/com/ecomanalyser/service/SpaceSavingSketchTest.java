@@ -0,0 +1,67 @@
+package com.ecomanalyser.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpaceSavingSketchTest {
+
+    @Test
+    void testSmallDaysMergeExactly() {
+        SpaceSavingSketch day1 = SpaceSavingSketch.ofExact(4, new int[] {1, 2, 3}, new long[] {5, 9, 1}, 3);
+        SpaceSavingSketch day2 = SpaceSavingSketch.ofExact(4, new int[] {3, 4}, new long[] {7, 2}, 2);
+
+        List<SpaceSavingSketch.Counter> top = day1.merge(day2).top(2);
+
+        assertEquals(List.of(new SpaceSavingSketch.Counter(2, 9, 0), new SpaceSavingSketch.Counter(3, 8, 0)), top);
+        assertTrue(day1.merge(day2).isGuaranteedTop(1, 2));
+    }
+
+    @Test
+    void testMergedBoundsContainTrueWeights() {
+        int skus = 500;
+        long[] truth = new long[skus];
+        Random random = new Random(7);
+        SpaceSavingSketch range = SpaceSavingSketch.empty(32);
+        for (int day = 0; day < 90; day++) {
+            int[] keys = new int[60];
+            long[] weights = new long[60];
+            for (int i = 0; i < keys.length; i++) {
+                // Skewed: low SKU codes sell far more
+                keys[i] = (int) Math.min(skus - 1, Math.abs(random.nextGaussian()) * 40 + i * 7 % 13);
+                weights[i] = 1 + random.nextInt(skus - keys[i]);
+            }
+            // One entry per key, as the leaderboard builds them
+            Map<Integer, Long> sums = new TreeMap<>();
+            for (int i = 0; i < keys.length; i++) sums.merge(keys[i], weights[i], Long::sum);
+            int n = 0;
+            for (var en : sums.entrySet()) {
+                keys[n] = en.getKey();
+                weights[n++] = en.getValue();
+                truth[en.getKey()] += en.getValue();
+            }
+            range = range.merge(SpaceSavingSketch.ofExact(32, keys, weights, n));
+        }
+
+        List<SpaceSavingSketch.Counter> top = range.top(10);
+        assertEquals(10, top.size());
+        for (SpaceSavingSketch.Counter c : top) {
+            assertTrue(c.lowerBound() <= truth[c.key()] && truth[c.key()] <= c.count(), "bounds of " + c);
+        }
+        for (int sku = 0; sku < skus; sku++) {
+            final int key = sku;
+            if (top.stream().noneMatch(c -> c.key() == key) && range.top(32).stream().noneMatch(c -> c.key() == key)) {
+                assertTrue(truth[sku] <= range.floor(), "floor covers " + sku);
+            }
+        }
+        // The true heaviest SKU is ranked first
+        int heaviest = 0;
+        for (int sku = 1; sku < skus; sku++) if (truth[sku] > truth[heaviest]) heaviest = sku;
+        assertEquals(heaviest, top.get(0).key());
+    }
+}
@@ -0,0 +1,44 @@
+package com.ecomanalyser.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.YearMonth;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TablePartitionServiceTest {
+
+    private static final TablePartitionService.Table MERGED_ORDERS = TablePartitionService.TABLES.get(0);
+
+    @Test
+    void testPartitionsAreNamedAndBoundedLikeTheMigration() throws Exception {
+        assertEquals("merged_orders_p202501", MERGED_ORDERS.partition(YearMonth.of(2025, 1)));
+        assertEquals("merged_orders_default", MERGED_ORDERS.defaultPartition());
+        assertEquals("FOR VALUES FROM ('2024-12-01') TO ('2025-01-01')", TablePartitionService.bounds(YearMonth.of(2024, 12)));
+
+        String migration;
+        try (InputStream in = getClass().getResourceAsStream("/db/migration/V6__partition_merged_orders.sql")) {
+            migration = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        assertTrue(migration.contains("'merged_orders_p' || to_char(partition_month, 'YYYYMM')"));
+        assertTrue(migration.contains("CREATE TABLE merged_orders_default PARTITION OF merged_orders DEFAULT"));
+        assertTrue(migration.contains("PARTITION BY RANGE (" + MERGED_ORDERS.column() + ")"));
+        assertFalse(migration.toUpperCase().contains("CASCADE"));
+    }
+
+    @Test
+    void testOnlyMergedOrdersIsPartitioned() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        TablePartitionService service = new TablePartitionService(jdbcTemplate, mock(PlatformTransactionManager.class), 3);
+
+        assertThrows(IllegalArgumentException.class, () -> service.partitions("orders"));
+        assertThrows(IllegalArgumentException.class, () -> service.detach("payments", YearMonth.of(2020, 1)));
+        assertThrows(IllegalArgumentException.class, () -> service.detach("merged_orders", YearMonth.now()));
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
@@ -89,7 +89,10 @@ const DataMerge: React.FC = () => {
   const [currentPage, setCurrentPage] = useState(0);
   const [pageSize, setPageSize] = useState(50);
   const [totalRecords, setTotalRecords] = useState(0);
-  const [totalPages, setTotalPages] = useState(0);
+  const [totalApproximate, setTotalApproximate] = useState(false);
+  const [hasNext, setHasNext] = useState(false);
+  // Keyset cursors of the pages visited so far; cursors[i] starts page i (null: first page)
+  const [cursors, setCursors] = useState<(string | null)[]>([null]);
   
   // Filters
   const [statusFilter, setStatusFilter] = useState<string>('');
@@ -109,7 +112,12 @@ const DataMerge: React.FC = () => {
     try {
       setLoading(true);
       
-      let url = `/api/data-merge/merged-data/paginated?page=${currentPage}&size=${pageSize}`;
+      // Estimated total, and the next page read through the cursor instead of an offset
+      let url = `/api/data-merge/merged-data/paginated?page=${currentPage}&size=${pageSize}&count=approx`;
+      const cursor = cursors[currentPage];
+      if (cursor) {
+        url += `&cursor=${encodeURIComponent(cursor)}`;
+      }
       
       // Add search query parameter if present
       if (searchTerm && searchTerm.trim()) {
@@ -126,25 +134,35 @@ const DataMerge: React.FC = () => {
       const response = await api.get(url);
       console.log('Response received:', response.data);
       
-      if (response.data.data && response.data.totalRecords !== undefined) {
+      if (Array.isArray(response.data.data)) {
         setMergedData(response.data.data);
-        setTotalRecords(response.data.totalRecords);
-        setTotalPages(Math.ceil(response.data.totalRecords / response.data.pageSize));
+        setTotalRecords(response.data.totalRecords ?? response.data.data.length);
+        setTotalApproximate(Boolean(response.data.totalRecordsApproximate));
+        setHasNext(Boolean(response.data.hasNext));
+        const nextCursor: string | null = response.data.nextCursor ?? null;
+        setCursors(previous => {
+          const known = previous.slice(0, currentPage + 1);
+          known[currentPage + 1] = nextCursor;
+          return known;
+        });
       } else if (Array.isArray(response.data)) {
         setMergedData(response.data);
         setTotalRecords(response.data.length);
-        setTotalPages(1);
+        setTotalApproximate(false);
+        setHasNext(false);
       } else {
         console.warn('Unexpected response structure:', response.data);
         setMergedData([]);
         setTotalRecords(0);
-        setTotalPages(0);
+        setTotalApproximate(false);
+        setHasNext(false);
       }
     } catch (error) {
       console.error('Error fetching merged data:', error);
       setMergedData([]);
       setTotalRecords(0);
-      setTotalPages(0);
+      setTotalApproximate(false);
+      setHasNext(false);
     } finally {
       setLoading(false);
     }
@@ -172,6 +190,7 @@ const DataMerge: React.FC = () => {
     setSourceFilter('');
     setSearchTerm('');
     setCurrentPage(0);
+    setCursors([null]);
   };
 
   const exportToCSV = () => {
@@ -375,6 +394,8 @@ const DataMerge: React.FC = () => {
                   onChange={(e) => {
                     console.log('Search term changed to:', e.target.value);
                     setSearchTerm(e.target.value);
+                    setCurrentPage(0);
+                    setCursors([null]);
                   }}
                   className="pl-10 pr-4 py-2 border border-gray-300 rounded-md focus:outline-none focus:ring-2 focus:ring-blue-500"
                 />
@@ -511,7 +532,7 @@ const DataMerge: React.FC = () => {
                     </button>
                     <button
                       onClick={() => setCurrentPage(currentPage + 1)}
-                      disabled={currentPage >= totalPages - 1}
+                      disabled={!hasNext}
                       className="ml-3 relative inline-flex items-center px-4 py-2 border border-gray-300 text-sm font-medium rounded-md text-gray-700 bg-white hover:bg-gray-50 disabled:opacity-50"
                     >
                       Next
@@ -522,9 +543,9 @@ const DataMerge: React.FC = () => {
                       <p className="text-sm text-gray-700">
                         Showing <span className="font-medium">{currentPage * pageSize + 1}</span> to{' '}
                         <span className="font-medium">
-                          {Math.min((currentPage + 1) * pageSize, totalRecords)}
+                          {currentPage * pageSize + mergedData.length}
                         </span>{' '}
-                        of <span className="font-medium">{totalRecords}</span> results
+                        of <span className="font-medium">{totalApproximate ? 'about ' : ''}{totalRecords}</span> results
                       </p>
                     </div>
                     <div>
@@ -538,7 +559,7 @@ const DataMerge: React.FC = () => {
                         </button>
                         <button
                           onClick={() => setCurrentPage(currentPage + 1)}
-                          disabled={currentPage >= totalPages - 1}
+                          disabled={!hasNext}
                           className="relative inline-flex items-center px-2 py-2 rounded-r-md border border-gray-300 bg-white text-sm font-medium text-gray-500 hover:bg-gray-50 disabled:opacity-50"
                         >
                           <ChevronRight className="h-5 w-5" />
@@ -561,6 +582,7 @@ const DataMerge: React.FC = () => {
               onChange={(e) => {
                 setPageSize(Number(e.target.value));
                 setCurrentPage(0);
+                setCursors([null]);
               }}
               className="px-3 py-1 border border-gray-300 rounded-md text-sm focus:outline-none focus:ring-2 focus:ring-blue-500"
             >